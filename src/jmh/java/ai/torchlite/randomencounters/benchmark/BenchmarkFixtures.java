@@ -0,0 +1,227 @@
+package ai.torchlite.randomencounters.benchmark;
+
+import ai.torchlite.randomencounters.ai.StorytellingRequest;
+import ai.torchlite.randomencounters.encounter.EncounterData;
+import ai.torchlite.randomencounters.entity.EntityCatalog;
+import ai.torchlite.randomencounters.entity.EntityCategory;
+import ai.torchlite.randomencounters.entity.EntityRegistry;
+import ai.torchlite.randomencounters.story.EncounterSummary;
+import ai.torchlite.randomencounters.story.PlayerStoryState;
+import ai.torchlite.randomencounters.story.StoryThread;
+import ai.torchlite.randomencounters.story.StorytellingResponse;
+import ai.torchlite.randomencounters.story.ThreadPriority;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Shared, game-free test data for benchmarks
+ */
+public final class BenchmarkFixtures {
+
+    private static final String[] MODS = {"minecraft", "lycanitesmobs", "iceandfire", "srparasites", "mowziesmobs"};
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Install a synthetic entity registry roughly the size of a large modpack
+     */
+    public static void installEntityRegistry(int entityCount) {
+        EntityCatalog.Builder builder = new EntityCatalog.Builder();
+        EntityCategory[] categories = EntityCategory.values();
+        for (int i = 0; i < entityCount; i++) {
+            String mod = MODS[i % MODS.length];
+            EntityCategory category = categories[i % categories.length];
+            builder.add(mod + ":creature_" + i, category, category == EntityCategory.HOSTILE ? "Hostile creature" : null);
+        }
+        builder.add("minecraft:zombie", EntityCategory.HOSTILE, "Melee attacker - good for raiders, scavengers");
+        builder.add("minecraft:villager", EntityCategory.PASSIVE, "NPC - perfect for traders, quest givers");
+        EntityRegistry.initialize(builder.build());
+    }
+
+    /**
+     * A fully populated request, similar to what ContextEnrichmentEngine produces mid-game
+     */
+    public static StorytellingRequest createRequest(int threadCount) {
+        StorytellingRequest request = new StorytellingRequest();
+        request.setPlayerName("Benchmark");
+        request.setPlayerUUID("00000000-0000-0000-0000-000000000000");
+        request.setPlayerLevel(27);
+        request.setPlayerHealth(14);
+        request.setPlayerMaxHealth(20);
+        request.setBiome("Wasteland");
+        request.setPosX(1200);
+        request.setPosY(64);
+        request.setPosZ(-340);
+        request.setDimension("overworld");
+        request.setTimeOfDay("dusk");
+        request.setWeather("rain");
+        request.setGameDifficulty("HARD");
+        request.setLocalDifficultyRating(0.55f);
+        request.setCurrentLocation("Wilderness");
+        request.setNarrativeSummary("A wandering scavenger who has crossed the Ashen Plains twice, " +
+            "sided with the Wasteland Nomads against raiders and earned the enmity of the Blight Cultists.");
+
+        request.getEquipment().put("mainhand", "iron_sword");
+        request.getEquipment().put("head", "iron_helmet");
+        request.getEquipment().put("chest", "leather_chestplate");
+        request.getFactionReputation().put("Dregorian Colonists", 50);
+        request.getFactionReputation().put("Wasteland Nomads", 20);
+        request.getFactionReputation().put("Blight Cultists", -40);
+
+        List<StoryThread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            StoryThread thread = new StoryThread("thread_" + i, "Thread " + i, "An unfinished story arc number " + i);
+            thread.setCurrentObjective("Find the missing caravan " + i);
+            thread.setNarrativeContext("The caravan was last seen heading north past the ruined tower.");
+            threads.add(thread);
+        }
+        request.setActiveThreads(threads);
+
+        for (int i = 0; i < 5; i++) {
+            request.getRecentEncounters().add(new EncounterSummary("enc_" + i, "combat", "Fought raiders " + i, "victory"));
+        }
+        return request;
+    }
+
+    /**
+     * A narrative of typical length for the conversion step
+     */
+    public static String createNarrative() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# The Blight Prophet\n\n**Type:** combat\n\n");
+        for (int i = 0; i < 20; i++) {
+            sb.append("The witch raises her staff as corrupted spiders pour from the fog, hissing and clicking. ");
+        }
+        sb.append("\n\n**Entities:** 1 Witch (Blight Prophet), 3 Spiders (Corrupted Crawlers)\n");
+        return sb.toString();
+    }
+
+    /**
+     * A long-running player's state: full encounter history, the given number of threads
+     * (none URGENT, so thread selection takes the weighted path)
+     */
+    public static PlayerStoryState createState(int threadCount) {
+        PlayerStoryState state = new PlayerStoryState(UUID.fromString("00000000-0000-0000-0000-000000000001"), "Benchmark");
+        state.setNarrativeSummary("A wandering scavenger who has crossed the Ashen Plains twice, " +
+            "sided with the Wasteland Nomads against raiders and earned the enmity of the Blight Cultists.");
+        ThreadPriority[] priorities = {ThreadPriority.LOW, ThreadPriority.MEDIUM, ThreadPriority.HIGH};
+        for (int i = 0; i < threadCount; i++) {
+            StoryThread thread = new StoryThread("thread_" + i, "Thread " + i, "An unfinished story arc number " + i);
+            thread.setPriority(priorities[i % priorities.length]);
+            thread.setCurrentObjective("Find the missing caravan " + i);
+            thread.setNarrativeContext("The caravan was last seen heading north past the ruined tower.");
+            thread.setLastUpdateTimestamp(1_700_000_000_000L + i * 60_000L);
+            thread.getKeyNPCs().add("Trader Marcus");
+            thread.getThreadState().put("stage", "search");
+            state.addThread(thread);
+        }
+        for (int i = 0; i < 100; i++) {
+            EncounterSummary summary = new EncounterSummary("enc_" + i, "combat", "Fought raiders near the tower " + i, "victory");
+            summary.getKeyEntities().add("Wasteland Raider");
+            summary.getKeyChoices().add("Spared the raider captain");
+            state.addEncounterSummary(summary);
+        }
+        state.modifyFactionReputation("Dregorian Colonists", 50);
+        state.modifyFactionReputation("Wasteland Nomads", 20);
+        state.modifyFactionReputation("Blight Cultists", -40);
+        return state;
+    }
+
+    /**
+     * A conversion-step response as the model returns it, with the encounter as a nested object
+     */
+    public static String createResponseJson(int entityCount) {
+        Gson gson = new Gson();
+        StorytellingResponse response = new StorytellingResponse();
+        response.setEncounter(gson.fromJson(createEncounter(entityCount), EncounterData.class));
+        response.getStoryUpdates().setEncounterSummary("Defeated the Blight Prophet in the fog");
+        response.getStoryUpdates().getKeyChoices().add("Burned the prophet's staff");
+        return gson.toJson(response);
+    }
+
+    /**
+     * The same response in the old format, with the encounter as an escaped string in encounter_json
+     */
+    public static String createLegacyResponseJson(int entityCount) {
+        Gson gson = new Gson();
+        JsonObject response = new JsonParser().parse(createResponseJson(entityCount)).getAsJsonObject();
+        JsonObject encounter = response.remove("encounter").getAsJsonObject();
+        JsonObject legacy = new JsonObject();
+        legacy.addProperty("encounter_json", gson.toJson(encounter));
+        for (Map.Entry<String, JsonElement> entry : response.entrySet()) {
+            legacy.add(entry.getKey(), entry.getValue());
+        }
+        return gson.toJson(legacy);
+    }
+
+    /**
+     * A reply damaged the ways models damage them: fenced, with a preamble, with a trailing
+     * comma, and cut off at ten points through its length. Legacy replies also get the two
+     * escaping slips only an escaped encounter_json allows: one quote left unescaped, one
+     * escaped twice.
+     */
+    public static List<String> createDamagedReplies(String reply) {
+        List<String> replies = new ArrayList<>();
+        replies.add("```json\n" + reply + "\n```");
+        replies.add("Here is the encounter:\n" + reply);
+        replies.add(reply.replaceFirst("\\}\\]", "},]"));
+        for (int i = 0; i < 10; i++) {
+            replies.add(reply.substring(0, reply.length() * (50 + i * 5) / 100));
+        }
+        int escaped = reply.indexOf("\\\"title\\\"");
+        if (escaped >= 0) {
+            replies.add(reply.substring(0, escaped) + reply.substring(escaped + 1));
+            replies.add(reply.substring(0, escaped) + "\\\\" + reply.substring(escaped));
+        }
+        return replies;
+    }
+
+    private static JsonObject createEncounter(int entityCount) {
+        JsonObject encounter = new JsonObject();
+        encounter.addProperty("title", "The Blight Prophet");
+        encounter.addProperty("type", "combat");
+        encounter.addProperty("description", "A witch leads corrupted spiders out of the fog");
+        encounter.addProperty("narrative_text", createNarrative());
+        JsonArray entities = new JsonArray();
+        for (int i = 0; i < entityCount; i++) {
+            JsonObject entity = new JsonObject();
+            entity.addProperty("entity_type", i == 0 ? "witch" : "spider");
+            entity.addProperty("name", i == 0 ? "Blight Prophet" : "Corrupted Crawler " + i);
+            entity.addProperty("count", i == 0 ? 1 : 2);
+            entity.addProperty("hostile", true);
+            entity.addProperty("health_modifier", 1.5);
+            entity.addProperty("damage_modifier", 1.0);
+            JsonArray equipment = new JsonArray();
+            equipment.add("iron_helmet");
+            entity.add("equipment", equipment);
+            entities.add(entity);
+        }
+        encounter.add("entities", entities);
+        JsonArray dialogue = new JsonArray();
+        JsonObject line = new JsonObject();
+        line.addProperty("speaker", "Blight Prophet");
+        line.addProperty("text", "The fog remembers you, wanderer.");
+        dialogue.add(line);
+        encounter.add("dialogue", dialogue);
+        JsonObject outcomes = new JsonObject();
+        outcomes.addProperty("victory_text", "The fog thins as the prophet falls.");
+        outcomes.addProperty("defeat_text", "The spiders drag you into the dark.");
+        outcomes.addProperty("flee_text", "You outrun the clicking in the fog.");
+        encounter.add("outcomes", outcomes);
+        JsonObject factionChanges = new JsonObject();
+        factionChanges.addProperty("Blight Cultists", -5);
+        JsonObject rewards = new JsonObject();
+        rewards.add("faction_changes", factionChanges);
+        encounter.add("rewards", rewards);
+        return encounter;
+    }
+}
@@ -0,0 +1,61 @@
+package ai.torchlite.randomencounters.benchmark;
+
+import ai.torchlite.randomencounters.ai.NarrativePromptBuilder;
+import ai.torchlite.randomencounters.ai.StorytellingRequest;
+import ai.torchlite.randomencounters.ai.prompt.ModularPromptBuilder;
+import ai.torchlite.randomencounters.ai.prompt.PromptLayout;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt assembly time and allocations (run with the gc profiler to see bytes/op).
+ * serviceConversionLayout builds the conversion prompt the way the provider
+ * services do, through their long-lived builder; perCallConversionLayout builds
+ * a new builder each time, so its caches never hit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PromptBuildBenchmark {
+
+    @Param({"100", "1000"})
+    public int entityCount;
+
+    private ModularPromptBuilder builder;
+    private NarrativePromptBuilder serviceBuilder;
+    private StorytellingRequest request;
+    private String narrative;
+
+    @Setup
+    public void setup() {
+        BenchmarkFixtures.installEntityRegistry(entityCount);
+        builder = new ModularPromptBuilder();
+        serviceBuilder = new NarrativePromptBuilder();
+        request = BenchmarkFixtures.createRequest(5);
+        narrative = BenchmarkFixtures.createNarrative();
+    }
+
+    @Benchmark
+    public String buildStoryPrompt() {
+        return builder.buildStoryPrompt(request);
+    }
+
+    @Benchmark
+    public String buildConversionPrompt() {
+        return builder.buildConversionPrompt(narrative);
+    }
+
+    @Benchmark
+    public PromptLayout serviceConversionLayout() {
+        return serviceBuilder.buildConversionPromptLayout(narrative);
+    }
+
+    @Benchmark
+    public PromptLayout perCallConversionLayout() {
+        return new NarrativePromptBuilder().buildConversionPromptLayout(narrative);
+    }
+}
@@ -0,0 +1,99 @@
+package ai.torchlite.randomencounters.benchmark;
+
+import ai.torchlite.randomencounters.ai.ModelJsonExtractor;
+import ai.torchlite.randomencounters.encounter.EncounterData;
+import ai.torchlite.randomencounters.story.StorytellingResponse;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a conversion response in the nested-object format and the legacy
+ * escaped encounter_json format. twoPass is the old path (bind the response,
+ * then parse the encounter again); parseStorytellingResponse and
+ * extractAndParse are the single streaming pass the services use now.
+ * parseDamaged runs ModelJsonExtractor over damaged replies and counts how
+ * many still yield an encounter, for the failure rate of each format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseParseBenchmark {
+
+    @Param({"3", "12"})
+    public int entityCount;
+
+    @Param({"nested", "legacy"})
+    public String format;
+
+    private final Gson gson = new Gson();
+    private final JsonParser jsonParser = new JsonParser();
+    private String responseJson;
+    private String[] damaged;
+    private int next;
+
+    @Setup
+    public void setup() {
+        responseJson = "legacy".equals(format)
+            ? BenchmarkFixtures.createLegacyResponseJson(entityCount)
+            : BenchmarkFixtures.createResponseJson(entityCount);
+        List<String> replies = BenchmarkFixtures.createDamagedReplies(responseJson);
+        damaged = replies.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public StorytellingResponse parseStorytellingResponse() {
+        return gson.fromJson(responseJson, StorytellingResponse.class);
+    }
+
+    @Benchmark
+    public EncounterData twoPass() {
+        JsonObject root = jsonParser.parse(responseJson).getAsJsonObject();
+        JsonElement encounter = root.has("encounter") ? root.remove("encounter") : root.remove("encounter_json");
+        gson.fromJson(root, StorytellingResponse.class);
+        return encounter.isJsonObject()
+            ? gson.fromJson(encounter, EncounterData.class)
+            : gson.fromJson(encounter.getAsString(), EncounterData.class);
+    }
+
+    @Benchmark
+    public StorytellingResponse extractAndParse() throws Exception {
+        return ModelJsonExtractor.parseResponse(responseJson, "bench");
+    }
+
+    @Benchmark
+    public void parseDamaged(Outcomes outcomes) {
+        String reply = damaged[next];
+        next = (next + 1) % damaged.length;
+        try {
+            ModelJsonExtractor.parseResponse(reply, "bench");
+            outcomes.parsed++;
+        } catch (Exception e) {
+            outcomes.failed++;
+        }
+    }
+
+    /**
+     * Damaged replies that did and didn't yield an encounter, reported per iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long parsed;
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            parsed = 0;
+            failed = 0;
+        }
+    }
+}
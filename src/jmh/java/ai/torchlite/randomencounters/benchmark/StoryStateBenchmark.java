@@ -0,0 +1,83 @@
+package ai.torchlite.randomencounters.benchmark;
+
+import ai.torchlite.randomencounters.story.PlayerStoryState;
+import ai.torchlite.randomencounters.story.StoryStateManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and reloading a large player story state (full history, many threads)
+ *
+ * reload is what a logout and login costs: save on unload, then read back from disk.
+ * StoryStateManager logs each load to stdout, so stdout is muted while measuring.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StoryStateBenchmark {
+
+    @Param({"10", "100"})
+    public int threadCount;
+
+    private File worldDir;
+    private StoryStateManager manager;
+    private PlayerStoryState state;
+    private PrintStream stdout;
+
+    @Setup
+    public void setup() throws IOException {
+        stdout = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+
+        worldDir = Files.createTempDirectory("randomencounters-bench").toFile();
+        StoryStateManager.initialize(worldDir);
+        manager = StoryStateManager.getInstance();
+        state = BenchmarkFixtures.createState(threadCount);
+        manager.saveState(state);
+        manager.getOrCreateState(state.getPlayerUUID(), state.getPlayerName());
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+        deleteRecursively(worldDir);
+    }
+
+    @Benchmark
+    public void saveState() {
+        manager.saveState(state);
+    }
+
+    @Benchmark
+    public PlayerStoryState reloadState() {
+        manager.unloadState(state.getPlayerUUID());
+        return manager.getOrCreateState(state.getPlayerUUID(), state.getPlayerName());
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
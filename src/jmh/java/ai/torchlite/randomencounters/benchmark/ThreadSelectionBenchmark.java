@@ -0,0 +1,37 @@
+package ai.torchlite.randomencounters.benchmark;
+
+import ai.torchlite.randomencounters.story.PlayerStoryState;
+import ai.torchlite.randomencounters.story.StoryThread;
+import ai.torchlite.randomencounters.story.StoryThreadManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picking the story thread for the next encounter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ThreadSelectionBenchmark {
+
+    @Param({"5", "50", "200"})
+    public int threadCount;
+
+    private StoryThreadManager manager;
+    private PlayerStoryState state;
+
+    @Setup
+    public void setup() {
+        manager = new StoryThreadManager();
+        state = BenchmarkFixtures.createState(threadCount);
+    }
+
+    @Benchmark
+    public StoryThread selectThreadForEncounter() {
+        return manager.selectThreadForEncounter(state);
+    }
+}
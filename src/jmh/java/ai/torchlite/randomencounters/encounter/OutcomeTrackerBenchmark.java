@@ -0,0 +1,104 @@
+package ai.torchlite.randomencounters.encounter;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.inventory.EntityEquipmentSlot;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.DamageSource;
+import net.minecraft.util.EnumHandSide;
+import net.minecraftforge.event.entity.living.LivingDeathEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EncounterOutcomeTracker.onEntityDeath runs for every living entity that dies on the server,
+ * so its cost with many encounters active matters more than the rare completion path
+ *
+ * Entities are constructed without a world (after Bootstrap) and never die for real, so no
+ * encounter completes while measuring. In this package for EncounterExecutor.trackEncounter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OutcomeTrackerBenchmark {
+
+    private static final int ENTITIES_PER_ENCOUNTER = 8;
+
+    @Param({"1", "20", "100"})
+    public int activeEncounters;
+
+    private EncounterOutcomeTracker tracker;
+    private LivingDeathEvent unrelatedDeath;
+    private LivingDeathEvent encounterDeath;
+
+    @Setup
+    public void setup() {
+        Bootstrap.register();
+        EncounterExecutor executor = new EncounterExecutor();
+        tracker = new EncounterOutcomeTracker(executor);
+
+        BenchEntity last = null;
+        for (int i = 0; i < activeEncounters; i++) {
+            List<Entity> spawned = new ArrayList<>();
+            for (int j = 0; j < ENTITIES_PER_ENCOUNTER; j++) {
+                last = new BenchEntity();
+                spawned.add(last);
+            }
+            executor.trackEncounter(new UUID(0, i), new EncounterExecutor.ActiveEncounter(
+                new EncounterData(), spawned, Collections.<EntityPlayer>emptyList(), System.currentTimeMillis()));
+        }
+
+        // A mob that isn't part of any encounter (the common case), and one that is
+        // (its encounter-mates are still alive, so the encounter doesn't complete)
+        unrelatedDeath = new LivingDeathEvent(new BenchEntity(), DamageSource.GENERIC);
+        encounterDeath = new LivingDeathEvent(last, DamageSource.GENERIC);
+    }
+
+    @Benchmark
+    public void unrelatedDeath() {
+        tracker.onEntityDeath(unrelatedDeath);
+    }
+
+    @Benchmark
+    public void encounterDeath() {
+        tracker.onEntityDeath(encounterDeath);
+    }
+
+    /**
+     * The smallest living entity: no AI, no equipment, not a mob
+     */
+    private static class BenchEntity extends EntityLivingBase {
+        BenchEntity() {
+            super(null);
+        }
+
+        @Override
+        public Iterable<ItemStack> getArmorInventoryList() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public ItemStack getItemStackFromSlot(EntityEquipmentSlot slot) {
+            return ItemStack.EMPTY;
+        }
+
+        @Override
+        public void setItemStackToSlot(EntityEquipmentSlot slot, ItemStack stack) {
+        }
+
+        @Override
+        public EnumHandSide getPrimaryHand() {
+            return EnumHandSide.RIGHT;
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package ai.torchlite.randomencounters;
 
+import ai.torchlite.randomencounters.ai.AIStorytellingEngine;
+import ai.torchlite.randomencounters.ai.UsageLedger;
 import ai.torchlite.randomencounters.command.EncounterCommand;
 import ai.torchlite.randomencounters.config.ConfigHandler;
+import ai.torchlite.randomencounters.context.InventoryDigestTracker;
+import ai.torchlite.randomencounters.context.PlayerSpatialIndex;
+import ai.torchlite.randomencounters.context.StructureLocator;
 import ai.torchlite.randomencounters.encounter.EncounterExecutor;
 import ai.torchlite.randomencounters.encounter.EncounterOutcomeTracker;
+import ai.torchlite.randomencounters.entity.EntityProfiler;
 import ai.torchlite.randomencounters.entity.EntityRegistry;
+import ai.torchlite.randomencounters.metrics.PrometheusExporter;
 import ai.torchlite.randomencounters.proxy.CommonProxy;
 import ai.torchlite.randomencounters.story.StoryStateManager;
 import net.minecraftforge.common.MinecraftForge;
@@ -15,6 +22,7 @@ import net.minecraftforge.fml.common.SidedProxy;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -46,16 +54,25 @@ public class RandomEncounters {
     // Encounter system
     private static EncounterExecutor encounterExecutor;
     private static EncounterOutcomeTracker outcomeTracker;
+    private static EntityProfiler entityProfiler;
+    private static AIStorytellingEngine storytellingEngine;
+
+    private static File configDirectory;
 
     public static EncounterExecutor getEncounterExecutor() {
         return encounterExecutor;
     }
 
+    public static AIStorytellingEngine getStorytellingEngine() {
+        return storytellingEngine;
+    }
+
     @EventHandler
     public void preInit(FMLPreInitializationEvent event) {
         LOGGER.info("Random Encounters - Pre-initialization");
 
         // Initialize configuration
+        configDirectory = event.getModConfigurationDirectory();
         File configFile = new File(event.getModConfigurationDirectory(), "randomencounters.cfg");
         ConfigHandler.init(configFile);
         LOGGER.info("Configuration loaded");
@@ -68,15 +85,26 @@ public class RandomEncounters {
         LOGGER.info("Random Encounters - Initialization");
         proxy.init();
 
-        // Discover available entities
-        EntityRegistry.getInstance();
+        // Discover available entities (or reuse the snapshot from the last launch)
+        EntityRegistry.initialize(new File(configDirectory, MODID + "/entity_catalog.json"));
         LOGGER.info("Entity registry initialized");
 
+        // Measure entity stats in the background (from cache, or a few per server tick)
+        entityProfiler = new EntityProfiler(new File(configDirectory, MODID + "/entity_profiles.json"));
+        entityProfiler.start();
+        MinecraftForge.EVENT_BUS.register(entityProfiler);
+
         // Initialize encounter system
         encounterExecutor = new EncounterExecutor();
         outcomeTracker = new EncounterOutcomeTracker(encounterExecutor);
         MinecraftForge.EVENT_BUS.register(outcomeTracker);
         LOGGER.info("Encounter system initialized");
+
+        // Track online player positions for nearby-player and party queries
+        MinecraftForge.EVENT_BUS.register(PlayerSpatialIndex.getInstance());
+
+        // Keep inventory descriptions current as slots change, instead of scanning per request
+        MinecraftForge.EVENT_BUS.register(InventoryDigestTracker.getInstance());
     }
 
     @EventHandler
@@ -89,10 +117,27 @@ public class RandomEncounters {
             File worldDir = server.getWorld(0).getSaveHandler().getWorldDirectory();
             StoryStateManager.initialize(worldDir);
             LOGGER.info("Story State Manager initialized with world directory: " + worldDir.getAbsolutePath());
+
+            // Token usage and cost, rolled up per day alongside the story data
+            UsageLedger.getInstance().initialize(new File(worldDir, "data/story_encounters/usage"));
         }
 
         // Register commands
+        storytellingEngine = new AIStorytellingEngine();
         event.registerServerCommand(new EncounterCommand());
         LOGGER.info("Registered /encounter command");
+
+        // Write pipeline metrics for external monitoring
+        PrometheusExporter.start(new File(ConfigHandler.metricsFile), ConfigHandler.metricsExportIntervalSeconds);
+    }
+
+    @EventHandler
+    public void serverStopping(FMLServerStoppingEvent event) {
+        // Integrated servers can be restarted within the same game session
+        PlayerSpatialIndex.getInstance().clear();
+        StructureLocator.getInstance().clear();
+        InventoryDigestTracker.getInstance().clear();
+        PrometheusExporter.stop();
+        UsageLedger.getInstance().shutdown();
     }
 }
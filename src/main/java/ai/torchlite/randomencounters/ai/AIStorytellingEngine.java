@@ -1,9 +1,16 @@
 package ai.torchlite.randomencounters.ai;
 
 import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.ai.models.ModelConfig;
+import ai.torchlite.randomencounters.ai.prompt.PromptLayout;
+import ai.torchlite.randomencounters.config.ConfigHandler;
 import ai.torchlite.randomencounters.context.ContextEnrichmentEngine;
+import ai.torchlite.randomencounters.context.ContextSnapshot;
+import ai.torchlite.randomencounters.metrics.EncounterTrace;
+import ai.torchlite.randomencounters.metrics.PipelineMetrics;
 import ai.torchlite.randomencounters.story.PlayerStoryState;
 import ai.torchlite.randomencounters.story.StoryStateManager;
+import ai.torchlite.randomencounters.story.StorySummaryScheduler;
 import ai.torchlite.randomencounters.story.StoryThread;
 import ai.torchlite.randomencounters.story.StoryThreadManager;
 import ai.torchlite.randomencounters.story.StorytellingResponse;
@@ -12,22 +19,39 @@ import net.minecraft.world.World;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Main orchestrator for AI-driven storytelling encounters
  */
 public class AIStorytellingEngine {
 
+    // Enrichment, prompt building and the API calls run here, never on the server thread
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "RandomEncounters-Generation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final ContextEnrichmentEngine contextEngine;
     private final NarrativePromptBuilder promptBuilder;
     private final StoryThreadManager threadManager;
     private final List<IAIStorytellingService> services;
+    private final ContextChangeDetector changeDetector;
+    private final ResponseValidator validator;
 
     public AIStorytellingEngine() {
         this.contextEngine = new ContextEnrichmentEngine();
         this.promptBuilder = new NarrativePromptBuilder();
         this.threadManager = new StoryThreadManager();
+        this.changeDetector = new ContextChangeDetector();
+        this.validator = new ResponseValidator();
         this.services = new ArrayList<>();
 
         // Register AI services
@@ -40,12 +64,80 @@ public class AIStorytellingEngine {
 
     /**
      * Generate a story-driven encounter for a player
+     * Captures the player's context first, so this must be called on the server thread.
      *
      * @param player The player to generate an encounter for
      * @param world The world the player is in
      * @return StorytellingResponse containing the encounter and story updates, or null if generation fails
      */
     public StorytellingResponse generateEncounter(EntityPlayer player, World world) {
+        return generateEncounter(ContextSnapshot.capture(player, world));
+    }
+
+    /**
+     * Capture the player's context on the calling (server) thread, then generate on a worker thread
+     *
+     * @param player The player to generate an encounter for
+     * @param world The world the player is in
+     * @return Future completing with the response, or null if generation fails
+     */
+    public CompletableFuture<StorytellingResponse> generateEncounterAsync(EntityPlayer player, World world) {
+        return generateEncounterAsync(player, world, EncounterTrace.NONE);
+    }
+
+    /**
+     * Capture the player's context on the calling (server) thread, then generate on a worker thread
+     *
+     * @param trace Trace to add the pipeline's spans to (the caller finishes it)
+     * @return Future completing with the response, or null if generation fails
+     */
+    public CompletableFuture<StorytellingResponse> generateEncounterAsync(EntityPlayer player, World world, EncounterTrace trace) {
+        ContextSnapshot snapshot = ContextSnapshot.capture(player, world);
+        long queued = System.nanoTime();
+        PipelineMetrics.CONTEXT_CAPTURE.recordNanos(snapshot.getCaptureNanos());
+        trace.span("context_capture", 0, queued - snapshot.getCaptureNanos(), queued, null, null);
+        RandomEncounters.LOGGER.debug("Captured encounter context for " + snapshot.getPlayerName() + " in " +
+            (snapshot.getCaptureNanos() / 1000) + "us");
+        return generateEncounterAsync(snapshot, trace, queued);
+    }
+
+    /**
+     * Generate from an already captured snapshot on a worker thread (used by tools running without a world)
+     *
+     * @param trace Trace to add the pipeline's spans to (the caller finishes it)
+     * @return Future completing with the response, or null if generation fails
+     */
+    public CompletableFuture<StorytellingResponse> generateEncounterAsync(ContextSnapshot snapshot, EncounterTrace trace) {
+        return generateEncounterAsync(snapshot, trace, System.nanoTime());
+    }
+
+    private CompletableFuture<StorytellingResponse> generateEncounterAsync(ContextSnapshot snapshot, EncounterTrace trace, long queued) {
+        return CompletableFuture.supplyAsync(() -> {
+            PipelineMetrics.QUEUE_WAIT.recordNanos(System.nanoTime() - queued);
+            trace.span("queue_wait", queued);
+            return generateEncounter(snapshot, trace);
+        }, WORKERS);
+    }
+
+    /**
+     * Generate a story-driven encounter from a captured context snapshot (safe on any thread)
+     *
+     * @param snapshot The player's context, captured on the server thread
+     * @return StorytellingResponse containing the encounter and story updates, or null if generation fails
+     */
+    public StorytellingResponse generateEncounter(ContextSnapshot snapshot) {
+        return generateEncounter(snapshot, EncounterTrace.NONE);
+    }
+
+    /**
+     * Generate a story-driven encounter from a captured context snapshot (safe on any thread)
+     *
+     * @param snapshot The player's context, captured on the server thread
+     * @param trace Trace to add the pipeline's spans to (the caller finishes it)
+     * @return StorytellingResponse containing the encounter and story updates, or null if generation fails
+     */
+    public StorytellingResponse generateEncounter(ContextSnapshot snapshot, EncounterTrace trace) {
+        long start = System.nanoTime();
         try {
             // Get player story state
             StoryStateManager stateManager = StoryStateManager.getInstance();
@@ -54,78 +146,322 @@ public class AIStorytellingEngine {
                 return null;
             }
 
-            PlayerStoryState state = stateManager.getOrCreateState(player);
+            PlayerStoryState state = stateManager.getOrCreateState(snapshot.getPlayerUUID(), snapshot.getPlayerName());
 
             // Build enriched context
-            StorytellingRequest request = contextEngine.buildStorytellingRequest(player, world);
+            StorytellingRequest request = contextEngine.buildStorytellingRequest(snapshot);
+            PipelineMetrics.CONTEXT_BUILD.recordNanos(System.nanoTime() - start);
+            trace.span("context_build", start);
+
+            // Nothing changed since the last encounter: serve that one again instead of calling the API
+            long compareStart = System.nanoTime();
+            ContextChangeDetector.Delta delta = changeDetector.compare(snapshot.getPlayerUUID(), request);
+            StorytellingResponse reused = changeDetector.reuse(snapshot.getPlayerUUID(), delta);
+            trace.span("context_compare", 0, compareStart, System.nanoTime(),
+                delta.getLevel() + (reused != null ? ", reused last encounter" : ""), null);
+            if (reused != null) {
+                RandomEncounters.LOGGER.info("Context unchanged for " + snapshot.getPlayerName() + ", reusing last encounter");
+                PipelineMetrics.REUSED.increment();
+                return reused;
+            }
+            if (delta.getLevel() == ContextChangeDetector.ChangeLevel.MINOR) {
+                request.setContextChanges(delta.getChanges());
+            }
 
             // Select story thread to focus on (if any)
-            StoryThread focusThread = threadManager.selectThreadForEncounter(state);
+            StoryThread focusThread;
+            Map<String, StoryThread> knownThreads;
+            synchronized (state) {
+                focusThread = threadManager.selectThreadForEncounter(state);
+                knownThreads = new HashMap<>(state.getActiveThreads());
+            }
             if (focusThread != null) {
                 request.setFocusThread(focusThread);
                 RandomEncounters.LOGGER.info("Focusing encounter on thread: " + focusThread.getTitle());
-            }
-
-            // Build prompt
-            String prompt;
-            if (focusThread != null) {
-                prompt = promptBuilder.buildPrompt(request);
             } else {
-                prompt = promptBuilder.buildEmergentPrompt(request);
                 RandomEncounters.LOGGER.info("Generating emergent encounter (no thread selected)");
             }
 
-            // Try each AI service in priority order
-            StorytellingResponse response = null;
-            Exception lastException = null;
-
-            for (IAIStorytellingService service : services) {
-                if (!service.isAvailable()) {
-                    RandomEncounters.LOGGER.debug("Skipping unavailable service: " + service.getServiceName());
-                    continue;
-                }
-
-                try {
-                    RandomEncounters.LOGGER.info("Attempting generation with: " + service.getServiceName());
-                    response = service.generateEncounter(prompt);
-
-                    if (response != null) {
-                        RandomEncounters.LOGGER.info("Successfully generated encounter with: " + service.getServiceName());
-                        break;
-                    }
-                } catch (Exception e) {
-                    RandomEncounters.LOGGER.error("Failed to generate with " + service.getServiceName() + ": " + e.getMessage());
-                    lastException = e;
-                }
-            }
+            RequestTag tag = new RequestTag(snapshot.getPlayerUUID(), snapshot.getPlayerName(),
+                focusThread != null ? focusThread.getThreadId() : null, 1, trace);
 
+            StorytellingResponse response = callServices(request, tag, knownThreads);
             if (response == null) {
-                if (lastException != null) {
-                    RandomEncounters.LOGGER.error("All AI services failed. Last error: " + lastException.getMessage());
-                } else {
-                    RandomEncounters.LOGGER.error("No AI services available");
-                }
+                PipelineMetrics.FAILED.increment();
                 return null;
             }
 
             // Process story updates
-            processStoryUpdates(state, response);
+            long updateStart = System.nanoTime();
+            synchronized (state) {
+                processStoryUpdates(state, response, true);
+            }
+
+            // Baseline for the next comparison includes this encounter's own story updates
+            changeDetector.remember(snapshot.getPlayerUUID(), contextEngine.buildStorytellingRequest(snapshot), response);
 
             // Save updated state
             stateManager.saveState(state);
 
+            // Fold new events into the story summary in the background once enough have piled up
+            StorySummaryScheduler.getInstance().scheduleIfNeeded(state);
+            trace.span("story_update", updateStart);
+
+            PipelineMetrics.GENERATED.increment();
+            PipelineMetrics.GENERATION.recordNanos(System.nanoTime() - start);
             return response;
 
         } catch (Exception e) {
             RandomEncounters.LOGGER.error("Error generating encounter: " + e.getMessage(), e);
+            PipelineMetrics.FAILED.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Capture every party member's context on the calling (server) thread, then generate one
+     * shared encounter on a worker thread. The first member is the party leader.
+     *
+     * @param members The party, leader first
+     * @param world The world the party is in
+     * @return Future completing with the response, or null if generation fails
+     */
+    public CompletableFuture<StorytellingResponse> generatePartyEncounterAsync(List<EntityPlayer> members, World world) {
+        return generatePartyEncounterAsync(members, world, EncounterTrace.NONE);
+    }
+
+    /**
+     * Capture every party member's context on the calling (server) thread, then generate one
+     * shared encounter on a worker thread. The first member is the party leader.
+     *
+     * @param trace Trace to add the pipeline's spans to (the caller finishes it)
+     * @return Future completing with the response, or null if generation fails
+     */
+    public CompletableFuture<StorytellingResponse> generatePartyEncounterAsync(List<EntityPlayer> members, World world,
+                                                                              EncounterTrace trace) {
+        if (members.size() == 1) {
+            return generateEncounterAsync(members.get(0), world, trace);
+        }
+
+        long start = System.nanoTime();
+        List<ContextSnapshot> snapshots = new ArrayList<>(members.size());
+        for (EntityPlayer member : members) {
+            snapshots.add(ContextSnapshot.capture(member, world));
+        }
+        long queued = System.nanoTime();
+        PipelineMetrics.CONTEXT_CAPTURE.recordNanos(queued - start);
+        trace.span("context_capture", 0, start, queued, members.size() + " players", null);
+        RandomEncounters.LOGGER.debug("Captured party context for " + members.size() + " players in " +
+            ((queued - start) / 1000) + "us");
+        return CompletableFuture.supplyAsync(() -> {
+            PipelineMetrics.QUEUE_WAIT.recordNanos(System.nanoTime() - queued);
+            trace.span("queue_wait", queued);
+            return generatePartyEncounter(snapshots, trace);
+        }, WORKERS);
+    }
+
+    /**
+     * Generate one encounter for a whole party from captured snapshots (safe on any thread)
+     *
+     * The request merges every member's story (see {@link ContextEnrichmentEngine#buildPartyStorytellingRequest}),
+     * the focus thread comes from the leader, and the result is recorded in every member's history.
+     *
+     * @param members Snapshots of the party members, leader first
+     * @return StorytellingResponse for the whole party, or null if generation fails
+     */
+    public StorytellingResponse generatePartyEncounter(List<ContextSnapshot> members) {
+        return generatePartyEncounter(members, EncounterTrace.NONE);
+    }
+
+    /**
+     * Generate one encounter for a whole party from captured snapshots (safe on any thread)
+     *
+     * @param members Snapshots of the party members, leader first
+     * @param trace Trace to add the pipeline's spans to (the caller finishes it)
+     * @return StorytellingResponse for the whole party, or null if generation fails
+     */
+    public StorytellingResponse generatePartyEncounter(List<ContextSnapshot> members, EncounterTrace trace) {
+        long start = System.nanoTime();
+        try {
+            StoryStateManager stateManager = StoryStateManager.getInstance();
+            if (stateManager == null) {
+                RandomEncounters.LOGGER.error("StoryStateManager not initialized");
+                return null;
+            }
+
+            List<PlayerStoryState> states = new ArrayList<>(members.size());
+            for (ContextSnapshot member : members) {
+                states.add(stateManager.getOrCreateState(member.getPlayerUUID(), member.getPlayerName()));
+            }
+            PlayerStoryState leaderState = states.get(0);
+
+            StorytellingRequest request = contextEngine.buildPartyStorytellingRequest(members);
+            PipelineMetrics.CONTEXT_BUILD.recordNanos(System.nanoTime() - start);
+            trace.span("context_build", start);
+
+            // Compared against the leader's last encounter
+            ContextSnapshot leader = members.get(0);
+            long compareStart = System.nanoTime();
+            ContextChangeDetector.Delta delta = changeDetector.compare(leader.getPlayerUUID(), request);
+            StorytellingResponse reused = changeDetector.reuse(leader.getPlayerUUID(), delta);
+            trace.span("context_compare", 0, compareStart, System.nanoTime(),
+                delta.getLevel() + (reused != null ? ", reused last encounter" : ""), null);
+            if (reused != null) {
+                RandomEncounters.LOGGER.info("Party context unchanged for " + leader.getPlayerName() + ", reusing last encounter");
+                PipelineMetrics.REUSED.increment();
+                return reused;
+            }
+            if (delta.getLevel() == ContextChangeDetector.ChangeLevel.MINOR) {
+                request.setContextChanges(delta.getChanges());
+            }
+
+            StoryThread focusThread;
+            synchronized (leaderState) {
+                focusThread = threadManager.selectThreadForEncounter(leaderState);
+            }
+            Map<String, StoryThread> knownThreads = new HashMap<>();
+            for (PlayerStoryState state : states) {
+                synchronized (state) {
+                    knownThreads.putAll(state.getActiveThreads());
+                }
+            }
+            if (focusThread != null) {
+                request.setFocusThread(focusThread);
+                RandomEncounters.LOGGER.info("Focusing party encounter on thread: " + focusThread.getTitle());
+            }
+
+            RequestTag tag = new RequestTag(leader.getPlayerUUID(), leader.getPlayerName(),
+                focusThread != null ? focusThread.getThreadId() : null, members.size(), trace);
+            RandomEncounters.LOGGER.info("Generating party encounter for " + members.size() + " players led by " +
+                leaderState.getPlayerName());
+
+            StorytellingResponse response = callServices(request, tag, knownThreads);
+            if (response == null) {
+                PipelineMetrics.FAILED.increment();
+                return null;
+            }
+            long updateStart = System.nanoTime();
+
+            // New threads go to the leader; thread updates apply to whichever member owns the thread
+            for (int i = 0; i < states.size(); i++) {
+                PlayerStoryState state = states.get(i);
+                synchronized (state) {
+                    processStoryUpdates(state, response, i == 0);
+                }
+                stateManager.saveState(state);
+                StorySummaryScheduler.getInstance().scheduleIfNeeded(state);
+            }
+            changeDetector.remember(leader.getPlayerUUID(), contextEngine.buildPartyStorytellingRequest(members), response);
+            trace.span("story_update", updateStart);
+
+            PipelineMetrics.GENERATED.increment();
+            PipelineMetrics.GENERATION.recordNanos(System.nanoTime() - start);
+            return response;
+
+        } catch (Exception e) {
+            RandomEncounters.LOGGER.error("Error generating party encounter: " + e.getMessage(), e);
+            PipelineMetrics.FAILED.increment();
             return null;
         }
     }
 
+    /**
+     * Try each AI service in priority order, with the prompt fitted to that service's model
+     * @param knownThreads Active threads of the players the encounter is for, to validate thread updates against
+     * @return The first valid response, or null if every service failed or none is available
+     */
+    private StorytellingResponse callServices(StorytellingRequest request, RequestTag tag,
+                                              Map<String, StoryThread> knownThreads) {
+        Exception lastException = null;
+        EncounterTrace trace = tag.getTrace();
+        PromptLayout prompt = null;
+        int promptBudget = -1;
+        int attempt = 0;
+
+        for (IAIStorytellingService service : services) {
+            if (!service.isAvailable()) {
+                RandomEncounters.LOGGER.debug("Skipping unavailable service: " + service.getServiceName());
+                continue;
+            }
+
+            // Build again only if this model's budget differs from the last one tried
+            int budget = getPromptTokenBudget(service);
+            if (prompt == null || budget != promptBudget) {
+                prompt = buildPrompt(request, budget, tag);
+                promptBudget = budget;
+            }
+
+            // Each attempt is a span; the service adds its provider calls beneath it
+            attempt++;
+            long attemptStart = System.nanoTime();
+            String detail = service.getServiceName() + ", attempt " + attempt;
+            try {
+                RandomEncounters.LOGGER.info("Attempting generation with: " + service.getServiceName() + " [" + trace.getTraceId() + "]");
+                StorytellingResponse response = service.generateEncounter(prompt);
+
+                if (response != null) {
+                    validateResponse(service, response, knownThreads, prompt.getTag());
+                    trace.span("provider", 0, attemptStart, System.nanoTime(), detail, null);
+                    RandomEncounters.LOGGER.info("Successfully generated encounter with: " + service.getServiceName());
+                    return response;
+                }
+                trace.span("provider", 0, attemptStart, System.nanoTime(), detail, "no response");
+            } catch (Exception e) {
+                trace.span("provider", 0, attemptStart, System.nanoTime(), detail, e.getMessage());
+                RandomEncounters.LOGGER.error("Failed to generate with " + service.getServiceName() + ": " + e.getMessage());
+                lastException = e;
+            }
+        }
+
+        if (lastException != null) {
+            RandomEncounters.LOGGER.error("All AI services failed. Last error: " + lastException.getMessage());
+        } else {
+            RandomEncounters.LOGGER.error("No AI services available");
+        }
+        return null;
+    }
+
+    /**
+     * Fix what failed validation: locally where possible, otherwise by sending only the failing
+     * fragment back to the service's conversion model. Whatever is still invalid is dropped.
+     * @throws Exception if the encounter is left without any valid entity
+     */
+    private void validateResponse(IAIStorytellingService service, StorytellingResponse response,
+                                  Map<String, StoryThread> knownThreads, RequestTag tag) throws Exception {
+        long start = System.nanoTime();
+        ResponseValidator.Result result = validator.validate(response, knownThreads);
+        for (String fix : result.getFixes()) {
+            RandomEncounters.LOGGER.info("Fixed AI response: " + fix);
+        }
+        if (!result.needsFragmentRepair()) {
+            return;
+        }
+
+        String problems = result.describeProblems();
+        RandomEncounters.LOGGER.warn("AI response failed validation, re-converting the failing part:\n" + problems);
+        try {
+            PromptLayout repairPrompt = promptBuilder.buildFragmentRepairPromptLayout(problems,
+                validator.buildFragment(response, result)).withTag(tag);
+            validator.mergeFragment(response, result, service.repairFragment(repairPrompt));
+        } catch (Exception e) {
+            RandomEncounters.LOGGER.error("Fragment repair with " + service.getServiceName() + " failed: " + e.getMessage());
+        }
+
+        boolean usable = validator.dropInvalid(response, knownThreads);
+        if (tag != null) {
+            tag.getTrace().span("validation", 1, start, System.nanoTime(), "fragment re-converted",
+                usable ? null : "no valid entities");
+        }
+        if (!usable) {
+            throw new Exception("Encounter has no valid entities after repair");
+        }
+    }
+
     /**
      * Process and apply story updates from AI response
+     * @param addNewThreads Whether new threads belong to this player (false for party members other than the leader)
      */
-    private void processStoryUpdates(PlayerStoryState state, StorytellingResponse response) {
+    private void processStoryUpdates(PlayerStoryState state, StorytellingResponse response, boolean addNewThreads) {
         if (response.getStoryUpdates() == null) {
             return;
         }
@@ -135,6 +471,9 @@ public class AIStorytellingEngine {
         // Apply thread updates
         if (updates.getThreadUpdates() != null) {
             for (ai.torchlite.randomencounters.story.StoryThreadUpdate update : updates.getThreadUpdates()) {
+                if (!state.getActiveThreads().containsKey(update.getThreadId())) {
+                    continue; // Another party member's thread
+                }
                 try {
                     threadManager.updateThread(state, update);
                     RandomEncounters.LOGGER.info("Updated thread: " + update.getThreadId());
@@ -145,7 +484,7 @@ public class AIStorytellingEngine {
         }
 
         // Add new threads
-        if (updates.getNewThreads() != null) {
+        if (addNewThreads && updates.getNewThreads() != null) {
             for (StoryThread newThread : updates.getNewThreads()) {
                 try {
                     state.addThread(newThread);
@@ -176,6 +515,48 @@ public class AIStorytellingEngine {
         }
     }
 
+    /**
+     * Build the story prompt (stable prefix first so providers can cache it) within a token budget
+     */
+    private PromptLayout buildPrompt(StorytellingRequest request, int tokenBudget, RequestTag tag) {
+        long promptStart = System.nanoTime();
+        StoryThread focusThread = request.getFocusThread();
+        PromptLayout prompt = focusThread != null
+            ? promptBuilder.buildPromptLayout(request, tokenBudget)
+            : promptBuilder.buildEmergentPromptLayout(request, tokenBudget);
+        PipelineMetrics.PROMPT_BUILD.recordNanos(System.nanoTime() - promptStart);
+        tag.getTrace().span("prompt_build", 0, promptStart, System.nanoTime(),
+            (focusThread != null ? "thread " + focusThread.getTitle() : "emergent") + ", " + tokenBudget +
+                " token budget, " + prompt.length() + " chars", null);
+        return prompt.withTag(tag);
+    }
+
+    /**
+     * Token budget for story prompts: the configured limit, capped by the service's model context window
+     */
+    private int getPromptTokenBudget(IAIStorytellingService service) {
+        int budget = ConfigHandler.maxPromptTokens;
+        if (service.getModelId() != null) {
+            budget = Math.min(budget, ModelConfig.fromModelId(service.getModelId()).getMaxPromptTokens());
+        }
+        return budget;
+    }
+
+    /**
+     * Drop the player's last generation so the next request is generated fresh
+     * (called when their encounter ends and when they log out)
+     */
+    public void forgetContext(UUID playerUUID) {
+        changeDetector.forget(playerUUID);
+    }
+
+    /**
+     * How often generation was skipped or narrowed because the player's context hadn't changed
+     */
+    public List<String> getContextChangeStats() {
+        return changeDetector.getSummaryLines();
+    }
+
     /**
      * Get list of available AI services
      */
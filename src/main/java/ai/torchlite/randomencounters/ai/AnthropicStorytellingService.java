@@ -1,13 +1,16 @@
 package ai.torchlite.randomencounters.ai;
 
 import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.ai.prompt.PromptLayout;
 import ai.torchlite.randomencounters.config.ConfigHandler;
+import ai.torchlite.randomencounters.metrics.PipelineMetrics;
 import ai.torchlite.randomencounters.story.StorytellingResponse;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
@@ -19,14 +22,20 @@ import java.nio.charset.StandardCharsets;
  */
 public class AnthropicStorytellingService implements IAIStorytellingService {
 
-    private static final String API_URL = "https://api.anthropic.com/v1/messages";
     private static final int PRIORITY = 2; // Try Anthropic as fallback
 
     private final Gson gson = new Gson();
     private final JsonParser jsonParser = new JsonParser();
+    // One builder per service, so its conversion prefix and static section caches hit across requests
+    private final NarrativePromptBuilder promptBuilder = new NarrativePromptBuilder();
 
     @Override
     public StorytellingResponse generateEncounter(String prompt) throws Exception {
+        return generateEncounter(PromptLayout.uncached(prompt));
+    }
+
+    @Override
+    public StorytellingResponse generateEncounter(PromptLayout prompt) throws Exception {
         if (!isAvailable()) {
             throw new IllegalStateException("Anthropic service is not configured");
         }
@@ -42,8 +51,7 @@ public class AnthropicStorytellingService implements IAIStorytellingService {
 
         // Step 2: Convert narrative to JSON
         RandomEncounters.LOGGER.info("Step 2: Converting to JSON with " + conversionModel);
-        NarrativePromptBuilder promptBuilder = new NarrativePromptBuilder();
-        String conversionPrompt = promptBuilder.buildConversionPrompt(narrative);
+        PromptLayout conversionPrompt = promptBuilder.buildConversionPromptLayout(narrative).withTag(prompt.getTag());
 
         return convertNarrativeToJson(conversionPrompt, conversionModel, apiKey);
     }
@@ -51,7 +59,7 @@ public class AnthropicStorytellingService implements IAIStorytellingService {
     /**
      * Generate creative narrative story (Step 1)
      */
-    private String generateNarrative(String prompt, String model, String apiKey) throws Exception {
+    private String generateNarrative(PromptLayout prompt, String model, String apiKey) throws Exception {
 
         // Build request JSON
         JsonObject request = new JsonObject();
@@ -66,10 +74,7 @@ public class AnthropicStorytellingService implements IAIStorytellingService {
 
         // Add messages array
         com.google.gson.JsonArray messages = new com.google.gson.JsonArray();
-        JsonObject userMessage = new JsonObject();
-        userMessage.addProperty("role", "user");
-        userMessage.addProperty("content", prompt);
-        messages.add(userMessage);
+        messages.add(buildUserMessage(prompt));
 
         request.add("messages", messages);
 
@@ -77,32 +82,41 @@ public class AnthropicStorytellingService implements IAIStorytellingService {
         String requestBody = gson.toJson(request);
         RandomEncounters.LOGGER.debug("Anthropic Request: " + requestBody);
 
-        HttpURLConnection connection = (HttpURLConnection) new URL(API_URL).openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("x-api-key", apiKey);
-        connection.setRequestProperty("anthropic-version", "2023-06-01");
-        connection.setDoOutput(true);
-
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
-
-        int responseCode = connection.getResponseCode();
-
-        // Read response (from either success or error stream)
+        long startTime = System.currentTimeMillis();
+        int responseCode;
         StringBuilder response = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(
-                    responseCode >= 200 && responseCode < 300
-                        ? connection.getInputStream()
-                        : connection.getErrorStream(),
-                    StandardCharsets.UTF_8))) {
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(apiUrl()).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("x-api-key", apiKey);
+            connection.setRequestProperty("anthropic-version", "2023-06-01");
+            connection.setDoOutput(true);
+
+            try (OutputStream os = connection.getOutputStream()) {
+                byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
+                os.write(input, 0, input.length);
             }
+
+            responseCode = connection.getResponseCode();
+
+            // Read response (from either success or error stream)
+            try (BufferedReader br = new BufferedReader(
+                    new InputStreamReader(
+                        responseCode >= 200 && responseCode < 300
+                            ? connection.getInputStream()
+                            : connection.getErrorStream(),
+                        StandardCharsets.UTF_8))) {
+                String responseLine;
+                while ((responseLine = br.readLine()) != null) {
+                    response.append(responseLine.trim());
+                }
+            }
+        } catch (IOException e) {
+            // Connection refused, timed out or dropped mid-response
+            PipelineMetrics.providerErrors("Anthropic", model, "narrative").increment();
+            traceCall(prompt.getTag(), "narrative", model, startTime, e.getClass().getSimpleName());
+            throw e;
         }
 
         String responseBody = response.toString();
@@ -110,6 +124,8 @@ public class AnthropicStorytellingService implements IAIStorytellingService {
         RandomEncounters.LOGGER.debug("Anthropic Response Body: " + responseBody);
 
         if (responseCode != 200) {
+            PipelineMetrics.providerErrors("Anthropic", model, "narrative").increment();
+            traceCall(prompt.getTag(), "narrative", model, startTime, "HTTP " + responseCode);
             // Try to parse error details
             try {
                 JsonObject errorJson = jsonParser.parse(responseBody).getAsJsonObject();
@@ -136,6 +152,8 @@ public class AnthropicStorytellingService implements IAIStorytellingService {
             throw new Exception("Invalid JSON response from Anthropic: " + e.getMessage());
         }
 
+        recordUsage(model, "narrative", prompt.getTag(), responseJson, System.currentTimeMillis() - startTime);
+
         if (!responseJson.has("content") || responseJson.getAsJsonArray("content").size() == 0) {
             throw new Exception("Anthropic response has no content: " + responseBody);
         }
@@ -153,11 +171,48 @@ public class AnthropicStorytellingService implements IAIStorytellingService {
     /**
      * Convert narrative story to JSON format (Step 2)
      */
-    private StorytellingResponse convertNarrativeToJson(String conversionPrompt, String model, String apiKey) throws Exception {
+    private StorytellingResponse convertNarrativeToJson(PromptLayout conversionPrompt, String model, String apiKey) throws Exception {
+        String content = callConversionModel(conversionPrompt, model, apiKey, 2000, "conversion");
+
+        RandomEncounters.LOGGER.debug("Anthropic Converted JSON: " + content);
+
+        // Extract and repair the JSON (fences, preamble, trailing commas, truncation), then bind it in one pass
+        try {
+            long parseStart = System.nanoTime();
+            StorytellingResponse result = ModelJsonExtractor.parseResponse(content, "Anthropic");
+            PipelineMetrics.jsonParse("Anthropic", model).recordNanos(System.nanoTime() - parseStart);
+            if (conversionPrompt.getTag() != null) {
+                conversionPrompt.getTag().getTrace().span("json_parse", 1, parseStart, System.nanoTime(), null, null);
+            }
+            return result;
+        } catch (Exception e) {
+            RandomEncounters.LOGGER.error("Failed to parse AI content as StorytellingResponse: " + content);
+            throw new Exception("AI did not return valid encounter JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fix the fragments of a converted response that failed validation, using the conversion model
+     */
+    @Override
+    public String repairFragment(PromptLayout repairPrompt) throws Exception {
+        if (!isAvailable()) {
+            throw new IllegalStateException("Anthropic service is not configured");
+        }
+        return callConversionModel(repairPrompt, ConfigHandler.anthropicConversionModel, ConfigHandler.anthropicApiKey,
+            1000, "repair");
+    }
+
+    /**
+     * Call the conversion model (structured output, low temperature) and return the reply text
+     * @param step "conversion" or "repair", for usage, metrics and the trace
+     */
+    private String callConversionModel(PromptLayout conversionPrompt, String model, String apiKey, int maxTokens,
+                                       String step) throws Exception {
         // Build request JSON
         JsonObject request = new JsonObject();
         request.addProperty("model", model);
-        request.addProperty("max_tokens", 2000);
+        request.addProperty("max_tokens", maxTokens);
         request.addProperty("temperature", 0.2);  // Low temperature for structured output
 
         // Add system message
@@ -167,50 +222,58 @@ public class AnthropicStorytellingService implements IAIStorytellingService {
 
         // Add messages array
         com.google.gson.JsonArray messages = new com.google.gson.JsonArray();
-        JsonObject userMessage = new JsonObject();
-        userMessage.addProperty("role", "user");
-        userMessage.addProperty("content", conversionPrompt);
-        messages.add(userMessage);
+        messages.add(buildUserMessage(conversionPrompt));
 
         request.add("messages", messages);
 
         // Make API call
         String requestBody = gson.toJson(request);
-        RandomEncounters.LOGGER.debug("Anthropic Conversion Request: " + requestBody);
-
-        HttpURLConnection connection = (HttpURLConnection) new URL(API_URL).openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("x-api-key", apiKey);
-        connection.setRequestProperty("anthropic-version", "2023-06-01");
-        connection.setDoOutput(true);
-
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
+        RandomEncounters.LOGGER.debug("Anthropic " + step + " request: " + requestBody);
 
-        int responseCode = connection.getResponseCode();
-
-        // Read response (from either success or error stream)
+        long startTime = System.currentTimeMillis();
+        int responseCode;
         StringBuilder response = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(
-                    responseCode >= 200 && responseCode < 300
-                        ? connection.getInputStream()
-                        : connection.getErrorStream(),
-                    StandardCharsets.UTF_8))) {
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(apiUrl()).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("x-api-key", apiKey);
+            connection.setRequestProperty("anthropic-version", "2023-06-01");
+            connection.setDoOutput(true);
+
+            try (OutputStream os = connection.getOutputStream()) {
+                byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
+                os.write(input, 0, input.length);
+            }
+
+            responseCode = connection.getResponseCode();
+
+            // Read response (from either success or error stream)
+            try (BufferedReader br = new BufferedReader(
+                    new InputStreamReader(
+                        responseCode >= 200 && responseCode < 300
+                            ? connection.getInputStream()
+                            : connection.getErrorStream(),
+                        StandardCharsets.UTF_8))) {
+                String responseLine;
+                while ((responseLine = br.readLine()) != null) {
+                    response.append(responseLine.trim());
+                }
             }
+        } catch (IOException e) {
+            // Connection refused, timed out or dropped mid-response
+            PipelineMetrics.providerErrors("Anthropic", model, step).increment();
+            traceCall(conversionPrompt.getTag(), step, model, startTime, e.getClass().getSimpleName());
+            throw e;
         }
 
         String responseBody = response.toString();
-        RandomEncounters.LOGGER.debug("Anthropic Conversion Response Code: " + responseCode);
-        RandomEncounters.LOGGER.debug("Anthropic Conversion Response Body: " + responseBody);
+        RandomEncounters.LOGGER.debug("Anthropic " + step + " response code: " + responseCode);
+        RandomEncounters.LOGGER.debug("Anthropic " + step + " response body: " + responseBody);
 
         if (responseCode != 200) {
+            PipelineMetrics.providerErrors("Anthropic", model, step).increment();
+            traceCall(conversionPrompt.getTag(), step, model, startTime, "HTTP " + responseCode);
             // Try to parse error details
             try {
                 JsonObject errorJson = jsonParser.parse(responseBody).getAsJsonObject();
@@ -237,22 +300,73 @@ public class AnthropicStorytellingService implements IAIStorytellingService {
             throw new Exception("Invalid JSON response from Anthropic: " + e.getMessage());
         }
 
+        recordUsage(model, step, conversionPrompt.getTag(), responseJson, System.currentTimeMillis() - startTime);
+
         if (!responseJson.has("content") || responseJson.getAsJsonArray("content").size() == 0) {
             throw new Exception("Anthropic response has no content: " + responseBody);
         }
 
-        String content = responseJson.getAsJsonArray("content")
+        return responseJson.getAsJsonArray("content")
             .get(0).getAsJsonObject()
             .get("text").getAsString();
+    }
 
-        RandomEncounters.LOGGER.debug("Anthropic Converted JSON: " + content);
+    /**
+     * Build the user message. With prompt caching enabled, the stable prefix is sent as its own
+     * text block ending in a cache_control breakpoint, so the system prompt and prefix are cached.
+     */
+    private JsonObject buildUserMessage(PromptLayout prompt) {
+        JsonObject userMessage = new JsonObject();
+        userMessage.addProperty("role", "user");
 
-        // Parse the AI's JSON response into StorytellingResponse
-        try {
-            return gson.fromJson(content, StorytellingResponse.class);
-        } catch (Exception e) {
-            RandomEncounters.LOGGER.error("Failed to parse AI content as StorytellingResponse: " + content);
-            throw new Exception("AI did not return valid encounter JSON: " + e.getMessage());
+        if (!ConfigHandler.enablePromptCaching || !prompt.hasStablePrefix()) {
+            userMessage.addProperty("content", prompt.getFullText());
+            return userMessage;
+        }
+
+        com.google.gson.JsonArray content = new com.google.gson.JsonArray();
+
+        JsonObject prefixBlock = new JsonObject();
+        prefixBlock.addProperty("type", "text");
+        prefixBlock.addProperty("text", prompt.getStablePrefix());
+        JsonObject cacheControl = new JsonObject();
+        cacheControl.addProperty("type", "ephemeral");
+        prefixBlock.add("cache_control", cacheControl);
+        content.add(prefixBlock);
+
+        JsonObject suffixBlock = new JsonObject();
+        suffixBlock.addProperty("type", "text");
+        suffixBlock.addProperty("text", prompt.getVariableSuffix());
+        content.add(suffixBlock);
+
+        userMessage.add("content", content);
+        return userMessage;
+    }
+
+    /**
+     * Track token usage, including prompt cache reads and writes
+     */
+    private void recordUsage(String model, String step, RequestTag tag, JsonObject responseJson, long latencyMillis) {
+        TokenUsage usage = TokenUsage.fromAnthropic(responseJson);
+        PromptCacheStats.getInstance().record("Anthropic", model, usage, latencyMillis);
+        UsageLedger.getInstance().record("Anthropic", model, step, tag, usage);
+        PipelineMetrics.providerLatency("Anthropic", model, step).recordMillis(latencyMillis);
+        RandomEncounters.LOGGER.info("Anthropic usage (" + model + "): " + usage + ", " + latencyMillis + "ms" +
+            (tag != null && tag.getTrace().isRecording() ? " [" + tag.getTrace().getTraceId() + "]" : ""));
+        if (tag != null) {
+            long end = System.nanoTime();
+            tag.getTrace().span(step, 1, end - latencyMillis * 1_000_000, end,
+                model + ", " + usage.getTotalInputTokens() + " in / " + usage.getOutputTokens() + " out", null);
+        }
+    }
+
+    /**
+     * Add a failed call to the request's trace
+     */
+    private void traceCall(RequestTag tag, String step, String model, long startTime, String error) {
+        if (tag != null) {
+            long end = System.nanoTime();
+            tag.getTrace().span(step, 1, end - (System.currentTimeMillis() - startTime) * 1_000_000, end, model, error);
         }
     }
 
@@ -268,8 +382,21 @@ public class AnthropicStorytellingService implements IAIStorytellingService {
         return "Anthropic " + ConfigHandler.anthropicModel;
     }
 
+    @Override
+    public String getModelId() {
+        return ConfigHandler.anthropicModel;
+    }
+
     @Override
     public int getPriority() {
         return PRIORITY;
     }
+
+    /**
+     * Endpoint URL under the configured base URL
+     */
+    private static String apiUrl() {
+        String base = ConfigHandler.anthropicBaseUrl.trim();
+        return (base.endsWith("/") ? base.substring(0, base.length() - 1) : base) + "/messages";
+    }
 }
@@ -0,0 +1,248 @@
+package ai.torchlite.randomencounters.ai;
+
+import ai.torchlite.randomencounters.config.ConfigHandler;
+import ai.torchlite.randomencounters.story.EncounterSummary;
+import ai.torchlite.randomencounters.story.StoryThread;
+import ai.torchlite.randomencounters.story.StorytellingResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Compares each player's request with the last one that was generated for them
+ *
+ * A request is reduced to a set of labelled fields (biome, threads, health,
+ * equipment, ...), bucketed so small noise like a few blocks of movement or a
+ * heart of damage doesn't count. Comparing two sets gives:
+ * <ul>
+ *   <li>UNCHANGED: the last generation can be served again without an API call
+ *       (a limited number of times, within {@code contextReuseSeconds})</li>
+ *   <li>MINOR: only situational fields changed; the changes are listed in the
+ *       prompt so the model builds on the previous encounter</li>
+ *   <li>MAJOR: story or location changed; generate from scratch</li>
+ * </ul>
+ *
+ * Safe to call from generation worker threads.
+ */
+public class ContextChangeDetector {
+
+    private static final int MINOR_MOVE_BLOCKS = 8;
+    private static final int MAJOR_MOVE_BLOCKS = 64;
+    private static final int MAX_CHANGE_LENGTH = 160;
+
+    // Fields whose change means a different story situation; everything else is minor
+    private static final String[] MAJOR_FIELDS = {
+        "Dimension", "Biome", "Location", "Level", "Party",
+        "Story threads", "Faction standing", "Encounter history"
+    };
+
+    public enum ChangeLevel { FIRST, UNCHANGED, MINOR, MAJOR }
+
+    private final Map<UUID, LastGeneration> lastGenerations = new HashMap<>();
+
+    // Statistics
+    private long firstCount;
+    private long unchangedCount;
+    private long minorCount;
+    private long majorCount;
+    private long reusedCount;
+
+    /**
+     * Compare a request with the last generated one for the same player
+     */
+    public synchronized Delta compare(UUID playerUUID, StorytellingRequest request) {
+        Map<String, String> fields = fingerprint(request);
+        LastGeneration last = lastGenerations.get(playerUUID);
+        if (last == null) {
+            firstCount++;
+            return new Delta(ChangeLevel.FIRST, Collections.emptyList());
+        }
+
+        List<String> changes = new ArrayList<>();
+        boolean major = false;
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            String before = last.fields.get(entry.getKey());
+            if (!entry.getValue().equals(before)) {
+                changes.add(describeChange(entry.getKey(), before, entry.getValue()));
+                major |= isMajorField(entry.getKey());
+            }
+        }
+
+        int moved = (int) Math.sqrt(distanceSq(last.request, request));
+        if (moved >= MAJOR_MOVE_BLOCKS) {
+            major = true;
+            changes.add("Moved " + moved + " blocks");
+        } else if (moved >= MINOR_MOVE_BLOCKS) {
+            changes.add("Moved " + moved + " blocks");
+        }
+
+        ChangeLevel level = major ? ChangeLevel.MAJOR : changes.isEmpty() ? ChangeLevel.UNCHANGED : ChangeLevel.MINOR;
+        switch (level) {
+            case UNCHANGED: unchangedCount++; break;
+            case MINOR: minorCount++; break;
+            default: majorCount++; break;
+        }
+        return new Delta(level, changes);
+    }
+
+    /**
+     * The last generation for this player, if the context is unchanged and it may be served again.
+     * The copy carries no story updates, so history isn't recorded twice.
+     */
+    public synchronized StorytellingResponse reuse(UUID playerUUID, Delta delta) {
+        LastGeneration last = lastGenerations.get(playerUUID);
+        if (delta.getLevel() != ChangeLevel.UNCHANGED || last == null || ConfigHandler.contextReuseSeconds == 0) {
+            return null;
+        }
+        long age = System.currentTimeMillis() - last.timestamp;
+        if (age > ConfigHandler.contextReuseSeconds * 1000L || last.reuses >= ConfigHandler.maxContextReuses) {
+            return null;
+        }
+
+        last.reuses++;
+        reusedCount++;
+        StorytellingResponse copy = new StorytellingResponse();
+        copy.setEncounter(last.response.getEncounter());
+        return copy;
+    }
+
+    /**
+     * Record a fresh generation as the baseline for the next comparison.
+     * The request must be built after the generation's story updates were applied;
+     * otherwise its own history entry and thread progress read as a major change next time.
+     */
+    public synchronized void remember(UUID playerUUID, StorytellingRequest settled, StorytellingResponse response) {
+        lastGenerations.put(playerUUID, new LastGeneration(settled, fingerprint(settled), response));
+    }
+
+    public synchronized void forget(UUID playerUUID) {
+        lastGenerations.remove(playerUUID);
+    }
+
+    /**
+     * Reduce a request to the fields that matter for generation, as display strings
+     */
+    Map<String, String> fingerprint(StorytellingRequest request) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("Dimension", String.valueOf(request.getDimension()));
+        fields.put("Biome", String.valueOf(request.getBiome()));
+        fields.put("Location", request.getCurrentLocation() != null ? request.getCurrentLocation() :
+            request.isNearStructure() ? "near a structure" : "open country");
+        fields.put("Level", String.valueOf(request.getPlayerLevel()));
+        fields.put("Difficulty", String.format("%.1f", request.getLocalDifficultyRating()));
+        fields.put("Party", request.isPartyEncounter() ? String.join(", ", request.getPartyMemberNames()) : "solo");
+        fields.put("Story threads", describeThreads(request.getActiveThreads()));
+        fields.put("Faction standing", request.getFactionReputation() != null
+            ? new TreeMap<>(request.getFactionReputation()).toString() : "{}");
+        fields.put("Encounter history", describeHistory(request.getRecentEncounters()));
+
+        fields.put("Time of day", String.valueOf(request.getTimeOfDay()));
+        fields.put("Weather", String.valueOf(request.getWeather()));
+        double maxHealth = request.getPlayerMaxHealth() > 0 ? request.getPlayerMaxHealth() : 20.0;
+        fields.put("Health", (Math.round(request.getPlayerHealth() / maxHealth * 10) * 10) + "%");
+        fields.put("Equipment", request.getEquipment() != null
+            ? new TreeMap<>(request.getEquipment()).values().toString() : "[]");
+        fields.put("Notable items", String.valueOf(request.getNotableItems()));
+        fields.put("Nearby players", String.valueOf(request.getNearbyPlayerNames()));
+        return fields;
+    }
+
+    private String describeThreads(List<StoryThread> threads) {
+        if (threads == null || threads.isEmpty()) {
+            return "none";
+        }
+        List<String> parts = new ArrayList<>();
+        for (StoryThread thread : threads) {
+            parts.add(thread.getTitle() + " " + thread.getProgressLevel() + "/10 " + thread.getStatus());
+        }
+        Collections.sort(parts);
+        return String.join("; ", parts);
+    }
+
+    private String describeHistory(List<EncounterSummary> recent) {
+        if (recent == null || recent.isEmpty()) {
+            return "none";
+        }
+        EncounterSummary latest = recent.get(0); // newest first
+        return recent.size() + " recent, latest " + latest.getEncounterId() + " " + latest.getOutcome();
+    }
+
+    private String describeChange(String field, String before, String after) {
+        String change = field + ": " + (before != null ? before : "none") + " -> " + after;
+        return change.length() > MAX_CHANGE_LENGTH ? field + " changed" : change;
+    }
+
+    private boolean isMajorField(String field) {
+        for (String major : MAJOR_FIELDS) {
+            if (major.equals(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double distanceSq(StorytellingRequest a, StorytellingRequest b) {
+        double dx = a.getPosX() - b.getPosX();
+        double dy = a.getPosY() - b.getPosY();
+        double dz = a.getPosZ() - b.getPosZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Hit rates for /encounter services
+     */
+    public synchronized List<String> getSummaryLines() {
+        long checks = firstCount + unchangedCount + minorCount + majorCount;
+        List<String> lines = new ArrayList<>();
+        if (checks == 0) {
+            return lines;
+        }
+        lines.add(String.format("Context changes: %d checks, %d unchanged (%d served from the last generation, %.0f%%), " +
+                "%d minor, %d major, %d first",
+            checks, unchangedCount, reusedCount, 100.0 * reusedCount / checks, minorCount, majorCount, firstCount));
+        return lines;
+    }
+
+    public synchronized long getReusedCount() { return reusedCount; }
+    public synchronized long getCheckCount() { return firstCount + unchangedCount + minorCount + majorCount; }
+
+    /**
+     * Result of comparing a request with the previous one
+     */
+    public static final class Delta {
+        private final ChangeLevel level;
+        private final List<String> changes;
+
+        Delta(ChangeLevel level, List<String> changes) {
+            this.level = level;
+            this.changes = changes;
+        }
+
+        public ChangeLevel getLevel() { return level; }
+
+        /**
+         * One line per changed field, e.g. "Weather: clear -> rain"
+         */
+        public List<String> getChanges() { return changes; }
+    }
+
+    private static final class LastGeneration {
+        final StorytellingRequest request;
+        final Map<String, String> fields;
+        final StorytellingResponse response;
+        final long timestamp = System.currentTimeMillis();
+        int reuses;
+
+        LastGeneration(StorytellingRequest request, Map<String, String> fields, StorytellingResponse response) {
+            this.request = request;
+            this.fields = fields;
+            this.response = response;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ai.torchlite.randomencounters.ai;
 
+import ai.torchlite.randomencounters.ai.prompt.PromptLayout;
 import ai.torchlite.randomencounters.story.StorytellingResponse;
 
 /**
@@ -16,6 +17,28 @@ public interface IAIStorytellingService {
      */
     StorytellingResponse generateEncounter(String prompt) throws Exception;
 
+    /**
+     * Generate an encounter from a prompt split into a cacheable prefix and a variable suffix.
+     * Services that support provider prompt caching override this; the default sends the full text.
+     *
+     * @param prompt The prompt layout
+     * @return StorytellingResponse containing encounter and story updates
+     * @throws Exception if generation fails
+     */
+    default StorytellingResponse generateEncounter(PromptLayout prompt) throws Exception {
+        return generateEncounter(prompt.getFullText());
+    }
+
+    /**
+     * Send the parts of a converted response that failed validation back to the cheap conversion
+     * model, without rerunning the creative step
+     *
+     * @param repairPrompt The failing fragment and what is wrong with it
+     * @return The model's reply (JSON, possibly wrapped or damaged)
+     * @throws Exception if the call fails
+     */
+    String repairFragment(PromptLayout repairPrompt) throws Exception;
+
     /**
      * Check if this service is configured and available
      *
@@ -30,6 +53,15 @@ public interface IAIStorytellingService {
      */
     String getServiceName();
 
+    /**
+     * Get the model used for story generation, used to size the prompt budget
+     *
+     * @return model id, or null if unknown
+     */
+    default String getModelId() {
+        return null;
+    }
+
     /**
      * Get the priority of this service (lower = tried first)
      *
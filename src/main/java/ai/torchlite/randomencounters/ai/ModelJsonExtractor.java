@@ -0,0 +1,287 @@
+package ai.torchlite.randomencounters.ai;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.metrics.PipelineMetrics;
+import ai.torchlite.randomencounters.story.StorytellingResponse;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Pulls the JSON object out of a model reply and repairs the usual defects before parsing
+ *
+ * One pass over the text finds the outermost object (skipping a preamble,
+ * markdown fences and anything after the object), drops trailing commas, and
+ * if the reply was cut off at the token limit, closes the open string and
+ * containers after trimming the incomplete last value. The result is parsed
+ * leniently. {@link #parseResponse} binds the reply in one streaming pass, so
+ * the encounter comes out as EncounterData; a legacy encounter_json string is
+ * extracted and repaired on the way (those nested repairs aren't counted).
+ */
+public final class ModelJsonExtractor {
+
+    /**
+     * Defects found and repaired in a reply
+     */
+    public enum Repair {
+        PREAMBLE, FENCE, TRAILING_COMMA, TRUNCATED;
+
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // Container stack entries: object expecting a key, object expecting a value, array
+    private static final char KEY = 'K';
+    private static final char VALUE = 'V';
+    private static final char ARRAY = '[';
+
+    private static final Gson gson = new Gson();
+
+    private ModelJsonExtractor() {
+    }
+
+    /**
+     * The outermost JSON object in text, repaired; null if there is no object at all
+     */
+    public static Extraction extract(String text) {
+        if (text == null) {
+            return null;
+        }
+        int start = findObjectStart(text);
+        if (start < 0) {
+            return null;
+        }
+
+        Set<Repair> repairs = EnumSet.noneOf(Repair.class);
+        if (text.lastIndexOf("```", start) >= 0) {
+            repairs.add(Repair.FENCE);
+        } else if (start > 0 && !text.substring(0, start).trim().isEmpty()) {
+            repairs.add(Repair.PREAMBLE);
+        }
+
+        StringBuilder out = new StringBuilder(text.length() - start + 8);
+        StringBuilder stack = new StringBuilder();
+        boolean inString = false;
+        boolean escape = false;
+        int stringStart = -1;
+        boolean complete = false;
+
+        for (int i = start; i < text.length() && !complete; i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                out.append(c);
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '{':
+                    stack.append(KEY);
+                    out.append(c);
+                    break;
+                case '[':
+                    stack.append(ARRAY);
+                    out.append(c);
+                    break;
+                case '}':
+                case ']':
+                    if (dropTrailingComma(out)) {
+                        repairs.add(Repair.TRAILING_COMMA);
+                    }
+                    out.append(closer(pop(stack)));
+                    complete = stack.length() == 0;
+                    break;
+                case ':':
+                    setTop(stack, KEY, VALUE);
+                    out.append(c);
+                    break;
+                case ',':
+                    setTop(stack, VALUE, KEY);
+                    out.append(c);
+                    break;
+                case '"':
+                    inString = true;
+                    stringStart = out.length();
+                    out.append(c);
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+
+        if (!complete) {
+            repairs.add(Repair.TRUNCATED);
+            closeTruncated(out, stack, inString, escape, stringStart);
+        }
+        return new Extraction(out.toString(), repairs);
+    }
+
+    /**
+     * Parse a conversion reply into a StorytellingResponse, with the encounter already typed
+     * @param provider Provider name for the log and the repair counters
+     * @throws Exception if no usable response or encounter could be recovered
+     */
+    public static StorytellingResponse parseResponse(String content, String provider) throws Exception {
+        Extraction extraction = extract(content);
+        if (extraction == null) {
+            throw new Exception("No JSON object in AI response");
+        }
+        JsonReader reader = new JsonReader(new StringReader(extraction.getJson()));
+        reader.setLenient(true);
+        StorytellingResponse response = gson.fromJson(reader, StorytellingResponse.class);
+        if (response == null || response.getEncounter() == null) {
+            throw new Exception("AI response is missing the 'encounter' field");
+        }
+        if (response.getStoryUpdates() == null) {
+            response.setStoryUpdates(new StorytellingResponse.StoryUpdates());
+        }
+
+        if (!extraction.repairs.isEmpty()) {
+            StringBuilder labels = new StringBuilder();
+            for (Repair repair : extraction.repairs) {
+                PipelineMetrics.jsonRepairs(provider, repair.label()).increment();
+                labels.append(labels.length() > 0 ? ", " : "").append(repair.label());
+            }
+            RandomEncounters.LOGGER.info(provider + " conversion JSON repaired: " + labels);
+        }
+        return response;
+    }
+
+    /**
+     * First '{' that opens an object (followed by a key or '}'), so braces in a preamble are skipped
+     */
+    private static int findObjectStart(String text) {
+        int first = text.indexOf('{');
+        for (int i = first; i >= 0; i = text.indexOf('{', i + 1)) {
+            int next = i + 1;
+            while (next < text.length() && Character.isWhitespace(text.charAt(next))) {
+                next++;
+            }
+            if (next == text.length() || text.charAt(next) == '"' || text.charAt(next) == '}') {
+                return i;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Finish a reply that stopped mid-way: drop what can't be completed, then close everything open
+     */
+    private static void closeTruncated(StringBuilder out, StringBuilder stack, boolean inString, boolean escape,
+                                       int stringStart) {
+        if (inString) {
+            if (stack.length() > 0 && stack.charAt(stack.length() - 1) == KEY) {
+                out.setLength(stringStart); // A partial key is useless
+            } else {
+                if (escape) {
+                    out.setLength(out.length() - 1);
+                }
+                int unicode = out.lastIndexOf("\\u");
+                if (unicode >= 0 && unicode > out.length() - 6 && !isEscaped(out, unicode)) {
+                    out.setLength(unicode);
+                }
+                out.append('"');
+            }
+        } else {
+            // A number or literal at the very end may itself be cut short
+            int end = out.length();
+            while (end > 0 && isBareChar(out.charAt(end - 1))) {
+                end--;
+            }
+            out.setLength(end);
+        }
+
+        trimTrailingWhitespace(out);
+        char last = out.length() > 0 ? out.charAt(out.length() - 1) : '{';
+        if (last == ',') {
+            out.setLength(out.length() - 1);
+        } else if (last == ':') {
+            out.append("null");
+        } else if (last == '"' && stack.length() > 0 && stack.charAt(stack.length() - 1) == KEY) {
+            out.append(":null"); // Key with no value
+        }
+
+        while (stack.length() > 0) {
+            out.append(closer(pop(stack)));
+        }
+    }
+
+    private static boolean dropTrailingComma(StringBuilder out) {
+        int end = out.length();
+        while (end > 0 && Character.isWhitespace(out.charAt(end - 1))) {
+            end--;
+        }
+        if (end > 0 && out.charAt(end - 1) == ',') {
+            out.deleteCharAt(end - 1);
+            return true;
+        }
+        return false;
+    }
+
+    private static void trimTrailingWhitespace(StringBuilder out) {
+        int end = out.length();
+        while (end > 0 && Character.isWhitespace(out.charAt(end - 1))) {
+            end--;
+        }
+        out.setLength(end);
+    }
+
+    private static boolean isBareChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '+';
+    }
+
+    private static boolean isEscaped(StringBuilder out, int index) {
+        int backslashes = 0;
+        for (int i = index - 1; i >= 0 && out.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    private static char pop(StringBuilder stack) {
+        if (stack.length() == 0) {
+            return KEY;
+        }
+        char top = stack.charAt(stack.length() - 1);
+        stack.setLength(stack.length() - 1);
+        return top;
+    }
+
+    private static void setTop(StringBuilder stack, char from, char to) {
+        if (stack.length() > 0 && stack.charAt(stack.length() - 1) == from) {
+            stack.setCharAt(stack.length() - 1, to);
+        }
+    }
+
+    private static char closer(char container) {
+        return container == ARRAY ? ']' : '}';
+    }
+
+    /**
+     * Repaired JSON text and what had to be fixed to get it
+     */
+    public static final class Extraction {
+        private final String json;
+        private final Set<Repair> repairs;
+
+        Extraction(String json, Set<Repair> repairs) {
+            this.json = json;
+            this.repairs = repairs;
+        }
+
+        public String getJson() { return json; }
+        public Set<Repair> getRepairs() { return Collections.unmodifiableSet(repairs); }
+    }
+}
@@ -1,7 +1,10 @@
 package ai.torchlite.randomencounters.ai;
 
 import ai.torchlite.randomencounters.ai.prompt.ModularPromptBuilder;
+import ai.torchlite.randomencounters.ai.prompt.PromptLayout;
+import ai.torchlite.randomencounters.ai.prompt.TokenEstimator;
 import ai.torchlite.randomencounters.story.EncounterSummary;
+import ai.torchlite.randomencounters.story.FactionRegistry;
 import ai.torchlite.randomencounters.story.StoryThread;
 
 import java.util.List;
@@ -36,17 +39,16 @@ public class NarrativePromptBuilder {
         "- Consequences matter - choices echo through the wasteland\n" +
         "- Dark fantasy meets sci-fi remnants\n\n";
 
+    // What makes an emergent encounter different from a thread encounter, added after the task
+    private static final String EMERGENT_TASK =
+        "## Emergent Encounter:\n\n" +
+        "No story thread is in focus. Generate a fresh, emergent encounter that introduces something new to the player's story. " +
+        "This could be the start of a new story thread, a random event, or an unexpected situation.\n";
+    private static final int EMERGENT_TASK_TOKENS = TokenEstimator.estimate(EMERGENT_TASK);
+
+    // Built from the registry so the names the AI sees are the names reputation is kept under
     private static final String FACTION_CONTEXT =
-        "## Major Factions:\n" +
-        "1. **Dregorian Colonists** - Ship returnees, technologically savvy, organized\n" +
-        "2. **Wasteland Nomads** - Survivors adapted to harsh conditions, resourceful\n" +
-        "3. **Scavenger Clans** - Opportunistic raiders, salvage pre-Blight tech\n" +
-        "4. **Blight Cultists** - Worship the corruption, seek to spread it\n" +
-        "5. **Pre-War Military Remnants** - Disciplined survivors of old armies\n" +
-        "6. **Trading Guilds** - Merchants connecting isolated settlements\n" +
-        "7. **Techno-Scavengers** - Obsessed with pre-Blight technology\n" +
-        "8. **Mutant Tribes** - Blight-changed humans, some retain intelligence\n" +
-        "9. **Independent Survivors** - Loners, hermits, those who trust no one\n\n";
+        "## Major Factions:\n" + FactionRegistry.getInstance().buildFactionList() + "\n";
 
     public NarrativePromptBuilder() {
         this.modularBuilder = new ModularPromptBuilder();
@@ -70,17 +72,27 @@ public class NarrativePromptBuilder {
      * Build a complete AI prompt for encounter generation
      */
     public String buildPrompt(StorytellingRequest request) {
+        return buildPromptLayout(request).getFullText();
+    }
+
+    /**
+     * Build the encounter prompt as a cacheable prefix plus per-request suffix
+     */
+    public PromptLayout buildPromptLayout(StorytellingRequest request) {
+        return buildPromptLayout(request, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Build the encounter prompt, fitting it into a token budget (modular builder only)
+     */
+    public PromptLayout buildPromptLayout(StorytellingRequest request, int tokenBudget) {
         if (useModularBuilder) {
-            return modularBuilder.buildStoryPrompt(request);
+            return modularBuilder.buildStoryPromptLayout(request, tokenBudget);
         }
 
-        // Legacy monolithic builder
+        // Legacy monolithic builder (lore and factions form the stable prefix)
         StringBuilder prompt = new StringBuilder();
 
-        // System context
-        prompt.append(DREGORA_LORE_CONTEXT);
-        prompt.append(FACTION_CONTEXT);
-
         // Player story context
         if (request.getNarrativeSummary() != null) {
             prompt.append("## Player Journey:\n");
@@ -134,10 +146,20 @@ public class NarrativePromptBuilder {
             prompt.append("\n");
         }
 
+        // How the server's players as a whole stand with each faction
+        if (request.getWorldFactionStanding() != null && !request.getWorldFactionStanding().isEmpty()) {
+            prompt.append("## Server-Wide Faction Politics:\n");
+            for (Map.Entry<String, Integer> entry : request.getWorldFactionStanding().entrySet()) {
+                prompt.append(String.format("- %s: %+d net reputation across all players\n", entry.getKey(), entry.getValue()));
+            }
+            prompt.append("\n");
+        }
+
         // Current situation
         prompt.append("## Current Situation:\n");
         prompt.append(buildCurrentSituation(request));
         prompt.append("\n");
+        appendContextChanges(prompt, request);
 
         // Focus thread if specified
         if (request.getFocusThread() != null) {
@@ -156,7 +178,21 @@ public class NarrativePromptBuilder {
         // Task instructions
         prompt.append(buildTaskInstructions(request));
 
-        return prompt.toString();
+        return new PromptLayout(DREGORA_LORE_CONTEXT + FACTION_CONTEXT, prompt.toString());
+    }
+
+    /**
+     * List what changed since the last encounter, if the context only changed a little
+     */
+    private void appendContextChanges(StringBuilder prompt, StorytellingRequest request) {
+        if (request.getContextChanges() == null || request.getContextChanges().isEmpty()) {
+            return;
+        }
+        prompt.append("## Since The Last Encounter:\n");
+        for (String change : request.getContextChanges()) {
+            prompt.append("- ").append(change).append("\n");
+        }
+        prompt.append("Everything else is unchanged. Build on the previous encounter rather than repeating it.\n\n");
     }
 
     /**
@@ -210,6 +246,14 @@ public class NarrativePromptBuilder {
             situation.append("\n");
         }
 
+        // Party sharing the encounter
+        if (request.isPartyEncounter()) {
+            situation.append(String.format("**Party:** %s (%d players, one shared encounter)\n",
+                String.join(", ", request.getPartyMemberNames()),
+                request.getPartySize()
+            ));
+        }
+
         // Nearby players
         if (request.getNearbyPlayerNames() != null && !request.getNearbyPlayerNames().isEmpty()) {
             situation.append("**Nearby Players:** ");
@@ -292,6 +336,20 @@ public class NarrativePromptBuilder {
         return modularBuilder.buildConversionPrompt(narrativeStory);
     }
 
+    /**
+     * Build the conversion prompt as a cacheable schema prefix plus the narrative
+     */
+    public PromptLayout buildConversionPromptLayout(String narrativeStory) {
+        return modularBuilder.buildConversionPromptLayout(narrativeStory);
+    }
+
+    /**
+     * Build the prompt for re-converting only the fragment of a response that failed validation
+     */
+    public PromptLayout buildFragmentRepairPromptLayout(String problems, String fragmentJson) {
+        return modularBuilder.buildFragmentRepairPromptLayout(problems, fragmentJson);
+    }
+
     /**
      * Legacy conversion prompt builder
      */
@@ -307,11 +365,11 @@ public class NarrativePromptBuilder {
         prompt.append("## Required JSON Structure:\n\n");
         prompt.append("Return ONLY valid JSON (no markdown, no explanations) with this structure:\n\n");
         prompt.append("{\n");
-        prompt.append("  \"encounter_json\": \"{...}\",\n");
+        prompt.append("  \"encounter\": {...},\n");
         prompt.append("  \"story_updates\": {...}\n");
         prompt.append("}\n\n");
 
-        prompt.append("### encounter_json field (must be an ESCAPED JSON string):\n");
+        prompt.append("### encounter field (a plain JSON object, NOT a string):\n");
         prompt.append("{\n");
         prompt.append("  \"title\": \"Encounter Title\",\n");
         prompt.append("  \"type\": \"combat|exploration|social|trade|mystery\",\n");
@@ -335,6 +393,9 @@ public class NarrativePromptBuilder {
         prompt.append("    \"victory_text\": \"Success message\",\n");
         prompt.append("    \"defeat_text\": \"Failure message\",\n");
         prompt.append("    \"flee_text\": \"Escape message\"\n");
+        prompt.append("  },\n");
+        prompt.append("  \"rewards\": {\n");
+        prompt.append("    \"faction_changes\": {\"Faction Name\": 5}\n");
         prompt.append("  }\n");
         prompt.append("}\n\n");
 
@@ -347,7 +408,7 @@ public class NarrativePromptBuilder {
         prompt.append("}\n\n");
 
         prompt.append("CRITICAL:\n");
-        prompt.append("- encounter_json must be a STRING with escaped quotes (\\\")\n");
+        prompt.append("- encounter is a nested JSON object; do not wrap it in quotes or escape it\n");
         prompt.append("- Use only valid Minecraft entity types\n");
         prompt.append("- Return ONLY the JSON, nothing else\n");
 
@@ -371,18 +432,38 @@ public class NarrativePromptBuilder {
      * Build a simplified prompt for emergent (non-thread) encounters
      */
     public String buildEmergentPrompt(StorytellingRequest request) {
+        return buildEmergentPromptLayout(request).getFullText();
+    }
+
+    /**
+     * Build the emergent encounter prompt as a cacheable lore prefix plus per-request suffix
+     */
+    public PromptLayout buildEmergentPromptLayout(StorytellingRequest request) {
+        return buildEmergentPromptLayout(request, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Build the emergent encounter prompt, fitting it into a token budget (modular builder only)
+     */
+    public PromptLayout buildEmergentPromptLayout(StorytellingRequest request, int tokenBudget) {
+        if (useModularBuilder) {
+            PromptLayout layout = modularBuilder.buildStoryPromptLayout(request,
+                tokenBudget == Integer.MAX_VALUE ? tokenBudget : tokenBudget - EMERGENT_TASK_TOKENS);
+            return new PromptLayout(layout.getStablePrefix(), layout.getVariableSuffix() + EMERGENT_TASK);
+        }
+
         StringBuilder prompt = new StringBuilder();
 
-        prompt.append(DREGORA_LORE_CONTEXT);
         prompt.append("\n## Current Situation:\n");
         prompt.append(buildCurrentSituation(request));
         prompt.append("\n");
+        appendContextChanges(prompt, request);
         prompt.append(buildGenerationGuidance(request));
         prompt.append("\n## Your Task:\n\n");
         prompt.append("Generate a fresh, emergent encounter that introduces something new to the player's story. ");
         prompt.append("This could be the start of a new story thread, a random event, or an unexpected situation.\n\n");
         prompt.append("Follow the same response format as above.\n");
 
-        return prompt.toString();
+        return new PromptLayout(DREGORA_LORE_CONTEXT, prompt.toString());
     }
 }
@@ -2,7 +2,9 @@ package ai.torchlite.randomencounters.ai;
 
 import ai.torchlite.randomencounters.RandomEncounters;
 import ai.torchlite.randomencounters.ai.models.ChatRequestBuilder;
+import ai.torchlite.randomencounters.ai.prompt.PromptLayout;
 import ai.torchlite.randomencounters.config.ConfigHandler;
+import ai.torchlite.randomencounters.metrics.PipelineMetrics;
 import ai.torchlite.randomencounters.story.StorytellingResponse;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
@@ -10,6 +12,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
@@ -21,14 +24,24 @@ import java.nio.charset.StandardCharsets;
  */
 public class OpenAIStorytellingService implements IAIStorytellingService {
 
-    private static final String API_URL = "https://api.openai.com/v1/chat/completions";
     private static final int PRIORITY = 1; // Try OpenAI first
 
     private final Gson gson = new Gson();
     private final JsonParser jsonParser = new JsonParser();
+    // One builder per service, so its conversion prefix and static section caches hit across requests
+    private final NarrativePromptBuilder promptBuilder = new NarrativePromptBuilder();
 
     @Override
     public StorytellingResponse generateEncounter(String prompt) throws Exception {
+        return generateEncounter(PromptLayout.uncached(prompt));
+    }
+
+    /**
+     * OpenAI caches repeated prompt prefixes automatically, so the layout only needs the
+     * stable prefix first: system message, then the prefix, then the per-request suffix.
+     */
+    @Override
+    public StorytellingResponse generateEncounter(PromptLayout prompt) throws Exception {
         if (!isAvailable()) {
             throw new IllegalStateException("OpenAI service is not configured");
         }
@@ -42,7 +55,7 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
 
         // Log full prompt if verbose logging enabled
         if (ConfigHandler.logAIRequests) {
-            RandomEncounters.LOGGER.info("Full Story Generation Prompt:\n" + prompt);
+            RandomEncounters.LOGGER.info("Full Story Generation Prompt:\n" + prompt.getFullText());
         }
 
         String narrative = generateNarrative(prompt, creativeModel, apiKey);
@@ -50,12 +63,11 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
 
         // Step 2: Convert narrative to JSON
         RandomEncounters.LOGGER.info("Step 2: Converting to JSON with " + conversionModel);
-        NarrativePromptBuilder promptBuilder = new NarrativePromptBuilder();
-        String conversionPrompt = promptBuilder.buildConversionPrompt(narrative);
+        PromptLayout conversionPrompt = promptBuilder.buildConversionPromptLayout(narrative).withTag(prompt.getTag());
 
         // Log full conversion prompt if verbose logging enabled
         if (ConfigHandler.logAIRequests) {
-            RandomEncounters.LOGGER.info("Full Conversion Prompt:\n" + conversionPrompt);
+            RandomEncounters.LOGGER.info("Full Conversion Prompt:\n" + conversionPrompt.getFullText());
         }
 
         return convertNarrativeToJson(conversionPrompt, conversionModel, apiKey);
@@ -64,7 +76,7 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
     /**
      * Generate creative narrative story (Step 1)
      */
-    private String generateNarrative(String prompt, String model, String apiKey) throws Exception {
+    private String generateNarrative(PromptLayout prompt, String model, String apiKey) throws Exception {
 
         // Build request using model-aware builder
         ChatRequestBuilder builder = new ChatRequestBuilder(model)
@@ -73,7 +85,7 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
             .addSystemMessage(
                 "You are an expert storyteller for RLCraft Dregora, a post-apocalyptic Minecraft modpack. " +
                 "Generate immersive, atmospheric encounter narratives with rich details, tension, and meaningful choices.")
-            .addUserMessage(prompt);
+            .addUserMessage(prompt.getFullText());
 
         JsonObject request = builder.build();
         JsonArray messages = builder.getMessages();
@@ -84,7 +96,8 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
         // Log request metadata (always safe)
         RandomEncounters.LOGGER.info("OpenAI API Request - Model: " + model +
             ", Messages: " + messages.size() +
-            ", Prompt length: ~" + prompt.length() + " chars");
+            ", Prompt length: ~" + prompt.length() + " chars (stable prefix ~" +
+            prompt.getStablePrefix().length() + ")");
 
         // Verbose logging (message content only - API key is NEVER logged)
         if (ConfigHandler.logAIRequests) {
@@ -102,31 +115,40 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
             }
         }
 
-        HttpURLConnection connection = (HttpURLConnection) new URL(API_URL).openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("Authorization", "Bearer " + apiKey);
-        connection.setDoOutput(true);
-
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
-
-        int responseCode = connection.getResponseCode();
-
-        // Read response (from either success or error stream)
+        long startTime = System.currentTimeMillis();
+        int responseCode;
         StringBuilder response = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(
-                    responseCode >= 200 && responseCode < 300
-                        ? connection.getInputStream()
-                        : connection.getErrorStream(),
-                    StandardCharsets.UTF_8))) {
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                response.append(responseLine.trim());
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(apiUrl()).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
+            connection.setDoOutput(true);
+
+            try (OutputStream os = connection.getOutputStream()) {
+                byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
+                os.write(input, 0, input.length);
+            }
+
+            responseCode = connection.getResponseCode();
+
+            // Read response (from either success or error stream)
+            try (BufferedReader br = new BufferedReader(
+                    new InputStreamReader(
+                        responseCode >= 200 && responseCode < 300
+                            ? connection.getInputStream()
+                            : connection.getErrorStream(),
+                        StandardCharsets.UTF_8))) {
+                String responseLine;
+                while ((responseLine = br.readLine()) != null) {
+                    response.append(responseLine.trim());
+                }
             }
+        } catch (IOException e) {
+            // Connection refused, timed out or dropped mid-response
+            PipelineMetrics.providerErrors("OpenAI", model, "narrative").increment();
+            traceCall(prompt.getTag(), "narrative", model, startTime, e.getClass().getSimpleName());
+            throw e;
         }
 
         String responseBody = response.toString();
@@ -139,6 +161,8 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
         }
 
         if (responseCode != 200) {
+            PipelineMetrics.providerErrors("OpenAI", model, "narrative").increment();
+            traceCall(prompt.getTag(), "narrative", model, startTime, "HTTP " + responseCode);
             // Try to parse error details
             try {
                 JsonObject errorJson = jsonParser.parse(responseBody).getAsJsonObject();
@@ -165,6 +189,8 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
             throw new Exception("Invalid JSON response from OpenAI: " + e.getMessage());
         }
 
+        recordUsage(model, "narrative", prompt.getTag(), responseJson, System.currentTimeMillis() - startTime);
+
         if (!responseJson.has("choices") || responseJson.getAsJsonArray("choices").size() == 0) {
             throw new Exception("OpenAI response has no choices: " + responseBody);
         }
@@ -185,15 +211,59 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
     /**
      * Convert narrative story to JSON format (Step 2)
      */
-    private StorytellingResponse convertNarrativeToJson(String conversionPrompt, String model, String apiKey) throws Exception {
+    private StorytellingResponse convertNarrativeToJson(PromptLayout conversionPrompt, String model, String apiKey) throws Exception {
+        String content = callConversionModel(conversionPrompt, model, apiKey, 2000, "conversion");
+
+        RandomEncounters.LOGGER.info("OpenAI Converted JSON - Length: " + content.length() + " chars");
+
+        // Verbose logging (full JSON - only if explicitly enabled)
+        if (ConfigHandler.logAIResponses) {
+            RandomEncounters.LOGGER.info("Full Converted JSON:\n" + content);
+        }
+
+        // Extract and repair the JSON (fences, preamble, trailing commas, truncation), then bind it in one pass
+        try {
+            long parseStart = System.nanoTime();
+            StorytellingResponse result = ModelJsonExtractor.parseResponse(content, "OpenAI");
+            PipelineMetrics.jsonParse("OpenAI", model).recordNanos(System.nanoTime() - parseStart);
+            if (conversionPrompt.getTag() != null) {
+                conversionPrompt.getTag().getTrace().span("json_parse", 1, parseStart, System.nanoTime(), null, null);
+            }
+            return result;
+        } catch (Exception e) {
+            RandomEncounters.LOGGER.error("Failed to parse AI content as StorytellingResponse");
+            RandomEncounters.LOGGER.error("Original content: " + content);
+            RandomEncounters.LOGGER.error("Parse error: " + e.getMessage());
+            throw new Exception("AI did not return valid encounter JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fix the fragments of a converted response that failed validation, using the conversion model
+     */
+    @Override
+    public String repairFragment(PromptLayout repairPrompt) throws Exception {
+        if (!isAvailable()) {
+            throw new IllegalStateException("OpenAI service is not configured");
+        }
+        return callConversionModel(repairPrompt, ConfigHandler.openaiConversionModel, ConfigHandler.openaiApiKey,
+            1000, "repair");
+    }
+
+    /**
+     * Call the conversion model (structured output, low temperature) and return the reply text
+     * @param step "conversion" or "repair", for usage, metrics and the trace
+     */
+    private String callConversionModel(PromptLayout conversionPrompt, String model, String apiKey, int maxTokens,
+                                       String step) throws Exception {
         // Build request using model-aware builder
         ChatRequestBuilder builder = new ChatRequestBuilder(model)
             .setCreativeTask(false)  // Low temperature for structured output
-            .setMaxTokens(2000)
+            .setMaxTokens(maxTokens)
             .addSystemMessage(
                 "You are a precise data converter. Convert narrative text into structured JSON. " +
                 "Return ONLY valid JSON with no additional text or markdown.")
-            .addUserMessage(conversionPrompt);
+            .addUserMessage(conversionPrompt.getFullText());
 
         JsonObject request = builder.build();
         JsonArray messages = builder.getMessages();
@@ -202,9 +272,10 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
         String requestBody = gson.toJson(request);
 
         // Log request metadata (always safe)
-        RandomEncounters.LOGGER.info("OpenAI Conversion Request - Model: " + model +
+        RandomEncounters.LOGGER.info("OpenAI " + step + " request - Model: " + model +
             ", Messages: " + messages.size() +
-            ", Conversion prompt length: ~" + conversionPrompt.length() + " chars");
+            ", Conversion prompt length: ~" + conversionPrompt.length() + " chars (stable prefix ~" +
+            conversionPrompt.getStablePrefix().length() + ")");
 
         // Verbose logging (message content only - API key is NEVER logged)
         if (ConfigHandler.logAIRequests) {
@@ -222,35 +293,44 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
             }
         }
 
-        HttpURLConnection connection = (HttpURLConnection) new URL(API_URL).openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("Authorization", "Bearer " + apiKey);
-        connection.setDoOutput(true);
-
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
-
-        int responseCode = connection.getResponseCode();
-
-        // Read response (from either success or error stream)
+        long startTime = System.currentTimeMillis();
+        int responseCode;
         StringBuilder responseBuilder = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(
-                    responseCode >= 200 && responseCode < 300
-                        ? connection.getInputStream()
-                        : connection.getErrorStream(),
-                    StandardCharsets.UTF_8))) {
-            String responseLine;
-            while ((responseLine = br.readLine()) != null) {
-                responseBuilder.append(responseLine.trim());
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(apiUrl()).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
+            connection.setDoOutput(true);
+
+            try (OutputStream os = connection.getOutputStream()) {
+                byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
+                os.write(input, 0, input.length);
             }
+
+            responseCode = connection.getResponseCode();
+
+            // Read response (from either success or error stream)
+            try (BufferedReader br = new BufferedReader(
+                    new InputStreamReader(
+                        responseCode >= 200 && responseCode < 300
+                            ? connection.getInputStream()
+                            : connection.getErrorStream(),
+                        StandardCharsets.UTF_8))) {
+                String responseLine;
+                while ((responseLine = br.readLine()) != null) {
+                    responseBuilder.append(responseLine.trim());
+                }
+            }
+        } catch (IOException e) {
+            // Connection refused, timed out or dropped mid-response
+            PipelineMetrics.providerErrors("OpenAI", model, step).increment();
+            traceCall(conversionPrompt.getTag(), step, model, startTime, e.getClass().getSimpleName());
+            throw e;
         }
 
         String responseBody = responseBuilder.toString();
-        RandomEncounters.LOGGER.info("OpenAI Conversion Response - Code: " + responseCode +
+        RandomEncounters.LOGGER.info("OpenAI " + step + " response - Code: " + responseCode +
             ", Body length: ~" + responseBody.length() + " chars");
 
         // Verbose logging (full response body - only if explicitly enabled)
@@ -259,6 +339,8 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
         }
 
         if (responseCode != 200) {
+            PipelineMetrics.providerErrors("OpenAI", model, step).increment();
+            traceCall(conversionPrompt.getTag(), step, model, startTime, "HTTP " + responseCode);
             // Try to parse error details
             try {
                 JsonObject errorJson = jsonParser.parse(responseBody).getAsJsonObject();
@@ -285,53 +367,42 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
             throw new Exception("Invalid JSON response from OpenAI: " + e.getMessage());
         }
 
+        recordUsage(model, step, conversionPrompt.getTag(), responseJson, System.currentTimeMillis() - startTime);
+
         if (!responseJson.has("choices") || responseJson.getAsJsonArray("choices").size() == 0) {
             throw new Exception("OpenAI response has no choices: " + responseBody);
         }
 
-        String content = responseJson.getAsJsonArray("choices")
+        return responseJson.getAsJsonArray("choices")
             .get(0).getAsJsonObject()
             .get("message").getAsJsonObject()
             .get("content").getAsString();
+    }
 
-        RandomEncounters.LOGGER.info("OpenAI Converted JSON - Length: " + content.length() + " chars");
-
-        // Verbose logging (full JSON - only if explicitly enabled)
-        if (ConfigHandler.logAIResponses) {
-            RandomEncounters.LOGGER.info("Full Converted JSON:\n" + content);
-        }
-
-        // Strip markdown code fences if present (AI sometimes adds ```json ... ```)
-        String cleanedContent = content.trim();
-        if (cleanedContent.startsWith("```json")) {
-            cleanedContent = cleanedContent.substring("```json".length()).trim();
-        } else if (cleanedContent.startsWith("```")) {
-            cleanedContent = cleanedContent.substring("```".length()).trim();
-        }
-        if (cleanedContent.endsWith("```")) {
-            cleanedContent = cleanedContent.substring(0, cleanedContent.length() - 3).trim();
+    /**
+     * Track token usage, including tokens served from OpenAI's prompt cache
+     */
+    private void recordUsage(String model, String step, RequestTag tag, JsonObject responseJson, long latencyMillis) {
+        TokenUsage usage = TokenUsage.fromOpenAI(responseJson);
+        PromptCacheStats.getInstance().record("OpenAI", model, usage, latencyMillis);
+        UsageLedger.getInstance().record("OpenAI", model, step, tag, usage);
+        PipelineMetrics.providerLatency("OpenAI", model, step).recordMillis(latencyMillis);
+        RandomEncounters.LOGGER.info("OpenAI usage (" + model + "): " + usage + ", " + latencyMillis + "ms" +
+            (tag != null && tag.getTrace().isRecording() ? " [" + tag.getTrace().getTraceId() + "]" : ""));
+        if (tag != null) {
+            long end = System.nanoTime();
+            tag.getTrace().span(step, 1, end - latencyMillis * 1_000_000, end,
+                model + ", " + usage.getTotalInputTokens() + " in / " + usage.getOutputTokens() + " out", null);
         }
+    }
 
-        // Parse the AI's JSON response into StorytellingResponse
-        try {
-            StorytellingResponse result = gson.fromJson(cleanedContent, StorytellingResponse.class);
-
-            // Validate that we got the required fields
-            if (result == null) {
-                throw new Exception("AI returned null response");
-            }
-            if (result.getEncounterJson() == null || result.getEncounterJson().isEmpty()) {
-                RandomEncounters.LOGGER.error("AI response missing encounter_json field. Full response: " + content);
-                throw new Exception("AI response is missing the 'encounter_json' field");
-            }
-
-            return result;
-        } catch (Exception e) {
-            RandomEncounters.LOGGER.error("Failed to parse AI content as StorytellingResponse");
-            RandomEncounters.LOGGER.error("Original content: " + content);
-            RandomEncounters.LOGGER.error("Cleaned content: " + cleanedContent);
-            RandomEncounters.LOGGER.error("Parse error: " + e.getMessage());
-            throw new Exception("AI did not return valid encounter JSON: " + e.getMessage());
+    /**
+     * Add a failed call to the request's trace
+     */
+    private void traceCall(RequestTag tag, String step, String model, long startTime, String error) {
+        if (tag != null) {
+            long end = System.nanoTime();
+            tag.getTrace().span(step, 1, end - (System.currentTimeMillis() - startTime) * 1_000_000, end, model, error);
         }
     }
 
@@ -347,8 +418,21 @@ public class OpenAIStorytellingService implements IAIStorytellingService {
         return "OpenAI " + ConfigHandler.openaiModel;
     }
 
+    @Override
+    public String getModelId() {
+        return ConfigHandler.openaiModel;
+    }
+
     @Override
     public int getPriority() {
         return PRIORITY;
     }
+
+    /**
+     * Endpoint URL under the configured base URL
+     */
+    private static String apiUrl() {
+        String base = ConfigHandler.openaiBaseUrl.trim();
+        return (base.endsWith("/") ? base.substring(0, base.length() - 1) : base) + "/chat/completions";
+    }
 }
@@ -0,0 +1,85 @@
+package ai.torchlite.randomencounters.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks provider prompt-cache effectiveness per provider and model
+ *
+ * Records how many input tokens were served from cache versus written to it,
+ * and the average latency of calls with and without a cache hit.
+ */
+public class PromptCacheStats {
+
+    private static final PromptCacheStats instance = new PromptCacheStats();
+
+    private final Map<String, ModelStats> stats = new ConcurrentHashMap<>();
+
+    private PromptCacheStats() {
+    }
+
+    public static PromptCacheStats getInstance() {
+        return instance;
+    }
+
+    /**
+     * Record the usage and latency of one API call
+     */
+    public void record(String provider, String model, TokenUsage usage, long latencyMillis) {
+        ModelStats modelStats = stats.computeIfAbsent(provider + " " + model, k -> new ModelStats());
+        modelStats.requests.incrementAndGet();
+        modelStats.inputTokens.addAndGet(usage.getInputTokens());
+        modelStats.outputTokens.addAndGet(usage.getOutputTokens());
+        modelStats.cacheReadTokens.addAndGet(usage.getCacheReadTokens());
+        modelStats.cacheCreationTokens.addAndGet(usage.getCacheCreationTokens());
+
+        if (usage.isCacheHit()) {
+            modelStats.cacheHits.incrementAndGet();
+            modelStats.hitLatencyMillis.addAndGet(latencyMillis);
+        } else {
+            modelStats.missLatencyMillis.addAndGet(latencyMillis);
+        }
+    }
+
+    /**
+     * One human-readable line per provider/model, sorted by name
+     */
+    public List<String> getSummaryLines() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, ModelStats> entry : new TreeMap<>(stats).entrySet()) {
+            ModelStats s = entry.getValue();
+            long requests = s.requests.get();
+            long hits = s.cacheHits.get();
+            long misses = requests - hits;
+            long totalInput = s.inputTokens.get() + s.cacheReadTokens.get() + s.cacheCreationTokens.get();
+
+            lines.add(String.format("%s: %d calls, %d cache hits, %.0f%% of input from cache " +
+                    "(read %d, written %d, uncached %d), avg latency %s hit / %s miss",
+                entry.getKey(), requests, hits,
+                totalInput > 0 ? 100.0 * s.cacheReadTokens.get() / totalInput : 0.0,
+                s.cacheReadTokens.get(), s.cacheCreationTokens.get(), s.inputTokens.get(),
+                hits > 0 ? (s.hitLatencyMillis.get() / hits) + "ms" : "-",
+                misses > 0 ? (s.missLatencyMillis.get() / misses) + "ms" : "-"));
+        }
+        return lines;
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    private static class ModelStats {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong cacheHits = new AtomicLong();
+        final AtomicLong inputTokens = new AtomicLong();
+        final AtomicLong outputTokens = new AtomicLong();
+        final AtomicLong cacheReadTokens = new AtomicLong();
+        final AtomicLong cacheCreationTokens = new AtomicLong();
+        final AtomicLong hitLatencyMillis = new AtomicLong();
+        final AtomicLong missLatencyMillis = new AtomicLong();
+    }
+}
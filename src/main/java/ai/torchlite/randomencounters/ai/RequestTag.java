@@ -0,0 +1,41 @@
+package ai.torchlite.randomencounters.ai;
+
+import ai.torchlite.randomencounters.metrics.EncounterTrace;
+
+import java.util.UUID;
+
+/**
+ * Who a generation request is for, carried with its prompt so provider calls can be attributed
+ * and timed in the request's trace
+ *
+ * Party encounters are attributed to the leader.
+ */
+public final class RequestTag {
+
+    private final UUID playerUUID;
+    private final String playerName;
+    private final String threadId; // Focus thread, or null for emergent encounters
+    private final int partySize;
+    private final EncounterTrace trace;
+
+    public RequestTag(UUID playerUUID, String playerName, String threadId, int partySize, EncounterTrace trace) {
+        this.playerUUID = playerUUID;
+        this.playerName = playerName;
+        this.threadId = threadId;
+        this.partySize = partySize;
+        this.trace = trace != null ? trace : EncounterTrace.NONE;
+    }
+
+    public UUID getPlayerUUID() { return playerUUID; }
+    public String getPlayerName() { return playerName; }
+    public String getThreadId() { return threadId; }
+    public int getPartySize() { return partySize; }
+    public EncounterTrace getTrace() { return trace; }
+
+    @Override
+    public String toString() {
+        return playerName + (trace.isRecording() ? " [" + trace.getTraceId() + "]" : "") +
+            (partySize > 1 ? " (party of " + partySize + ")" : "") +
+            (threadId != null ? ", thread " + threadId : "");
+    }
+}
@@ -0,0 +1,457 @@
+package ai.torchlite.randomencounters.ai;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.encounter.EncounterData;
+import ai.torchlite.randomencounters.entity.EntityCategory;
+import ai.torchlite.randomencounters.entity.EntityRegistry;
+import ai.torchlite.randomencounters.metrics.PipelineMetrics;
+import ai.torchlite.randomencounters.story.StoryThread;
+import ai.torchlite.randomencounters.story.StoryThreadUpdate;
+import ai.torchlite.randomencounters.story.StorytellingResponse;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Checks a converted response against the entity registry and the player's story threads
+ *
+ * What can be fixed locally is fixed in place: entity names close to a real
+ * entity id, counts and modifiers out of range, thread updates that name a
+ * thread by its title. What can't is collected into a small JSON fragment
+ * (just the failing entities and thread updates) for the conversion model to
+ * fix, so a bad field doesn't cost a whole new encounter. Anything still
+ * invalid after that is dropped; an encounter left without entities is
+ * rejected.
+ */
+public class ResponseValidator {
+
+    private static final int MAX_COUNT = 10; // Per entity entry, before party scaling
+    private static final float MIN_MODIFIER = 0.25f;
+    private static final float MAX_MODIFIER = 5.0f;
+    private static final int MAX_PROGRESS_CHANGE = 10;
+    private static final int MIN_SUBSTRING_MATCH = 4;
+    private static final int MAX_LISTED_THREADS = 20;
+
+    private final Gson gson = new Gson();
+    private final JsonParser jsonParser = new JsonParser();
+
+    /**
+     * Validate a response, fixing what can be fixed locally
+     * @param knownThreads Active threads of every player the encounter is for, by id
+     * @return What is still wrong, with the fragment to send for repair
+     * @throws Exception if the response has no encounter at all
+     */
+    public Result validate(StorytellingResponse response, Map<String, StoryThread> knownThreads) throws Exception {
+        EncounterData encounter = getEncounter(response);
+        Result result = new Result();
+
+        if (encounter.getDifficulty() < 0 || encounter.getDifficulty() > 1 || Float.isNaN(encounter.getDifficulty())) {
+            encounter.setDifficulty(Float.isNaN(encounter.getDifficulty()) ? 0.5f : clamp(encounter.getDifficulty(), 0, 1));
+            result.fixed("difficulty clamped to " + encounter.getDifficulty());
+        }
+
+        if (encounter.getEntities() == null) {
+            encounter.setEntities(new ArrayList<>());
+        }
+        List<EncounterData.EncounterEntity> entities = encounter.getEntities();
+        entities.removeIf(entity -> entity == null);
+        if (entities.isEmpty()) {
+            result.entitiesMissing = true;
+            result.problems.add("entities is empty; add the creatures and characters of this encounter:\n" +
+                "  title: " + encounter.getTitle() + "\n" +
+                "  description: " + encounter.getDescription() + "\n" +
+                "  narrative: " + encounter.getNarrativeText());
+        }
+        for (int i = 0; i < entities.size(); i++) {
+            if (!checkEntity(entities.get(i), result)) {
+                result.problems.add("entities[" + result.badEntities.size() + "]: unknown entity_type \"" +
+                    entities.get(i).getEntityType() + "\"");
+                result.badEntities.add(i);
+            }
+        }
+
+        StorytellingResponse.StoryUpdates updates = response.getStoryUpdates();
+        if (updates != null) {
+            checkNewThreads(updates, result);
+            checkThreadUpdates(updates, knownThreads, result);
+        }
+        return result;
+    }
+
+    /**
+     * Merge the conversion model's fixed fragment back into the response
+     * @throws Exception if the reply holds no usable JSON
+     */
+    public void mergeFragment(StorytellingResponse response, Result result, String reply) throws Exception {
+        ModelJsonExtractor.Extraction extraction = ModelJsonExtractor.extract(reply);
+        if (extraction == null) {
+            throw new Exception("Repair reply has no JSON object");
+        }
+        JsonReader reader = new JsonReader(new StringReader(extraction.getJson()));
+        reader.setLenient(true);
+        JsonObject fixed = jsonParser.parse(reader).getAsJsonObject();
+
+        EncounterData encounter = getEncounter(response);
+        JsonArray entities = fixed.has("entities") && fixed.get("entities").isJsonArray()
+            ? fixed.getAsJsonArray("entities") : new JsonArray();
+        if (result.entitiesMissing) {
+            for (JsonElement element : entities) {
+                encounter.getEntities().add(gson.fromJson(element, EncounterData.EncounterEntity.class));
+            }
+        } else {
+            for (int i = 0; i < Math.min(entities.size(), result.badEntities.size()); i++) {
+                encounter.getEntities().set(result.badEntities.get(i),
+                    gson.fromJson(entities.get(i), EncounterData.EncounterEntity.class));
+            }
+        }
+
+        JsonArray threadUpdates = fixed.has("thread_updates") && fixed.get("thread_updates").isJsonArray()
+            ? fixed.getAsJsonArray("thread_updates") : new JsonArray();
+        List<StoryThreadUpdate> updates = response.getStoryUpdates() != null
+            ? response.getStoryUpdates().getThreadUpdates() : null;
+        for (int i = 0; updates != null && i < Math.min(threadUpdates.size(), result.badThreadUpdates.size()); i++) {
+            updates.set(result.badThreadUpdates.get(i), gson.fromJson(threadUpdates.get(i), StoryThreadUpdate.class));
+        }
+
+        PipelineMetrics.responseRepairs("fragment").increment();
+    }
+
+    /**
+     * Validate again and drop whatever is still invalid
+     * @return false if the encounter is left without any entity
+     */
+    public boolean dropInvalid(StorytellingResponse response, Map<String, StoryThread> knownThreads) throws Exception {
+        Result result = validate(response, knownThreads);
+        EncounterData encounter = getEncounter(response);
+
+        for (int i = result.badEntities.size() - 1; i >= 0; i--) {
+            EncounterData.EncounterEntity entity = encounter.getEntities().remove((int) result.badEntities.get(i));
+            RandomEncounters.LOGGER.warn("Dropped entity with unknown type: " + entity.getEntityType());
+            PipelineMetrics.responseRepairs("dropped").increment();
+        }
+        if (!result.badThreadUpdates.isEmpty()) {
+            List<StoryThreadUpdate> updates = response.getStoryUpdates().getThreadUpdates();
+            for (int i = result.badThreadUpdates.size() - 1; i >= 0; i--) {
+                StoryThreadUpdate update = updates.remove((int) result.badThreadUpdates.get(i));
+                RandomEncounters.LOGGER.warn("Dropped update for unknown thread: " + update.getThreadId());
+                PipelineMetrics.responseRepairs("dropped").increment();
+            }
+        }
+
+        if (encounter.getEntities().isEmpty()) {
+            PipelineMetrics.responseRepairs("rejected").increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The failing entities and thread updates, as the conversion model should send them back fixed
+     */
+    public String buildFragment(StorytellingResponse response, Result result) {
+        JsonObject fragment = new JsonObject();
+        if (result.entitiesMissing || !result.badEntities.isEmpty()) {
+            JsonArray entities = new JsonArray();
+            for (int index : result.badEntities) {
+                entities.add(gson.toJsonTree(response.getEncounter().getEntities().get(index)));
+            }
+            fragment.add("entities", entities);
+        }
+        if (!result.badThreadUpdates.isEmpty()) {
+            JsonArray updates = new JsonArray();
+            for (int index : result.badThreadUpdates) {
+                updates.add(gson.toJsonTree(response.getStoryUpdates().getThreadUpdates().get(index)));
+            }
+            fragment.add("thread_updates", updates);
+        }
+        return gson.toJson(fragment);
+    }
+
+    /**
+     * Fix an entity entry in place
+     * @return false if its entity type could not be resolved
+     */
+    private boolean checkEntity(EncounterData.EncounterEntity entity, Result result) {
+        if (entity.getCount() < 1 || entity.getCount() > MAX_COUNT) {
+            entity.setCount(Math.max(1, Math.min(MAX_COUNT, entity.getCount())));
+            result.fixed("count of " + entity.getEntityType() + " clamped to " + entity.getCount());
+        }
+        float health = checkModifier(entity.getHealthModifier());
+        if (health != entity.getHealthModifier()) {
+            entity.setHealthModifier(health);
+            result.fixed("health_modifier of " + entity.getEntityType() + " set to " + health);
+        }
+        float damage = checkModifier(entity.getDamageModifier());
+        if (damage != entity.getDamageModifier()) {
+            entity.setDamageModifier(damage);
+            result.fixed("damage_modifier of " + entity.getEntityType() + " set to " + damage);
+        }
+
+        EntityRegistry registry = EntityRegistry.getInstance();
+        String requested = entity.getEntityType();
+        if (requested != null && registry.isValidEntity(requested.toLowerCase(Locale.ROOT))) {
+            return true;
+        }
+        String nearest = findNearestEntity(requested, entity.isHostile(), registry);
+        if (nearest == null) {
+            return false;
+        }
+        entity.setEntityType(nearest);
+        result.fixed("entity_type \"" + requested + "\" replaced with " + nearest);
+        return true;
+    }
+
+    private static float checkModifier(float modifier) {
+        if (Float.isNaN(modifier) || modifier <= 0) {
+            return 1.0f;
+        }
+        return clamp(modifier, MIN_MODIFIER, MAX_MODIFIER);
+    }
+
+    /**
+     * New threads need an id to be stored under; a thread with no title is dropped
+     */
+    private void checkNewThreads(StorytellingResponse.StoryUpdates updates, Result result) {
+        if (updates.getNewThreads() == null) {
+            return;
+        }
+        Iterator<StoryThread> it = updates.getNewThreads().iterator();
+        while (it.hasNext()) {
+            StoryThread thread = it.next();
+            if (thread == null || isBlank(thread.getTitle())) {
+                it.remove();
+                result.fixed("new thread without a title dropped");
+            } else if (isBlank(thread.getThreadId())) {
+                thread.setThreadId(thread.getTitle().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_") +
+                    "_" + UUID.randomUUID().toString().substring(0, 8));
+                result.fixed("new thread \"" + thread.getTitle() + "\" given id " + thread.getThreadId());
+            }
+        }
+    }
+
+    /**
+     * Thread updates must name an existing thread (or one created by this response)
+     */
+    private void checkThreadUpdates(StorytellingResponse.StoryUpdates updates, Map<String, StoryThread> knownThreads,
+                                    Result result) {
+        List<StoryThreadUpdate> threadUpdates = updates.getThreadUpdates();
+        if (threadUpdates == null) {
+            return;
+        }
+        threadUpdates.removeIf(update -> update == null);
+        for (int i = 0; i < threadUpdates.size(); i++) {
+            StoryThreadUpdate update = threadUpdates.get(i);
+            if (Math.abs(update.getProgressChange()) > MAX_PROGRESS_CHANGE) {
+                update.setProgressChange(Math.max(-MAX_PROGRESS_CHANGE, Math.min(MAX_PROGRESS_CHANGE, update.getProgressChange())));
+                result.fixed("progress_change of " + update.getThreadId() + " clamped");
+            }
+            if (update.getThreadId() != null && (knownThreads.containsKey(update.getThreadId()) ||
+                    isNewThread(updates, update.getThreadId()))) {
+                continue;
+            }
+            String match = findThread(update.getThreadId(), knownThreads);
+            if (match != null) {
+                result.fixed("thread_id \"" + update.getThreadId() + "\" replaced with " + match);
+                update.setThreadId(match);
+                continue;
+            }
+            result.problems.add("thread_updates[" + result.badThreadUpdates.size() + "]: no thread with id \"" +
+                update.getThreadId() + "\"");
+            result.badThreadUpdates.add(i);
+        }
+        if (!result.badThreadUpdates.isEmpty()) {
+            result.problems.add("known threads (thread_id: title):\n" + describeThreads(knownThreads));
+        }
+    }
+
+    private static boolean isNewThread(StorytellingResponse.StoryUpdates updates, String threadId) {
+        if (updates.getNewThreads() != null) {
+            for (StoryThread thread : updates.getNewThreads()) {
+                if (threadId.equals(thread.getThreadId())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A known thread the id refers to loosely: same id ignoring case, or the thread's title
+     */
+    private static String findThread(String threadId, Map<String, StoryThread> knownThreads) {
+        if (isBlank(threadId)) {
+            return null;
+        }
+        String wanted = normalize(threadId);
+        for (StoryThread thread : knownThreads.values()) {
+            if (normalize(thread.getThreadId()).equals(wanted) ||
+                (thread.getTitle() != null && normalize(thread.getTitle()).equals(wanted))) {
+                return thread.getThreadId();
+            }
+        }
+        return null;
+    }
+
+    private static String describeThreads(Map<String, StoryThread> knownThreads) {
+        StringBuilder sb = new StringBuilder();
+        int listed = 0;
+        for (StoryThread thread : knownThreads.values()) {
+            if (listed++ == MAX_LISTED_THREADS) {
+                break;
+            }
+            sb.append(sb.length() > 0 ? "\n" : "").append("    ").append(thread.getThreadId()).append(": ").append(thread.getTitle());
+        }
+        return sb.length() > 0 ? sb.toString() : "    (none)";
+    }
+
+    /**
+     * Closest valid entity id to what the model wrote: the same name in another form
+     * ("Zombies", "cave spider"), a known name inside it ("giant_spider"), or a small
+     * misspelling. Entities of the same role (hostile or not) win ties.
+     */
+    static String findNearestEntity(String requested, boolean hostile, EntityRegistry registry) {
+        if (isBlank(requested)) {
+            return null;
+        }
+        String name = normalize(requested);
+        String path = name.substring(name.indexOf(':') + 1);
+        for (String candidate : singularForms(name, path)) {
+            String resolved = registry.resolveEntityId(candidate);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+
+        String best = null;
+        int bestScore = Integer.MAX_VALUE;
+        for (String entityId : registry.getAllEntities()) {
+            String entityPath = entityId.substring(entityId.indexOf(':') + 1);
+            int score;
+            if (entityPath.length() >= MIN_SUBSTRING_MATCH && path.contains(entityPath)) {
+                score = path.length() - entityPath.length(); // Longest contained name wins
+            } else {
+                int distance = editDistance(path, entityPath);
+                if (distance > Math.max(1, path.length() / 4)) {
+                    continue;
+                }
+                score = distance * 4;
+            }
+            score = score * 2 + (isHostile(registry.getCategory(entityId)) == hostile ? 0 : 1);
+            if (score < bestScore) {
+                bestScore = score;
+                best = entityId;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isHostile(EntityCategory category) {
+        return category == EntityCategory.HOSTILE || category == EntityCategory.BOSS;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT).replaceAll("[\\s-]+", "_");
+    }
+
+    /**
+     * The names as given and with English plural endings removed ("zombies", "witches", "fireflies")
+     */
+    private static List<String> singularForms(String... names) {
+        List<String> forms = new ArrayList<>();
+        for (String name : names) {
+            forms.add(name);
+            if (name.endsWith("s") && !name.endsWith("ss")) {
+                forms.add(name.substring(0, name.length() - 1));
+            }
+            if (name.endsWith("es")) {
+                forms.add(name.substring(0, name.length() - 2));
+            }
+            if (name.endsWith("ies")) {
+                forms.add(name.substring(0, name.length() - 3) + "y");
+            }
+        }
+        return forms;
+    }
+
+    private static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private EncounterData getEncounter(StorytellingResponse response) throws Exception {
+        if (response.getEncounter() == null) {
+            throw new Exception("Response has no encounter");
+        }
+        return response.getEncounter();
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static boolean isBlank(String text) {
+        return text == null || text.trim().isEmpty();
+    }
+
+    /**
+     * Outcome of one validation pass
+     */
+    public static class Result {
+        private final List<String> fixes = new ArrayList<>();
+        private final List<String> problems = new ArrayList<>();
+        private final List<Integer> badEntities = new ArrayList<>();
+        private final List<Integer> badThreadUpdates = new ArrayList<>();
+        private boolean entitiesMissing;
+
+        private void fixed(String fix) {
+            fixes.add(fix);
+            PipelineMetrics.responseRepairs("local").increment();
+        }
+
+        public List<String> getFixes() { return fixes; }
+        public List<String> getProblems() { return problems; }
+
+        /**
+         * Whether something is wrong that only the conversion model can fix
+         */
+        public boolean needsFragmentRepair() {
+            return !problems.isEmpty();
+        }
+
+        /**
+         * The problems, one per line, for the repair prompt
+         */
+        public String describeProblems() {
+            StringBuilder sb = new StringBuilder();
+            for (String problem : problems) {
+                sb.append("- ").append(problem).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -18,6 +18,7 @@ public class StorytellingRequest extends AIEncounterRequest {
     private List<EncounterSummary> recentEncounters; // Last 5-10 encounters
     private List<StoryThread> activeThreads; // Current story arcs
     private Map<String, Integer> factionReputation;
+    private Map<String, Integer> worldFactionStanding; // Net reputation change across all players
     private Map<String, String> playerTraits;
 
     // Inventory & Equipment Context
@@ -27,22 +28,27 @@ public class StorytellingRequest extends AIEncounterRequest {
     // Social Context
     private List<String> nearbyPlayerNames;
     private String currentLocation; // Named location if near structure
+    private List<String> partyMemberNames; // Everyone sharing this encounter, leader first (empty when solo)
 
     // Generation Guidance
     private String narrativeTone; // "epic", "horror", "whimsical", "grimdark"
     private Float desiredDifficulty; // 0.0-1.0
     private String preferredType; // null = surprise me
     private StoryThread focusThread; // Specific thread to advance
+    private List<String> contextChanges; // What changed since the last encounter (empty = fresh context)
 
     public StorytellingRequest() {
         super();
         this.recentEncounters = new ArrayList<>();
         this.activeThreads = new ArrayList<>();
         this.factionReputation = new HashMap<>();
+        this.worldFactionStanding = new HashMap<>();
         this.playerTraits = new HashMap<>();
         this.notableItems = new ArrayList<>();
         this.equipment = new HashMap<>();
         this.nearbyPlayerNames = new ArrayList<>();
+        this.partyMemberNames = new ArrayList<>();
+        this.contextChanges = new ArrayList<>();
     }
 
     // Getters and setters
@@ -58,6 +64,9 @@ public class StorytellingRequest extends AIEncounterRequest {
     public Map<String, Integer> getFactionReputation() { return factionReputation; }
     public void setFactionReputation(Map<String, Integer> factionReputation) { this.factionReputation = factionReputation; }
 
+    public Map<String, Integer> getWorldFactionStanding() { return worldFactionStanding; }
+    public void setWorldFactionStanding(Map<String, Integer> worldFactionStanding) { this.worldFactionStanding = worldFactionStanding; }
+
     public Map<String, String> getPlayerTraits() { return playerTraits; }
     public void setPlayerTraits(Map<String, String> playerTraits) { this.playerTraits = playerTraits; }
 
@@ -70,6 +79,20 @@ public class StorytellingRequest extends AIEncounterRequest {
     public List<String> getNearbyPlayerNames() { return nearbyPlayerNames; }
     public void setNearbyPlayerNames(List<String> nearbyPlayerNames) { this.nearbyPlayerNames = nearbyPlayerNames; }
 
+    public List<String> getPartyMemberNames() { return partyMemberNames; }
+    public void setPartyMemberNames(List<String> partyMemberNames) { this.partyMemberNames = partyMemberNames; }
+
+    /**
+     * Number of players sharing this encounter (1 when solo)
+     */
+    public int getPartySize() {
+        return partyMemberNames == null || partyMemberNames.isEmpty() ? 1 : partyMemberNames.size();
+    }
+
+    public boolean isPartyEncounter() {
+        return getPartySize() > 1;
+    }
+
     public String getCurrentLocation() { return currentLocation; }
     public void setCurrentLocation(String currentLocation) { this.currentLocation = currentLocation; }
 
@@ -84,4 +107,7 @@ public class StorytellingRequest extends AIEncounterRequest {
 
     public StoryThread getFocusThread() { return focusThread; }
     public void setFocusThread(StoryThread focusThread) { this.focusThread = focusThread; }
+
+    public List<String> getContextChanges() { return contextChanges; }
+    public void setContextChanges(List<String> contextChanges) { this.contextChanges = contextChanges; }
 }
@@ -0,0 +1,104 @@
+package ai.torchlite.randomencounters.ai;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Token counts reported by a provider for one API call
+ *
+ * Input is split into uncached tokens, tokens read from the provider's prompt
+ * cache, and tokens written to it, so both providers report the same way.
+ */
+public final class TokenUsage {
+
+    public static final TokenUsage NONE = new TokenUsage(0, 0, 0, 0);
+
+    private final long inputTokens;          // Uncached input tokens
+    private final long outputTokens;
+    private final long cacheReadTokens;      // Input tokens served from the prompt cache
+    private final long cacheCreationTokens;  // Input tokens written to the prompt cache
+
+    public TokenUsage(long inputTokens, long outputTokens, long cacheReadTokens, long cacheCreationTokens) {
+        this.inputTokens = inputTokens;
+        this.outputTokens = outputTokens;
+        this.cacheReadTokens = cacheReadTokens;
+        this.cacheCreationTokens = cacheCreationTokens;
+    }
+
+    /**
+     * Read the "usage" block of an Anthropic messages response
+     */
+    public static TokenUsage fromAnthropic(JsonObject responseJson) {
+        if (responseJson == null || !responseJson.has("usage") || !responseJson.get("usage").isJsonObject()) {
+            return NONE;
+        }
+        JsonObject usage = responseJson.getAsJsonObject("usage");
+        return new TokenUsage(
+            getLong(usage, "input_tokens"),
+            getLong(usage, "output_tokens"),
+            getLong(usage, "cache_read_input_tokens"),
+            getLong(usage, "cache_creation_input_tokens")
+        );
+    }
+
+    /**
+     * Read the "usage" block of an OpenAI chat completions response
+     * (prompt_tokens includes cached tokens, so they are subtracted out)
+     */
+    public static TokenUsage fromOpenAI(JsonObject responseJson) {
+        if (responseJson == null || !responseJson.has("usage") || !responseJson.get("usage").isJsonObject()) {
+            return NONE;
+        }
+        JsonObject usage = responseJson.getAsJsonObject("usage");
+        long promptTokens = getLong(usage, "prompt_tokens");
+        long cachedTokens = 0;
+        if (usage.has("prompt_tokens_details") && usage.get("prompt_tokens_details").isJsonObject()) {
+            cachedTokens = getLong(usage.getAsJsonObject("prompt_tokens_details"), "cached_tokens");
+        }
+        return new TokenUsage(
+            Math.max(0, promptTokens - cachedTokens),
+            getLong(usage, "completion_tokens"),
+            cachedTokens,
+            0
+        );
+    }
+
+    private static long getLong(JsonObject object, String key) {
+        JsonElement element = object.get(key);
+        return element != null && element.isJsonPrimitive() ? element.getAsLong() : 0;
+    }
+
+    /**
+     * Combine two usages (e.g. the narrative and conversion steps of one encounter)
+     */
+    public TokenUsage plus(TokenUsage other) {
+        return new TokenUsage(
+            inputTokens + other.inputTokens,
+            outputTokens + other.outputTokens,
+            cacheReadTokens + other.cacheReadTokens,
+            cacheCreationTokens + other.cacheCreationTokens
+        );
+    }
+
+    public long getInputTokens() { return inputTokens; }
+    public long getOutputTokens() { return outputTokens; }
+    public long getCacheReadTokens() { return cacheReadTokens; }
+    public long getCacheCreationTokens() { return cacheCreationTokens; }
+
+    /**
+     * All input tokens, cached or not
+     */
+    public long getTotalInputTokens() {
+        return inputTokens + cacheReadTokens + cacheCreationTokens;
+    }
+
+    public boolean isCacheHit() {
+        return cacheReadTokens > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "in=" + inputTokens + ", out=" + outputTokens +
+            ", cache_read=" + cacheReadTokens + ", cache_write=" + cacheCreationTokens;
+    }
+}
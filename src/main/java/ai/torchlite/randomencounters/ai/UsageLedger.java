@@ -0,0 +1,538 @@
+package ai.torchlite.randomencounters.ai;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.config.ConfigHandler;
+import ai.torchlite.randomencounters.metrics.MetricsRegistry;
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Token usage and cost per player, model, step and story thread
+ *
+ * Every provider call is recorded with the tokens from its usage block and a
+ * cost from the configured per-model prices. Recent usage is kept in memory in
+ * 5-minute buckets covering the last 24 hours (server-wide, per player and per
+ * model); each day's totals are rolled up into one small JSON file per date in
+ * the world's data folder. Crossing a configured budget logs a warning once
+ * per period and counts a budget alarm in the metrics.
+ */
+public class UsageLedger {
+
+    public static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    public static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    private static final long BUCKET_MILLIS = 5 * 60 * 1000L;
+    private static final int BUCKETS = (int) (DAY_MILLIS / BUCKET_MILLIS);
+    private static final long FLUSH_INTERVAL_MILLIS = 60 * 1000L;
+    private static final int MAX_RECENT_ALARMS = 10;
+
+    private static final UsageLedger instance = new UsageLedger();
+
+    private final Gson gson = new Gson();
+    private final RollingWindow server = new RollingWindow();
+    private final Map<UUID, RollingWindow> players = new HashMap<>();
+    private final Map<String, RollingWindow> models = new TreeMap<>();
+    private final Set<String> firedAlarms = new HashSet<>();
+    private final List<String> recentAlarms = new ArrayList<>();
+
+    private File directory; // Null until the server starts
+    private DailyRollup today;
+    private boolean dirty;
+    private long lastFlush;
+
+    private Map<String, double[]> prices; // Model prefix -> USD per million input, output, cache read, cache write tokens
+    private int pricesRevision = -1;
+
+    private UsageLedger() {
+    }
+
+    public static UsageLedger getInstance() {
+        return instance;
+    }
+
+    /**
+     * Start recording for a world: load today's rollup and drop rollups past the retention period
+     */
+    public synchronized void initialize(File directory) {
+        this.directory = directory;
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        server.clear();
+        players.clear();
+        models.clear();
+        firedAlarms.clear();
+        recentAlarms.clear();
+        today = loadRollup(LocalDate.now().toString());
+        pruneRollups();
+    }
+
+    /**
+     * Write today's rollup and stop persisting (server stopping)
+     */
+    public synchronized void shutdown() {
+        flush();
+        directory = null;
+    }
+
+    /**
+     * Record one provider call
+     * @param step "narrative" or "conversion"
+     * @param tag Who the call was for, or null if unattributed
+     */
+    public synchronized void record(String provider, String model, String step, RequestTag tag, TokenUsage usage) {
+        long now = System.currentTimeMillis();
+        String date = LocalDate.now().toString();
+        if (today == null || !today.date.equals(date)) {
+            flush();
+            today = loadRollup(date);
+            firedAlarms.clear();
+        }
+
+        String modelKey = provider + " " + model;
+        long costMicros = getCostMicros(model, usage);
+
+        today.total.add(usage, costMicros);
+        today.models.computeIfAbsent(modelKey, k -> new Totals()).add(usage, costMicros);
+        today.steps.computeIfAbsent(step, k -> new Totals()).add(usage, costMicros);
+        server.add(now, usage, costMicros);
+        models.computeIfAbsent(modelKey, k -> new RollingWindow()).add(now, usage, costMicros);
+        if (tag != null && tag.getPlayerUUID() != null) {
+            String player = tag.getPlayerUUID().toString();
+            today.players.computeIfAbsent(player, k -> new Totals()).add(usage, costMicros);
+            today.playerNames.put(player, tag.getPlayerName());
+            players.computeIfAbsent(tag.getPlayerUUID(), k -> new RollingWindow()).add(now, usage, costMicros);
+            if (tag.getThreadId() != null) {
+                today.threads.computeIfAbsent(tag.getThreadId(), k -> new Totals()).add(usage, costMicros);
+            }
+        }
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        String help = "Tokens reported by providers";
+        metrics.counter("randomencounters_tokens", help, "provider", provider, "model", model, "type", "input").add(usage.getInputTokens());
+        metrics.counter("randomencounters_tokens", help, "provider", provider, "model", model, "type", "output").add(usage.getOutputTokens());
+        metrics.counter("randomencounters_tokens", help, "provider", provider, "model", model, "type", "cache_read").add(usage.getCacheReadTokens());
+        metrics.counter("randomencounters_tokens", help, "provider", provider, "model", model, "type", "cache_write").add(usage.getCacheCreationTokens());
+        metrics.counter("randomencounters_cost_microdollars", "Estimated provider cost in millionths of a dollar",
+            "provider", provider, "model", model).add(costMicros);
+
+        checkBudgets(tag, now);
+
+        dirty = true;
+        if (now - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+            flush();
+        }
+    }
+
+    /**
+     * A player's usage over the last hour, the last 24 hours and today
+     */
+    public synchronized List<String> getPlayerSummaryLines(UUID playerUUID) {
+        List<String> lines = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        RollingWindow window = players.get(playerUUID);
+        Totals todayTotals = today != null ? today.players.get(playerUUID.toString()) : null;
+        if (window == null && todayTotals == null) {
+            return lines;
+        }
+        if (window != null) {
+            lines.add("Last hour: " + window.sum(now, HOUR_MILLIS));
+            lines.add("Last 24h: " + window.sum(now, DAY_MILLIS));
+        }
+        if (todayTotals != null) {
+            lines.add("Today: " + todayTotals);
+        }
+        return lines;
+    }
+
+    /**
+     * Server-wide usage: rolling windows, today's totals per model, step and top players, and recent alarms
+     */
+    public synchronized List<String> getServerSummaryLines() {
+        List<String> lines = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        lines.add("Last hour: " + server.sum(now, HOUR_MILLIS));
+        lines.add("Last 24h: " + server.sum(now, DAY_MILLIS));
+        for (Map.Entry<String, RollingWindow> entry : models.entrySet()) {
+            lines.add("  " + entry.getKey() + " (24h): " + entry.getValue().sum(now, DAY_MILLIS));
+        }
+        if (today != null) {
+            lines.addAll(describeRollup(today));
+        }
+        if (!recentAlarms.isEmpty()) {
+            lines.add("Budget alarms:");
+            for (String alarm : recentAlarms) {
+                lines.add("  " + alarm);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * One day's rollup (yyyy-MM-dd), from memory for today or from disk for earlier days
+     */
+    public synchronized List<String> getDaySummaryLines(String date) {
+        try {
+            date = LocalDate.parse(date).toString();
+        } catch (DateTimeParseException e) {
+            List<String> lines = new ArrayList<>();
+            lines.add("Not a date (use yyyy-mm-dd): " + date);
+            return lines;
+        }
+        DailyRollup rollup = today != null && today.date.equals(date) ? today : loadRollup(date);
+        if (rollup.total.calls == 0) {
+            List<String> lines = new ArrayList<>();
+            lines.add("No usage recorded on " + date);
+            return lines;
+        }
+        return describeRollup(rollup);
+    }
+
+    private List<String> describeRollup(DailyRollup rollup) {
+        List<String> lines = new ArrayList<>();
+        lines.add(rollup.date + ": " + rollup.total);
+        for (Map.Entry<String, Totals> entry : rollup.models.entrySet()) {
+            lines.add("  " + entry.getKey() + ": " + entry.getValue());
+        }
+        for (Map.Entry<String, Totals> entry : rollup.steps.entrySet()) {
+            lines.add("  step " + entry.getKey() + ": " + entry.getValue());
+        }
+
+        List<Map.Entry<String, Totals>> top = new ArrayList<>(rollup.players.entrySet());
+        top.sort((a, b) -> Long.compare(b.getValue().costMicros, a.getValue().costMicros));
+        for (int i = 0; i < Math.min(5, top.size()); i++) {
+            String name = rollup.playerNames.getOrDefault(top.get(i).getKey(), top.get(i).getKey());
+            lines.add("  player " + name + ": " + top.get(i).getValue());
+        }
+        if (!rollup.threads.isEmpty()) {
+            lines.add("  " + rollup.threads.size() + " story threads, " +
+                formatTokens(sumTokens(rollup.threads)) + " tokens on focused encounters");
+        }
+        return lines;
+    }
+
+    /**
+     * Log (once per period) when spend crosses the warning percentage or the full budget
+     */
+    private void checkBudgets(RequestTag tag, long now) {
+        checkBudget("daily", "Daily", today.date, today.total.costMicros, ConfigHandler.dailyBudgetUsd);
+        checkBudget("hourly", "Hourly", "h" + (now / HOUR_MILLIS), server.sum(now, HOUR_MILLIS).costMicros,
+            ConfigHandler.hourlyBudgetUsd);
+        if (tag != null && tag.getPlayerUUID() != null) {
+            Totals player = today.players.get(tag.getPlayerUUID().toString());
+            checkBudget("player", tag.getPlayerName() + "'s daily", today.date + ":" + tag.getPlayerUUID(),
+                player != null ? player.costMicros : 0, ConfigHandler.playerDailyBudgetUsd);
+        }
+    }
+
+    private void checkBudget(String budget, String label, String period, long costMicros, float budgetUsd) {
+        if (budgetUsd <= 0) {
+            return;
+        }
+        long budgetMicros = (long) (budgetUsd * 1_000_000);
+        int level;
+        if (costMicros >= budgetMicros) {
+            level = 100;
+        } else if (costMicros * 100 >= budgetMicros * ConfigHandler.budgetWarningPercent) {
+            level = ConfigHandler.budgetWarningPercent;
+        } else {
+            return;
+        }
+        if (!firedAlarms.add(budget + ":" + period + ":" + level)) {
+            return;
+        }
+
+        String alarm = String.format(Locale.ROOT, "%s %s budget at %d%%: $%.4f of $%.2f",
+            new SimpleDateFormat("HH:mm").format(new Date()), label, level, costMicros / 1_000_000.0, budgetUsd);
+        RandomEncounters.LOGGER.warn("AI usage alarm: " + alarm);
+        MetricsRegistry.getInstance().counter("randomencounters_budget_alarms", "AI spend budget alarms raised",
+            "budget", budget).increment();
+        recentAlarms.add(alarm);
+        if (recentAlarms.size() > MAX_RECENT_ALARMS) {
+            recentAlarms.remove(0);
+        }
+    }
+
+    /**
+     * Estimated cost in millionths of a dollar (prices are per million tokens, so tokens * price)
+     */
+    long getCostMicros(String model, TokenUsage usage) {
+        double[] price = getPrice(model);
+        if (price == null) {
+            return 0;
+        }
+        return Math.round(usage.getInputTokens() * price[0] + usage.getOutputTokens() * price[1] +
+            usage.getCacheReadTokens() * price[2] + usage.getCacheCreationTokens() * price[3]);
+    }
+
+    /**
+     * Price of the longest configured model prefix matching this model
+     */
+    private double[] getPrice(String model) {
+        if (pricesRevision != ConfigHandler.getRevision()) {
+            prices = parsePrices(ConfigHandler.modelPrices);
+            pricesRevision = ConfigHandler.getRevision();
+        }
+        if (model == null) {
+            return null;
+        }
+        String id = model.toLowerCase(Locale.ROOT);
+        double[] best = null;
+        int bestLength = -1;
+        for (Map.Entry<String, double[]> entry : prices.entrySet()) {
+            if (id.startsWith(entry.getKey()) && entry.getKey().length() > bestLength) {
+                best = entry.getValue();
+                bestLength = entry.getKey().length();
+            }
+        }
+        return best;
+    }
+
+    private static Map<String, double[]> parsePrices(String[] entries) {
+        Map<String, double[]> parsed = new LinkedHashMap<>();
+        for (String entry : entries) {
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String[] values = entry.substring(eq + 1).split(",");
+            double[] price = new double[4];
+            try {
+                for (int i = 0; i < Math.min(4, values.length); i++) {
+                    price[i] = Double.parseDouble(values[i].trim());
+                }
+            } catch (NumberFormatException e) {
+                RandomEncounters.LOGGER.warn("Ignoring model price with a bad number: " + entry);
+                continue;
+            }
+            parsed.put(entry.substring(0, eq).trim().toLowerCase(Locale.ROOT), price);
+        }
+        return parsed;
+    }
+
+    private void flush() {
+        lastFlush = System.currentTimeMillis();
+        if (!dirty || directory == null || today == null) {
+            return;
+        }
+        File file = new File(directory, today.date + ".json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            gson.toJson(today, writer);
+            dirty = false;
+        } catch (IOException e) {
+            RandomEncounters.LOGGER.warn("Failed to write usage rollup: " + e.getMessage());
+        }
+    }
+
+    private DailyRollup loadRollup(String date) {
+        if (directory != null) {
+            File file = new File(directory, date + ".json");
+            if (file.exists()) {
+                try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                    DailyRollup rollup = gson.fromJson(reader, DailyRollup.class);
+                    if (rollup != null) {
+                        rollup.fillMissing(date);
+                        return rollup;
+                    }
+                } catch (Exception e) {
+                    RandomEncounters.LOGGER.warn("Failed to read usage rollup " + file.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+        DailyRollup rollup = new DailyRollup();
+        rollup.fillMissing(date);
+        return rollup;
+    }
+
+    private void pruneRollups() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null || ConfigHandler.usageRetentionDays <= 0) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(ConfigHandler.usageRetentionDays);
+        for (File file : files) {
+            try {
+                if (LocalDate.parse(file.getName().substring(0, file.getName().length() - 5)).isBefore(cutoff)) {
+                    file.delete();
+                }
+            } catch (DateTimeParseException e) {
+                // Not a rollup
+            }
+        }
+    }
+
+    private static long sumTokens(Map<String, Totals> totals) {
+        long tokens = 0;
+        for (Totals t : totals.values()) {
+            tokens += t.getTotalTokens();
+        }
+        return tokens;
+    }
+
+    private static String formatTokens(long tokens) {
+        return String.format(Locale.ROOT, "%,d", tokens);
+    }
+
+    /**
+     * Call, token and cost totals
+     */
+    static class Totals {
+        @SerializedName("calls")
+        long calls;
+
+        @SerializedName("input_tokens")
+        long inputTokens;
+
+        @SerializedName("output_tokens")
+        long outputTokens;
+
+        @SerializedName("cache_read_tokens")
+        long cacheReadTokens;
+
+        @SerializedName("cache_write_tokens")
+        long cacheWriteTokens;
+
+        @SerializedName("cost_micros")
+        long costMicros;
+
+        void add(TokenUsage usage, long cost) {
+            calls++;
+            inputTokens += usage.getInputTokens();
+            outputTokens += usage.getOutputTokens();
+            cacheReadTokens += usage.getCacheReadTokens();
+            cacheWriteTokens += usage.getCacheCreationTokens();
+            costMicros += cost;
+        }
+
+        long getTotalTokens() {
+            return inputTokens + outputTokens + cacheReadTokens + cacheWriteTokens;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d calls, %s tokens (%s in, %s out, %s cached), $%.4f",
+                calls, formatTokens(getTotalTokens()), formatTokens(inputTokens + cacheWriteTokens),
+                formatTokens(outputTokens), formatTokens(cacheReadTokens), costMicros / 1_000_000.0);
+        }
+    }
+
+    /**
+     * One day's totals as saved to disk
+     */
+    static class DailyRollup {
+        @SerializedName("date")
+        String date;
+
+        @SerializedName("total")
+        Totals total;
+
+        @SerializedName("models")
+        Map<String, Totals> models;
+
+        @SerializedName("steps")
+        Map<String, Totals> steps;
+
+        @SerializedName("players")
+        Map<String, Totals> players; // Keyed by UUID
+
+        @SerializedName("player_names")
+        Map<String, String> playerNames;
+
+        @SerializedName("threads")
+        Map<String, Totals> threads;
+
+        void fillMissing(String date) {
+            if (this.date == null) this.date = date;
+            if (total == null) total = new Totals();
+            if (models == null) models = new LinkedHashMap<>();
+            if (steps == null) steps = new LinkedHashMap<>();
+            if (players == null) players = new LinkedHashMap<>();
+            if (playerNames == null) playerNames = new LinkedHashMap<>();
+            if (threads == null) threads = new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * Totals in 5-minute buckets over the last 24 hours
+     */
+    static class RollingWindow {
+        private static final int FIELDS = 6;
+
+        private final long[] bucketIndex = new long[BUCKETS];
+        private final long[] values = new long[BUCKETS * FIELDS];
+
+        RollingWindow() {
+            clear();
+        }
+
+        void add(long now, TokenUsage usage, long costMicros) {
+            long index = now / BUCKET_MILLIS;
+            int slot = (int) (index % BUCKETS);
+            int base = slot * FIELDS;
+            if (bucketIndex[slot] != index) {
+                bucketIndex[slot] = index;
+                for (int i = 0; i < FIELDS; i++) {
+                    values[base + i] = 0;
+                }
+            }
+            values[base]++;
+            values[base + 1] += usage.getInputTokens();
+            values[base + 2] += usage.getOutputTokens();
+            values[base + 3] += usage.getCacheReadTokens();
+            values[base + 4] += usage.getCacheCreationTokens();
+            values[base + 5] += costMicros;
+        }
+
+        /**
+         * Totals over the buckets covering the last spanMillis (to 5-minute precision)
+         */
+        Totals sum(long now, long spanMillis) {
+            Totals totals = new Totals();
+            long latest = now / BUCKET_MILLIS;
+            int count = (int) Math.min(BUCKETS, Math.max(1, spanMillis / BUCKET_MILLIS));
+            for (long index = latest; index > latest - count; index--) {
+                int slot = (int) (index % BUCKETS);
+                if (bucketIndex[slot] != index) {
+                    continue;
+                }
+                int base = slot * FIELDS;
+                totals.calls += values[base];
+                totals.inputTokens += values[base + 1];
+                totals.outputTokens += values[base + 2];
+                totals.cacheReadTokens += values[base + 3];
+                totals.cacheWriteTokens += values[base + 4];
+                totals.costMicros += values[base + 5];
+            }
+            return totals;
+        }
+
+        void clear() {
+            for (int i = 0; i < BUCKETS; i++) {
+                bucketIndex[i] = -1;
+            }
+        }
+    }
+}
@@ -11,6 +11,10 @@ public class ModelConfig {
     private final String tokenParameter; // "max_tokens" or "max_completion_tokens"
     private final Double defaultTemperature;
     private final Integer defaultMaxTokens;
+    private final int contextWindow; // Input + output tokens the model accepts
+
+    // Headroom for the system message and estimation error
+    private static final int PROMPT_SAFETY_MARGIN = 500;
 
     public ModelConfig(String modelId, ModelFamily family) {
         this.modelId = modelId;
@@ -25,6 +29,7 @@ public class ModelConfig {
                 this.tokenParameter = "max_completion_tokens";
                 this.defaultTemperature = null;
                 this.defaultMaxTokens = 2000;
+                this.contextWindow = 128000;
                 break;
 
             case GPT5:
@@ -34,6 +39,7 @@ public class ModelConfig {
                 this.tokenParameter = "max_completion_tokens";
                 this.defaultTemperature = 1.0;
                 this.defaultMaxTokens = 2000;
+                this.contextWindow = 400000;
                 break;
 
             case GPT4O:
@@ -43,6 +49,7 @@ public class ModelConfig {
                 this.tokenParameter = "max_completion_tokens";
                 this.defaultTemperature = 0.9;
                 this.defaultMaxTokens = 2000;
+                this.contextWindow = 128000;
                 break;
 
             case GPT4_TURBO:
@@ -53,6 +60,7 @@ public class ModelConfig {
                 this.tokenParameter = "max_tokens";
                 this.defaultTemperature = 0.9;
                 this.defaultMaxTokens = 2000;
+                this.contextWindow = family == ModelFamily.GPT4_TURBO ? 128000 : 8192;
                 break;
 
             case GPT3_5:
@@ -62,6 +70,7 @@ public class ModelConfig {
                 this.tokenParameter = "max_tokens";
                 this.defaultTemperature = 0.9;
                 this.defaultMaxTokens = 2000;
+                this.contextWindow = 16385;
                 break;
 
             case CLAUDE:
@@ -71,6 +80,7 @@ public class ModelConfig {
                 this.tokenParameter = "max_tokens";
                 this.defaultTemperature = 0.9;
                 this.defaultMaxTokens = 2000;
+                this.contextWindow = 200000;
                 break;
 
             default:
@@ -80,6 +90,7 @@ public class ModelConfig {
                 this.tokenParameter = "max_tokens";
                 this.defaultTemperature = null;
                 this.defaultMaxTokens = 2000;
+                this.contextWindow = 8192;
                 break;
         }
     }
@@ -119,6 +130,14 @@ public class ModelConfig {
     public String getTokenParameter() { return tokenParameter; }
     public Double getDefaultTemperature() { return defaultTemperature; }
     public Integer getDefaultMaxTokens() { return defaultMaxTokens; }
+    public int getContextWindow() { return contextWindow; }
+
+    /**
+     * Largest prompt this model can take while leaving room for the response
+     */
+    public int getMaxPromptTokens() {
+        return Math.max(contextWindow - defaultMaxTokens - PROMPT_SAFETY_MARGIN, 1000);
+    }
 
     /**
      * Get the appropriate temperature for this model
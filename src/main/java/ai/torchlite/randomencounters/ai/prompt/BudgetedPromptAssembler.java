@@ -0,0 +1,163 @@
+package ai.torchlite.randomencounters.ai.prompt;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.ai.StorytellingRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fits rendered prompt sections into a token budget
+ *
+ * Each section is first held to its own maximum. If the prompt is still over
+ * budget, DROP sections are removed (last in the prompt first), then SHRINK and
+ * TRUNCATE sections give up tokens down to their minimum, the ones with the most
+ * to spare first. A section that can't keep its minimum is left out. KEEP
+ * sections are never touched, so the budget can be exceeded if they alone are
+ * too large.
+ */
+final class BudgetedPromptAssembler {
+
+    private static final class Part {
+        final PromptSection section;
+        final boolean stable;
+        String text;
+        int tokens;
+
+        Part(PromptSection section, boolean stable, String text) {
+            this.section = section;
+            this.stable = stable;
+            this.text = text;
+            this.tokens = TokenEstimator.estimate(text);
+        }
+    }
+
+    private final StorytellingRequest request;
+    private final int fixedTokens;
+    private final List<Part> parts = new ArrayList<>();
+
+    /**
+     * @param fixedTokens Tokens used by text outside the sections (headers)
+     */
+    BudgetedPromptAssembler(StorytellingRequest request, int fixedTokens) {
+        this.request = request;
+        this.fixedTokens = fixedTokens;
+    }
+
+    void add(PromptSection section, boolean stable, String text) {
+        parts.add(new Part(section, stable, text));
+    }
+
+    /**
+     * Degrade sections until the prompt fits the budget
+     * @return estimated tokens of the assembled prompt
+     */
+    int fit(int tokenBudget) {
+        for (Part part : parts) {
+            if (part.tokens > part.section.getMaxTokens() &&
+                part.section.getDegradationStrategy() != DegradationStrategy.KEEP) {
+                resize(part, part.section.getMaxTokens());
+            }
+        }
+
+        int total = total();
+        if (total <= tokenBudget) {
+            return total;
+        }
+        int original = total;
+
+        // 1. Drop optional sections, last in the prompt first
+        for (int i = parts.size() - 1; i >= 0 && total > tokenBudget; i--) {
+            Part part = parts.get(i);
+            if (part.section.getDegradationStrategy() == DegradationStrategy.DROP && part.tokens > 0) {
+                total -= part.tokens;
+                drop(part);
+            }
+        }
+
+        // 2. Shrink or truncate, taking from the sections with the most to spare
+        while (total > tokenBudget) {
+            Part largest = null;
+            for (Part part : parts) {
+                if (isReducible(part) && (largest == null || spare(part) > spare(largest))) {
+                    largest = part;
+                }
+            }
+            if (largest == null) {
+                break;
+            }
+
+            int target = largest.tokens - Math.min(spare(largest), total - tokenBudget);
+            int before = largest.tokens;
+            resize(largest, target);
+            if (largest.tokens >= before) {
+                // Re-rendering didn't make it any smaller, so leave it out
+                drop(largest);
+                total -= before;
+                continue;
+            }
+            total -= before - largest.tokens;
+        }
+
+        // 3. Sections already at their minimum are left out entirely
+        for (int i = parts.size() - 1; i >= 0 && total > tokenBudget; i--) {
+            Part part = parts.get(i);
+            if (part.section.getDegradationStrategy() != DegradationStrategy.KEEP && part.tokens > 0) {
+                total -= part.tokens;
+                drop(part);
+            }
+        }
+
+        if (total > tokenBudget) {
+            RandomEncounters.LOGGER.warn("Prompt is " + total + " tokens after degrading all optional sections " +
+                "(budget " + tokenBudget + ")");
+        } else {
+            RandomEncounters.LOGGER.debug("Prompt trimmed from " + original + " to " + total +
+                " tokens to fit budget of " + tokenBudget);
+        }
+        return total;
+    }
+
+    /**
+     * Append the surviving sections of one half (stable prefix or per-request suffix)
+     */
+    void appendTo(StringBuilder out, boolean stable) {
+        for (Part part : parts) {
+            if (part.stable == stable) {
+                out.append(part.text);
+            }
+        }
+    }
+
+    private boolean isReducible(Part part) {
+        DegradationStrategy strategy = part.section.getDegradationStrategy();
+        return (strategy == DegradationStrategy.SHRINK || strategy == DegradationStrategy.TRUNCATE) &&
+               spare(part) > 0;
+    }
+
+    private int spare(Part part) {
+        return part.tokens - Math.max(part.section.getMinTokens(), 1);
+    }
+
+    private void resize(Part part, int maxTokens) {
+        if (part.section.getDegradationStrategy() == DegradationStrategy.SHRINK) {
+            part.text = part.section.buildSection(request, maxTokens);
+        } else {
+            part.text = TokenEstimator.truncate(part.text, maxTokens);
+        }
+        part.tokens = TokenEstimator.estimate(part.text);
+    }
+
+    private void drop(Part part) {
+        part.text = "";
+        part.tokens = 0;
+    }
+
+    private int total() {
+        int total = fixedTokens;
+        for (Part part : parts) {
+            total += part.tokens;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,27 @@
+package ai.torchlite.randomencounters.ai.prompt;
+
+/**
+ * How a prompt section gives up space when the prompt is over its token budget
+ */
+public enum DegradationStrategy {
+    /**
+     * Never shortened (core instructions, schema)
+     */
+    KEEP,
+
+    /**
+     * Re-rendered in a compact form that fits the tokens it is given
+     * (see {@link PromptSection#buildSection(ai.torchlite.randomencounters.ai.StorytellingRequest, int)})
+     */
+    SHRINK,
+
+    /**
+     * Cut at a word boundary once the token allowance is used up
+     */
+    TRUNCATE,
+
+    /**
+     * Left out entirely when space runs short
+     */
+    DROP
+}
@@ -2,21 +2,161 @@ package ai.torchlite.randomencounters.ai.prompt;
 
 import ai.torchlite.randomencounters.ai.StorytellingRequest;
 import ai.torchlite.randomencounters.ai.prompt.sections.*;
+import ai.torchlite.randomencounters.config.ConfigHandler;
 import ai.torchlite.randomencounters.entity.EntityRegistry;
 
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Builds prompts from modular, composable sections
+ *
+ * Sections are kept sorted by priority as they are registered. Static sections
+ * are rendered once per config revision, and the conversion prompt is a
+ * precompiled template, so per-request work is limited to the dynamic parts.
+ * Prompts are assembled in a per-thread buffer that is reused across calls.
+ *
+ * Both prompts are laid out as a {@link PromptLayout}: content that is the same
+ * for every request comes first so providers can cache it, followed by the
+ * request-specific context.
+ *
+ * A story prompt can be given a token budget; sections are then held to their
+ * declared limits and degraded by {@link BudgetedPromptAssembler} until it fits.
  */
 public class ModularPromptBuilder {
 
+    private static final String STORY_HEADER = "# Generate Random Encounter\n\n";
+
+    private static final String STORY_CONTEXT_HEADER =
+        "# Current Situation\n\n" +
+        "Generate the encounter for the following player and situation.\n\n";
+
+    private static final int HEADER_TOKENS =
+        TokenEstimator.estimate(STORY_HEADER) + TokenEstimator.estimate(STORY_CONTEXT_HEADER);
+
+    // Conversion prompt: schema and rules first (cacheable), the narrative last
+    private static final PromptTemplate CONVERSION_PREFIX_TEMPLATE = PromptTemplate.compile(
+        "# Task: Convert Encounter Story to Game JSON\n\n" +
+        "Convert the encounter narrative given at the end of this message into structured JSON format for a Minecraft mod.\n\n" +
+        "## Required JSON Structure:\n\n" +
+        "Return ONLY valid JSON (no markdown, no explanations) with this structure:\n\n" +
+        "{\n" +
+        "  \"encounter\": {...},\n" +
+        "  \"story_updates\": {...}\n" +
+        "}\n\n" +
+        "### encounter field (a plain JSON object, NOT a string):\n" +
+        "{\n" +
+        "  \"title\": \"Encounter Title\",\n" +
+        "  \"type\": \"combat|exploration|social|trade|mystery\",\n" +
+        "  \"description\": \"Brief one-sentence summary\",\n" +
+        "  \"narrative_text\": \"Full narrative for the player\",\n" +
+        "  \"entities\": [\n" +
+        "    {\n" +
+        "      \"entity_type\": \"zombie|skeleton|spider|creeper|villager|wolf|witch|enderman\",\n" +
+        "      \"name\": \"Custom name like 'Wasteland Raider' or 'Trader Marcus'\",\n" +
+        "      \"count\": 2,\n" +
+        "      \"hostile\": true,\n" +
+        "      \"health_modifier\": 1.5,\n" +
+        "      \"damage_modifier\": 1.0,\n" +
+        "      \"equipment\": [\"iron_sword\", \"iron_helmet\", \"leather_chestplate\"]\n" +
+        "    }\n" +
+        "  ],\n" +
+        "  \"dialogue\": [\n" +
+        "    {\"speaker\": \"NPC Name\", \"text\": \"What they say\"}\n" +
+        "  ],\n" +
+        "  \"outcomes\": {\n" +
+        "    \"victory_text\": \"Success message\",\n" +
+        "    \"defeat_text\": \"Failure message\",\n" +
+        "    \"flee_text\": \"Escape message\"\n" +
+        "  },\n" +
+        "  \"rewards\": {\n" +
+        "    \"faction_changes\": {\"Faction Name\": 5}\n" +
+        "  }\n" +
+        "}\n\n" +
+        "### story_updates field:\n" +
+        "{\n" +
+        "  \"encounter_summary\": \"One-line summary of what happened\",\n" +
+        "  \"thread_updates\": [\n" +
+        "    {\"thread_id\": \"existing_thread_id\", \"progress_change\": 1, \"narrative_addition\": \"What happened\"}\n" +
+        "  ],\n" +
+        "  \"new_threads\": [\n" +
+        "    {\n" +
+        "      \"thread_id\": \"unique_id\",\n" +
+        "      \"title\": \"Thread Title\",\n" +
+        "      \"description\": \"Brief description\",\n" +
+        "      \"priority\": \"LOW|MEDIUM|HIGH|URGENT\",\n" +
+        "      \"current_objective\": \"What the player should do next\"\n" +
+        "    }\n" +
+        "  ],\n" +
+        "  \"key_choices\": [\"Choice 1\", \"Choice 2\", \"Choice 3\"]\n" +
+        "}\n\n" +
+        "CRITICAL RULES:\n" +
+        "- encounter is a nested JSON object; do not wrap it in quotes or escape it\n" +
+        "- EVERY encounter MUST have at least 1 entity in the entities array (cannot be empty!)\n" +
+        "- {{entity_list}}\n" +
+        "- BE CREATIVE with entity names! Examples: \"Corrupted Wanderer\", \"Pre-war Sentinel\", \"Blight Prophet\", \"Wasteland Caravan Master\"\n" +
+        "- MIX entity types creatively: A villager (trader) + wolves (guards), skeleton (sniper) + zombies (melee), witch (leader) + spiders (minions)\n" +
+        "- VARY equipment: Not every raider needs full iron armor. Mix leather, chainmail, gold, iron for variety\n" +
+        "- USE health/damage modifiers to create bosses: health_modifier: 2.5 for a tough leader, 0.8 for a weakling\n" +
+        "- new_threads must be an array of OBJECTS, not strings\n" +
+        "- faction_changes: reputation change (-20 to 20) with each faction the player helps or harms on victory, using the faction names from the story; omit if none\n" +
+        "- Each new_threads entry must have: thread_id, title, description, priority, current_objective\n" +
+        "- thread_updates must be an array of OBJECTS with: thread_id, progress_change, narrative_addition\n" +
+        "- key_choices must be an array of strings\n" +
+        "- Return ONLY the raw JSON, NO markdown code fences (no ```json or ```)\n" +
+        "- The response must start with { and end with }\n\n"
+    );
+
+    private static final PromptTemplate CONVERSION_SUFFIX_TEMPLATE = PromptTemplate.compile(
+        "## Original Story:\n\n" +
+        "{{narrative}}" +
+        "\n\n" +
+        "Convert the story above into the JSON structure described. Return ONLY the raw JSON.\n"
+    );
+
+    // Fragment repair prompt: rules first (cacheable), then what failed validation and the fragment itself
+    private static final PromptTemplate REPAIR_PREFIX_TEMPLATE = PromptTemplate.compile(
+        "# Task: Fix Encounter JSON Fragment\n\n" +
+        "Part of an encounter converted to JSON for a Minecraft mod failed validation. " +
+        "Fix the fragment given at the end of this message.\n\n" +
+        "RULES:\n" +
+        "- Return ONLY the fixed fragment as raw JSON: one object with the same keys, arrays in the same order\n" +
+        "- {{entity_list}}\n" +
+        "- Replace an unknown entity_type with the valid type closest to what was meant; keep the name, count and other fields\n" +
+        "- If entities is empty, fill it with at least 1 entity that fits the encounter (same fields as the schema: " +
+        "entity_type, name, count, hostile, health_modifier, damage_modifier, equipment)\n" +
+        "- thread_id must be one of the known thread ids listed with the problems; use null if the update fits none\n" +
+        "- No markdown code fences, no explanations\n\n"
+    );
+
+    private static final PromptTemplate REPAIR_SUFFIX_TEMPLATE = PromptTemplate.compile(
+        "## Problems:\n\n" +
+        "{{problems}}" +
+        "\n## Fragment:\n\n" +
+        "{{fragment}}" +
+        "\n\n" +
+        "Return the fixed fragment as raw JSON.\n"
+    );
+
+    // Buffers larger than this aren't kept around between calls
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER =
+        ThreadLocal.withInitial(() -> new StringBuilder(16 * 1024));
+
     private final List<PromptSection> sections;
+    private final Map<PromptSection, String> staticSectionCache;
+    private volatile int staticCacheRevision = -1;
+
+    // Rendered conversion prefix, valid for one registry version
+    private volatile String conversionPrefix;
+    private volatile int conversionPrefixVersion = -1;
 
     public ModularPromptBuilder() {
-        this.sections = new ArrayList<>();
+        this.sections = new CopyOnWriteArrayList<>();
+        this.staticSectionCache = new ConcurrentHashMap<>();
         registerDefaultSections();
     }
 
@@ -24,137 +164,198 @@ public class ModularPromptBuilder {
      * Register all default prompt sections
      */
     private void registerDefaultSections() {
-        sections.add(new WorldContextSection());
-        sections.add(new BiomeContextSection());
-        sections.add(new PlayerContextSection());
-        sections.add(new StoryHistorySection());
-        sections.add(new FactionReputationSection());
-        sections.add(new DifficultySection());
-        sections.add(new TaskInstructionsSection());
+        addSection(new WorldContextSection());
+        addSection(new BiomeContextSection());
+        addSection(new PlayerContextSection());
+        addSection(new StoryHistorySection());
+        addSection(new ActiveThreadsSection());
+        addSection(new FactionReputationSection());
+        addSection(new FactionStandingSection());
+        addSection(new DifficultySection());
+        addSection(new ContextChangesSection());
+        addSection(new TaskInstructionsSection());
     }
 
     /**
-     * Add a custom section to the builder
+     * Add a custom section to the builder (inserted in priority order)
      */
-    public void addSection(PromptSection section) {
-        sections.add(section);
+    public synchronized void addSection(PromptSection section) {
+        int index = sections.size();
+        while (index > 0 && sections.get(index - 1).getPriority() > section.getPriority()) {
+            index--;
+        }
+        sections.add(index, section);
     }
 
     /**
      * Remove a section by class type
      */
-    public void removeSection(Class<? extends PromptSection> sectionClass) {
-        sections.removeIf(s -> s.getClass().equals(sectionClass));
+    public synchronized void removeSection(Class<? extends PromptSection> sectionClass) {
+        for (PromptSection section : sections) {
+            if (section.getClass().equals(sectionClass)) {
+                sections.remove(section);
+                staticSectionCache.remove(section);
+            }
+        }
     }
 
     /**
      * Build the complete prompt for story generation (Step 1)
      */
     public String buildStoryPrompt(StorytellingRequest request) {
-        StringBuilder prompt = new StringBuilder();
+        return buildStoryPromptLayout(request).getFullText();
+    }
+
+    /**
+     * Build the story prompt as a cacheable prefix (stable sections) and a per-request suffix
+     */
+    public PromptLayout buildStoryPromptLayout(StorytellingRequest request) {
+        // Sections are already sorted by priority
+        StringBuilder prompt = acquireBuffer();
+        prompt.append(STORY_HEADER);
+        for (PromptSection section : sections) {
+            if (section.isStable() && section.isApplicable(request)) {
+                appendSection(prompt, section, request);
+            }
+        }
+        String prefix = prompt.toString();
+
+        prompt.setLength(0);
+        prompt.append(STORY_CONTEXT_HEADER);
+        for (PromptSection section : sections) {
+            if (!section.isStable() && section.isApplicable(request)) {
+                appendSection(prompt, section, request);
+            }
+        }
+
+        return new PromptLayout(prefix, prompt.toString());
+    }
 
-        prompt.append("# Generate Random Encounter\n\n");
+    /**
+     * Build the story prompt, degrading sections so it fits in the given number of tokens
+     * @param tokenBudget Estimated prompt tokens allowed ({@link Integer#MAX_VALUE} for no limit)
+     */
+    public PromptLayout buildStoryPromptLayout(StorytellingRequest request, int tokenBudget) {
+        if (tokenBudget == Integer.MAX_VALUE) {
+            return buildStoryPromptLayout(request);
+        }
 
-        // Sort sections by priority
-        List<PromptSection> applicableSections = new ArrayList<>();
+        StringBuilder prompt = acquireBuffer();
+        BudgetedPromptAssembler assembler = new BudgetedPromptAssembler(request, HEADER_TOKENS);
         for (PromptSection section : sections) {
             if (section.isApplicable(request)) {
-                applicableSections.add(section);
+                prompt.setLength(0);
+                appendSection(prompt, section, request);
+                assembler.add(section, section.isStable(), prompt.toString());
             }
         }
-        applicableSections.sort(Comparator.comparingInt(PromptSection::getPriority));
+        assembler.fit(tokenBudget);
 
-        // Build each applicable section
-        for (PromptSection section : applicableSections) {
-            prompt.append(section.buildSection(request));
-        }
+        prompt.setLength(0);
+        prompt.append(STORY_HEADER);
+        assembler.appendTo(prompt, true);
+        String prefix = prompt.toString();
+
+        prompt.setLength(0);
+        prompt.append(STORY_CONTEXT_HEADER);
+        assembler.appendTo(prompt, false);
 
-        return prompt.toString();
+        return new PromptLayout(prefix, prompt.toString());
     }
 
     /**
      * Build the conversion prompt for transforming story to JSON (Step 2)
      */
     public String buildConversionPrompt(String narrativeStory) {
-        StringBuilder prompt = new StringBuilder();
-
-        prompt.append("# Task: Convert Encounter Story to Game JSON\n\n");
-        prompt.append("Convert the following encounter narrative into structured JSON format for a Minecraft mod.\n\n");
-        prompt.append("## Original Story:\n\n");
-        prompt.append(narrativeStory);
-        prompt.append("\n\n");
-
-        prompt.append("## Required JSON Structure:\n\n");
-        prompt.append("Return ONLY valid JSON (no markdown, no explanations) with this structure:\n\n");
-        prompt.append("{\n");
-        prompt.append("  \"encounter_json\": \"{...}\",\n");
-        prompt.append("  \"story_updates\": {...}\n");
-        prompt.append("}\n\n");
-
-        prompt.append("### encounter_json field (must be an ESCAPED JSON string):\n");
-        prompt.append("{\n");
-        prompt.append("  \"title\": \"Encounter Title\",\n");
-        prompt.append("  \"type\": \"combat|exploration|social|trade|mystery\",\n");
-        prompt.append("  \"description\": \"Brief one-sentence summary\",\n");
-        prompt.append("  \"narrative_text\": \"Full narrative for the player\",\n");
-        prompt.append("  \"entities\": [\n");
-        prompt.append("    {\n");
-        prompt.append("      \"entity_type\": \"zombie|skeleton|spider|creeper|villager|wolf|witch|enderman\",\n");
-        prompt.append("      \"name\": \"Custom name like 'Wasteland Raider' or 'Trader Marcus'\",\n");
-        prompt.append("      \"count\": 2,\n");
-        prompt.append("      \"hostile\": true,\n");
-        prompt.append("      \"health_modifier\": 1.5,\n");
-        prompt.append("      \"damage_modifier\": 1.0,\n");
-        prompt.append("      \"equipment\": [\"iron_sword\", \"iron_helmet\", \"leather_chestplate\"]\n");
-        prompt.append("    }\n");
-        prompt.append("  ],\n");
-        prompt.append("  \"dialogue\": [\n");
-        prompt.append("    {\"speaker\": \"NPC Name\", \"text\": \"What they say\"}\n");
-        prompt.append("  ],\n");
-        prompt.append("  \"outcomes\": {\n");
-        prompt.append("    \"victory_text\": \"Success message\",\n");
-        prompt.append("    \"defeat_text\": \"Failure message\",\n");
-        prompt.append("    \"flee_text\": \"Escape message\"\n");
-        prompt.append("  }\n");
-        prompt.append("}\n\n");
-
-        prompt.append("### story_updates field:\n");
-        prompt.append("{\n");
-        prompt.append("  \"encounter_summary\": \"One-line summary of what happened\",\n");
-        prompt.append("  \"thread_updates\": [\n");
-        prompt.append("    {\"thread_id\": \"existing_thread_id\", \"progress_change\": 1, \"narrative_addition\": \"What happened\"}\n");
-        prompt.append("  ],\n");
-        prompt.append("  \"new_threads\": [\n");
-        prompt.append("    {\n");
-        prompt.append("      \"thread_id\": \"unique_id\",\n");
-        prompt.append("      \"title\": \"Thread Title\",\n");
-        prompt.append("      \"description\": \"Brief description\",\n");
-        prompt.append("      \"priority\": \"LOW|MEDIUM|HIGH|URGENT\",\n");
-        prompt.append("      \"current_objective\": \"What the player should do next\"\n");
-        prompt.append("    }\n");
-        prompt.append("  ],\n");
-        prompt.append("  \"key_choices\": [\"Choice 1\", \"Choice 2\", \"Choice 3\"]\n");
-        prompt.append("}\n\n");
-
-        prompt.append("CRITICAL RULES:\n");
-        prompt.append("- encounter_json must be a STRING with escaped quotes (\\\")\n");
-        prompt.append("- EVERY encounter MUST have at least 1 entity in the entities array (cannot be empty!)\n");
-
-        // Include dynamic entity list
+        return buildConversionPromptLayout(narrativeStory).getFullText();
+    }
+
+    /**
+     * Build the conversion prompt with the schema as the cacheable prefix and the narrative as the suffix
+     */
+    public PromptLayout buildConversionPromptLayout(String narrativeStory) {
+        StringBuilder prompt = acquireBuffer();
+        CONVERSION_SUFFIX_TEMPLATE.render(prompt, (slot, out) -> {
+            if ("narrative".equals(slot)) {
+                out.append(narrativeStory);
+            }
+        });
+
+        return new PromptLayout(getConversionPrefix(), prompt.toString());
+    }
+
+    /**
+     * Build the prompt that sends the parts of a response that failed validation back to the conversion model
+     * @param problems What is wrong, one problem per line
+     * @param fragmentJson The failing entities and thread updates
+     */
+    public PromptLayout buildFragmentRepairPromptLayout(String problems, String fragmentJson) {
+        // Rare enough that the prefix isn't cached between calls
         EntityRegistry registry = EntityRegistry.getInstance();
-        prompt.append("- " + registry.buildCompactEntityList() + "\n");
-
-        prompt.append("- BE CREATIVE with entity names! Examples: \"Corrupted Wanderer\", \"Pre-war Sentinel\", \"Blight Prophet\", \"Wasteland Caravan Master\"\n");
-        prompt.append("- MIX entity types creatively: A villager (trader) + wolves (guards), skeleton (sniper) + zombies (melee), witch (leader) + spiders (minions)\n");
-        prompt.append("- VARY equipment: Not every raider needs full iron armor. Mix leather, chainmail, gold, iron for variety\n");
-        prompt.append("- USE health/damage modifiers to create bosses: health_modifier: 2.5 for a tough leader, 0.8 for a weakling\n");
-        prompt.append("- new_threads must be an array of OBJECTS, not strings\n");
-        prompt.append("- Each new_threads entry must have: thread_id, title, description, priority, current_objective\n");
-        prompt.append("- thread_updates must be an array of OBJECTS with: thread_id, progress_change, narrative_addition\n");
-        prompt.append("- key_choices must be an array of strings\n");
-        prompt.append("- Return ONLY the raw JSON, NO markdown code fences (no ```json or ```)\n");
-        prompt.append("- The response must start with { and end with }\n");
-
-        return prompt.toString();
+        String prefix = REPAIR_PREFIX_TEMPLATE.render((slot, out) -> {
+            if ("entity_list".equals(slot)) {
+                out.append(registry.buildCompactEntityList());
+            }
+        });
+        String suffix = REPAIR_SUFFIX_TEMPLATE.render((slot, out) -> {
+            if ("problems".equals(slot)) {
+                out.append(problems);
+            } else if ("fragment".equals(slot)) {
+                out.append(fragmentJson);
+            }
+        });
+        return new PromptLayout(prefix, suffix);
+    }
+
+    private void appendSection(StringBuilder prompt, PromptSection section, StorytellingRequest request) {
+        if (section.isStatic()) {
+            prompt.append(getStaticSection(section, request));
+        } else {
+            section.appendSection(prompt, request);
+        }
+    }
+
+    /**
+     * Get the rendered conversion prefix, re-rendering when the entity registry changes
+     */
+    private String getConversionPrefix() {
+        EntityRegistry registry = EntityRegistry.getInstance();
+        int version = registry.getVersion();
+        String prefix = conversionPrefix;
+        if (prefix == null || conversionPrefixVersion != version) {
+            prefix = CONVERSION_PREFIX_TEMPLATE.render((slot, out) -> {
+                if ("entity_list".equals(slot)) {
+                    out.append(registry.buildCompactEntityList());
+                }
+            });
+            conversionPrefix = prefix;
+            conversionPrefixVersion = version;
+        }
+        return prefix;
+    }
+
+    /**
+     * Get the rendered text of a static section, re-rendering after a config reload
+     */
+    private String getStaticSection(PromptSection section, StorytellingRequest request) {
+        int revision = ConfigHandler.getRevision();
+        if (revision != staticCacheRevision) {
+            staticSectionCache.clear();
+            staticCacheRevision = revision;
+        }
+        return staticSectionCache.computeIfAbsent(section, s -> s.buildSection(request));
+    }
+
+    /**
+     * Get this thread's prompt buffer, cleared for reuse
+     */
+    private static StringBuilder acquireBuffer() {
+        StringBuilder buffer = BUFFER.get();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            buffer = new StringBuilder(16 * 1024);
+            BUFFER.set(buffer);
+        }
+        buffer.setLength(0);
+        return buffer;
     }
 }
@@ -0,0 +1,65 @@
+package ai.torchlite.randomencounters.ai.prompt;
+
+import ai.torchlite.randomencounters.ai.RequestTag;
+
+/**
+ * A prompt split into a stable prefix and a per-request suffix
+ *
+ * The prefix (lore, instructions, schema, entity catalog) is identical across
+ * requests, so providers can cache it: Anthropic via an explicit cache_control
+ * breakpoint after the prefix, OpenAI automatically for repeated leading tokens.
+ * The suffix carries everything that changes per player and per encounter.
+ */
+public final class PromptLayout {
+
+    private final String stablePrefix;
+    private final String variableSuffix;
+    private final RequestTag tag;
+
+    public PromptLayout(String stablePrefix, String variableSuffix) {
+        this(stablePrefix, variableSuffix, null);
+    }
+
+    private PromptLayout(String stablePrefix, String variableSuffix, RequestTag tag) {
+        this.stablePrefix = stablePrefix != null ? stablePrefix : "";
+        this.variableSuffix = variableSuffix != null ? variableSuffix : "";
+        this.tag = tag;
+    }
+
+    /**
+     * Wrap a plain prompt with no cacheable prefix
+     */
+    public static PromptLayout uncached(String prompt) {
+        return new PromptLayout("", prompt);
+    }
+
+    /**
+     * The same prompt, attributed to a request (for usage accounting)
+     */
+    public PromptLayout withTag(RequestTag tag) {
+        return new PromptLayout(stablePrefix, variableSuffix, tag);
+    }
+
+    public String getStablePrefix() { return stablePrefix; }
+    public String getVariableSuffix() { return variableSuffix; }
+
+    /**
+     * Who the prompt is for, or null if unattributed
+     */
+    public RequestTag getTag() { return tag; }
+
+    public boolean hasStablePrefix() {
+        return !stablePrefix.isEmpty();
+    }
+
+    /**
+     * The complete prompt text (prefix followed by suffix)
+     */
+    public String getFullText() {
+        return stablePrefix + variableSuffix;
+    }
+
+    public int length() {
+        return stablePrefix.length() + variableSuffix.length();
+    }
+}
@@ -28,4 +28,68 @@ public interface PromptSection {
     default int getPriority() {
         return 100;
     }
+
+    /**
+     * Whether this section's content depends only on configuration, not on the request.
+     * Static sections are rendered once and reused until the config is reloaded.
+     * @return true if the section output can be cached
+     */
+    default boolean isStatic() {
+        return false;
+    }
+
+    /**
+     * Whether this section renders the same text for every request (it may still change
+     * with config or registry state). Stable sections go in the cacheable prompt prefix.
+     * @return true if the section belongs in the stable prefix
+     */
+    default boolean isStable() {
+        return isStatic();
+    }
+
+    /**
+     * Append this section to a shared prompt buffer
+     * Override to render directly into the buffer without an intermediate string.
+     * @param out The prompt buffer
+     * @param request The storytelling request with context
+     */
+    default void appendSection(StringBuilder out, StorytellingRequest request) {
+        out.append(buildSection(request));
+    }
+
+    /**
+     * Tokens this section needs to be useful; it is dropped rather than cut below this
+     * @return minimum token count (0 = no minimum)
+     */
+    default int getMinTokens() {
+        return 0;
+    }
+
+    /**
+     * Upper bound on the tokens this section may use, regardless of the overall budget
+     * @return maximum token count
+     */
+    default int getMaxTokens() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * How this section gives up space when the prompt is over budget
+     * @return the degradation strategy
+     */
+    default DegradationStrategy getDegradationStrategy() {
+        return DegradationStrategy.TRUNCATE;
+    }
+
+    /**
+     * Build a compact version of this section that fits the given number of tokens.
+     * Only called for {@link DegradationStrategy#SHRINK} sections; the default just
+     * truncates the full rendering.
+     * @param request The storytelling request with context
+     * @param tokenBudget Tokens available to this section
+     * @return The formatted section content
+     */
+    default String buildSection(StorytellingRequest request, int tokenBudget) {
+        return TokenEstimator.truncate(buildSection(request), tokenBudget);
+    }
 }
@@ -0,0 +1,100 @@
+package ai.torchlite.randomencounters.ai.prompt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A prompt text with {{slot}} placeholders, compiled once into static segments
+ *
+ * Rendering appends the precompiled static text and the slot values straight
+ * into the caller's buffer, so no intermediate strings are built.
+ */
+public final class PromptTemplate {
+
+    /**
+     * Supplies the value of a named slot while rendering
+     */
+    public interface SlotResolver {
+        void appendSlot(String slot, StringBuilder out);
+    }
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private final String[] literals; // literals.length == slots.length + 1
+    private final String[] slots;
+    private final int staticLength;
+
+    private PromptTemplate(String[] literals, String[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.staticLength = length;
+    }
+
+    /**
+     * Compile a template. Slot names are trimmed; unmatched "{{" is kept as literal text.
+     */
+    public static PromptTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+
+        int position = 0;
+        while (true) {
+            int open = text.indexOf(OPEN, position);
+            int close = open >= 0 ? text.indexOf(CLOSE, open + OPEN.length()) : -1;
+            if (open < 0 || close < 0) {
+                literals.add(text.substring(position));
+                break;
+            }
+            literals.add(text.substring(position, open));
+            slots.add(text.substring(open + OPEN.length(), close).trim());
+            position = close + CLOSE.length();
+        }
+
+        return new PromptTemplate(literals.toArray(new String[0]), slots.toArray(new String[0]));
+    }
+
+    /**
+     * Append the rendered template to a buffer
+     */
+    public void render(StringBuilder out, SlotResolver resolver) {
+        out.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            resolver.appendSlot(slots[i], out);
+            out.append(literals[i + 1]);
+        }
+    }
+
+    /**
+     * Render to a new string (convenience for callers without a buffer)
+     */
+    public String render(SlotResolver resolver) {
+        StringBuilder out = new StringBuilder(staticLength + 256);
+        render(out, resolver);
+        return out.toString();
+    }
+
+    /**
+     * Total length of the static text, useful for sizing buffers
+     */
+    public int getStaticLength() {
+        return staticLength;
+    }
+
+    /**
+     * Names of the slots in this template, in order of first appearance
+     */
+    public Set<String> getSlotNames() {
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, slots);
+        return names;
+    }
+}
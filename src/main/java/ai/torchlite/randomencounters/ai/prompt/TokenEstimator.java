@@ -0,0 +1,120 @@
+package ai.torchlite.randomencounters.ai.prompt;
+
+/**
+ * Fast, dependency-free token count estimates for prompt budgeting
+ *
+ * English text averages about four characters per token for both OpenAI and
+ * Anthropic tokenizers; non-ASCII characters (emoji, accents) are counted as
+ * a full token each. The estimate errs slightly high, which is the safe side
+ * for a budget.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    public static final String TRUNCATION_MARKER = " [...]\n\n";
+    private static final int MARKER_TOKENS = 3;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        return text == null ? 0 : estimate(text, 0, text.length());
+    }
+
+    /**
+     * Estimate tokens for a range of a buffer without copying it
+     */
+    public static int estimate(CharSequence text, int start, int end) {
+        int ascii = 0;
+        int other = 0;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) < 128) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return (ascii + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + other;
+    }
+
+    /**
+     * Keep the start of the text, cutting at a word boundary so it fits in maxTokens
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (estimate(text) <= maxTokens) {
+            return text;
+        }
+        if (maxTokens <= MARKER_TOKENS) {
+            return "";
+        }
+
+        int end = indexAtTokens(text, maxTokens - MARKER_TOKENS);
+        int boundary = lastWhitespace(text, end);
+        if (boundary > end / 2) {
+            end = boundary;
+        }
+        return text.substring(0, end).trim() + TRUNCATION_MARKER;
+    }
+
+    /**
+     * Keep the end of the text (the most recent part of a growing log) so it fits in maxTokens
+     */
+    public static String truncateHead(String text, int maxTokens) {
+        if (estimate(text) <= maxTokens) {
+            return text;
+        }
+        if (maxTokens <= MARKER_TOKENS) {
+            return "";
+        }
+
+        int ascii = 0;
+        int other = 0;
+        int start = text.length();
+        while (start > 0) {
+            char c = text.charAt(start - 1);
+            int nextAscii = c < 128 ? ascii + 1 : ascii;
+            int nextOther = c < 128 ? other : other + 1;
+            if ((nextAscii + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + nextOther > maxTokens - MARKER_TOKENS) {
+                break;
+            }
+            ascii = nextAscii;
+            other = nextOther;
+            start--;
+        }
+
+        int boundary = text.indexOf(' ', start);
+        if (boundary > 0 && boundary < start + (text.length() - start) / 2) {
+            start = boundary + 1;
+        }
+        return "[...] " + text.substring(start).trim();
+    }
+
+    /**
+     * Character index at which the estimate reaches the given number of tokens
+     */
+    private static int indexAtTokens(String text, int tokens) {
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 128) {
+                ascii++;
+            } else {
+                other++;
+            }
+            if ((ascii + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + other > tokens) {
+                return i;
+            }
+        }
+        return text.length();
+    }
+
+    private static int lastWhitespace(String text, int before) {
+        for (int i = before - 1; i >= 0; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,161 @@
+package ai.torchlite.randomencounters.ai.prompt.sections;
+
+import ai.torchlite.randomencounters.ai.StorytellingRequest;
+import ai.torchlite.randomencounters.ai.prompt.DegradationStrategy;
+import ai.torchlite.randomencounters.ai.prompt.PromptSection;
+import ai.torchlite.randomencounters.ai.prompt.TokenEstimator;
+import ai.torchlite.randomencounters.story.StoryThread;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Provides the player's active story threads, with the focus thread first
+ *
+ * Thread context grows with every encounter, so only its most recent part is
+ * shown. When the prompt is over budget the section first shows less context,
+ * then shrinks to one line per thread, keeping the focus thread's details as
+ * long as they fit.
+ */
+public class ActiveThreadsSection implements PromptSection {
+
+    private static final String HEADER = "## Active Story Threads\n\n";
+
+    // Most recent thread context shown per thread (full, reduced and one-line form)
+    private static final int CONTEXT_TOKENS = 150;
+    private static final int REDUCED_CONTEXT_TOKENS = 50;
+    private static final int FOCUS_CONTEXT_TOKENS = 60;
+    private static final int FOCUS_LINE_TOKENS = 25;
+
+    @Override
+    public boolean isApplicable(StorytellingRequest request) {
+        return request.getFocusThread() != null ||
+               (request.getActiveThreads() != null && !request.getActiveThreads().isEmpty());
+    }
+
+    @Override
+    public String buildSection(StorytellingRequest request) {
+        StringBuilder section = new StringBuilder();
+        appendSection(section, request);
+        return section.toString();
+    }
+
+    @Override
+    public void appendSection(StringBuilder section, StorytellingRequest request) {
+        appendThreads(section, request, CONTEXT_TOKENS);
+    }
+
+    @Override
+    public String buildSection(StorytellingRequest request, int tokenBudget) {
+        // Less thread context first, then one line per thread
+        StringBuilder section = new StringBuilder();
+        for (int contextTokens : new int[]{REDUCED_CONTEXT_TOKENS, 0}) {
+            section.setLength(0);
+            appendThreads(section, request, contextTokens);
+            if (TokenEstimator.estimate(section) <= tokenBudget) {
+                return section.toString();
+            }
+        }
+
+        StoryThread focus = request.getFocusThread();
+        section.setLength(0);
+        section.append(HEADER);
+        if (focus != null) {
+            appendThread(section, focus, FOCUS_CONTEXT_TOKENS);
+            if (TokenEstimator.estimate(section) + FOCUS_LINE_TOKENS > tokenBudget) {
+                section.setLength(HEADER.length());
+                appendThread(section, focus, 0);
+            }
+        }
+
+        // Other threads as one line each, while they fit
+        int reserved = focus != null ? FOCUS_LINE_TOKENS : 0;
+        for (StoryThread thread : getThreads(request)) {
+            if (isSameThread(thread, focus)) {
+                continue;
+            }
+            int mark = section.length();
+            appendThreadLine(section, thread);
+            if (TokenEstimator.estimate(section) + reserved > tokenBudget) {
+                section.setLength(mark);
+                break;
+            }
+        }
+        appendFocus(section, focus);
+        section.append("\n");
+
+        return TokenEstimator.truncate(section.toString(), tokenBudget);
+    }
+
+    @Override
+    public int getPriority() {
+        return 42; // After the story summary, before faction standing
+    }
+
+    @Override
+    public int getMinTokens() {
+        return 60;
+    }
+
+    @Override
+    public int getMaxTokens() {
+        return 1200;
+    }
+
+    @Override
+    public DegradationStrategy getDegradationStrategy() {
+        return DegradationStrategy.SHRINK;
+    }
+
+    private void appendThreads(StringBuilder section, StorytellingRequest request, int contextTokens) {
+        StoryThread focus = request.getFocusThread();
+        section.append(HEADER);
+        if (focus != null) {
+            appendThread(section, focus, contextTokens);
+        }
+        for (StoryThread thread : getThreads(request)) {
+            if (!isSameThread(thread, focus)) {
+                appendThread(section, thread, contextTokens);
+            }
+        }
+        appendFocus(section, focus);
+        section.append("\n");
+    }
+
+    private List<StoryThread> getThreads(StorytellingRequest request) {
+        return request.getActiveThreads() != null ? request.getActiveThreads() : Collections.emptyList();
+    }
+
+    private void appendThread(StringBuilder section, StoryThread thread, int contextTokens) {
+        appendThreadLine(section, thread);
+        if (thread.getDescription() != null && !thread.getDescription().isEmpty()) {
+            section.append("  ").append(thread.getDescription()).append("\n");
+        }
+        String context = thread.getNarrativeContext();
+        if (contextTokens > 0 && context != null && !context.isEmpty()) {
+            section.append("  Recent: ").append(TokenEstimator.truncateHead(context, contextTokens)).append("\n");
+        }
+    }
+
+    private void appendThreadLine(StringBuilder section, StoryThread thread) {
+        section.append("- **").append(thread.getTitle()).append("** [id: ").append(thread.getThreadId())
+               .append("] (Progress: ").append(thread.getProgressLevel()).append("/10, Priority: ")
+               .append(thread.getPriority()).append(")");
+        if (thread.getCurrentObjective() != null && !thread.getCurrentObjective().isEmpty()) {
+            section.append(" - Objective: ").append(thread.getCurrentObjective());
+        }
+        section.append("\n");
+    }
+
+    private void appendFocus(StringBuilder section, StoryThread focus) {
+        if (focus != null) {
+            section.append("\n**Priority Focus:** advance \"").append(focus.getTitle())
+                   .append("\" in this encounter.\n");
+        }
+    }
+
+    private boolean isSameThread(StoryThread thread, StoryThread focus) {
+        return focus != null && (thread == focus ||
+            (thread.getThreadId() != null && thread.getThreadId().equals(focus.getThreadId())));
+    }
+}
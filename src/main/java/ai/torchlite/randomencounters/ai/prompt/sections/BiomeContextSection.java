@@ -66,6 +66,12 @@ public class BiomeContextSection implements PromptSection {
     @Override
     public String buildSection(StorytellingRequest request) {
         StringBuilder section = new StringBuilder();
+        appendSection(section, request);
+        return section.toString();
+    }
+
+    @Override
+    public void appendSection(StringBuilder section, StorytellingRequest request) {
         String biome = request.getBiome();
 
         section.append("## Biome Context: ").append(biome).append("\n\n");
@@ -99,8 +105,6 @@ public class BiomeContextSection implements PromptSection {
             section.append("**Environment:** ").append(biome)
                    .append(" - A region shaped by the Blight's corruption\n\n");
         }
-
-        return section.toString();
     }
 
     @Override
@@ -108,6 +112,11 @@ public class BiomeContextSection implements PromptSection {
         return 20; // Show early, after world context but before player info
     }
 
+    @Override
+    public int getMaxTokens() {
+        return 300; // Biome flavor only needs a paragraph
+    }
+
     /**
      * Data container for biome information
      */
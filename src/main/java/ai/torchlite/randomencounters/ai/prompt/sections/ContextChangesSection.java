@@ -0,0 +1,48 @@
+package ai.torchlite.randomencounters.ai.prompt.sections;
+
+import ai.torchlite.randomencounters.ai.StorytellingRequest;
+import ai.torchlite.randomencounters.ai.prompt.DegradationStrategy;
+import ai.torchlite.randomencounters.ai.prompt.PromptSection;
+
+/**
+ * Lists what changed since the player's last encounter, when only a few things did
+ * (see {@link ai.torchlite.randomencounters.ai.ContextChangeDetector})
+ */
+public class ContextChangesSection implements PromptSection {
+
+    @Override
+    public boolean isApplicable(StorytellingRequest request) {
+        return request.getContextChanges() != null && !request.getContextChanges().isEmpty();
+    }
+
+    @Override
+    public String buildSection(StorytellingRequest request) {
+        StringBuilder section = new StringBuilder();
+        appendSection(section, request);
+        return section.toString();
+    }
+
+    @Override
+    public void appendSection(StringBuilder section, StorytellingRequest request) {
+        section.append("## Since The Last Encounter\n\n");
+        for (String change : request.getContextChanges()) {
+            section.append("- ").append(change).append("\n");
+        }
+        section.append("\nThe rest of the situation is unchanged. Build on the previous encounter rather than repeating it.\n\n");
+    }
+
+    @Override
+    public int getPriority() {
+        return 55; // After difficulty, before task instructions
+    }
+
+    @Override
+    public int getMaxTokens() {
+        return 150;
+    }
+
+    @Override
+    public DegradationStrategy getDegradationStrategy() {
+        return DegradationStrategy.DROP; // The full context is still in the prompt
+    }
+}
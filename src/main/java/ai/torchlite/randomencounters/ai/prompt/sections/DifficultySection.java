@@ -1,7 +1,12 @@
 package ai.torchlite.randomencounters.ai.prompt.sections;
 
 import ai.torchlite.randomencounters.ai.StorytellingRequest;
+import ai.torchlite.randomencounters.ai.prompt.DegradationStrategy;
 import ai.torchlite.randomencounters.ai.prompt.PromptSection;
+import ai.torchlite.randomencounters.entity.EntityCategory;
+import ai.torchlite.randomencounters.entity.EntityRegistry;
+
+import java.util.List;
 
 /**
  * Provides difficulty and encounter balance guidance
@@ -16,14 +21,24 @@ public class DifficultySection implements PromptSection {
     @Override
     public String buildSection(StorytellingRequest request) {
         StringBuilder section = new StringBuilder();
+        appendSection(section, request);
+        return section.toString();
+    }
 
+    @Override
+    public void appendSection(StringBuilder section, StorytellingRequest request) {
         float difficulty = request.getLocalDifficultyRating();
         int playerLevel = request.getPlayerLevel();
 
         section.append("## Encounter Difficulty\n\n");
         section.append("**Local Difficulty:** ").append(String.format("%.2f", difficulty))
                .append(" (").append(getDifficultyDescription(difficulty)).append(")\n");
-        section.append("**Player Level:** ").append(playerLevel).append("\n\n");
+        section.append("**Player Level:** ").append(playerLevel).append("\n");
+        if (request.isPartyEncounter()) {
+            section.append("**Party Size:** ").append(request.getPartySize())
+                   .append(" (entity counts below are for one player; the encounter is scaled up for the party when spawned)\n");
+        }
+        section.append("\n");
 
         section.append("**Balance Guidelines:**\n");
 
@@ -41,9 +56,17 @@ public class DifficultySection implements PromptSection {
             section.append("- Player should feel pressured but not hopeless\n");
         }
 
-        section.append("\n");
+        // Suggest creatures whose measured stats fit this difficulty (1.0 threat = a zombie)
+        List<String> suggested = difficulty < 0.3f
+            ? EntityRegistry.getInstance().findEntitiesByThreat(EntityCategory.HOSTILE, 0.0f, 1.2f, 0.7f, 8)
+            : difficulty < 0.6f
+                ? EntityRegistry.getInstance().findEntitiesByThreat(EntityCategory.HOSTILE, 0.8f, 3.0f, 1.5f, 8)
+                : EntityRegistry.getInstance().findEntitiesByThreat(EntityCategory.HOSTILE, 2.0f, 12.0f, 4.0f, 8);
+        if (!suggested.isEmpty()) {
+            section.append("- Creatures suited to this difficulty: ").append(String.join(", ", suggested)).append("\n");
+        }
 
-        return section.toString();
+        section.append("\n");
     }
 
     @Override
@@ -51,6 +74,11 @@ public class DifficultySection implements PromptSection {
         return 50; // Show after player context, before task instructions
     }
 
+    @Override
+    public DegradationStrategy getDegradationStrategy() {
+        return DegradationStrategy.KEEP; // Drives encounter balance
+    }
+
     private String getDifficultyDescription(float difficulty) {
         if (difficulty < 0.2f) return "Very Easy";
         if (difficulty < 0.4f) return "Easy";
@@ -1,14 +1,12 @@
 package ai.torchlite.randomencounters.ai.prompt.sections;
 
 import ai.torchlite.randomencounters.ai.StorytellingRequest;
+import ai.torchlite.randomencounters.ai.prompt.DegradationStrategy;
 import ai.torchlite.randomencounters.ai.prompt.PromptSection;
-import ai.torchlite.randomencounters.story.PlayerStoryState;
-import ai.torchlite.randomencounters.story.StoryStateManager;
-
-import java.util.Map;
+import ai.torchlite.randomencounters.story.FactionRegistry;
 
 /**
- * Provides faction reputation context for encounter generation
+ * Provides the faction roster and faction guidance for encounter generation
  */
 public class FactionReputationSection implements PromptSection {
 
@@ -20,28 +18,18 @@ public class FactionReputationSection implements PromptSection {
     @Override
     public String buildSection(StorytellingRequest request) {
         StringBuilder section = new StringBuilder();
+        appendSection(section, request);
+        return section.toString();
+    }
 
+    @Override
+    public void appendSection(StringBuilder section, StorytellingRequest request) {
         section.append("## Faction Relations\n\n");
 
-        // Get player's faction reputation from story state
-        // Note: We can't access player UUID from the request at this stage,
-        // so we'll show generic faction guidance. The AI will consider
-        // reputation from the narrative summary if available.
-        Map<String, Integer> reputations = null;
-
-        // If reputation data was provided in the request context, use it
-        // This would need to be added to StorytellingRequest in the future
-
-        if (reputations != null && !reputations.isEmpty()) {
-            section.append("**Player's Faction Standing:**\n");
-            for (Map.Entry<String, Integer> entry : reputations.entrySet()) {
-                String faction = entry.getKey();
-                int rep = entry.getValue();
-                section.append("- ").append(faction).append(": ")
-                       .append(rep).append(" (").append(getReputationLevel(rep)).append(")\n");
-            }
-            section.append("\n");
-        }
+        // The player's own standing is per request, see FactionStandingSection
+        section.append("**Factions of Dregora:**\n");
+        section.append(FactionRegistry.getInstance().buildFactionList());
+        section.append("Use these exact faction names so reputation changes are applied to the right faction.\n\n");
 
         section.append("**IMPORTANT - Faction-Based Encounters:**\n");
         section.append("- Generate encounters involving NPCs and creatures from the local factions\n");
@@ -60,8 +48,6 @@ public class FactionReputationSection implements PromptSection {
         section.append("- Focus on character interactions, combat, or dialogue\n");
         section.append("- Use the existing terrain and biome as the backdrop\n");
         section.append("- Create patrols, scouts, traders, or lone wanderers from factions\n\n");
-
-        return section.toString();
     }
 
     @Override
@@ -69,14 +55,13 @@ public class FactionReputationSection implements PromptSection {
         return 45; // After story history, before difficulty
     }
 
-    private String getReputationLevel(int reputation) {
-        if (reputation >= 75) return "Exalted";
-        if (reputation >= 50) return "Revered";
-        if (reputation >= 25) return "Honored";
-        if (reputation >= 10) return "Friendly";
-        if (reputation >= -10) return "Neutral";
-        if (reputation >= -25) return "Unfriendly";
-        if (reputation >= -50) return "Hostile";
-        return "Hated";
+    @Override
+    public DegradationStrategy getDegradationStrategy() {
+        return DegradationStrategy.KEEP; // Short, fixed-size guidance
+    }
+
+    @Override
+    public boolean isStable() {
+        return true; // Roster and guidance only, the same for every player
     }
 }
@@ -0,0 +1,84 @@
+package ai.torchlite.randomencounters.ai.prompt.sections;
+
+import ai.torchlite.randomencounters.ai.StorytellingRequest;
+import ai.torchlite.randomencounters.ai.prompt.DegradationStrategy;
+import ai.torchlite.randomencounters.ai.prompt.PromptSection;
+
+import java.util.Map;
+
+/**
+ * Provides the player's (or party's average) reputation with each faction,
+ * and how the server's players as a whole have treated each faction
+ */
+public class FactionStandingSection implements PromptSection {
+
+    @Override
+    public boolean isApplicable(StorytellingRequest request) {
+        return (request.getFactionReputation() != null && !request.getFactionReputation().isEmpty()) ||
+               (request.getWorldFactionStanding() != null && !request.getWorldFactionStanding().isEmpty());
+    }
+
+    @Override
+    public String buildSection(StorytellingRequest request) {
+        StringBuilder section = new StringBuilder();
+        appendSection(section, request);
+        return section.toString();
+    }
+
+    @Override
+    public void appendSection(StringBuilder section, StorytellingRequest request) {
+        if (request.getFactionReputation() != null && !request.getFactionReputation().isEmpty()) {
+            section.append(request.isPartyEncounter() ? "## Party's Faction Standing\n\n" : "## Player's Faction Standing\n\n");
+            for (Map.Entry<String, Integer> entry : request.getFactionReputation().entrySet()) {
+                int rep = entry.getValue();
+                section.append("- ").append(entry.getKey()).append(": ")
+                       .append(rep).append(" (").append(getReputationLevel(rep)).append(")\n");
+            }
+            section.append("\n");
+        }
+
+        if (request.getWorldFactionStanding() != null && !request.getWorldFactionStanding().isEmpty()) {
+            section.append("**Server-Wide Politics** (net reputation all players have earned; factions may have heard of the player's people):\n");
+            for (Map.Entry<String, Integer> entry : request.getWorldFactionStanding().entrySet()) {
+                int net = entry.getValue();
+                section.append("- ").append(entry.getKey()).append(": ")
+                       .append(net > 0 ? "+" : "").append(net).append(" (").append(getServerStanding(net)).append(")\n");
+            }
+            section.append("\n");
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        return 46; // Right after the faction roster
+    }
+
+    @Override
+    public int getMaxTokens() {
+        return 300; // One line per faction, for the player and the server
+    }
+
+    @Override
+    public DegradationStrategy getDegradationStrategy() {
+        return DegradationStrategy.TRUNCATE; // The Dregora factions are listed first
+    }
+
+    private String getServerStanding(int net) {
+        if (net >= 200) return "Allied with the settlers";
+        if (net >= 50) return "Favorable";
+        if (net > -50) return "Indifferent";
+        if (net > -200) return "Resentful";
+        return "At war with the settlers";
+    }
+
+    private String getReputationLevel(int reputation) {
+        if (reputation >= 75) return "Exalted";
+        if (reputation >= 50) return "Revered";
+        if (reputation >= 25) return "Honored";
+        if (reputation >= 10) return "Friendly";
+        if (reputation >= -10) return "Neutral";
+        if (reputation >= -25) return "Unfriendly";
+        if (reputation >= -50) return "Hostile";
+        return "Hated";
+    }
+}
@@ -18,10 +18,19 @@ public class PlayerContextSection implements PromptSection {
     @Override
     public String buildSection(StorytellingRequest request) {
         StringBuilder section = new StringBuilder();
+        appendSection(section, request);
+        return section.toString();
+    }
 
+    @Override
+    public void appendSection(StringBuilder section, StorytellingRequest request) {
         section.append("## Player Character\n\n");
         section.append("**Name:** ").append(request.getPlayerName()).append("\n");
         section.append("**Level:** ").append(request.getPlayerLevel()).append("\n");
+        if (request.isPartyEncounter()) {
+            section.append("**Party:** ").append(String.join(", ", request.getPartyMemberNames()))
+                   .append(" (").append(request.getPartySize()).append(" players sharing this encounter; level is the party average)\n");
+        }
 
         // Health status
         float healthPercent = (float) ((request.getPlayerHealth() / request.getPlayerMaxHealth()) * 100.0);
@@ -56,15 +65,14 @@ public class PlayerContextSection implements PromptSection {
         }
 
         // Current location
-        section.append("**Location:** ").append(request.getCurrentLocation())
+        String location = request.getCurrentLocation() != null ? request.getCurrentLocation() : request.getBiome();
+        section.append("**Location:** ").append(location)
                .append(" (").append(request.getPosX()).append(", ")
                .append(request.getPosY()).append(", ")
                .append(request.getPosZ()).append(")\n");
 
         section.append("**Time:** ").append(request.getTimeOfDay())
                .append(", Weather: ").append(request.getWeather()).append("\n\n");
-
-        return section.toString();
     }
 
     @Override
@@ -72,6 +80,11 @@ public class PlayerContextSection implements PromptSection {
         return 30; // Show after world/biome context
     }
 
+    @Override
+    public int getMaxTokens() {
+        return 250; // Stats, equipment and location
+    }
+
     private String formatItem(String itemId) {
         // Convert "iron_sword" to "Iron Sword"
         String[] parts = itemId.split("_");
@@ -1,7 +1,9 @@
 package ai.torchlite.randomencounters.ai.prompt.sections;
 
 import ai.torchlite.randomencounters.ai.StorytellingRequest;
+import ai.torchlite.randomencounters.ai.prompt.DegradationStrategy;
 import ai.torchlite.randomencounters.ai.prompt.PromptSection;
+import ai.torchlite.randomencounters.ai.prompt.TokenEstimator;
 
 /**
  * Provides player's story history and narrative summary
@@ -17,15 +19,42 @@ public class StoryHistorySection implements PromptSection {
     @Override
     public String buildSection(StorytellingRequest request) {
         StringBuilder section = new StringBuilder();
+        appendSection(section, request);
+        return section.toString();
+    }
 
+    @Override
+    public void appendSection(StringBuilder section, StorytellingRequest request) {
         section.append("## Player's Story\n\n");
         section.append(request.getNarrativeSummary()).append("\n\n");
+    }
 
-        return section.toString();
+    @Override
+    public String buildSection(StorytellingRequest request, int tokenBudget) {
+        // Keep the end of the summary, where the most recent events are
+        String header = "## Player's Story\n\n";
+        int available = tokenBudget - TokenEstimator.estimate(header) - 1;
+        String summary = TokenEstimator.truncateHead(request.getNarrativeSummary(), available);
+        return summary.isEmpty() ? "" : header + summary + "\n\n";
     }
 
     @Override
     public int getPriority() {
         return 40; // Show after basic context
     }
+
+    @Override
+    public int getMinTokens() {
+        return 50;
+    }
+
+    @Override
+    public int getMaxTokens() {
+        return 600;
+    }
+
+    @Override
+    public DegradationStrategy getDegradationStrategy() {
+        return DegradationStrategy.SHRINK;
+    }
 }
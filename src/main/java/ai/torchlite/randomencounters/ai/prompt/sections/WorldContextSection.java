@@ -1,6 +1,7 @@
 package ai.torchlite.randomencounters.ai.prompt.sections;
 
 import ai.torchlite.randomencounters.ai.StorytellingRequest;
+import ai.torchlite.randomencounters.ai.prompt.DegradationStrategy;
 import ai.torchlite.randomencounters.ai.prompt.PromptSection;
 import ai.torchlite.randomencounters.config.ConfigHandler;
 
@@ -48,6 +49,16 @@ public class WorldContextSection implements PromptSection {
         return 10; // Show first to establish setting
     }
 
+    @Override
+    public DegradationStrategy getDegradationStrategy() {
+        return DegradationStrategy.KEEP; // Sets the setting for everything else
+    }
+
+    @Override
+    public boolean isStatic() {
+        return true; // Only depends on lore config
+    }
+
     private String getToneDescription(String tone) {
         switch (tone.toLowerCase()) {
             case "grimdark_with_hope":
@@ -2,9 +2,17 @@ package ai.torchlite.randomencounters.command;
 
 import ai.torchlite.randomencounters.RandomEncounters;
 import ai.torchlite.randomencounters.ai.AIStorytellingEngine;
+import ai.torchlite.randomencounters.ai.UsageLedger;
+import ai.torchlite.randomencounters.config.ConfigHandler;
+import ai.torchlite.randomencounters.context.PlayerParty;
+import ai.torchlite.randomencounters.context.PlayerSpatialIndex;
+import ai.torchlite.randomencounters.metrics.EncounterTrace;
+import ai.torchlite.randomencounters.metrics.MetricsRegistry;
+import ai.torchlite.randomencounters.metrics.TraceRecorder;
 import ai.torchlite.randomencounters.story.PlayerStoryState;
 import ai.torchlite.randomencounters.story.StoryStateManager;
 import ai.torchlite.randomencounters.story.StoryThread;
+import ai.torchlite.randomencounters.story.WorldFactionState;
 import net.minecraft.command.CommandBase;
 import net.minecraft.command.CommandException;
 import net.minecraft.command.ICommandSender;
@@ -15,13 +23,15 @@ import net.minecraft.util.text.TextFormatting;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Command for managing encounters and story state
  */
 public class EncounterCommand extends CommandBase {
 
-    private final AIStorytellingEngine aiEngine = new AIStorytellingEngine();
+    private final AIStorytellingEngine aiEngine = RandomEncounters.getStorytellingEngine();
 
     @Override
     public String getName() {
@@ -30,7 +40,7 @@ public class EncounterCommand extends CommandBase {
 
     @Override
     public String getUsage(ICommandSender sender) {
-        return "/encounter <story|threads|history|generate|clear|services|reload|reputation|context>";
+        return "/encounter <story|threads|history|generate|clear|services|stats|usage|trace|reload|reputation|context>";
     }
 
     @Override
@@ -73,6 +83,15 @@ public class EncounterCommand extends CommandBase {
             case "services":
                 showServices(player);
                 break;
+            case "stats":
+                showStats(player, args);
+                break;
+            case "usage":
+                showUsage(player, args);
+                break;
+            case "trace":
+                showTraces(player, args);
+                break;
             case "reload":
                 reloadConfig(player);
                 break;
@@ -108,6 +127,12 @@ public class EncounterCommand extends CommandBase {
             TextFormatting.WHITE + " - Clear active encounter"));
         player.sendMessage(new TextComponentString(TextFormatting.YELLOW + "/encounter services" +
             TextFormatting.WHITE + " - List available AI services"));
+        player.sendMessage(new TextComponentString(TextFormatting.YELLOW + "/encounter stats [reset]" +
+            TextFormatting.WHITE + " - View generation pipeline timings"));
+        player.sendMessage(new TextComponentString(TextFormatting.YELLOW + "/encounter usage [server|yyyy-mm-dd]" +
+            TextFormatting.WHITE + " - View AI token usage and cost"));
+        player.sendMessage(new TextComponentString(TextFormatting.YELLOW + "/encounter trace [player] [count]" +
+            TextFormatting.WHITE + " - View timings of recent encounter requests"));
         player.sendMessage(new TextComponentString(TextFormatting.YELLOW + "/encounter reload" +
             TextFormatting.WHITE + " - Reload configuration (op only)"));
     }
@@ -240,49 +265,96 @@ public class EncounterCommand extends CommandBase {
             return;
         }
 
-        player.sendMessage(new TextComponentString(TextFormatting.YELLOW +
-            "Generating encounter..."));
+        // Players grouped with this one share a single encounter
+        List<EntityPlayer> party = findParty(player);
+        if (party.size() > 1) {
+            for (EntityPlayer member : party) {
+                member.sendMessage(new TextComponentString(TextFormatting.YELLOW +
+                    "Generating party encounter for " + party.size() + " players..."));
+            }
+        } else {
+            player.sendMessage(new TextComponentString(TextFormatting.YELLOW +
+                "Generating encounter..."));
+        }
 
         // Get the server instance
         final net.minecraft.server.MinecraftServer server = player.getServer();
 
-        // Run async to avoid blocking the game thread
-        new Thread(() -> {
-            try {
-                ai.torchlite.randomencounters.story.StorytellingResponse response =
-                    aiEngine.generateEncounter(player, player.world);
-
-                if (response != null) {
-                    // Schedule encounter execution on the main server thread
-                    // (Entity spawning must happen on the main thread to avoid ConcurrentModificationException)
-                    server.addScheduledTask(() -> {
-                        try {
-                            boolean success = RandomEncounters.getEncounterExecutor()
-                                .executeEncounter(response, player, player.world);
-
-                            if (success) {
-                                player.sendMessage(new TextComponentString(TextFormatting.GREEN +
-                                    "Encounter spawned successfully!"));
-                            } else {
-                                player.sendMessage(new TextComponentString(TextFormatting.YELLOW +
-                                    "Encounter generated but spawning failed"));
-                            }
-                        } catch (Exception e) {
-                            RandomEncounters.LOGGER.error("Failed to execute encounter", e);
-                            player.sendMessage(new TextComponentString(TextFormatting.RED +
-                                "Failed to spawn encounter: " + e.getMessage()));
-                        }
-                    });
-                } else {
+        // Traced from here to the spawn, see /encounter trace
+        EncounterTrace trace = TraceRecorder.getInstance().begin(player.getUniqueID(), player.getName(), party.size());
+
+        // Context is captured now (on the server thread); generation runs on a worker thread.
+        // The result is handled back on the server thread, where entities can be spawned safely.
+        aiEngine.generatePartyEncounterAsync(party, player.world, trace).whenComplete((response, error) -> {
+            long completed = System.nanoTime();
+            server.addScheduledTask(() -> {
+                trace.span("server_handoff", completed);
+                if (error != null) {
+                    RandomEncounters.LOGGER.error("Error generating encounter [" + trace.getTraceId() + "]", error);
+                    trace.finish("error: " + error.getMessage());
+                    player.sendMessage(new TextComponentString(TextFormatting.RED +
+                        "Error generating encounter: " + error.getMessage()));
+                    return;
+                }
+                if (response == null) {
+                    trace.finish("generation failed");
                     player.sendMessage(new TextComponentString(TextFormatting.RED +
                         "Failed to generate encounter. Check server logs"));
+                    return;
                 }
-            } catch (Exception e) {
-                RandomEncounters.LOGGER.error("Error generating encounter", e);
-                player.sendMessage(new TextComponentString(TextFormatting.RED +
-                    "Error generating encounter: " + e.getMessage()));
+
+                try {
+                    long spawnStart = System.nanoTime();
+                    boolean success = RandomEncounters.getEncounterExecutor()
+                        .executePartyEncounter(response, party, player.world);
+                    trace.span("spawn", spawnStart);
+                    trace.finish(success ? "spawned" : "spawn failed");
+
+                    if (success) {
+                        player.sendMessage(new TextComponentString(TextFormatting.GREEN +
+                            "Encounter spawned successfully!"));
+                    } else {
+                        player.sendMessage(new TextComponentString(TextFormatting.YELLOW +
+                            "Encounter generated but spawning failed"));
+                    }
+                } catch (Exception e) {
+                    RandomEncounters.LOGGER.error("Failed to execute encounter [" + trace.getTraceId() + "]", e);
+                    trace.finish("spawn error: " + e.getMessage());
+                    player.sendMessage(new TextComponentString(TextFormatting.RED +
+                        "Failed to spawn encounter: " + e.getMessage()));
+                }
+            });
+        });
+    }
+
+    /**
+     * The player followed by everyone grouped with them who isn't already in an encounter
+     */
+    private List<EntityPlayer> findParty(EntityPlayer player) {
+        List<EntityPlayer> party = new ArrayList<>();
+        party.add(player);
+        if (!ConfigHandler.enablePartyEncounters) {
+            return party;
+        }
+
+        PlayerSpatialIndex index = PlayerSpatialIndex.getInstance();
+        index.update(player);
+        PlayerParty group = index.findParty(player.getUniqueID(), ConfigHandler.partyRadius);
+        if (group == null) {
+            return party;
+        }
+
+        for (UUID memberId : group.getMemberIds()) {
+            if (memberId.equals(player.getUniqueID()) ||
+                RandomEncounters.getEncounterExecutor().hasActiveEncounter(memberId)) {
+                continue;
+            }
+            EntityPlayer member = player.world.getPlayerEntityByUUID(memberId);
+            if (member != null) {
+                party.add(member);
             }
-        }).start();
+        }
+        return party;
     }
 
     private void showServices(EntityPlayer player) {
@@ -306,6 +378,125 @@ public class EncounterCommand extends CommandBase {
                     "✓ " + service));
             }
         }
+
+        // Prompt cache effectiveness since server start
+        List<String> cacheStats = ai.torchlite.randomencounters.ai.PromptCacheStats.getInstance().getSummaryLines();
+        if (!cacheStats.isEmpty()) {
+            player.sendMessage(new TextComponentString(TextFormatting.GOLD + "Prompt cache:"));
+            for (String line : cacheStats) {
+                player.sendMessage(new TextComponentString(TextFormatting.GRAY + "  " + line));
+            }
+        }
+
+        // Generations skipped or narrowed because the player's context hadn't changed
+        List<String> changeStats = aiEngine.getContextChangeStats();
+        if (!changeStats.isEmpty()) {
+            player.sendMessage(new TextComponentString(TextFormatting.GOLD + "Context reuse:"));
+            for (String line : changeStats) {
+                player.sendMessage(new TextComponentString(TextFormatting.GRAY + "  " + line));
+            }
+        }
+    }
+
+    private void showStats(EntityPlayer player, String[] args) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            if (!player.canUseCommand(2, "encounter.stats")) {
+                player.sendMessage(new TextComponentString(TextFormatting.RED +
+                    "You don't have permission to reset the stats"));
+                return;
+            }
+            metrics.reset();
+            player.sendMessage(new TextComponentString(TextFormatting.GREEN + "Pipeline stats reset"));
+            return;
+        }
+
+        player.sendMessage(new TextComponentString(TextFormatting.GOLD +
+            "=== Generation Pipeline ==="));
+
+        List<String> lines = metrics.getSummaryLines();
+        if (lines.isEmpty()) {
+            player.sendMessage(new TextComponentString(TextFormatting.YELLOW +
+                "Nothing recorded yet"));
+            return;
+        }
+        for (String line : lines) {
+            player.sendMessage(new TextComponentString(TextFormatting.GRAY + line.replace("randomencounters_", "")));
+        }
+    }
+
+    private void showUsage(EntityPlayer player, String[] args) {
+        UsageLedger ledger = UsageLedger.getInstance();
+
+        if (args.length < 2) {
+            player.sendMessage(new TextComponentString(TextFormatting.GOLD +
+                "=== Your AI Usage ==="));
+            List<String> lines = ledger.getPlayerSummaryLines(player.getUniqueID());
+            if (lines.isEmpty()) {
+                player.sendMessage(new TextComponentString(TextFormatting.YELLOW +
+                    "No AI usage recorded for you today"));
+            }
+            for (String line : lines) {
+                player.sendMessage(new TextComponentString(TextFormatting.GRAY + line));
+            }
+            return;
+        }
+
+        // Server totals and other players' usage are for operators
+        if (!player.canUseCommand(2, "encounter.usage")) {
+            player.sendMessage(new TextComponentString(TextFormatting.RED +
+                "You don't have permission to view server usage"));
+            return;
+        }
+
+        List<String> lines;
+        if (args[1].equalsIgnoreCase("server")) {
+            player.sendMessage(new TextComponentString(TextFormatting.GOLD + "=== Server AI Usage ==="));
+            lines = ledger.getServerSummaryLines();
+        } else {
+            player.sendMessage(new TextComponentString(TextFormatting.GOLD + "=== AI Usage on " + args[1] + " ==="));
+            lines = ledger.getDaySummaryLines(args[1]);
+        }
+        for (String line : lines) {
+            player.sendMessage(new TextComponentString(TextFormatting.GRAY + line));
+        }
+    }
+
+    private void showTraces(EntityPlayer player, String[] args) {
+        String target = args.length > 1 ? args[1] : player.getName();
+        int count = 3;
+        if (args.length > 2) {
+            try {
+                count = Math.max(1, Math.min(10, Integer.parseInt(args[2])));
+            } catch (NumberFormatException e) {
+                player.sendMessage(new TextComponentString(TextFormatting.RED + "Invalid count: " + args[2]));
+                return;
+            }
+        }
+
+        if (!target.equalsIgnoreCase(player.getName()) && !player.canUseCommand(2, "encounter.trace")) {
+            player.sendMessage(new TextComponentString(TextFormatting.RED +
+                "You don't have permission to view other players' traces"));
+            return;
+        }
+
+        List<EncounterTrace> traces = TraceRecorder.getInstance().getRecentTraces(target, count);
+        player.sendMessage(new TextComponentString(TextFormatting.GOLD +
+            "=== Recent Encounters: " + target + " ==="));
+        if (traces.isEmpty()) {
+            player.sendMessage(new TextComponentString(TextFormatting.YELLOW + "No traced encounters"));
+            return;
+        }
+
+        for (EncounterTrace trace : traces) {
+            player.sendMessage(new TextComponentString(TextFormatting.YELLOW + trace.getSummary()));
+            for (EncounterTrace.Span span : trace.getSpans()) {
+                TextFormatting color = span.getError() != null ? TextFormatting.RED : TextFormatting.GRAY;
+                String indent = span.getDepth() > 0 ? "    " : "  ";
+                player.sendMessage(new TextComponentString(color + indent + span));
+            }
+        }
     }
 
     private void reloadConfig(EntityPlayer player) {
@@ -403,6 +594,14 @@ public class EncounterCommand extends CommandBase {
                     TextFormatting.WHITE + rep + " " +
                     color + "(" + standing + ")"));
             });
+
+        // Net reputation every player on the server has earned
+        Map<String, Integer> serverStanding = WorldFactionState.get(player.world).getStandings();
+        if (!serverStanding.isEmpty()) {
+            player.sendMessage(new TextComponentString(TextFormatting.GOLD + "Server-wide:"));
+            serverStanding.forEach((faction, net) -> player.sendMessage(new TextComponentString(
+                TextFormatting.GRAY + "  " + faction + ": " + TextFormatting.WHITE + (net > 0 ? "+" : "") + net)));
+        }
     }
 
     /**
@@ -521,6 +720,9 @@ public class EncounterCommand extends CommandBase {
             completions.add("generate");
             completions.add("clear");
             completions.add("services");
+            completions.add("stats");
+            completions.add("usage");
+            completions.add("trace");
             completions.add("reload");
         }
         return getListOfStringsMatchingLastWord(args, completions);
@@ -11,35 +11,86 @@ import java.io.File;
 public class ConfigHandler {
 
     private static Configuration config;
+    private static volatile int revision;
 
     // Story System Settings
     public static boolean enableStorySystem = true;
     public static int maxActiveThreadsPerPlayer = 10;
     public static int maxEncounterHistorySize = 100;
     public static boolean autoSaveOnLogout = true;
+    public static int summaryEncounterThreshold = 3;
+    public static int narrativeSummaryMaxChars = 1500;
+    public static int threadContextMaxChars = 800;
 
     // Dregora Lore Settings
     public static boolean enableDregoraLore = true;
     public static String defaultTone = "grimdark_with_hope";
     public static boolean emphasizeBlight = true;
 
+    // Shared AI Service Settings
+    public static boolean enablePromptCaching = true;
+    public static int maxPromptTokens = 6000;
+
     // OpenAI Settings
     public static boolean enableOpenAI = false;
     public static String openaiApiKey = "";
     public static String openaiModel = "gpt-4";
     public static String openaiConversionModel = "o1-mini";
+    public static String openaiBaseUrl = "https://api.openai.com/v1";
 
     // Anthropic Settings
     public static boolean enableAnthropic = false;
     public static String anthropicApiKey = "";
     public static String anthropicModel = "claude-3-5-sonnet-20241022";
     public static String anthropicConversionModel = "claude-3-5-sonnet-20241022";
+    public static String anthropicBaseUrl = "https://api.anthropic.com/v1";
 
     // Encounter Generation Settings
     public static boolean enableAIGeneration = true;
     public static int encounterCooldownMinutes = 5;
     public static float baseEncounterChance = 0.1f;
     public static boolean requireExplicitTrigger = false;
+    public static boolean cacheEntityCatalog = true;
+    public static boolean enablePartyEncounters = true;
+    public static float partyRadius = 24.0f;
+    public static float partyScalingPerMember = 0.5f;
+
+    // Context Settings
+    public static String[] structureNames = {
+        "Village=a village", "Mineshaft=an abandoned mineshaft", "Temple=an ancient temple",
+        "Monument=an ocean monument", "Stronghold=a stronghold", "Mansion=a woodland mansion",
+        "Fortress=a nether fortress", "EndCity=an end city"
+    };
+    public static int structureCacheSize = 1024;
+    public static int structureCacheTtlSeconds = 300;
+    public static int dangerHalfLifeMinutes = 120;
+    public static int contextReuseSeconds = 300;
+    public static int maxContextReuses = 1;
+
+    // Metrics
+    public static int metricsExportIntervalSeconds = 60;
+    public static String metricsFile = "randomencounters/metrics.prom";
+    public static int traceBufferSize = 200;
+    public static boolean traceFileEnabled = false;
+    public static String traceFile = "randomencounters/traces.jsonl";
+    public static int traceFileMaxKB = 10240;
+    public static int traceFileCount = 3;
+
+    // Usage Accounting
+    public static String[] modelPrices = {
+        "gpt-4o-mini=0.15,0.60,0.075,0", "gpt-4o=2.50,10.00,1.25,0", "gpt-4-turbo=10.00,30.00,0,0",
+        "gpt-4=30.00,60.00,0,0", "gpt-3.5-turbo=0.50,1.50,0,0", "gpt-5-mini=0.25,2.00,0.025,0",
+        "gpt-5=1.25,10.00,0.125,0", "o1-mini=3.00,12.00,1.50,0", "o1=15.00,60.00,7.50,0",
+        "claude-3-haiku=0.25,1.25,0.03,0.30", "claude-3-5-haiku=0.80,4.00,0.08,1.00",
+        "claude-3-5-sonnet=3.00,15.00,0.30,3.75", "claude-3-7-sonnet=3.00,15.00,0.30,3.75",
+        "claude-sonnet-4=3.00,15.00,0.30,3.75", "claude-3-opus=15.00,75.00,1.50,18.75",
+        "claude-opus-4=15.00,75.00,1.50,18.75"
+    };
+    public static float dailyBudgetUsd = 0.0f;
+    public static float hourlyBudgetUsd = 0.0f;
+    public static float playerDailyBudgetUsd = 0.0f;
+    public static int budgetWarningPercent = 80;
+    public static int usageRetentionDays = 90;
 
     // Thread Management
     public static int threadDormancyDays = 7;
@@ -99,6 +150,30 @@ public class ConfigHandler {
                 "Automatically save player story state when they log out"
             );
 
+            summaryEncounterThreshold = config.getInt(
+                "summaryEncounterThreshold",
+                "story_system",
+                3,
+                1, 20,
+                "Number of new encounters that triggers a background update of the player's story summary"
+            );
+
+            narrativeSummaryMaxChars = config.getInt(
+                "narrativeSummaryMaxChars",
+                "story_system",
+                1500,
+                200, 10000,
+                "Maximum length of a player's rolling story summary; older, less important events are condensed"
+            );
+
+            threadContextMaxChars = config.getInt(
+                "threadContextMaxChars",
+                "story_system",
+                800,
+                200, 10000,
+                "Story thread context longer than this is compacted in the background, keeping its origin and latest events"
+            );
+
             // Dregora Lore
             enableDregoraLore = config.getBoolean(
                 "enableDregoraLore",
@@ -121,6 +196,24 @@ public class ConfigHandler {
                 "Emphasize Blight corruption themes in encounters"
             );
 
+            // Shared AI service settings
+            enablePromptCaching = config.getBoolean(
+                "enablePromptCaching",
+                "ai_services",
+                true,
+                "Send the stable part of prompts (lore, instructions, schema, entity list) as a cacheable prefix " +
+                "so providers can reuse it across requests (Anthropic cache_control, OpenAI automatic prefix caching)"
+            );
+
+            maxPromptTokens = config.getInt(
+                "maxPromptTokens",
+                "ai_services",
+                6000,
+                500, 200000,
+                "Estimated token budget for story prompts. Long story summaries and thread histories are " +
+                "shortened to fit; the budget is also capped by the smallest context window of the enabled models"
+            );
+
             // OpenAI
             enableOpenAI = config.getBoolean(
                 "enableOpenAI",
@@ -150,6 +243,13 @@ public class ConfigHandler {
                 "OpenAI model to use for converting story to JSON (o1-mini, o1-preview, gpt-4)"
             );
 
+            openaiBaseUrl = config.getString(
+                "baseUrl",
+                "ai_services.openai",
+                "https://api.openai.com/v1",
+                "Base URL of the OpenAI API (change for a proxy, a compatible server or a local stub)"
+            );
+
             // Anthropic
             enableAnthropic = config.getBoolean(
                 "enableAnthropic",
@@ -179,6 +279,13 @@ public class ConfigHandler {
                 "Anthropic model to use for converting story to JSON (claude-3-5-sonnet-20241022)"
             );
 
+            anthropicBaseUrl = config.getString(
+                "baseUrl",
+                "ai_services.anthropic",
+                "https://api.anthropic.com/v1",
+                "Base URL of the Anthropic API (change for a proxy or a local stub)"
+            );
+
             // Encounter Generation
             enableAIGeneration = config.getBoolean(
                 "enableAIGeneration",
@@ -210,6 +317,186 @@ public class ConfigHandler {
                 "Require explicit trigger (command) for encounters (disable random encounters)"
             );
 
+            cacheEntityCatalog = config.getBoolean(
+                "cacheEntityCatalog",
+                "encounters",
+                true,
+                "Cache the discovered entity list on disk and only rescan when the mod list changes"
+            );
+
+            enablePartyEncounters = config.getBoolean(
+                "enablePartyEncounters",
+                "encounters",
+                true,
+                "Generate one shared encounter for players grouped together instead of one per player"
+            );
+
+            partyRadius = config.getFloat(
+                "partyRadius",
+                "encounters",
+                24.0f,
+                4.0f, 128.0f,
+                "Players within this many blocks of each other (directly or through another member) count as a party"
+            );
+
+            partyScalingPerMember = config.getFloat(
+                "partyScalingPerMember",
+                "encounters",
+                0.5f,
+                0.0f, 2.0f,
+                "Extra hostile strength per additional party member (0.5 = a party of 3 faces twice a solo encounter)"
+            );
+
+            // Context
+            structureNames = config.getStringList(
+                "structureNames",
+                "context",
+                structureNames,
+                "Structures to look for, as Name=description. Name is the structure name the world generator knows (modded generators can add their own)"
+            );
+
+            structureCacheSize = config.getInt(
+                "structureCacheSize",
+                "context",
+                1024,
+                16, 65536,
+                "Number of chunks whose structure lookup is cached"
+            );
+
+            structureCacheTtlSeconds = config.getInt(
+                "structureCacheTtlSeconds",
+                "context",
+                300,
+                10, 86400,
+                "How long a cached structure lookup stays valid"
+            );
+
+            dangerHalfLifeMinutes = config.getInt(
+                "dangerHalfLifeMinutes",
+                "context",
+                120,
+                5, 100000,
+                "Minutes of world time for a chunk's recorded danger (deaths, lost encounters) to fade by half"
+            );
+
+            contextReuseSeconds = config.getInt(
+                "contextReuseSeconds",
+                "context",
+                300,
+                0, 3600,
+                "If a player's context hasn't changed since their last encounter, serve that encounter again instead of calling the AI, for up to this long (0 = always generate)"
+            );
+
+            maxContextReuses = config.getInt(
+                "maxContextReuses",
+                "context",
+                1,
+                0, 10,
+                "How many times one generated encounter may be served again for an unchanged context"
+            );
+
+            // Metrics
+            metricsExportIntervalSeconds = config.getInt(
+                "exportIntervalSeconds",
+                "metrics",
+                60,
+                0, 3600,
+                "How often to write pipeline metrics to the metrics file in Prometheus text format (0 = never)"
+            );
+
+            metricsFile = config.getString(
+                "metricsFile",
+                "metrics",
+                "randomencounters/metrics.prom",
+                "Metrics file, relative to the server directory (point node_exporter's textfile collector here)"
+            );
+
+            traceBufferSize = config.getInt(
+                "traceBufferSize",
+                "metrics",
+                200,
+                1, 10000,
+                "How many recent encounter traces to keep in memory for /encounter trace"
+            );
+
+            traceFileEnabled = config.getBoolean(
+                "traceFileEnabled",
+                "metrics",
+                false,
+                "Also append every encounter trace to traceFile as one JSON line"
+            );
+
+            traceFile = config.getString(
+                "traceFile",
+                "metrics",
+                "randomencounters/traces.jsonl",
+                "Encounter trace file, relative to the server directory"
+            );
+
+            traceFileMaxKB = config.getInt(
+                "traceFileMaxKB",
+                "metrics",
+                10240,
+                16, 1048576,
+                "Rotate the trace file once it reaches this size"
+            );
+
+            traceFileCount = config.getInt(
+                "traceFileCount",
+                "metrics",
+                3,
+                1, 100,
+                "How many rotated trace files to keep"
+            );
+
+            // Usage Accounting
+            modelPrices = config.getStringList(
+                "modelPrices",
+                "usage",
+                modelPrices,
+                "Prices in USD per million tokens, as model=input,output,cache_read,cache_write. The longest entry the model id starts with is used; unlisted models cost 0"
+            );
+
+            dailyBudgetUsd = config.getFloat(
+                "dailyBudgetUsd",
+                "usage",
+                0.0f,
+                0.0f, 100000.0f,
+                "Warn when the server's AI spend today reaches budgetWarningPercent and 100% of this (0 = no alarm)"
+            );
+
+            hourlyBudgetUsd = config.getFloat(
+                "hourlyBudgetUsd",
+                "usage",
+                0.0f,
+                0.0f, 100000.0f,
+                "Warn when the server's AI spend over the last hour reaches budgetWarningPercent and 100% of this (0 = no alarm)"
+            );
+
+            playerDailyBudgetUsd = config.getFloat(
+                "playerDailyBudgetUsd",
+                "usage",
+                0.0f,
+                0.0f, 100000.0f,
+                "Warn when one player's AI spend today reaches budgetWarningPercent and 100% of this (0 = no alarm)"
+            );
+
+            budgetWarningPercent = config.getInt(
+                "budgetWarningPercent",
+                "usage",
+                80,
+                1, 100,
+                "Percentage of a budget at which the first alarm is raised"
+            );
+
+            usageRetentionDays = config.getInt(
+                "retentionDays",
+                "usage",
+                90,
+                0, 3650,
+                "Days of daily usage rollups to keep in the world folder (0 = keep forever)"
+            );
+
             // Thread Management
             threadDormancyDays = config.getInt(
                 "dormancyDays",
@@ -263,9 +550,17 @@ public class ConfigHandler {
             if (config.hasChanged()) {
                 config.save();
             }
+            revision++;
         }
     }
 
+    /**
+     * Get the configuration revision (incremented on every load/reload, used to invalidate caches)
+     */
+    public static int getRevision() {
+        return revision;
+    }
+
     /**
      * Reload configuration from file
      */
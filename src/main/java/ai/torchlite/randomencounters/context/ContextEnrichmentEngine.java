@@ -1,245 +1,234 @@
 package ai.torchlite.randomencounters.context;
 
 import ai.torchlite.randomencounters.ai.StorytellingRequest;
+import ai.torchlite.randomencounters.story.EncounterSummary;
+import ai.torchlite.randomencounters.story.FactionRegistry;
+import ai.torchlite.randomencounters.story.FactionReputation;
 import ai.torchlite.randomencounters.story.PlayerStoryState;
 import ai.torchlite.randomencounters.story.StoryStateManager;
+import ai.torchlite.randomencounters.story.StorySummaryScheduler;
+import ai.torchlite.randomencounters.story.StoryThread;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.item.ItemStack;
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
-import net.minecraft.world.biome.Biome;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Enriches encounter requests with detailed game context
+ *
+ * Works from a {@link ContextSnapshot} taken on the server thread, so enrichment
+ * can run on any thread without touching the player or world.
  */
 public class ContextEnrichmentEngine {
 
-    private static final int NOTABLE_ITEM_RARITY_THRESHOLD = 2; // Uncommon and above
-    private static final int MAX_NOTABLE_ITEMS = 10;
-    private static final double NEARBY_PLAYER_RADIUS = 32.0;
+    private static final int RECENT_ENCOUNTER_COUNT = 10;
+    private static final float DANGER_WEIGHT = 0.3f; // Added to local difficulty at full recorded danger
 
     /**
-     * Build a complete StorytellingRequest from player and world context
+     * Build a complete StorytellingRequest from player and world context.
+     * Captures a snapshot, so this must be called on the server thread.
      */
     public StorytellingRequest buildStorytellingRequest(EntityPlayer player, World world) {
+        return buildStorytellingRequest(ContextSnapshot.capture(player, world));
+    }
+
+    /**
+     * Build a complete StorytellingRequest from a captured snapshot (safe on any thread)
+     */
+    public StorytellingRequest buildStorytellingRequest(ContextSnapshot snapshot) {
         StorytellingRequest request = new StorytellingRequest();
 
         // Basic player context
-        enrichPlayerContext(request, player);
+        enrichPlayerContext(request, snapshot);
 
         // Location context
-        enrichLocationContext(request, player, world);
+        enrichLocationContext(request, snapshot);
 
         // Story state context
-        enrichStoryContext(request, player);
+        enrichStoryContext(request, snapshot);
 
         // Inventory context
-        enrichInventoryContext(request, player);
+        request.setNotableItems(new ArrayList<>(snapshot.getNotableItems()));
+        request.setEquipment(new HashMap<>(snapshot.getEquipment()));
 
         // Social context
-        enrichSocialContext(request, player, world);
+        request.setNearbyPlayerNames(new ArrayList<>(snapshot.getNearbyPlayerNames()));
+        request.setWorldFactionStanding(new LinkedHashMap<>(snapshot.getWorldFactionStanding()));
 
         return request;
     }
 
     /**
-     * Enrich with basic player information
+     * Build one request for a party (safe on any thread)
+     *
+     * Location, health, equipment and the narrative summary come from the leader
+     * (the first snapshot). Active threads from every member are combined, faction
+     * reputation is averaged across members (a faction a member hasn't met counts as
+     * neutral), and the player level is the party average.
      */
-    private void enrichPlayerContext(StorytellingRequest request, EntityPlayer player) {
-        request.setPlayerName(player.getName());
-        request.setPlayerUUID(player.getUniqueID().toString());
-        request.setPlayerLevel(player.experienceLevel);
-        request.setPlayerHealth(player.getHealth());
-        request.setPlayerMaxHealth(player.getMaxHealth());
-    }
-
-    /**
-     * Enrich with location and environmental context
-     */
-    private void enrichLocationContext(StorytellingRequest request, EntityPlayer player, World world) {
-        BlockPos pos = player.getPosition();
-        Biome biome = world.getBiome(pos);
-
-        request.setBiome(biome.getBiomeName());
-        request.setPosX(pos.getX());
-        request.setPosY(pos.getY());
-        request.setPosZ(pos.getZ());
-        request.setDimension(getDimensionName(world.provider.getDimension()));
-
-        // Time of day
-        request.setTimeOfDay(getTimeOfDay(world.getWorldTime()));
-
-        // Weather
-        request.setWeather(getWeatherDescription(world));
-
-        // Check for nearby structures
-        request.setNearStructure(isNearStructure(player, world));
-        request.setCurrentLocation(detectNamedLocation(player, world));
-
-        // Local difficulty
-        request.setLocalDifficultyRating(calculateLocalDifficulty(player, world));
-    }
-
-    /**
-     * Enrich with story state information
-     */
-    private void enrichStoryContext(StorytellingRequest request, EntityPlayer player) {
-        StoryStateManager manager = StoryStateManager.getInstance();
-        if (manager == null) {
-            return;
+    public StorytellingRequest buildPartyStorytellingRequest(List<ContextSnapshot> members) {
+        ContextSnapshot leader = members.get(0);
+        StorytellingRequest request = buildStorytellingRequest(leader);
+        if (members.size() == 1) {
+            return request;
         }
 
-        PlayerStoryState state = manager.getOrCreateState(player);
-
-        // Add recent encounters (last 5-10)
-        int recentCount = Math.min(10, state.getEncounterHistory().size());
-        if (recentCount > 0) {
-            List<ai.torchlite.randomencounters.story.EncounterSummary> recent =
-                state.getEncounterHistory().subList(
-                    state.getEncounterHistory().size() - recentCount,
-                    state.getEncounterHistory().size()
-                );
-            request.setRecentEncounters(new ArrayList<>(recent));
+        List<String> names = new ArrayList<>(members.size());
+        Set<String> threadIds = new HashSet<>();
+        List<StoryThread> threads = new ArrayList<>();
+        for (StoryThread thread : request.getActiveThreads()) {
+            threadIds.add(thread.getThreadId());
+            threads.add(thread);
         }
+        FactionReputation[] reputations = new FactionReputation[members.size()];
+        int levelTotal = 0;
 
-        // Add active story threads
-        request.setActiveThreads(state.getActiveThreadsList());
-
-        // Add faction reputation
-        request.setFactionReputation(new HashMap<>(state.getFactionReputation()));
-
-        // Add player traits
-        request.setPlayerTraits(new HashMap<>(state.getPlayerTraits()));
-
-        // Generate narrative summary
-        request.setNarrativeSummary(generateNarrativeSummary(state));
-    }
+        StoryStateManager manager = StoryStateManager.getInstance();
+        for (int i = 0; i < members.size(); i++) {
+            ContextSnapshot member = members.get(i);
+            names.add(member.getPlayerName());
+            levelTotal += member.getExperienceLevel();
+            if (manager == null) {
+                continue;
+            }
 
-    /**
-     * Enrich with inventory and equipment context
-     */
-    private void enrichInventoryContext(StorytellingRequest request, EntityPlayer player) {
-        List<String> notableItems = new ArrayList<>();
-        Map<String, String> equipment = new HashMap<>();
-
-        // Scan main inventory for notable items
-        for (ItemStack stack : player.inventory.mainInventory) {
-            if (!stack.isEmpty() && isNotableItem(stack)) {
-                notableItems.add(getItemDescription(stack));
-                if (notableItems.size() >= MAX_NOTABLE_ITEMS) {
-                    break;
+            PlayerStoryState state = manager.getOrCreateState(member.getPlayerUUID(), member.getPlayerName());
+            synchronized (state) {
+                if (i > 0) {
+                    for (StoryThread thread : state.getActiveThreadsList()) {
+                        if (threadIds.add(thread.getThreadId())) {
+                            threads.add(thread);
+                        }
+                    }
                 }
+                reputations[i] = state.getReputation().copy();
             }
         }
 
-        // Get equipped items
-        for (ItemStack stack : player.inventory.armorInventory) {
-            if (!stack.isEmpty()) {
-                String slot = getArmorSlot(player.inventory.armorInventory.indexOf(stack));
-                equipment.put(slot, getItemDescription(stack));
+        // Average standing per faction id; a member without standing with a faction counts as 0
+        if (manager != null) {
+            FactionRegistry registry = FactionRegistry.getInstance();
+            Map<String, Integer> averaged = new LinkedHashMap<>();
+            for (int id = 0; id < registry.size(); id++) {
+                int total = 0;
+                boolean known = false;
+                for (FactionReputation reputation : reputations) {
+                    total += reputation.get(id);
+                    known |= reputation.has(id);
+                }
+                if (known) {
+                    averaged.put(registry.getName(id), Math.round(total / (float) members.size()));
+                }
             }
+            request.setFactionReputation(averaged);
         }
 
-        // Main hand and offhand
-        ItemStack mainHand = player.getHeldItemMainhand();
-        if (!mainHand.isEmpty()) {
-            equipment.put("mainhand", getItemDescription(mainHand));
-        }
+        request.setActiveThreads(threads);
+        request.setPlayerLevel(Math.round(levelTotal / (float) members.size()));
+        request.setPartyMemberNames(names);
 
-        ItemStack offHand = player.getHeldItemOffhand();
-        if (!offHand.isEmpty()) {
-            equipment.put("offhand", getItemDescription(offHand));
-        }
+        // Party members are listed as the party, not as bystanders
+        List<String> bystanders = new ArrayList<>(request.getNearbyPlayerNames());
+        bystanders.removeAll(names);
+        request.setNearbyPlayerNames(bystanders);
 
-        request.setNotableItems(notableItems);
-        request.setEquipment(equipment);
+        return request;
     }
 
     /**
-     * Enrich with social context (nearby players)
+     * Enrich with basic player information
      */
-    private void enrichSocialContext(StorytellingRequest request, EntityPlayer player, World world) {
-        List<String> nearbyPlayers = new ArrayList<>();
-
-        for (EntityPlayer other : world.playerEntities) {
-            if (other != player && player.getDistanceToEntity(other) <= NEARBY_PLAYER_RADIUS) {
-                nearbyPlayers.add(other.getName());
-            }
-        }
-
-        request.setNearbyPlayerNames(nearbyPlayers);
+    private void enrichPlayerContext(StorytellingRequest request, ContextSnapshot snapshot) {
+        request.setPlayerName(snapshot.getPlayerName());
+        request.setPlayerUUID(snapshot.getPlayerUUID().toString());
+        request.setPlayerLevel(snapshot.getExperienceLevel());
+        request.setPlayerHealth(snapshot.getHealth());
+        request.setPlayerMaxHealth(snapshot.getMaxHealth());
     }
 
     /**
-     * Generate a compressed narrative summary from player history
+     * Enrich with location and environmental context
      */
-    private String generateNarrativeSummary(PlayerStoryState state) {
-        if (state.getEncounterHistory().isEmpty()) {
-            return "A newcomer to the wasteland, their story yet to be written.";
-        }
+    private void enrichLocationContext(StorytellingRequest request, ContextSnapshot snapshot) {
+        request.setBiome(snapshot.getBiomeName());
+        request.setPosX(snapshot.getPosX());
+        request.setPosY(snapshot.getPosY());
+        request.setPosZ(snapshot.getPosZ());
+        request.setDimension(getDimensionName(snapshot.getDimension()));
 
-        // TODO: Implement smarter summarization
-        // For now, return a basic summary
-        int totalEncounters = state.getEncounterHistory().size();
-        int activeThreads = state.getActiveThreadsList().size();
+        // Time of day
+        request.setTimeOfDay(getTimeOfDay(snapshot.getWorldTime()));
+
+        // Weather
+        request.setWeather(getWeatherDescription(snapshot));
 
-        return String.format(
-            "Survivor with %d recorded encounters. Currently pursuing %d story threads.",
-            totalEncounters,
-            activeThreads
-        );
+        // Nearby structures (detected during capture)
+        request.setNearStructure(snapshot.isNearStructure());
+        request.setCurrentLocation(snapshot.getNamedLocation());
+
+        // Local difficulty
+        request.setLocalDifficultyRating(calculateLocalDifficulty(snapshot));
     }
 
     /**
-     * Check if item is notable (rare, unique, or quest-related)
+     * Enrich with story state information
      */
-    private boolean isNotableItem(ItemStack stack) {
-        // Check rarity
-        if (stack.getRarity().ordinal() >= NOTABLE_ITEM_RARITY_THRESHOLD) {
-            return true;
+    private void enrichStoryContext(StorytellingRequest request, ContextSnapshot snapshot) {
+        StoryStateManager manager = StoryStateManager.getInstance();
+        if (manager == null) {
+            return;
         }
 
-        // Check for enchantments
-        if (stack.isItemEnchanted()) {
-            return true;
-        }
+        PlayerStoryState state = manager.getOrCreateState(snapshot.getPlayerUUID(), snapshot.getPlayerName());
 
-        // Check for custom name
-        if (stack.hasDisplayName()) {
-            return true;
-        }
+        synchronized (state) {
+            // Add recent encounters (history is newest first)
+            request.setRecentEncounters(state.getRecentEncounters(RECENT_ENCOUNTER_COUNT));
 
-        return false;
-    }
+            // Add active story threads
+            request.setActiveThreads(state.getActiveThreadsList());
 
-    /**
-     * Get a description of an item
-     */
-    private String getItemDescription(ItemStack stack) {
-        String name = stack.getDisplayName();
-        int count = stack.getCount();
+            // Add faction reputation
+            request.setFactionReputation(state.getFactionReputation());
 
-        if (count > 1) {
-            return name + " x" + count;
+            // Add player traits
+            request.setPlayerTraits(new HashMap<>(state.getPlayerTraits()));
         }
-        return name;
+
+        // Generate narrative summary
+        request.setNarrativeSummary(generateNarrativeSummary(state));
     }
 
     /**
-     * Get armor slot name
+     * Get the player's rolling narrative summary, followed by encounters it doesn't cover yet
+     * (the summary itself is maintained in the background by {@link StorySummaryScheduler})
      */
-    private String getArmorSlot(int index) {
-        switch (index) {
-            case 0: return "feet";
-            case 1: return "legs";
-            case 2: return "chest";
-            case 3: return "head";
-            default: return "armor_" + index;
+    private String generateNarrativeSummary(PlayerStoryState state) {
+        synchronized (state) {
+            if (state.getEncounterHistory().isEmpty() && state.getNarrativeSummary() == null) {
+                return "A newcomer to the wasteland, their story yet to be written.";
+            }
+
+            StringBuilder summary = new StringBuilder();
+            if (state.getNarrativeSummary() != null) {
+                summary.append(state.getNarrativeSummary());
+            }
+            for (EncounterSummary encounter : state.getUnsummarizedEncounters()) {
+                if (encounter.getBriefDescription() == null) {
+                    continue;
+                }
+                if (summary.length() > 0) {
+                    summary.append(" ");
+                }
+                summary.append(encounter.getBriefDescription());
+            }
+            return summary.toString();
         }
     }
 
@@ -257,9 +246,9 @@ public class ContextEnrichmentEngine {
     /**
      * Get weather description
      */
-    private String getWeatherDescription(World world) {
-        if (world.isThundering()) return "storm";
-        if (world.isRaining()) return "rain";
+    private String getWeatherDescription(ContextSnapshot snapshot) {
+        if (snapshot.isThundering()) return "storm";
+        if (snapshot.isRaining()) return "rain";
         return "clear";
     }
 
@@ -276,36 +265,21 @@ public class ContextEnrichmentEngine {
     }
 
     /**
-     * Check if player is near a structure
-     * TODO: Implement proper structure detection
-     */
-    private boolean isNearStructure(EntityPlayer player, World world) {
-        // Placeholder - would need to check for nearby structures
-        return false;
-    }
-
-    /**
-     * Detect named location if near one
-     * TODO: Implement location detection based on structures or custom data
+     * Calculate local difficulty rating (0.0-1.0) from world difficulty, distance from spawn
+     * and the danger recorded around the player's chunk
      */
-    private String detectNamedLocation(EntityPlayer player, World world) {
-        // Placeholder - would integrate with world data
-        return null;
-    }
-
-    /**
-     * Calculate local difficulty rating (0.0-1.0)
-     */
-    private float calculateLocalDifficulty(EntityPlayer player, World world) {
+    private float calculateLocalDifficulty(ContextSnapshot snapshot) {
         // Base on world difficulty and player distance from spawn
-        float base = world.getDifficulty().getDifficultyId() / 3.0f;
+        float base = snapshot.getDifficultyId() / 3.0f;
 
         // Increase with distance from spawn
-        BlockPos spawn = world.getSpawnPoint();
-        double distance = player.getDistance(spawn.getX(), spawn.getY(), spawn.getZ());
+        double distance = snapshot.getDistanceFromSpawn();
         float distanceFactor = Math.min(1.0f, (float) (distance / 10000.0)); // Max at 10k blocks
 
+        // Places where players keep dying or losing encounters are harder still
+        float danger = snapshot.getLocalDanger() * DANGER_WEIGHT;
+
         // Combine factors
-        return Math.min(1.0f, base * 0.5f + distanceFactor * 0.5f);
+        return Math.min(1.0f, base * 0.5f + distanceFactor * 0.5f + danger);
     }
 }
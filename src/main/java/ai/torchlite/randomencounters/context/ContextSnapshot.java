@@ -0,0 +1,340 @@
+package ai.torchlite.randomencounters.context;
+
+import ai.torchlite.randomencounters.story.WorldFactionState;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable copy of the game state an encounter request needs
+ *
+ * Captured on the server thread with {@link #capture}, which only copies raw
+ * values (no story state, no string formatting beyond item names). Everything
+ * else (enrichment, story state, prompt building) works from the snapshot on a
+ * worker thread and never touches the player or world.
+ */
+public final class ContextSnapshot {
+
+    private static final double NEARBY_PLAYER_RADIUS = 32.0;
+
+    // Player
+    private final UUID playerUUID;
+    private final String playerName;
+    private final int experienceLevel;
+    private final float health;
+    private final float maxHealth;
+
+    // Location
+    private final int posX;
+    private final int posY;
+    private final int posZ;
+    private final int dimension;
+    private final String biomeName;
+    private final boolean nearStructure;
+    private final String namedLocation;
+    private final float localDanger;
+
+    // World
+    private final long worldTime;
+    private final boolean raining;
+    private final boolean thundering;
+    private final int difficultyId;
+    private final int spawnX;
+    private final int spawnY;
+    private final int spawnZ;
+    private final Map<String, Integer> worldFactionStanding;
+
+    // Inventory and surroundings
+    private final List<String> notableItems;
+    private final Map<String, String> equipment;
+    private final int inventoryHash;
+    private final List<String> nearbyPlayerNames;
+
+    private final long timestamp;
+    private final long captureNanos;
+
+    private ContextSnapshot(Builder builder) {
+        this.playerUUID = builder.playerUUID;
+        this.playerName = builder.playerName;
+        this.experienceLevel = builder.experienceLevel;
+        this.health = builder.health;
+        this.maxHealth = builder.maxHealth;
+        this.posX = builder.posX;
+        this.posY = builder.posY;
+        this.posZ = builder.posZ;
+        this.dimension = builder.dimension;
+        this.biomeName = builder.biomeName;
+        this.nearStructure = builder.nearStructure;
+        this.namedLocation = builder.namedLocation;
+        this.localDanger = builder.localDanger;
+        this.worldTime = builder.worldTime;
+        this.raining = builder.raining;
+        this.thundering = builder.thundering;
+        this.difficultyId = builder.difficultyId;
+        this.spawnX = builder.spawnX;
+        this.spawnY = builder.spawnY;
+        this.spawnZ = builder.spawnZ;
+        this.worldFactionStanding = Collections.unmodifiableMap(new LinkedHashMap<>(builder.worldFactionStanding));
+        this.notableItems = Collections.unmodifiableList(new ArrayList<>(builder.notableItems));
+        this.equipment = Collections.unmodifiableMap(new HashMap<>(builder.equipment));
+        this.inventoryHash = builder.inventoryHash;
+        this.nearbyPlayerNames = Collections.unmodifiableList(new ArrayList<>(builder.nearbyPlayerNames));
+        this.timestamp = builder.timestamp;
+        this.captureNanos = builder.captureNanos;
+    }
+
+    /**
+     * Capture the player's context. Must be called on the server thread.
+     */
+    public static ContextSnapshot capture(EntityPlayer player, World world) {
+        long start = System.nanoTime();
+
+        BlockPos pos = player.getPosition();
+        BlockPos spawn = world.getSpawnPoint();
+        Builder builder = new Builder()
+            .player(player.getUniqueID(), player.getName())
+            .experienceLevel(player.experienceLevel)
+            .health(player.getHealth(), player.getMaxHealth())
+            .position(pos.getX(), pos.getY(), pos.getZ())
+            .dimension(world.provider.getDimension())
+            .biomeName(world.getBiome(pos).getBiomeName())
+            .worldTime(world.getWorldTime())
+            .weather(world.isRaining(), world.isThundering())
+            .difficultyId(world.getDifficulty().getDifficultyId())
+            .spawn(spawn.getX(), spawn.getY(), spawn.getZ());
+
+        StructureLocator.Location location = StructureLocator.getInstance().locate(world, pos);
+        builder.location(location.isNearStructure(), location.getName());
+        builder.localDanger(DangerHeatmap.get(world).getDanger(world, pos));
+        for (Map.Entry<String, Integer> entry : WorldFactionState.get(world).getStandings().entrySet()) {
+            builder.worldFactionStanding(entry.getKey(), entry.getValue());
+        }
+
+        // Inventory descriptions are kept up to date as slots change; nothing is scanned here
+        InventoryDigest inventory = InventoryDigestTracker.getInstance().get(player);
+        for (String item : inventory.getNotableItems()) {
+            builder.notableItem(item);
+        }
+        for (Map.Entry<String, String> entry : inventory.getEquipment(player.inventory.currentItem).entrySet()) {
+            builder.equipment(entry.getKey(), entry.getValue());
+        }
+        builder.inventoryHash(inventory.getHash());
+
+        PlayerSpatialIndex index = PlayerSpatialIndex.getInstance();
+        index.update(player);
+        for (PlayerSpatialIndex.TrackedPlayer other : index.findNearby(player.getUniqueID(), NEARBY_PLAYER_RADIUS)) {
+            builder.nearbyPlayer(other.getName());
+        }
+
+        return builder.captureNanos(System.nanoTime() - start).build();
+    }
+
+    // Getters
+    public UUID getPlayerUUID() { return playerUUID; }
+    public String getPlayerName() { return playerName; }
+    public int getExperienceLevel() { return experienceLevel; }
+    public float getHealth() { return health; }
+    public float getMaxHealth() { return maxHealth; }
+    public int getPosX() { return posX; }
+    public int getPosY() { return posY; }
+    public int getPosZ() { return posZ; }
+    public int getDimension() { return dimension; }
+    public String getBiomeName() { return biomeName; }
+    public boolean isNearStructure() { return nearStructure; }
+    public String getNamedLocation() { return namedLocation; }
+
+    /**
+     * Recorded danger around the player's chunk, 0.0-1.0 (see {@link DangerHeatmap})
+     */
+    public float getLocalDanger() { return localDanger; }
+
+    public long getWorldTime() { return worldTime; }
+    public boolean isRaining() { return raining; }
+    public boolean isThundering() { return thundering; }
+    public int getDifficultyId() { return difficultyId; }
+    public int getSpawnX() { return spawnX; }
+    public int getSpawnY() { return spawnY; }
+    public int getSpawnZ() { return spawnZ; }
+
+    /**
+     * Net reputation change the server's players have earned per faction (see {@link WorldFactionState})
+     */
+    public Map<String, Integer> getWorldFactionStanding() { return worldFactionStanding; }
+
+    public List<String> getNotableItems() { return notableItems; }
+    public Map<String, String> getEquipment() { return equipment; }
+
+    /**
+     * Hash of the inventory contents (see {@link InventoryDigest#getHash})
+     */
+    public int getInventoryHash() { return inventoryHash; }
+
+    public List<String> getNearbyPlayerNames() { return nearbyPlayerNames; }
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * Time spent capturing this snapshot on the server thread
+     */
+    public long getCaptureNanos() { return captureNanos; }
+
+    /**
+     * Distance from the world spawn point, in blocks
+     */
+    public double getDistanceFromSpawn() {
+        double dx = posX - spawnX;
+        double dy = posY - spawnY;
+        double dz = posZ - spawnZ;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Builder for snapshots (used by {@link #capture} and by code running without a world)
+     */
+    public static class Builder {
+        private UUID playerUUID;
+        private String playerName;
+        private int experienceLevel;
+        private float health = 20.0f;
+        private float maxHealth = 20.0f;
+        private int posX;
+        private int posY = 64;
+        private int posZ;
+        private int dimension;
+        private String biomeName = "Plains";
+        private boolean nearStructure;
+        private String namedLocation;
+        private float localDanger;
+        private long worldTime;
+        private boolean raining;
+        private boolean thundering;
+        private int difficultyId = 2;
+        private int spawnX;
+        private int spawnY = 64;
+        private int spawnZ;
+        private final Map<String, Integer> worldFactionStanding = new LinkedHashMap<>();
+        private final List<String> notableItems = new ArrayList<>();
+        private final Map<String, String> equipment = new HashMap<>();
+        private int inventoryHash;
+        private final List<String> nearbyPlayerNames = new ArrayList<>();
+        private long timestamp = System.currentTimeMillis();
+        private long captureNanos;
+
+        public Builder player(UUID playerUUID, String playerName) {
+            this.playerUUID = playerUUID;
+            this.playerName = playerName;
+            return this;
+        }
+
+        public Builder experienceLevel(int experienceLevel) {
+            this.experienceLevel = experienceLevel;
+            return this;
+        }
+
+        public Builder health(float health, float maxHealth) {
+            this.health = health;
+            this.maxHealth = maxHealth;
+            return this;
+        }
+
+        public Builder position(int x, int y, int z) {
+            this.posX = x;
+            this.posY = y;
+            this.posZ = z;
+            return this;
+        }
+
+        public Builder dimension(int dimension) {
+            this.dimension = dimension;
+            return this;
+        }
+
+        public Builder biomeName(String biomeName) {
+            this.biomeName = biomeName;
+            return this;
+        }
+
+        public Builder location(boolean nearStructure, String namedLocation) {
+            this.nearStructure = nearStructure;
+            this.namedLocation = namedLocation;
+            return this;
+        }
+
+        public Builder localDanger(float localDanger) {
+            this.localDanger = localDanger;
+            return this;
+        }
+
+        public Builder worldTime(long worldTime) {
+            this.worldTime = worldTime;
+            return this;
+        }
+
+        public Builder weather(boolean raining, boolean thundering) {
+            this.raining = raining;
+            this.thundering = thundering;
+            return this;
+        }
+
+        public Builder difficultyId(int difficultyId) {
+            this.difficultyId = difficultyId;
+            return this;
+        }
+
+        public Builder spawn(int x, int y, int z) {
+            this.spawnX = x;
+            this.spawnY = y;
+            this.spawnZ = z;
+            return this;
+        }
+
+        public Builder worldFactionStanding(String faction, int net) {
+            this.worldFactionStanding.put(faction, net);
+            return this;
+        }
+
+        public Builder notableItem(String item) {
+            this.notableItems.add(item);
+            return this;
+        }
+
+        public Builder equipment(String slot, String item) {
+            this.equipment.put(slot, item);
+            return this;
+        }
+
+        public Builder inventoryHash(int inventoryHash) {
+            this.inventoryHash = inventoryHash;
+            return this;
+        }
+
+        public Builder nearbyPlayer(String name) {
+            this.nearbyPlayerNames.add(name);
+            return this;
+        }
+
+        public Builder timestamp(long timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
+        public Builder captureNanos(long captureNanos) {
+            this.captureNanos = captureNanos;
+            return this;
+        }
+
+        public ContextSnapshot build() {
+            if (playerUUID == null) {
+                throw new IllegalStateException("Snapshot requires a player");
+            }
+            return new ContextSnapshot(this);
+        }
+    }
+}
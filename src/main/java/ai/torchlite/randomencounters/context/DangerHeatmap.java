@@ -0,0 +1,287 @@
+package ai.torchlite.randomencounters.context;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.config.ConfigHandler;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.storage.MapStorage;
+import net.minecraft.world.storage.WorldSavedData;
+
+import java.util.Arrays;
+
+/**
+ * Per-chunk record of where things go wrong for players, saved with each dimension
+ *
+ * Deaths and encounter outcomes add heat to the chunk they happen in. Heat
+ * halves every {@code dangerHalfLifeMinutes} of world time; decay is applied
+ * lazily when a cell is read or written, so nothing needs to tick. Cells live
+ * in an open-addressed table of primitive arrays keyed by chunk, so a lookup is
+ * a few array reads. Cold cells are dropped when the table fills up and when
+ * the world saves.
+ *
+ * Recorded and read on the server thread (reads happen during
+ * {@link ContextSnapshot#capture}).
+ */
+public class DangerHeatmap extends WorldSavedData {
+
+    public static final String DATA_NAME = RandomEncounters.MODID + "_danger";
+
+    // Heat added per event
+    public static final float MOB_KILLED = 0.25f;
+    public static final float PLAYER_DEATH = 3.0f;
+    public static final float ENCOUNTER_DEFEAT = 2.0f;
+    public static final float ENCOUNTER_FLED = 1.0f;
+    public static final float ENCOUNTER_VICTORY = 0.5f;
+
+    private static final float NEIGHBOR_WEIGHT = 0.25f; // Share of each adjacent chunk's heat counted at a position
+    private static final float DANGER_SCALE = 5.0f; // Heat at which danger reaches ~63%
+    private static final float MIN_HEAT = 0.05f; // Colder cells are dropped
+    private static final int TICKS_PER_MINUTE = 1200;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_CELLS = 1 << 16;
+
+    private long[] keys;
+    private float[] heat;
+    private int[] stamps; // World minute the heat was last decayed to
+    private boolean[] used;
+    private int size;
+    private int lastMinute; // Latest world minute seen, used when pruning on save
+
+    public DangerHeatmap() {
+        this(DATA_NAME);
+    }
+
+    public DangerHeatmap(String name) {
+        super(name);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * The heatmap for a world's dimension, created on first use
+     */
+    public static DangerHeatmap get(World world) {
+        MapStorage storage = world.getPerWorldStorage();
+        DangerHeatmap heatmap = (DangerHeatmap) storage.getOrLoadData(DangerHeatmap.class, DATA_NAME);
+        if (heatmap == null) {
+            heatmap = new DangerHeatmap();
+            storage.setData(DATA_NAME, heatmap);
+        }
+        return heatmap;
+    }
+
+    /**
+     * Add heat at a position
+     */
+    public void record(World world, BlockPos pos, float amount) {
+        record(pos.getX() >> 4, pos.getZ() >> 4, amount, currentMinute(world));
+    }
+
+    void record(int chunkX, int chunkZ, float amount, int now) {
+        lastMinute = Math.max(lastMinute, now);
+        long key = chunkKey(chunkX, chunkZ);
+        int slot = find(key);
+        if (slot < 0) {
+            if ((size + 1) * 2 > keys.length) {
+                makeRoom(now);
+            }
+            slot = insert(key, 0.0f, now);
+        }
+        heat[slot] = decayed(heat[slot], stamps[slot], now) + amount;
+        stamps[slot] = now;
+        markDirty();
+    }
+
+    /**
+     * Danger at a position, 0.0 (nothing has happened here) to 1.0
+     * (includes a share of the surrounding chunks)
+     */
+    public float getDanger(World world, BlockPos pos) {
+        return getDanger(pos.getX() >> 4, pos.getZ() >> 4, currentMinute(world));
+    }
+
+    float getDanger(int chunkX, int chunkZ, int now) {
+        lastMinute = Math.max(lastMinute, now);
+        float total = getHeat(chunkX, chunkZ, now);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if (dx != 0 || dz != 0) {
+                    total += NEIGHBOR_WEIGHT * getHeat(chunkX + dx, chunkZ + dz, now);
+                }
+            }
+        }
+        return total <= 0 ? 0.0f : (float) (1.0 - Math.exp(-total / DANGER_SCALE));
+    }
+
+    /**
+     * Decayed heat of a single chunk
+     */
+    public float getHeat(int chunkX, int chunkZ, int now) {
+        int slot = find(chunkKey(chunkX, chunkZ));
+        return slot < 0 ? 0.0f : decayed(heat[slot], stamps[slot], now);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void readFromNBT(NBTTagCompound nbt) {
+        int[] chunkX = nbt.getIntArray("chunkX");
+        int[] chunkZ = nbt.getIntArray("chunkZ");
+        int[] heatBits = nbt.getIntArray("heat");
+        int[] stamp = nbt.getIntArray("stamp");
+        int count = Math.min(Math.min(chunkX.length, chunkZ.length), Math.min(heatBits.length, stamp.length));
+
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < count * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+        for (int i = 0; i < count; i++) {
+            insert(chunkKey(chunkX[i], chunkZ[i]), Float.intBitsToFloat(heatBits[i]), stamp[i]);
+            lastMinute = Math.max(lastMinute, stamp[i]);
+        }
+    }
+
+    @Override
+    public NBTTagCompound writeToNBT(NBTTagCompound nbt) {
+        // Only save chunks that still matter
+        rebuild(keys.length, lastMinute);
+
+        int[] chunkX = new int[size];
+        int[] chunkZ = new int[size];
+        int[] heatBits = new int[size];
+        int[] stamp = new int[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                chunkX[count] = (int) keys[slot];
+                chunkZ[count] = (int) (keys[slot] >> 32);
+                heatBits[count] = Float.floatToIntBits(heat[slot]);
+                stamp[count] = stamps[slot];
+                count++;
+            }
+        }
+        nbt.setIntArray("chunkX", chunkX);
+        nbt.setIntArray("chunkZ", chunkZ);
+        nbt.setIntArray("heat", heatBits);
+        nbt.setIntArray("stamp", stamp);
+        return nbt;
+    }
+
+    private void makeRoom(int now) {
+        rebuild(keys.length, now);
+        if ((size + 1) * 2 > keys.length) {
+            if (keys.length >= MAX_CELLS * 2) {
+                evictColdest(now);
+            } else {
+                rebuild(keys.length * 2, now);
+            }
+        }
+    }
+
+    /**
+     * Rehash into a table of the given capacity, dropping cells that have cooled off
+     */
+    private void rebuild(int capacity, int now) {
+        long[] oldKeys = keys;
+        float[] oldHeat = heat;
+        int[] oldStamps = stamps;
+        boolean[] oldUsed = used;
+
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (!oldUsed[slot]) {
+                continue;
+            }
+            float value = decayed(oldHeat[slot], oldStamps[slot], now);
+            if (value >= MIN_HEAT) {
+                insert(oldKeys[slot], value, now);
+            }
+        }
+    }
+
+    /**
+     * Table is at its limit: drop the coldest quarter of the cells
+     */
+    private void evictColdest(int now) {
+        float[] values = new float[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                values[count++] = decayed(heat[slot], stamps[slot], now);
+            }
+        }
+        Arrays.sort(values);
+        float cutoff = values[count / 4];
+        int keep = count - count / 4;
+
+        long[] oldKeys = keys;
+        float[] oldHeat = heat;
+        int[] oldStamps = stamps;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldUsed[slot]) {
+                float value = decayed(oldHeat[slot], oldStamps[slot], now);
+                if (value > cutoff || (value == cutoff && size < keep)) {
+                    insert(oldKeys[slot], value, now);
+                }
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        heat = new float[capacity];
+        stamps = new int[capacity];
+        used = new boolean[capacity];
+        size = 0;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int insert(long key, float value, int stamp) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        heat[slot] = value;
+        stamps[slot] = stamp;
+        size++;
+        return slot;
+    }
+
+    private static float decayed(float value, int stamp, int now) {
+        int elapsed = now - stamp;
+        if (elapsed <= 0 || value == 0.0f) {
+            return value;
+        }
+        return (float) (value * Math.pow(0.5, elapsed / (double) ConfigHandler.dangerHalfLifeMinutes));
+    }
+
+    private static int currentMinute(World world) {
+        return (int) (world.getTotalWorldTime() / TICKS_PER_MINUTE);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX & 0xFFFFFFFFL) | (((long) chunkZ & 0xFFFFFFFFL) << 32);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
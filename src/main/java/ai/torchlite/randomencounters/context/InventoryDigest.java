@@ -0,0 +1,181 @@
+package ai.torchlite.randomencounters.context;
+
+import net.minecraft.entity.player.InventoryPlayer;
+import net.minecraft.inventory.Container;
+import net.minecraft.inventory.IContainerListener;
+import net.minecraft.inventory.IInventory;
+import net.minecraft.inventory.Slot;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.NonNullList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed summary of a player's inventory
+ *
+ * Listens to the player's inventory container, so a slot's description is
+ * only rebuilt when that slot changes (the container reports changes once per
+ * tick). Context capture reads the notable items, equipment and content hash
+ * from here instead of walking the live inventory.
+ *
+ * Slot indices are {@link InventoryPlayer} indices: 0-35 main inventory (0-8
+ * hotbar), 36-39 armor (feet, legs, chest, head), 40 offhand.
+ */
+public class InventoryDigest implements IContainerListener {
+
+    static final int MAX_NOTABLE_ITEMS = 10;
+    private static final int NOTABLE_ITEM_RARITY_THRESHOLD = 2; // Uncommon and above
+    private static final int MAIN_SIZE = 36;
+    private static final int HOTBAR_SIZE = 9;
+    private static final int ARMOR_START = 36;
+    private static final int OFFHAND_SLOT = 40;
+    private static final int SIZE = 41;
+    private static final String[] ARMOR_SLOTS = {"feet", "legs", "chest", "head"};
+
+    private final InventoryPlayer inventory;
+    private final String[] descriptions = new String[SIZE]; // null for empty slots
+    private final boolean[] notable = new boolean[SIZE];
+    private final int[] slotHashes = new int[SIZE];
+    private int hash;
+    private int version;
+    private List<String> notableItems; // Rebuilt lazily after a change
+
+    InventoryDigest(InventoryPlayer inventory) {
+        this.inventory = inventory;
+    }
+
+    /**
+     * Build a digest by reading every slot (for players whose container isn't being listened to)
+     */
+    static InventoryDigest scan(InventoryPlayer inventory) {
+        InventoryDigest digest = new InventoryDigest(inventory);
+        digest.rescan();
+        return digest;
+    }
+
+    void rescan() {
+        int size = Math.min(SIZE, inventory.getSizeInventory());
+        for (int slot = 0; slot < size; slot++) {
+            update(slot, inventory.getStackInSlot(slot));
+        }
+    }
+
+    /**
+     * Refresh one slot's description and the content hash
+     */
+    void update(int slot, ItemStack stack) {
+        if (slot < 0 || slot >= SIZE) {
+            return;
+        }
+
+        String description = stack == null || stack.isEmpty() ? null : describeItem(stack);
+        boolean isNotable = description != null && isNotableItem(stack);
+        int slotHash = description == null ? 0 : (31 * (slot + 1) + description.hashCode()) * (isNotable ? 17 : 1);
+        if (slotHash == slotHashes[slot] && (description == null ? descriptions[slot] == null : description.equals(descriptions[slot]))) {
+            return;
+        }
+
+        hash += slotHash - slotHashes[slot];
+        slotHashes[slot] = slotHash;
+        descriptions[slot] = description;
+        notable[slot] = isNotable;
+        notableItems = null;
+        version++;
+    }
+
+    // IContainerListener: the container reports its full contents once when the listener is added,
+    // then each slot that changed
+
+    @Override
+    public void sendAllContents(Container container, NonNullList<ItemStack> items) {
+        rescan();
+    }
+
+    @Override
+    public void sendSlotContents(Container container, int slotIndex, ItemStack stack) {
+        if (slotIndex < 0 || slotIndex >= container.inventorySlots.size()) {
+            return;
+        }
+        Slot slot = container.inventorySlots.get(slotIndex);
+        if (slot.inventory == inventory) {
+            update(slot.getSlotIndex(), stack);
+        }
+    }
+
+    @Override
+    public void sendWindowProperty(Container container, int property, int value) {
+    }
+
+    @Override
+    public void sendAllWindowProperties(Container container, IInventory inventory) {
+    }
+
+    /**
+     * Rare, enchanted or named items in the main inventory (in slot order, at most {@link #MAX_NOTABLE_ITEMS})
+     */
+    public List<String> getNotableItems() {
+        if (notableItems == null) {
+            List<String> items = new ArrayList<>();
+            for (int slot = 0; slot < MAIN_SIZE && items.size() < MAX_NOTABLE_ITEMS; slot++) {
+                if (notable[slot]) {
+                    items.add(descriptions[slot]);
+                }
+            }
+            notableItems = Collections.unmodifiableList(items);
+        }
+        return notableItems;
+    }
+
+    /**
+     * Worn armor and held items by slot name
+     * @param selectedHotbarSlot The player's selected hotbar slot (the main hand)
+     */
+    public Map<String, String> getEquipment(int selectedHotbarSlot) {
+        Map<String, String> equipment = new HashMap<>();
+        for (int i = 0; i < ARMOR_SLOTS.length; i++) {
+            if (descriptions[ARMOR_START + i] != null) {
+                equipment.put(ARMOR_SLOTS[i], descriptions[ARMOR_START + i]);
+            }
+        }
+        if (selectedHotbarSlot >= 0 && selectedHotbarSlot < HOTBAR_SIZE && descriptions[selectedHotbarSlot] != null) {
+            equipment.put("mainhand", descriptions[selectedHotbarSlot]);
+        }
+        if (descriptions[OFFHAND_SLOT] != null) {
+            equipment.put("offhand", descriptions[OFFHAND_SLOT]);
+        }
+        return equipment;
+    }
+
+    /**
+     * Hash of the inventory's contents; equal hashes mean (almost certainly) the same items in the same slots
+     */
+    public int getHash() {
+        return hash;
+    }
+
+    /**
+     * Number of slot changes seen so far
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Check if item is notable (rare, enchanted, or named)
+     */
+    static boolean isNotableItem(ItemStack stack) {
+        return stack.getRarity().ordinal() >= NOTABLE_ITEM_RARITY_THRESHOLD ||
+               stack.isItemEnchanted() ||
+               stack.hasDisplayName();
+    }
+
+    static String describeItem(ItemStack stack) {
+        String name = stack.getDisplayName();
+        int count = stack.getCount();
+        return count > 1 ? name + " x" + count : name;
+    }
+}
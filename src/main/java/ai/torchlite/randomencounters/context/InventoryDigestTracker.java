@@ -0,0 +1,92 @@
+package ai.torchlite.randomencounters.context;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps an {@link InventoryDigest} attached to each online player's inventory container
+ *
+ * The digest is attached on login and re-attached on respawn (respawning
+ * creates a new player entity with a new container). Server thread only.
+ */
+public class InventoryDigestTracker {
+
+    private static InventoryDigestTracker instance;
+
+    private final Map<UUID, Tracked> digests = new HashMap<>();
+
+    public static synchronized InventoryDigestTracker getInstance() {
+        if (instance == null) {
+            instance = new InventoryDigestTracker();
+        }
+        return instance;
+    }
+
+    @SubscribeEvent
+    public void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent event) {
+        attach(event.player);
+    }
+
+    @SubscribeEvent
+    public void onPlayerRespawn(PlayerEvent.PlayerRespawnEvent event) {
+        attach(event.player);
+    }
+
+    @SubscribeEvent
+    public void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent event) {
+        Tracked tracked = digests.remove(event.player.getUniqueID());
+        if (tracked != null) {
+            tracked.player.inventoryContainer.removeListener(tracked.digest);
+        }
+    }
+
+    /**
+     * The player's digest; players that aren't tracked (e.g. fake players) get a one-off scan
+     */
+    public InventoryDigest get(EntityPlayer player) {
+        Tracked tracked = digests.get(player.getUniqueID());
+        if (tracked != null && tracked.player == player) {
+            return tracked.digest;
+        }
+        return InventoryDigest.scan(player.inventory);
+    }
+
+    private void attach(EntityPlayer player) {
+        if (player.world.isRemote) {
+            return;
+        }
+
+        Tracked previous = digests.remove(player.getUniqueID());
+        if (previous != null && previous.player == player) {
+            digests.put(player.getUniqueID(), previous); // Already listening to this container
+            return;
+        }
+        if (previous != null) {
+            previous.player.inventoryContainer.removeListener(previous.digest);
+        }
+
+        // Adding the listener makes the container send its full contents, which fills the digest
+        InventoryDigest digest = new InventoryDigest(player.inventory);
+        player.inventoryContainer.addListener(digest);
+        digests.put(player.getUniqueID(), new Tracked(player, digest));
+    }
+
+    public void clear() {
+        digests.clear();
+    }
+
+    private static final class Tracked {
+        final EntityPlayer player;
+        final InventoryDigest digest;
+
+        Tracked(EntityPlayer player, InventoryDigest digest) {
+            this.player = player;
+            this.digest = digest;
+        }
+    }
+}
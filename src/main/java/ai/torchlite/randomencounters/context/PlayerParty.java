@@ -0,0 +1,72 @@
+package ai.torchlite.randomencounters.context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A group of players standing close together, as found by {@link PlayerSpatialIndex}
+ *
+ * The first member is the leader (the player the group was found from).
+ */
+public final class PlayerParty {
+
+    private final List<PlayerSpatialIndex.TrackedPlayer> members;
+
+    PlayerParty(List<PlayerSpatialIndex.TrackedPlayer> members) {
+        this.members = Collections.unmodifiableList(new ArrayList<>(members));
+    }
+
+    public List<PlayerSpatialIndex.TrackedPlayer> getMembers() { return members; }
+    public PlayerSpatialIndex.TrackedPlayer getLeader() { return members.get(0); }
+    public int size() { return members.size(); }
+
+    public boolean isSolo() {
+        return members.size() == 1;
+    }
+
+    public boolean contains(UUID uuid) {
+        for (PlayerSpatialIndex.TrackedPlayer member : members) {
+            if (member.getUUID().equals(uuid)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<UUID> getMemberIds() {
+        List<UUID> ids = new ArrayList<>(members.size());
+        for (PlayerSpatialIndex.TrackedPlayer member : members) {
+            ids.add(member.getUUID());
+        }
+        return ids;
+    }
+
+    public List<String> getMemberNames() {
+        List<String> names = new ArrayList<>(members.size());
+        for (PlayerSpatialIndex.TrackedPlayer member : members) {
+            names.add(member.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Center of the group (x, z)
+     */
+    public double getCenterX() {
+        double sum = 0;
+        for (PlayerSpatialIndex.TrackedPlayer member : members) {
+            sum += member.getX();
+        }
+        return sum / members.size();
+    }
+
+    public double getCenterZ() {
+        double sum = 0;
+        for (PlayerSpatialIndex.TrackedPlayer member : members) {
+            sum += member.getZ();
+        }
+        return sum / members.size();
+    }
+}
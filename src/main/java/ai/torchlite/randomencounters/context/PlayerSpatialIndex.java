@@ -0,0 +1,318 @@
+package ai.torchlite.randomencounters.context;
+
+import ai.torchlite.randomencounters.metrics.LatencyHistogram;
+import ai.torchlite.randomencounters.metrics.PipelineMetrics;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Chunk-bucketed index of online players for radius and party queries
+ *
+ * Players are kept in per-dimension buckets keyed by chunk. Positions are
+ * refreshed from the player tick once a player has moved a block, and the
+ * bucket only changes when they cross a chunk border, so a radius query only
+ * looks at players in the chunks the radius covers instead of every player on
+ * the server.
+ *
+ * Updated and queried on the server thread.
+ */
+public class PlayerSpatialIndex {
+
+    private static final int CHUNK_SHIFT = 4;
+    private static final double MIN_MOVE_SQ = 1.0; // Ignore movement under a block
+    private static final LatencyHistogram TICK_COST = PipelineMetrics.tickCost("player_spatial_index");
+
+    private static PlayerSpatialIndex instance;
+
+    private final Map<UUID, TrackedPlayer> players = new HashMap<>();
+    private final Map<Integer, Map<Long, List<TrackedPlayer>>> buckets = new HashMap<>(); // dimension -> chunk -> players
+
+    public static synchronized PlayerSpatialIndex getInstance() {
+        if (instance == null) {
+            instance = new PlayerSpatialIndex();
+        }
+        return instance;
+    }
+
+    @SubscribeEvent
+    public void onPlayerTick(TickEvent.PlayerTickEvent event) {
+        if (event.phase == TickEvent.Phase.END && !event.player.world.isRemote) {
+            long start = System.nanoTime();
+            update(event.player);
+            TICK_COST.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent event) {
+        update(event.player);
+    }
+
+    @SubscribeEvent
+    public void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent event) {
+        remove(event.player.getUniqueID());
+    }
+
+    @SubscribeEvent
+    public void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
+        update(event.player);
+    }
+
+    /**
+     * Refresh a player's position from the entity
+     */
+    public void update(EntityPlayer player) {
+        update(player.getUniqueID(), player.getName(), player.dimension, player.posX, player.posY, player.posZ);
+    }
+
+    /**
+     * Refresh a player's position. Cheap when the player hasn't moved.
+     */
+    public void update(UUID uuid, String name, int dimension, double x, double y, double z) {
+        TrackedPlayer tracked = players.get(uuid);
+        if (tracked == null) {
+            tracked = new TrackedPlayer(uuid, name);
+            tracked.setPosition(dimension, x, y, z);
+            players.put(uuid, tracked);
+            bucket(dimension, tracked.chunkX, tracked.chunkZ, true).add(tracked);
+            return;
+        }
+
+        if (tracked.dimension == dimension) {
+            double dx = x - tracked.x;
+            double dy = y - tracked.y;
+            double dz = z - tracked.z;
+            if (dx * dx + dy * dy + dz * dz < MIN_MOVE_SQ) {
+                return;
+            }
+        }
+
+        int oldDimension = tracked.dimension;
+        int oldChunkX = tracked.chunkX;
+        int oldChunkZ = tracked.chunkZ;
+        tracked.setPosition(dimension, x, y, z);
+
+        if (oldDimension != dimension || oldChunkX != tracked.chunkX || oldChunkZ != tracked.chunkZ) {
+            removeFromBucket(tracked, oldDimension, oldChunkX, oldChunkZ);
+            bucket(dimension, tracked.chunkX, tracked.chunkZ, true).add(tracked);
+        }
+    }
+
+    /**
+     * Stop tracking a player (logout)
+     */
+    public void remove(UUID uuid) {
+        TrackedPlayer tracked = players.remove(uuid);
+        if (tracked != null) {
+            removeFromBucket(tracked, tracked.dimension, tracked.chunkX, tracked.chunkZ);
+        }
+    }
+
+    public void clear() {
+        players.clear();
+        buckets.clear();
+    }
+
+    public TrackedPlayer get(UUID uuid) {
+        return players.get(uuid);
+    }
+
+    public int size() {
+        return players.size();
+    }
+
+    /**
+     * Players within a radius of a point (spherical distance)
+     */
+    public List<TrackedPlayer> findNearby(int dimension, double x, double y, double z, double radius) {
+        List<TrackedPlayer> result = new ArrayList<>();
+        Map<Long, List<TrackedPlayer>> chunks = buckets.get(dimension);
+        if (chunks == null) {
+            return result;
+        }
+
+        double radiusSq = radius * radius;
+        int minChunkX = (int) Math.floor(x - radius) >> CHUNK_SHIFT;
+        int maxChunkX = (int) Math.floor(x + radius) >> CHUNK_SHIFT;
+        int minChunkZ = (int) Math.floor(z - radius) >> CHUNK_SHIFT;
+        int maxChunkZ = (int) Math.floor(z + radius) >> CHUNK_SHIFT;
+
+        for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+            for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+                List<TrackedPlayer> bucket = chunks.get(chunkKey(cx, cz));
+                if (bucket == null) {
+                    continue;
+                }
+                for (TrackedPlayer tracked : bucket) {
+                    if (tracked.distanceSq(x, y, z) <= radiusSq) {
+                        result.add(tracked);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Other players within a radius of a tracked player
+     */
+    public List<TrackedPlayer> findNearby(UUID uuid, double radius) {
+        TrackedPlayer center = players.get(uuid);
+        if (center == null) {
+            return Collections.emptyList();
+        }
+        List<TrackedPlayer> nearby = findNearby(center.dimension, center.x, center.y, center.z, radius);
+        nearby.remove(center);
+        return nearby;
+    }
+
+    /**
+     * The group a player belongs to: everyone reachable through chains of players within the radius.
+     * The given player is the party leader. Returns null if the player isn't tracked.
+     */
+    public PlayerParty findParty(UUID uuid, double radius) {
+        TrackedPlayer leader = players.get(uuid);
+        if (leader == null) {
+            return null;
+        }
+        return new PlayerParty(collectGroup(leader, radius, new HashSet<>()));
+    }
+
+    /**
+     * Split all online players into parties of at least minSize members
+     */
+    public List<PlayerParty> findParties(double radius, int minSize) {
+        List<PlayerParty> parties = new ArrayList<>();
+        Set<TrackedPlayer> visited = new HashSet<>();
+        for (TrackedPlayer tracked : players.values()) {
+            if (visited.contains(tracked)) {
+                continue;
+            }
+            List<TrackedPlayer> group = collectGroup(tracked, radius, visited);
+            if (group.size() >= minSize) {
+                parties.add(new PlayerParty(group));
+            }
+        }
+        return parties;
+    }
+
+    /**
+     * Breadth-first walk over players linked by the radius (single-linkage grouping)
+     */
+    private List<TrackedPlayer> collectGroup(TrackedPlayer start, double radius, Set<TrackedPlayer> visited) {
+        List<TrackedPlayer> group = new ArrayList<>();
+        Deque<TrackedPlayer> queue = new ArrayDeque<>();
+        visited.add(start);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            TrackedPlayer current = queue.poll();
+            group.add(current);
+            for (TrackedPlayer neighbor : findNearby(current.dimension, current.x, current.y, current.z, radius)) {
+                if (visited.add(neighbor)) {
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return group;
+    }
+
+    public Collection<TrackedPlayer> getPlayers() {
+        return Collections.unmodifiableCollection(players.values());
+    }
+
+    private List<TrackedPlayer> bucket(int dimension, int chunkX, int chunkZ, boolean create) {
+        Map<Long, List<TrackedPlayer>> chunks = buckets.get(dimension);
+        if (chunks == null) {
+            if (!create) {
+                return null;
+            }
+            chunks = new HashMap<>();
+            buckets.put(dimension, chunks);
+        }
+        long key = chunkKey(chunkX, chunkZ);
+        List<TrackedPlayer> bucket = chunks.get(key);
+        if (bucket == null && create) {
+            bucket = new ArrayList<>(2);
+            chunks.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    private void removeFromBucket(TrackedPlayer tracked, int dimension, int chunkX, int chunkZ) {
+        List<TrackedPlayer> bucket = bucket(dimension, chunkX, chunkZ, false);
+        if (bucket == null) {
+            return;
+        }
+        bucket.remove(tracked);
+        if (bucket.isEmpty()) {
+            Map<Long, List<TrackedPlayer>> chunks = buckets.get(dimension);
+            chunks.remove(chunkKey(chunkX, chunkZ));
+            if (chunks.isEmpty()) {
+                buckets.remove(dimension);
+            }
+        }
+    }
+
+    /**
+     * Same packing as ChunkPos.asLong
+     */
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX & 0xFFFFFFFFL) | (((long) chunkZ & 0xFFFFFFFFL) << 32);
+    }
+
+    /**
+     * A player's last indexed position
+     */
+    public static final class TrackedPlayer {
+        private final UUID uuid;
+        private final String name;
+        private int dimension;
+        private double x;
+        private double y;
+        private double z;
+        private int chunkX;
+        private int chunkZ;
+
+        TrackedPlayer(UUID uuid, String name) {
+            this.uuid = uuid;
+            this.name = name;
+        }
+
+        void setPosition(int dimension, double x, double y, double z) {
+            this.dimension = dimension;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.chunkX = (int) Math.floor(x) >> CHUNK_SHIFT;
+            this.chunkZ = (int) Math.floor(z) >> CHUNK_SHIFT;
+        }
+
+        double distanceSq(double px, double py, double pz) {
+            double dx = px - x;
+            double dy = py - y;
+            double dz = pz - z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        public UUID getUUID() { return uuid; }
+        public String getName() { return name; }
+        public int getDimension() { return dimension; }
+        public double getX() { return x; }
+        public double getY() { return y; }
+        public double getZ() { return z; }
+    }
+}
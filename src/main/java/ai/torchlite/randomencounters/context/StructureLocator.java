@@ -0,0 +1,252 @@
+package ai.torchlite.randomencounters.context;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.config.ConfigHandler;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.gen.ChunkProviderServer;
+import net.minecraft.world.gen.structure.MapGenStructureData;
+import net.minecraft.world.storage.WorldSavedData;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the structure (if any) a player is in or near
+ *
+ * Vanilla and modded structures that are generated through a MapGenStructure
+ * are found by name (see {@code structureNames} in the config): the chunk
+ * provider says whether the player is inside one, and nearness is read from
+ * the structure starts saved for the chunks around the player. Only starts that
+ * already exist are looked at, so a lookup never searches outward or triggers
+ * generation. Structures from mods that generate them some other way can be
+ * found by registering a {@link StructureDetector}.
+ *
+ * Results are cached per chunk in a bounded LRU with a TTL, so context builds
+ * for a player who stays in one area only look structures up once. Called on
+ * the server thread (during {@link ContextSnapshot#capture}).
+ */
+public class StructureLocator {
+
+    private static final int NEAR_STRUCTURE_RADIUS = 64;
+
+    // How far a structure can extend from its start chunk (villages are the widest)
+    private static final int MAX_STRUCTURE_REACH = 96;
+    private static final int START_SEARCH_CHUNKS = (NEAR_STRUCTURE_RADIUS + MAX_STRUCTURE_REACH) >> 4;
+
+    private static StructureLocator instance;
+
+    private final List<StructureDetector> detectors = new ArrayList<>();
+    private final Map<ChunkKey, CachedLocation> cache;
+    private long hits;
+    private long misses;
+
+    private StructureLocator() {
+        this.cache = new LinkedHashMap<ChunkKey, CachedLocation>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ChunkKey, CachedLocation> eldest) {
+                return size() > ConfigHandler.structureCacheSize;
+            }
+        };
+    }
+
+    public static synchronized StructureLocator getInstance() {
+        if (instance == null) {
+            instance = new StructureLocator();
+        }
+        return instance;
+    }
+
+    /**
+     * Register a detector for structures the chunk provider doesn't know about.
+     * Detectors run in registration order after the chunk provider lookup finds nothing.
+     */
+    public void registerDetector(StructureDetector detector) {
+        detectors.add(detector);
+        cache.clear();
+    }
+
+    /**
+     * The structure at or near a position (cached per chunk)
+     */
+    public Location locate(World world, BlockPos pos) {
+        ChunkKey key = new ChunkKey(world.provider.getDimension(), pos.getX() >> 4, pos.getZ() >> 4);
+        long now = System.currentTimeMillis();
+
+        CachedLocation cached = cache.get(key);
+        if (cached != null && now - cached.time < ConfigHandler.structureCacheTtlSeconds * 1000L) {
+            hits++;
+            return cached.location;
+        }
+
+        misses++;
+        Location location = lookup(world, pos);
+        cache.put(key, new CachedLocation(location, now));
+        return location;
+    }
+
+    private Location lookup(World world, BlockPos pos) {
+        if (world instanceof WorldServer) {
+            ChunkProviderServer provider = ((WorldServer) world).getChunkProvider();
+            Location nearest = null;
+            double nearestDistSq = (double) NEAR_STRUCTURE_RADIUS * NEAR_STRUCTURE_RADIUS;
+
+            for (String entry : ConfigHandler.structureNames) {
+                int split = entry.indexOf('=');
+                String structure = (split >= 0 ? entry.substring(0, split) : entry).trim();
+                String description = split >= 0 ? entry.substring(split + 1).trim() : structure;
+                if (structure.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    if (provider.isInsideStructure(world, structure, pos)) {
+                        return new Location(true, description);
+                    }
+                    double distSq = nearestStartDistSq(world, structure, pos);
+                    if (distSq <= nearestDistSq) {
+                        nearest = new Location(true, description);
+                        nearestDistSq = distSq;
+                    }
+                } catch (Exception e) {
+                    // Some modded generators throw for names they don't know
+                    RandomEncounters.LOGGER.debug("Structure lookup failed for " + structure + ": " + e.getMessage());
+                }
+            }
+
+            if (nearest != null) {
+                return nearest;
+            }
+        }
+
+        for (StructureDetector detector : detectors) {
+            try {
+                String name = detector.detect(world, pos);
+                if (name != null) {
+                    return new Location(true, name);
+                }
+            } catch (Exception e) {
+                RandomEncounters.LOGGER.error("Structure detector failed", e);
+            }
+        }
+
+        return Location.NONE;
+    }
+
+    /**
+     * Horizontal distance squared from pos to the closest saved start of a structure, checking
+     * only start chunks near enough to reach the radius
+     */
+    private static double nearestStartDistSq(World world, String structure, BlockPos pos) {
+        WorldSavedData data = world.getPerWorldStorage().getOrLoadData(MapGenStructureData.class, structure);
+        if (!(data instanceof MapGenStructureData)) {
+            return Double.MAX_VALUE;
+        }
+        NBTTagCompound starts = ((MapGenStructureData) data).getTagCompound();
+        int chunkX = pos.getX() >> 4;
+        int chunkZ = pos.getZ() >> 4;
+        double nearest = Double.MAX_VALUE;
+
+        for (int x = chunkX - START_SEARCH_CHUNKS; x <= chunkX + START_SEARCH_CHUNKS; x++) {
+            for (int z = chunkZ - START_SEARCH_CHUNKS; z <= chunkZ + START_SEARCH_CHUNKS; z++) {
+                String key = MapGenStructureData.formatChunkCoords(x, z);
+                if (!starts.hasKey(key)) {
+                    continue;
+                }
+                // Bounding box as minX, minY, minZ, maxX, maxY, maxZ; failed starts have none
+                int[] box = starts.getCompoundTag(key).getIntArray("BB");
+                if (box.length < 6) {
+                    continue;
+                }
+                double dx = Math.max(0, Math.max(box[0] - pos.getX(), pos.getX() - box[3]));
+                double dz = Math.max(0, Math.max(box[2] - pos.getZ(), pos.getZ() - box[5]));
+                nearest = Math.min(nearest, dx * dx + dz * dz);
+            }
+        }
+        return nearest;
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Hook for mods whose structures aren't known to the chunk provider
+     */
+    public interface StructureDetector {
+        /**
+         * @return A short description of the structure at or near this position (e.g. "a ruined watchtower"), or null
+         */
+        String detect(World world, BlockPos pos);
+    }
+
+    /**
+     * Result of a structure lookup
+     */
+    public static final class Location {
+        public static final Location NONE = new Location(false, null);
+
+        private final boolean nearStructure;
+        private final String name;
+
+        Location(boolean nearStructure, String name) {
+            this.nearStructure = nearStructure;
+            this.name = name;
+        }
+
+        public boolean isNearStructure() { return nearStructure; }
+        public String getName() { return name; }
+    }
+
+    private static final class CachedLocation {
+        final Location location;
+        final long time;
+
+        CachedLocation(Location location, long time) {
+            this.location = location;
+            this.time = time;
+        }
+    }
+
+    private static final class ChunkKey {
+        final int dimension;
+        final int chunkX;
+        final int chunkZ;
+
+        ChunkKey(int dimension, int chunkX, int chunkZ) {
+            this.dimension = dimension;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ChunkKey)) {
+                return false;
+            }
+            ChunkKey other = (ChunkKey) o;
+            return dimension == other.dimension && chunkX == other.chunkX && chunkZ == other.chunkZ;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * dimension + chunkX) * 31 + chunkZ;
+        }
+    }
+}
@@ -77,6 +77,11 @@ public class EncounterData {
         public boolean isHostile() { return hostile; }
         public float getHealthModifier() { return healthModifier; }
         public float getDamageModifier() { return damageModifier; }
+
+        public void setEntityType(String entityType) { this.entityType = entityType; }
+        public void setCount(int count) { this.count = count; }
+        public void setHealthModifier(float healthModifier) { this.healthModifier = healthModifier; }
+        public void setDamageModifier(float damageModifier) { this.damageModifier = damageModifier; }
     }
 
     public static class DialogueOption {
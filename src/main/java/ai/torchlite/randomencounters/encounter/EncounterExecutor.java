@@ -1,18 +1,24 @@
 package ai.torchlite.randomencounters.encounter;
 
 import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.ai.AIStorytellingEngine;
+import ai.torchlite.randomencounters.metrics.PipelineMetrics;
 import ai.torchlite.randomencounters.story.StorytellingResponse;
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.text.TextComponentString;
 import net.minecraft.util.text.TextFormatting;
 import net.minecraft.world.World;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -21,21 +27,23 @@ import java.util.UUID;
 public class EncounterExecutor {
 
     private final EncounterSpawner spawner;
-    private final Gson gson;
 
     // Active encounters by player UUID
     private final Map<UUID, ActiveEncounter> activeEncounters;
 
     public EncounterExecutor() {
-        this.spawner = new EncounterSpawner();
-        this.gson = new Gson();
+        this(new EncounterSpawner());
+    }
+
+    public EncounterExecutor(EncounterSpawner spawner) {
+        this.spawner = spawner;
         this.activeEncounters = new HashMap<>();
     }
 
     /**
      * Execute an encounter from an AI storytelling response
      *
-     * @param response The AI response containing encounter JSON
+     * @param response The AI response containing the encounter
      * @param player The player experiencing the encounter
      * @param world The world to spawn in
      * @return true if encounter was successfully executed
@@ -46,6 +54,12 @@ public class EncounterExecutor {
             return false;
         }
 
+        // The player died or logged out while the encounter was generating
+        if (!isLive(player, world)) {
+            RandomEncounters.LOGGER.warn(player.getName() + " left before the encounter was ready");
+            return false;
+        }
+
         // Check if player already has an active encounter
         UUID playerUUID = player.getUniqueID();
         if (activeEncounters.containsKey(playerUUID)) {
@@ -55,21 +69,11 @@ public class EncounterExecutor {
         }
 
         try {
-            // Parse encounter JSON from response
-            String encounterJson = response.getEncounterJson();
-            if (encounterJson == null || encounterJson.isEmpty()) {
-                RandomEncounters.LOGGER.error("Encounter JSON is null or empty");
-                player.sendMessage(new TextComponentString(TextFormatting.RED +
-                    "Failed to execute encounter: No encounter data"));
-                return false;
-            }
-
-            EncounterData encounter = gson.fromJson(encounterJson, EncounterData.class);
-
+            EncounterData encounter = response.getEncounter();
             if (encounter == null) {
-                RandomEncounters.LOGGER.error("Failed to parse encounter JSON");
+                RandomEncounters.LOGGER.error("Response has no encounter");
                 player.sendMessage(new TextComponentString(TextFormatting.RED +
-                    "Failed to execute encounter: Invalid encounter data"));
+                    "Failed to execute encounter: No encounter data"));
                 return false;
             }
 
@@ -77,7 +81,9 @@ public class EncounterExecutor {
             displayEncounterNarrative(encounter, player);
 
             // Spawn entities
+            long spawnStart = System.nanoTime();
             List<Entity> entities = spawner.spawnEncounter(encounter, player, world);
+            PipelineMetrics.SPAWN.recordNanos(System.nanoTime() - spawnStart);
 
             if (entities.isEmpty()) {
                 RandomEncounters.LOGGER.warn("No entities were spawned for encounter");
@@ -94,11 +100,6 @@ public class EncounterExecutor {
 
             return true;
 
-        } catch (JsonSyntaxException e) {
-            RandomEncounters.LOGGER.error("Failed to parse encounter JSON", e);
-            player.sendMessage(new TextComponentString(TextFormatting.RED +
-                "Failed to execute encounter: Invalid JSON format"));
-            return false;
         } catch (Exception e) {
             RandomEncounters.LOGGER.error("Failed to execute encounter", e);
             player.sendMessage(new TextComponentString(TextFormatting.RED +
@@ -107,6 +108,100 @@ public class EncounterExecutor {
         }
     }
 
+    /**
+     * Execute one encounter shared by a party
+     *
+     * The narrative is shown to every member, the entities are spawned near the
+     * leader (the first member) and scaled for the party size, and the same
+     * active encounter is tracked against every member.
+     *
+     * @param response The AI response containing the encounter
+     * @param members The party, leader first
+     * @param world The world to spawn in
+     * @return true if encounter was successfully executed
+     */
+    public boolean executePartyEncounter(StorytellingResponse response, List<EntityPlayer> members, World world) {
+        if (members.size() == 1) {
+            return executeEncounter(response, members.get(0), world);
+        }
+        if (response == null) {
+            RandomEncounters.LOGGER.error("Cannot execute null encounter response");
+            return false;
+        }
+
+        EntityPlayer leader = members.get(0);
+        if (activeEncounters.containsKey(leader.getUniqueID())) {
+            leader.sendMessage(new TextComponentString(TextFormatting.RED +
+                "You already have an active encounter!"));
+            return false;
+        }
+
+        // Members who started another encounter, died or logged out while this one was generating sit
+        // this one out (a logged-out member's logout handler has already run and wouldn't clear it)
+        List<EntityPlayer> party = new ArrayList<>();
+        for (EntityPlayer member : members) {
+            if (!activeEncounters.containsKey(member.getUniqueID()) && isLive(member, world)) {
+                party.add(member);
+            }
+        }
+        if (party.isEmpty() || party.get(0) != leader) {
+            RandomEncounters.LOGGER.warn("Party leader " + leader.getName() + " left before the encounter was ready");
+            return false;
+        }
+
+        try {
+            EncounterData encounter = response.getEncounter();
+            if (encounter == null) {
+                RandomEncounters.LOGGER.error("Response has no encounter");
+                leader.sendMessage(new TextComponentString(TextFormatting.RED +
+                    "Failed to execute encounter: No encounter data"));
+                return false;
+            }
+
+            for (EntityPlayer member : party) {
+                displayEncounterNarrative(encounter, member);
+            }
+
+            long spawnStart = System.nanoTime();
+            List<Entity> entities = spawner.spawnEncounter(encounter, leader, world, party.size());
+            PipelineMetrics.SPAWN.recordNanos(System.nanoTime() - spawnStart);
+
+            if (entities.isEmpty()) {
+                RandomEncounters.LOGGER.warn("No entities were spawned for party encounter");
+                leader.sendMessage(new TextComponentString(TextFormatting.YELLOW +
+                    "Encounter narrative delivered, but no entities spawned"));
+            }
+
+            ActiveEncounter active = new ActiveEncounter(encounter, entities, party, System.currentTimeMillis());
+            for (EntityPlayer member : party) {
+                activeEncounters.put(member.getUniqueID(), active);
+            }
+
+            RandomEncounters.LOGGER.info("Successfully executed party encounter: " + encounter.getTitle() +
+                " for " + party.size() + " players with " + entities.size() + " entities");
+
+            return true;
+
+        } catch (Exception e) {
+            RandomEncounters.LOGGER.error("Failed to execute party encounter", e);
+            leader.sendMessage(new TextComponentString(TextFormatting.RED +
+                "Failed to execute encounter: " + e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Whether this player entity is alive and still the one the server has online for its UUID
+     * (a player who reconnected gets a new entity)
+     */
+    private boolean isLive(EntityPlayer player, World world) {
+        if (player.isDead) {
+            return false;
+        }
+        MinecraftServer server = world.getMinecraftServer();
+        return server == null || server.getPlayerList().getPlayerByUUID(player.getUniqueID()) == player;
+    }
+
     /**
      * Display the encounter narrative to the player
      */
@@ -154,6 +249,13 @@ public class EncounterExecutor {
         return activeEncounters.get(playerUUID);
     }
 
+    /**
+     * Track an encounter whose entities were spawned elsewhere (benchmarks use this to skip spawning)
+     */
+    void trackEncounter(UUID playerUUID, ActiveEncounter encounter) {
+        activeEncounters.put(playerUUID, encounter);
+    }
+
     /**
      * Complete an encounter for a player
      */
@@ -163,15 +265,24 @@ public class EncounterExecutor {
             RandomEncounters.LOGGER.info("Encounter completed for player " + playerUUID +
                 " with outcome: " + outcome);
         }
+
+        // The next request in the same spot must not replay the encounter that just ended
+        AIStorytellingEngine engine = RandomEncounters.getStorytellingEngine();
+        if (engine != null) {
+            engine.forgetContext(playerUUID);
+        }
     }
 
     /**
      * Cancel/clear an encounter for a player
+     * (a party encounter keeps its entities until the last member leaves it)
      */
     public void cancelEncounter(UUID playerUUID) {
         ActiveEncounter encounter = activeEncounters.remove(playerUUID);
         if (encounter != null) {
-            spawner.despawnEncounter(encounter.getSpawnedEntities());
+            if (!activeEncounters.containsValue(encounter)) {
+                spawner.despawnEncounter(encounter.getSpawnedEntities());
+            }
             RandomEncounters.LOGGER.info("Encounter cancelled for player " + playerUUID);
         }
     }
@@ -213,23 +324,52 @@ public class EncounterExecutor {
     public static class ActiveEncounter {
         private final EncounterData encounterData;
         private final List<Entity> spawnedEntities;
-        private final EntityPlayer player;
+        private final List<EntityPlayer> members; // Leader first
         private final long startTime;
         private String outcome;
+        private final Set<String> worldOutcomes = new HashSet<>(); // Outcomes whose world-level effects are applied
 
         public ActiveEncounter(EncounterData encounterData, List<Entity> spawnedEntities,
                              EntityPlayer player, long startTime) {
+            this(encounterData, spawnedEntities, Collections.singletonList(player), startTime);
+        }
+
+        public ActiveEncounter(EncounterData encounterData, List<Entity> spawnedEntities,
+                             List<EntityPlayer> members, long startTime) {
             this.encounterData = encounterData;
             this.spawnedEntities = spawnedEntities;
-            this.player = player;
+            this.members = Collections.unmodifiableList(new ArrayList<>(members));
             this.startTime = startTime;
         }
 
         public EncounterData getEncounterData() { return encounterData; }
         public List<Entity> getSpawnedEntities() { return spawnedEntities; }
-        public EntityPlayer getPlayer() { return player; }
+        public EntityPlayer getPlayer() { return members.get(0); }
+        public List<EntityPlayer> getMembers() { return members; }
+        public boolean isPartyEncounter() { return members.size() > 1; }
+
+        /**
+         * The member with this UUID, or null if they aren't part of the encounter
+         */
+        public EntityPlayer getPlayer(UUID playerUUID) {
+            for (EntityPlayer member : members) {
+                if (member.getUniqueID().equals(playerUUID)) {
+                    return member;
+                }
+            }
+            return null;
+        }
+
         public long getStartTime() { return startTime; }
         public String getOutcome() { return outcome; }
         public void setOutcome(String outcome) { this.outcome = outcome; }
+
+        /**
+         * Whether world-level effects (danger heat, server-wide faction standing) of this outcome
+         * are still to be applied; true only for the first member to finish with it
+         */
+        public boolean claimWorldOutcome(String outcome) {
+            return worldOutcomes.add(outcome.toLowerCase(Locale.ROOT));
+        }
     }
 }
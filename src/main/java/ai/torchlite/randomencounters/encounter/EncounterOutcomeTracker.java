@@ -1,14 +1,23 @@
 package ai.torchlite.randomencounters.encounter;
 
 import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.ai.AIStorytellingEngine;
+import ai.torchlite.randomencounters.context.DangerHeatmap;
 import ai.torchlite.randomencounters.story.EncounterSummary;
+import ai.torchlite.randomencounters.story.FactionRegistry;
+import ai.torchlite.randomencounters.story.FactionReputation;
+import ai.torchlite.randomencounters.story.PlayerStoryState;
+import ai.torchlite.randomencounters.story.StoryStateManager;
+import ai.torchlite.randomencounters.story.WorldFactionState;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.monster.IMob;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraftforge.event.entity.living.LivingDeathEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -17,6 +26,8 @@ import java.util.UUID;
  */
 public class EncounterOutcomeTracker {
 
+    private static final int MAX_FACTION_CHANGE = 20; // Per faction per encounter
+
     private final EncounterExecutor executor;
 
     public EncounterOutcomeTracker(EncounterExecutor executor) {
@@ -31,6 +42,12 @@ public class EncounterOutcomeTracker {
         // Check if this death is related to an active encounter
         Entity deadEntity = event.getEntity();
 
+        // Hostiles killed by players mark the area as dangerous
+        if (deadEntity instanceof IMob && !deadEntity.world.isRemote &&
+            event.getSource().getTrueSource() instanceof EntityPlayer) {
+            DangerHeatmap.get(deadEntity.world).record(deadEntity.world, deadEntity.getPosition(), DangerHeatmap.MOB_KILLED);
+        }
+
         // Find if any player has an active encounter involving this entity
         for (UUID playerUUID : new HashSet<>(getAllActiveEncounterPlayers())) {
             EncounterExecutor.ActiveEncounter encounter = executor.getActiveEncounter(playerUUID);
@@ -50,11 +67,18 @@ public class EncounterOutcomeTracker {
         EntityPlayer player = event.player;
         UUID playerUUID = player.getUniqueID();
 
-        if (executor.hasActiveEncounter(playerUUID)) {
-            // Auto-complete encounter with "fled" outcome on logout
-            executor.completeEncounter(playerUUID, "fled");
+        EncounterExecutor.ActiveEncounter encounter = executor.getActiveEncounter(playerUUID);
+        if (encounter != null) {
+            // Auto-complete encounter with "fled" outcome on logout, while the player is still
+            // in the world so the flight is recorded in the danger heatmap
+            completeEncounterWithOutcome(encounter, playerUUID, "fled");
             RandomEncounters.LOGGER.info("Auto-completed encounter for logging out player: " + player.getName());
         }
+
+        AIStorytellingEngine engine = RandomEncounters.getStorytellingEngine();
+        if (engine != null) {
+            engine.forgetContext(playerUUID);
+        }
     }
 
     /**
@@ -66,6 +90,10 @@ public class EncounterOutcomeTracker {
             EntityPlayer player = (EntityPlayer) event.getEntity();
             UUID playerUUID = player.getUniqueID();
 
+            if (!player.world.isRemote) {
+                DangerHeatmap.get(player.world).record(player.world, player.getPosition(), DangerHeatmap.PLAYER_DEATH);
+            }
+
             if (executor.hasActiveEncounter(playerUUID)) {
                 // Player died during encounter - mark as defeat
                 EncounterExecutor.ActiveEncounter encounter = executor.getActiveEncounter(playerUUID);
@@ -84,10 +112,11 @@ public class EncounterOutcomeTracker {
      * Check if an encounter should be completed based on entity deaths
      */
     private void checkEncounterCompletion(EncounterExecutor.ActiveEncounter encounter, UUID playerUUID) {
-        // Count alive hostile entities
+        // Count alive hostile entities (the entity that just died isn't marked dead until its
+        // death animation ends, but its health is already 0)
         int aliveHostileCount = 0;
         for (Entity entity : encounter.getSpawnedEntities()) {
-            if (entity != null && !entity.isDead) {
+            if (entity != null && entity.isEntityAlive()) {
                 aliveHostileCount++;
             }
         }
@@ -106,16 +135,87 @@ public class EncounterOutcomeTracker {
         encounter.setOutcome(outcome);
         executor.completeEncounter(playerUUID, outcome);
 
-        // Send outcome message to player
-        EntityPlayer player = encounter.getPlayer();
+        // Send outcome message to player (each party member gets their own); world-level
+        // effects apply once per outcome, not once per party member
+        EntityPlayer player = encounter.getPlayer(playerUUID);
         if (player != null) {
+            boolean applyWorld = encounter.claimWorldOutcome(outcome);
             displayOutcome(player, encounter.getEncounterData(), outcome);
+            if (applyWorld) {
+                recordDanger(player, outcome);
+            }
+            applyFactionChanges(player, encounter.getEncounterData(), outcome, applyWorld);
         }
 
         RandomEncounters.LOGGER.info("Encounter completed with outcome: " + outcome +
             " for player " + playerUUID);
     }
 
+    /**
+     * Record how the encounter went where the player finished it
+     */
+    private void recordDanger(EntityPlayer player, String outcome) {
+        if (player.world == null || player.world.isRemote) {
+            return;
+        }
+
+        float heat;
+        switch (outcome.toLowerCase()) {
+            case "defeat":
+                heat = DangerHeatmap.ENCOUNTER_DEFEAT;
+                break;
+            case "fled":
+                heat = DangerHeatmap.ENCOUNTER_FLED;
+                break;
+            case "victory":
+                heat = DangerHeatmap.ENCOUNTER_VICTORY;
+                break;
+            default:
+                return;
+        }
+        DangerHeatmap.get(player.world).record(player.world, player.getPosition(), heat);
+    }
+
+    /**
+     * Apply the encounter's faction reputation rewards to the player and, if recordWorld, the
+     * server-wide standing (only when the player won or talked their way through)
+     */
+    private void applyFactionChanges(EntityPlayer player, EncounterData encounter, String outcome,
+                                     boolean recordWorld) {
+        if (player.world == null || player.world.isRemote || encounter.getRewards() == null) {
+            return;
+        }
+        Map<String, Integer> factionChanges = encounter.getRewards().getFactionChanges();
+        if (factionChanges == null || factionChanges.isEmpty() ||
+            !("victory".equalsIgnoreCase(outcome) || "negotiated".equalsIgnoreCase(outcome))) {
+            return;
+        }
+
+        StoryStateManager manager = StoryStateManager.getInstance();
+        if (manager == null) {
+            return;
+        }
+
+        PlayerStoryState state = manager.getOrCreateState(player);
+        WorldFactionState worldFactions = WorldFactionState.get(player.world);
+        FactionRegistry registry = FactionRegistry.getInstance();
+        synchronized (state) {
+            FactionReputation reputation = state.getReputation();
+            for (Map.Entry<String, Integer> entry : factionChanges.entrySet()) {
+                int factionId = registry.intern(entry.getKey());
+                if (factionId < 0 || entry.getValue() == null) {
+                    continue;
+                }
+                int change = Math.max(-MAX_FACTION_CHANGE, Math.min(MAX_FACTION_CHANGE, entry.getValue()));
+                int before = reputation.get(factionId);
+                int after = reputation.modify(factionId, change);
+                if (recordWorld) {
+                    worldFactions.record(factionId, after - before, player.world.getTotalWorldTime());
+                }
+            }
+        }
+    }
+
     /**
      * Display the encounter outcome to the player
      */
@@ -1,9 +1,15 @@
 package ai.torchlite.randomencounters.encounter;
 
 import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.config.ConfigHandler;
+import ai.torchlite.randomencounters.entity.EntityProfiles;
+import ai.torchlite.randomencounters.entity.EntityRegistry;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityList;
 import net.minecraft.entity.EntityLiving;
+import net.minecraft.entity.SharedMonsterAttributes;
+import net.minecraft.entity.ai.attributes.IAttribute;
+import net.minecraft.entity.ai.attributes.IAttributeInstance;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.inventory.EntityEquipmentSlot;
 import net.minecraft.item.Item;
@@ -25,7 +31,25 @@ public class EncounterSpawner {
     private static final int SPAWN_RADIUS_MAX = 16;
     private static final int MAX_SPAWN_ATTEMPTS = 10;
 
-    private final Random random = new Random();
+    // Threat budget in zombie-equivalents: difficulty 0.0 -> 1, difficulty 1.0 -> 8
+    private static final float MIN_THREAT_BUDGET = 1.0f;
+    private static final float MAX_THREAT_BUDGET = 8.0f;
+    private static final float MIN_DIFFICULTY_SCALE = 0.5f;
+    private static final float MAX_DIFFICULTY_SCALE = 1.5f;
+    private static final int MAX_PARTY_ENTITY_COUNT = 12; // Per entity entry, after party scaling
+
+    private final Random random;
+
+    public EncounterSpawner() {
+        this(new Random());
+    }
+
+    /**
+     * @param random Source for spawn positions (seeded for repeatable simulations)
+     */
+    public EncounterSpawner(Random random) {
+        this.random = random;
+    }
 
     /**
      * Spawn all entities for an encounter near a player
@@ -36,6 +60,22 @@ public class EncounterSpawner {
      * @return List of spawned entities
      */
     public List<Entity> spawnEncounter(EncounterData encounter, EntityPlayer player, World world) {
+        return spawnEncounter(encounter, player, world, 1);
+    }
+
+    /**
+     * Spawn all entities for an encounter shared by a party
+     *
+     * Hostile entity counts and the threat budget grow with the party size
+     * (see {@link #getPartyScale}), so the AI can describe a one-player encounter.
+     *
+     * @param encounter The encounter data
+     * @param player The player to spawn near (the party leader)
+     * @param world The world to spawn in
+     * @param partySize Number of players sharing the encounter
+     * @return List of spawned entities
+     */
+    public List<Entity> spawnEncounter(EncounterData encounter, EntityPlayer player, World world, int partySize) {
         List<Entity> spawnedEntities = new ArrayList<>();
 
         if (encounter.getEntities() == null || encounter.getEntities().isEmpty()) {
@@ -44,10 +84,23 @@ public class EncounterSpawner {
         }
 
         BlockPos playerPos = player.getPosition();
+        EntityRegistry registry = EntityRegistry.getInstance();
+        float partyScale = getPartyScale(partySize);
+        float difficultyScale = computeDifficultyScale(encounter, registry, partyScale);
 
         for (EncounterData.EncounterEntity entityData : encounter.getEntities()) {
-            for (int i = 0; i < entityData.getCount(); i++) {
-                Entity entity = spawnEntity(entityData, playerPos, world);
+            // Validate the AI-chosen entity type once per entry (hash lookup, not per spawn)
+            String entityId = entityData.getEntityType() != null
+                ? registry.resolveEntityId(entityData.getEntityType().toLowerCase())
+                : null;
+            if (entityId == null) {
+                RandomEncounters.LOGGER.error("Unknown entity type: " + entityData.getEntityType());
+                continue;
+            }
+
+            int count = getScaledCount(entityData, partyScale);
+            for (int i = 0; i < count; i++) {
+                Entity entity = spawnEntity(entityData, entityId, difficultyScale, playerPos, world);
                 if (entity != null) {
                     spawnedEntities.add(entity);
                     RandomEncounters.LOGGER.info("Spawned entity: " + entityData.getEntityType() +
@@ -61,10 +114,63 @@ public class EncounterSpawner {
         return spawnedEntities;
     }
 
+    /**
+     * Compare the encounter's total threat (from measured entity stats) against the budget for
+     * its target difficulty and return a health multiplier that brings them closer together.
+     * Returns 1.0 when stats aren't available yet.
+     */
+    private float computeDifficultyScale(EncounterData encounter, EntityRegistry registry, float partyScale) {
+        EntityProfiles profiles = registry.getProfiles();
+        if (profiles == null || encounter.getDifficulty() <= 0) {
+            return 1.0f;
+        }
+
+        float totalThreat = 0;
+        for (EncounterData.EncounterEntity entityData : encounter.getEntities()) {
+            if (!entityData.isHostile() || entityData.getEntityType() == null) {
+                continue;
+            }
+            float threat = profiles.getThreat(entityData.getEntityType().toLowerCase());
+            totalThreat += threat * getScaledCount(entityData, partyScale) * entityData.getHealthModifier() * entityData.getDamageModifier();
+        }
+        if (totalThreat <= 0) {
+            return 1.0f;
+        }
+
+        float difficulty = Math.min(encounter.getDifficulty(), 1.0f);
+        float budget = (MIN_THREAT_BUDGET + difficulty * (MAX_THREAT_BUDGET - MIN_THREAT_BUDGET)) * partyScale;
+        float scale = Math.max(MIN_DIFFICULTY_SCALE, Math.min(MAX_DIFFICULTY_SCALE, budget / totalThreat));
+
+        if (Math.abs(scale - 1.0f) > 0.05f) {
+            RandomEncounters.LOGGER.info(String.format("Scaling encounter '%s' health by %.2f (threat %.1f, budget %.1f)",
+                encounter.getTitle(), scale, totalThreat, budget));
+        }
+        return scale;
+    }
+
+    /**
+     * Strength multiplier for a party: 1.0 solo, plus partyScalingPerMember for each extra member
+     */
+    public static float getPartyScale(int partySize) {
+        return 1.0f + ConfigHandler.partyScalingPerMember * Math.max(0, partySize - 1);
+    }
+
+    /**
+     * Number of copies of an entity entry to spawn (only hostile entries grow with the party)
+     */
+    private int getScaledCount(EncounterData.EncounterEntity entityData, float partyScale) {
+        if (partyScale <= 1.0f || !entityData.isHostile()) {
+            return entityData.getCount();
+        }
+        int scaled = Math.round(entityData.getCount() * partyScale);
+        return Math.max(entityData.getCount(), Math.min(scaled, MAX_PARTY_ENTITY_COUNT));
+    }
+
     /**
      * Spawn a single entity
      */
-    private Entity spawnEntity(EncounterData.EncounterEntity entityData, BlockPos nearPos, World world) {
+    private Entity spawnEntity(EncounterData.EncounterEntity entityData, String entityId, float difficultyScale,
+                               BlockPos nearPos, World world) {
         // Try to find a valid spawn location
         BlockPos spawnPos = findSpawnLocation(nearPos, world);
         if (spawnPos == null) {
@@ -72,9 +178,8 @@ public class EncounterSpawner {
         }
 
         // Create the entity
-        Entity entity = createEntity(entityData.getEntityType(), world);
+        Entity entity = createEntity(entityId, world);
         if (entity == null) {
-            RandomEncounters.LOGGER.error("Unknown entity type: " + entityData.getEntityType());
             return null;
         }
 
@@ -91,10 +196,17 @@ public class EncounterSpawner {
                 living.setAlwaysRenderNameTag(true);
             }
 
-            // Apply health modifier
-            if (entityData.getHealthModifier() != 1.0f) {
-                float maxHealth = living.getMaxHealth();
-                living.setHealth(maxHealth * entityData.getHealthModifier());
+            // Apply health modifier (raise max health so modifiers above 1.0 aren't clamped away);
+            // the difficulty scale balances hostile threat only, so friendly NPCs keep theirs
+            float healthModifier = entityData.getHealthModifier() * (entityData.isHostile() ? difficultyScale : 1.0f);
+            if (healthModifier != 1.0f) {
+                scaleAttribute(living, SharedMonsterAttributes.MAX_HEALTH, healthModifier);
+                living.setHealth(living.getMaxHealth());
+            }
+
+            // Apply damage modifier
+            if (entityData.getDamageModifier() != 1.0f) {
+                scaleAttribute(living, SharedMonsterAttributes.ATTACK_DAMAGE, entityData.getDamageModifier());
             }
 
             // Equip items
@@ -112,6 +224,16 @@ public class EncounterSpawner {
         return entity;
     }
 
+    /**
+     * Multiply an attribute's base value, if the entity has that attribute
+     */
+    private void scaleAttribute(EntityLiving entity, IAttribute attribute, float modifier) {
+        IAttributeInstance instance = entity.getEntityAttribute(attribute);
+        if (instance != null) {
+            instance.setBaseValue(instance.getBaseValue() * modifier);
+        }
+    }
+
     /**
      * Find a valid spawn location near the target position
      */
@@ -139,21 +261,13 @@ public class EncounterSpawner {
     }
 
     /**
-     * Create an entity by type name
+     * Create an entity by its resolved registry id
      */
-    private Entity createEntity(String entityType, World world) {
-        // Normalize entity type (add minecraft: prefix if needed)
-        String normalizedType = entityType;
-        if (!entityType.contains(":")) {
-            normalizedType = "minecraft:" + entityType.toLowerCase();
-        }
-
-        ResourceLocation entityId = new ResourceLocation(normalizedType);
-
+    private Entity createEntity(String entityId, World world) {
         try {
-            return EntityList.createEntityByIDFromName(entityId, world);
+            return EntityList.createEntityByIDFromName(new ResourceLocation(entityId), world);
         } catch (Exception e) {
-            RandomEncounters.LOGGER.error("Failed to create entity: " + entityType, e);
+            RandomEncounters.LOGGER.error("Failed to create entity: " + entityId, e);
             return null;
         }
     }
@@ -0,0 +1,221 @@
+package ai.torchlite.randomencounters.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable, hash-indexed catalog of discovered entity types.
+ *
+ * Every entity gets a dense index (alphabetical order). Categories and mod
+ * namespaces are stored as bitsets over that index, and all list views are
+ * built once and shared, so lookups never copy or allocate.
+ */
+public final class EntityCatalog {
+
+    public static final String VANILLA_NAMESPACE = "minecraft";
+
+    private final String[] entityIds;
+    private final EntityCategory[] categories; // null = not a living entity
+    private final String[] descriptions;       // null = no description
+
+    private final Map<String, Integer> indexById;
+    private final Map<String, Integer> vanillaIndexByPath; // "zombie" -> "minecraft:zombie"
+
+    private final Map<EntityCategory, BitSet> categoryBits;
+    private final Map<String, BitSet> namespaceBits;
+
+    private final List<String> allView;
+    private final Map<EntityCategory, List<String>> categoryViews;
+    private final Map<String, List<String>> namespaceViews;
+
+    private EntityCatalog(Map<String, Entry> sortedEntries) {
+        int size = sortedEntries.size();
+        this.entityIds = new String[size];
+        this.categories = new EntityCategory[size];
+        this.descriptions = new String[size];
+        this.indexById = new HashMap<>(size * 2);
+        this.vanillaIndexByPath = new HashMap<>();
+        this.categoryBits = new EnumMap<>(EntityCategory.class);
+        this.namespaceBits = new TreeMap<>();
+
+        for (EntityCategory category : EntityCategory.values()) {
+            categoryBits.put(category, new BitSet(size));
+        }
+
+        int index = 0;
+        for (Entry entry : sortedEntries.values()) {
+            entityIds[index] = entry.id;
+            categories[index] = entry.category;
+            descriptions[index] = entry.description;
+            indexById.put(entry.id, index);
+
+            String namespace = namespaceOf(entry.id);
+            if (VANILLA_NAMESPACE.equals(namespace)) {
+                vanillaIndexByPath.put(entry.id.substring(VANILLA_NAMESPACE.length() + 1), index);
+            }
+            namespaceBits.computeIfAbsent(namespace, k -> new BitSet(size)).set(index);
+
+            if (entry.category != null) {
+                categoryBits.get(entry.category).set(index);
+            }
+            index++;
+        }
+
+        // Build shared read-only views once
+        this.allView = Collections.unmodifiableList(Arrays.asList(entityIds));
+        this.categoryViews = new EnumMap<>(EntityCategory.class);
+        for (Map.Entry<EntityCategory, BitSet> entry : categoryBits.entrySet()) {
+            categoryViews.put(entry.getKey(), viewOf(entry.getValue()));
+        }
+        this.namespaceViews = new TreeMap<>();
+        for (Map.Entry<String, BitSet> entry : namespaceBits.entrySet()) {
+            namespaceViews.put(entry.getKey(), viewOf(entry.getValue()));
+        }
+    }
+
+    private List<String> viewOf(BitSet bits) {
+        List<String> ids = new ArrayList<>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            ids.add(entityIds[i]);
+        }
+        return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * Get the mod namespace of an entity id ("minecraft" if none)
+     */
+    public static String namespaceOf(String entityId) {
+        int colon = entityId.indexOf(':');
+        return colon < 0 ? VANILLA_NAMESPACE : entityId.substring(0, colon);
+    }
+
+    /**
+     * Look up the dense index of an entity. Bare names ("zombie") resolve to
+     * the vanilla entity. Returns -1 if unknown. Does not allocate.
+     */
+    public int indexOf(String entityId) {
+        if (entityId == null) {
+            return -1;
+        }
+        Integer index = indexById.get(entityId);
+        if (index == null && entityId.indexOf(':') < 0) {
+            index = vanillaIndexByPath.get(entityId);
+        }
+        return index != null ? index : -1;
+    }
+
+    public boolean contains(String entityId) {
+        return indexOf(entityId) >= 0;
+    }
+
+    /**
+     * Resolve an entity name to its full registry id, or null if unknown
+     */
+    public String resolve(String entityId) {
+        int index = indexOf(entityId);
+        return index >= 0 ? entityIds[index] : null;
+    }
+
+    public boolean isInCategory(String entityId, EntityCategory category) {
+        int index = indexOf(entityId);
+        return index >= 0 && categoryBits.get(category).get(index);
+    }
+
+    public EntityCategory getCategory(String entityId) {
+        int index = indexOf(entityId);
+        return index >= 0 ? categories[index] : null;
+    }
+
+    public String getDescription(String entityId) {
+        int index = indexOf(entityId);
+        return index >= 0 ? descriptions[index] : null;
+    }
+
+    // Index-based accessors (for serialization and parallel tables)
+    public int size() { return entityIds.length; }
+    public String getEntityId(int index) { return entityIds[index]; }
+    public EntityCategory getCategory(int index) { return categories[index]; }
+    public String getDescription(int index) { return descriptions[index]; }
+
+    /**
+     * All entity ids, sorted (read-only)
+     */
+    public List<String> getEntities() {
+        return allView;
+    }
+
+    /**
+     * Entity ids in a category, sorted (read-only)
+     */
+    public List<String> getEntities(EntityCategory category) {
+        return categoryViews.get(category);
+    }
+
+    /**
+     * Entity ids registered by a mod namespace, sorted (read-only)
+     */
+    public List<String> getEntitiesForMod(String modId) {
+        List<String> view = namespaceViews.get(modId);
+        return view != null ? view : Collections.emptyList();
+    }
+
+    /**
+     * Entity ids in a category registered by a specific mod
+     */
+    public List<String> getEntities(EntityCategory category, String modId) {
+        BitSet namespace = namespaceBits.get(modId);
+        if (namespace == null) {
+            return Collections.emptyList();
+        }
+        BitSet bits = (BitSet) categoryBits.get(category).clone();
+        bits.and(namespace);
+        return viewOf(bits);
+    }
+
+    /**
+     * Mod namespaces that registered at least one entity, sorted (read-only)
+     */
+    public Set<String> getModIds() {
+        return Collections.unmodifiableSet(namespaceViews.keySet());
+    }
+
+    public int countInCategory(EntityCategory category) {
+        return categoryViews.get(category).size();
+    }
+
+    /**
+     * Builder collecting entities before freezing them into a catalog
+     */
+    public static class Builder {
+        private final Map<String, Entry> entries = new TreeMap<>();
+
+        public Builder add(String entityId, EntityCategory category, String description) {
+            entries.put(entityId, new Entry(entityId, category, description));
+            return this;
+        }
+
+        public EntityCatalog build() {
+            return new EntityCatalog(entries);
+        }
+    }
+
+    private static class Entry {
+        final String id;
+        final EntityCategory category;
+        final String description;
+
+        Entry(String id, EntityCategory category, String description) {
+            this.id = id;
+            this.category = category;
+            this.description = description;
+        }
+    }
+}
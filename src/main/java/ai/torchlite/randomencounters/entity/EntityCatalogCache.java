@@ -0,0 +1,175 @@
+package ai.torchlite.randomencounters.entity;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+import net.minecraftforge.fml.common.Loader;
+import net.minecraftforge.fml.common.ModContainer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * On-disk snapshot of the entity catalog
+ *
+ * The snapshot is keyed by a fingerprint of the loaded mod list (ids and versions).
+ * As long as the modpack doesn't change, startup loads the snapshot instead of
+ * walking the entity registry again.
+ */
+public class EntityCatalogCache {
+
+    /**
+     * Bump when the snapshot layout or categorization rules change
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private final File cacheFile;
+    private final Gson gson;
+
+    public EntityCatalogCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+    }
+
+    /**
+     * Load the snapshot if it exists and matches the fingerprint, otherwise null
+     */
+    public Snapshot load(String fingerprint) {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+
+        try (Reader reader = new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8)) {
+            Snapshot snapshot = gson.fromJson(reader, Snapshot.class);
+            if (snapshot == null || snapshot.formatVersion != FORMAT_VERSION || snapshot.entities == null) {
+                RandomEncounters.LOGGER.info("Entity catalog snapshot is outdated, rescanning");
+                return null;
+            }
+            if (!fingerprint.equals(snapshot.fingerprint)) {
+                RandomEncounters.LOGGER.info("Mod list changed since last entity scan, rescanning");
+                return null;
+            }
+            return snapshot;
+        } catch (Exception e) {
+            RandomEncounters.LOGGER.warn("Failed to read entity catalog snapshot, rescanning: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write a snapshot of the catalog to disk
+     */
+    public void save(String fingerprint, EntityCatalog catalog, String compactEntityList, long scanMillis) {
+        Snapshot snapshot = new Snapshot();
+        snapshot.formatVersion = FORMAT_VERSION;
+        snapshot.fingerprint = fingerprint;
+        snapshot.scanMillis = scanMillis;
+        snapshot.createdAt = System.currentTimeMillis();
+        snapshot.compactEntityList = compactEntityList;
+        snapshot.entities = new ArrayList<>(catalog.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            EntityCategory category = catalog.getCategory(i);
+            snapshot.entities.add(new CachedEntity(catalog.getEntityId(i), category, catalog.getDescription(i)));
+        }
+
+        File parent = cacheFile.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(cacheFile), StandardCharsets.UTF_8)) {
+            gson.toJson(snapshot, writer);
+        } catch (IOException e) {
+            RandomEncounters.LOGGER.warn("Failed to write entity catalog snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fingerprint of the active mod list: a SHA-256 over sorted "modid@version" lines
+     */
+    public static String computeFingerprint() {
+        List<String> mods = new ArrayList<>();
+        for (ModContainer mod : Loader.instance().getActiveModList()) {
+            mods.add(mod.getModId() + "@" + mod.getVersion());
+        }
+        Collections.sort(mods);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(("format:" + FORMAT_VERSION + "\n").getBytes(StandardCharsets.UTF_8));
+            for (String mod : mods) {
+                digest.update(mod.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            // SHA-256 is always available, but fall back to a plain hash just in case
+            return Integer.toHexString(mods.hashCode());
+        }
+    }
+
+    /**
+     * Serialized form of the catalog
+     */
+    public static class Snapshot {
+        @SerializedName("format_version")
+        private int formatVersion;
+
+        @SerializedName("fingerprint")
+        private String fingerprint;
+
+        @SerializedName("scan_millis")
+        private long scanMillis;
+
+        @SerializedName("created_at")
+        private long createdAt;
+
+        @SerializedName("compact_entity_list")
+        private String compactEntityList;
+
+        @SerializedName("entities")
+        private List<CachedEntity> entities;
+
+        /**
+         * Rebuild the immutable catalog from the snapshot
+         */
+        public EntityCatalog toCatalog() {
+            EntityCatalog.Builder builder = new EntityCatalog.Builder();
+            for (CachedEntity entity : entities) {
+                builder.add(entity.id, entity.category, entity.description);
+            }
+            return builder.build();
+        }
+
+        public long getScanMillis() { return scanMillis; }
+        public long getCreatedAt() { return createdAt; }
+        public String getCompactEntityList() { return compactEntityList; }
+    }
+
+    private static class CachedEntity {
+        @SerializedName("id")
+        private String id;
+
+        @SerializedName("category")
+        private EntityCategory category;
+
+        @SerializedName("description")
+        private String description;
+
+        CachedEntity(String id, EntityCategory category, String description) {
+            this.id = id;
+            this.category = category;
+            this.description = description;
+        }
+    }
+}
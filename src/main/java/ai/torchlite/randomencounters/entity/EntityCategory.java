@@ -0,0 +1,11 @@
+package ai.torchlite.randomencounters.entity;
+
+/**
+ * Encounter role of a discovered entity type
+ */
+public enum EntityCategory {
+    HOSTILE,     // Combat encounters
+    NEUTRAL,     // Can be used either way
+    PASSIVE,     // Friendly NPCs, traders, guards
+    BOSS         // Special encounters only
+}
@@ -0,0 +1,272 @@
+package ai.torchlite.randomencounters.entity;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.metrics.LatencyHistogram;
+import ai.torchlite.randomencounters.metrics.PipelineMetrics;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityFlying;
+import net.minecraft.entity.EntityList;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.entity.SharedMonsterAttributes;
+import net.minecraft.entity.ai.attributes.IAttribute;
+import net.minecraft.entity.ai.attributes.IAttributeInstance;
+import net.minecraft.entity.passive.EntityWaterMob;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures base stats of every catalogued creature
+ *
+ * Entities are constructed (never spawned) in the overworld a few per server
+ * tick, so the pass runs in the background without stalling startup. The
+ * finished table is handed to the {@link EntityRegistry} and cached on disk
+ * with the same mod-list fingerprint as the catalog snapshot.
+ */
+public class EntityProfiler {
+
+    private static final int ENTITIES_PER_TICK = 8;
+    private static final LatencyHistogram TICK_COST = PipelineMetrics.tickCost("entity_profiler");
+
+    private final File cacheFile;
+    private final Gson gson;
+
+    private EntityCatalog catalog;
+    private float[] health;
+    private float[] attackDamage;
+    private float[] speed;
+    private float[] width;
+    private float[] height;
+    private byte[] flags;
+
+    private int nextIndex;
+    private long profilingMillis;
+    private boolean complete;
+
+    public EntityProfiler(File cacheFile) {
+        this.cacheFile = cacheFile;
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+    }
+
+    /**
+     * Load cached profiles if the mod list is unchanged; otherwise profiling starts on the next world tick
+     */
+    public void start() {
+        EntityRegistry registry = EntityRegistry.getInstance();
+        this.catalog = registry.getCatalog();
+
+        int size = catalog.size();
+        this.health = new float[size];
+        this.attackDamage = new float[size];
+        this.speed = new float[size];
+        this.width = new float[size];
+        this.height = new float[size];
+        this.flags = new byte[size];
+        this.nextIndex = 0;
+        this.profilingMillis = 0;
+        this.complete = false;
+
+        if (loadCache(EntityCatalogCache.computeFingerprint())) {
+            complete = true;
+            registry.setProfiles(buildProfiles());
+            RandomEncounters.LOGGER.info("Loaded cached entity profiles (" +
+                registry.getProfiles().getProfiledCount() + " creatures)");
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldTick(TickEvent.WorldTickEvent event) {
+        if (complete || catalog == null || event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        World world = event.world;
+        if (world.isRemote || world.provider.getDimension() != 0) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        int end = Math.min(nextIndex + ENTITIES_PER_TICK, catalog.size());
+        for (; nextIndex < end; nextIndex++) {
+            if (catalog.getCategory(nextIndex) != null) {
+                profileEntity(nextIndex, world);
+            }
+        }
+        TICK_COST.recordNanos(System.nanoTime() - startNanos);
+        profilingMillis += System.currentTimeMillis() - start;
+
+        if (nextIndex >= catalog.size()) {
+            complete = true;
+            EntityProfiles profiles = buildProfiles();
+            EntityRegistry.getInstance().setProfiles(profiles);
+            saveCache(EntityCatalogCache.computeFingerprint());
+            RandomEncounters.LOGGER.info("Profiled " + profiles.getProfiledCount() + " creatures in " +
+                profilingMillis + "ms (spread across server ticks)");
+        }
+    }
+
+    /**
+     * Construct one entity (without spawning it) and record its base stats
+     */
+    private void profileEntity(int index, World world) {
+        String entityId = catalog.getEntityId(index);
+        try {
+            Entity entity = EntityList.createEntityByIDFromName(new ResourceLocation(entityId), world);
+            if (!(entity instanceof EntityLivingBase)) {
+                return;
+            }
+            EntityLivingBase living = (EntityLivingBase) entity;
+
+            health[index] = living.getMaxHealth();
+            attackDamage[index] = (float) attributeValue(living, SharedMonsterAttributes.ATTACK_DAMAGE);
+            speed[index] = (float) attributeValue(living, SharedMonsterAttributes.MOVEMENT_SPEED);
+            width[index] = entity.width;
+            height[index] = entity.height;
+
+            byte f = EntityProfiles.FLAG_PROFILED;
+            if (entity instanceof EntityFlying || entity.hasNoGravity() ||
+                living.getEntityAttribute(SharedMonsterAttributes.FLYING_SPEED) != null) {
+                f |= EntityProfiles.FLAG_FLYING;
+            }
+            if (entity instanceof EntityWaterMob || living.canBreatheUnderwater()) {
+                f |= EntityProfiles.FLAG_SWIMMING;
+            }
+            if (entity.isImmuneToFire()) {
+                f |= EntityProfiles.FLAG_FIRE_IMMUNE;
+            }
+            flags[index] = f;
+        } catch (Exception e) {
+            RandomEncounters.LOGGER.debug("Could not profile entity " + entityId + ": " + e.getMessage());
+        }
+    }
+
+    private double attributeValue(EntityLivingBase living, IAttribute attribute) {
+        IAttributeInstance instance = living.getEntityAttribute(attribute);
+        return instance != null ? instance.getBaseValue() : 0.0;
+    }
+
+    private EntityProfiles buildProfiles() {
+        return new EntityProfiles(catalog, health, attackDamage, speed, width, height, flags);
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Fraction of the catalog processed so far (0.0-1.0)
+     */
+    public float getProgress() {
+        if (catalog == null || catalog.size() == 0) {
+            return complete ? 1.0f : 0.0f;
+        }
+        return nextIndex / (float) catalog.size();
+    }
+
+    private boolean loadCache(String fingerprint) {
+        if (!cacheFile.exists()) {
+            return false;
+        }
+
+        try (Reader reader = new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8)) {
+            ProfileSnapshot snapshot = gson.fromJson(reader, ProfileSnapshot.class);
+            if (snapshot == null || snapshot.entities == null || !fingerprint.equals(snapshot.fingerprint)) {
+                return false;
+            }
+
+            for (ProfileRow row : snapshot.entities) {
+                int index = catalog.indexOf(row.id);
+                if (index < 0) {
+                    continue;
+                }
+                health[index] = row.health;
+                attackDamage[index] = row.attackDamage;
+                speed[index] = row.speed;
+                width[index] = row.width;
+                height[index] = row.height;
+                flags[index] = (byte) (row.flags | EntityProfiles.FLAG_PROFILED);
+            }
+            nextIndex = catalog.size();
+            return true;
+        } catch (Exception e) {
+            RandomEncounters.LOGGER.warn("Failed to read entity profiles, re-profiling: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void saveCache(String fingerprint) {
+        ProfileSnapshot snapshot = new ProfileSnapshot();
+        snapshot.fingerprint = fingerprint;
+        snapshot.profilingMillis = profilingMillis;
+        snapshot.entities = new ArrayList<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            if ((flags[i] & EntityProfiles.FLAG_PROFILED) == 0) {
+                continue;
+            }
+            ProfileRow row = new ProfileRow();
+            row.id = catalog.getEntityId(i);
+            row.health = health[i];
+            row.attackDamage = attackDamage[i];
+            row.speed = speed[i];
+            row.width = width[i];
+            row.height = height[i];
+            row.flags = flags[i];
+            snapshot.entities.add(row);
+        }
+
+        File parent = cacheFile.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(cacheFile), StandardCharsets.UTF_8)) {
+            gson.toJson(snapshot, writer);
+        } catch (IOException e) {
+            RandomEncounters.LOGGER.warn("Failed to write entity profiles: " + e.getMessage());
+        }
+    }
+
+    private static class ProfileSnapshot {
+        @SerializedName("fingerprint")
+        private String fingerprint;
+
+        @SerializedName("profiling_millis")
+        private long profilingMillis;
+
+        @SerializedName("entities")
+        private List<ProfileRow> entities;
+    }
+
+    private static class ProfileRow {
+        @SerializedName("id")
+        private String id;
+
+        @SerializedName("health")
+        private float health;
+
+        @SerializedName("attack_damage")
+        private float attackDamage;
+
+        @SerializedName("speed")
+        private float speed;
+
+        @SerializedName("width")
+        private float width;
+
+        @SerializedName("height")
+        private float height;
+
+        @SerializedName("flags")
+        private byte flags;
+    }
+}
@@ -0,0 +1,122 @@
+package ai.torchlite.randomencounters.entity;
+
+/**
+ * Compact numeric table of entity capabilities, parallel to the catalog index
+ *
+ * Filled once by {@link EntityProfiler}. Each column is a primitive array, so
+ * reading a profile never allocates.
+ */
+public final class EntityProfiles {
+
+    public static final byte FLAG_PROFILED = 1;
+    public static final byte FLAG_FLYING = 1 << 1;
+    public static final byte FLAG_SWIMMING = 1 << 2;
+    public static final byte FLAG_FIRE_IMMUNE = 1 << 3;
+
+    // Threat is expressed relative to a vanilla zombie (20 health, 3 attack damage)
+    private static final float REFERENCE_HEALTH = 20.0f;
+    private static final float REFERENCE_DAMAGE = 3.0f;
+
+    private final EntityCatalog catalog;
+    private final float[] health;
+    private final float[] attackDamage;
+    private final float[] speed;
+    private final float[] width;
+    private final float[] height;
+    private final byte[] flags;
+    private final int profiledCount;
+
+    EntityProfiles(EntityCatalog catalog, float[] health, float[] attackDamage, float[] speed,
+                   float[] width, float[] height, byte[] flags) {
+        this.catalog = catalog;
+        this.health = health;
+        this.attackDamage = attackDamage;
+        this.speed = speed;
+        this.width = width;
+        this.height = height;
+        this.flags = flags;
+
+        int count = 0;
+        for (byte f : flags) {
+            if ((f & FLAG_PROFILED) != 0) {
+                count++;
+            }
+        }
+        this.profiledCount = count;
+    }
+
+    public EntityCatalog getCatalog() { return catalog; }
+    public int getProfiledCount() { return profiledCount; }
+
+    public boolean isProfiled(int index) {
+        return index >= 0 && (flags[index] & FLAG_PROFILED) != 0;
+    }
+
+    public boolean isProfiled(String entityId) {
+        return isProfiled(catalog.indexOf(entityId));
+    }
+
+    public float getHealth(int index) { return health[index]; }
+    public float getAttackDamage(int index) { return attackDamage[index]; }
+    public float getSpeed(int index) { return speed[index]; }
+    public float getWidth(int index) { return width[index]; }
+    public float getHeight(int index) { return height[index]; }
+    public byte getFlags(int index) { return flags[index]; }
+    public boolean isFlying(int index) { return (flags[index] & FLAG_FLYING) != 0; }
+    public boolean isSwimming(int index) { return (flags[index] & FLAG_SWIMMING) != 0; }
+
+    /**
+     * Threat of a single unmodified entity, where 1.0 is a vanilla zombie.
+     * Returns 1.0 for entities that couldn't be profiled.
+     */
+    public float getThreat(int index) {
+        if (!isProfiled(index)) {
+            return 1.0f;
+        }
+        float threat = (health[index] / REFERENCE_HEALTH) * (Math.max(attackDamage[index], 1.0f) / REFERENCE_DAMAGE);
+        if (isFlying(index)) {
+            threat *= 1.25f; // Harder to pin down
+        }
+        return threat;
+    }
+
+    public float getThreat(String entityId) {
+        return getThreat(catalog.indexOf(entityId));
+    }
+
+    /**
+     * Short stat line for prompts, e.g. "20hp, 3dmg, flying". Null if not profiled.
+     */
+    public String describe(int index) {
+        if (!isProfiled(index)) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(Math.round(health[index])).append("hp");
+        if (attackDamage[index] > 0) {
+            sb.append(", ").append(Math.round(attackDamage[index])).append("dmg");
+        }
+        if (speed[index] >= 0.3f) {
+            sb.append(", fast");
+        } else if (speed[index] > 0 && speed[index] < 0.2f) {
+            sb.append(", slow");
+        }
+        if (height[index] >= 3.0f || width[index] >= 2.0f) {
+            sb.append(", huge");
+        } else if (height[index] < 1.0f) {
+            sb.append(", small");
+        }
+        if (isFlying(index)) {
+            sb.append(", flying");
+        }
+        if (isSwimming(index)) {
+            sb.append(", aquatic");
+        }
+        return sb.toString();
+    }
+
+    public String describe(String entityId) {
+        return describe(catalog.indexOf(entityId));
+    }
+}
@@ -1,6 +1,7 @@
 package ai.torchlite.randomencounters.entity;
 
 import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.config.ConfigHandler;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityList;
 import net.minecraft.entity.EntityLiving;
@@ -10,29 +11,81 @@ import net.minecraft.entity.monster.*;
 import net.minecraft.entity.passive.*;
 import net.minecraft.util.ResourceLocation;
 
+import java.io.File;
 import java.util.*;
 
 /**
  * Discovers and categorizes all available entities for encounter generation
+ *
+ * The discovered entities are frozen into an immutable {@link EntityCatalog},
+ * so validation is a hash lookup and category lists are shared read-only views.
+ * The catalog is snapshotted to disk and reused until the mod list changes.
  */
 public class EntityRegistry {
 
-    private final List<String> allEntities = new ArrayList<>();
-    private final List<String> hostileEntities = new ArrayList<>();
-    private final List<String> neutralEntities = new ArrayList<>();
-    private final List<String> passiveEntities = new ArrayList<>();
-    private final List<String> bossEntities = new ArrayList<>();
-    private final Map<String, String> entityDescriptions = new HashMap<>();
+    private final EntityCatalog catalog;
+    private final String compactEntityList;
+
+    // Filled in by the EntityProfiler once its background pass finishes
+    private volatile EntityProfiles profiles;
+
+    // Bumped whenever prompt-visible data changes; prompt caches are keyed on it
+    private volatile int version;
+    private volatile CachedEntityList cachedEntityList;
 
     private static EntityRegistry instance;
 
-    private EntityRegistry() {
-        discoverEntities();
+    private EntityRegistry(File cacheFile) {
+        EntityCatalogCache cache = cacheFile != null && ConfigHandler.cacheEntityCatalog
+            ? new EntityCatalogCache(cacheFile) : null;
+        String fingerprint = cache != null ? EntityCatalogCache.computeFingerprint() : null;
+
+        long start = System.currentTimeMillis();
+        EntityCatalogCache.Snapshot snapshot = cache != null ? cache.load(fingerprint) : null;
+
+        if (snapshot != null) {
+            this.catalog = snapshot.toCatalog();
+            this.compactEntityList = snapshot.getCompactEntityList() != null
+                ? snapshot.getCompactEntityList() : computeCompactEntityList(catalog);
+
+            long loadMillis = System.currentTimeMillis() - start;
+            RandomEncounters.LOGGER.info("Loaded entity catalog snapshot (" + catalog.size() + " entities) in " +
+                loadMillis + "ms, saved ~" + Math.max(0, snapshot.getScanMillis() - loadMillis) +
+                "ms over a full scan (" + snapshot.getScanMillis() + "ms)");
+        } else {
+            this.catalog = discoverEntities();
+            this.compactEntityList = computeCompactEntityList(catalog);
+
+            long scanMillis = System.currentTimeMillis() - start;
+            RandomEncounters.LOGGER.info("Entity scan took " + scanMillis + "ms");
+            if (cache != null) {
+                cache.save(fingerprint, catalog, compactEntityList, scanMillis);
+            }
+        }
+    }
+
+    private EntityRegistry(EntityCatalog catalog) {
+        this.catalog = catalog;
+        this.compactEntityList = computeCompactEntityList(catalog);
+    }
+
+    /**
+     * Initialize the registry, reusing the catalog snapshot in cacheFile when the mod list is unchanged
+     */
+    public static void initialize(File cacheFile) {
+        instance = new EntityRegistry(cacheFile);
+    }
+
+    /**
+     * Initialize the registry from a prebuilt catalog (standalone tools and benchmarks, no game required)
+     */
+    public static void initialize(EntityCatalog catalog) {
+        instance = new EntityRegistry(catalog);
     }
 
     public static EntityRegistry getInstance() {
         if (instance == null) {
-            instance = new EntityRegistry();
+            instance = new EntityRegistry((File) null);
         }
         return instance;
     }
@@ -40,9 +93,10 @@ public class EntityRegistry {
     /**
      * Discover all registered entities in the game
      */
-    private void discoverEntities() {
+    private EntityCatalog discoverEntities() {
         RandomEncounters.LOGGER.info("Discovering available entities...");
 
+        EntityCatalog.Builder builder = new EntityCatalog.Builder();
         Set<ResourceLocation> entityKeys = EntityList.getEntityNameList();
 
         for (ResourceLocation entityId : entityKeys) {
@@ -55,38 +109,32 @@ public class EntityRegistry {
                 continue;
             }
 
-            // Add to main list
-            allEntities.add(entityName);
-
-            // Categorize entity
-            categorizeEntity(entityName, entityClass);
+            // Categorize entity (non-living entities are kept, uncategorized)
+            categorizeEntity(builder, entityName, entityClass);
         }
 
-        // Sort all lists alphabetically
-        Collections.sort(allEntities);
-        Collections.sort(hostileEntities);
-        Collections.sort(neutralEntities);
-        Collections.sort(passiveEntities);
-        Collections.sort(bossEntities);
+        EntityCatalog discovered = builder.build();
 
         RandomEncounters.LOGGER.info("Entity discovery complete:");
-        RandomEncounters.LOGGER.info("  Total entities: " + allEntities.size());
-        RandomEncounters.LOGGER.info("  Hostile: " + hostileEntities.size());
-        RandomEncounters.LOGGER.info("  Neutral: " + neutralEntities.size());
-        RandomEncounters.LOGGER.info("  Passive: " + passiveEntities.size());
-        RandomEncounters.LOGGER.info("  Boss: " + bossEntities.size());
+        RandomEncounters.LOGGER.info("  Total entities: " + discovered.size());
+        RandomEncounters.LOGGER.info("  Hostile: " + discovered.countInCategory(EntityCategory.HOSTILE));
+        RandomEncounters.LOGGER.info("  Neutral: " + discovered.countInCategory(EntityCategory.NEUTRAL));
+        RandomEncounters.LOGGER.info("  Passive: " + discovered.countInCategory(EntityCategory.PASSIVE));
+        RandomEncounters.LOGGER.info("  Boss: " + discovered.countInCategory(EntityCategory.BOSS));
+        RandomEncounters.LOGGER.info("  Mods: " + discovered.getModIds().size());
+
+        return discovered;
     }
 
     /**
      * Categorize an entity based on its class hierarchy
      */
-    private void categorizeEntity(String entityName, Class<? extends Entity> entityClass) {
+    private void categorizeEntity(EntityCatalog.Builder builder, String entityName, Class<? extends Entity> entityClass) {
         // Boss entities
         if (EntityDragon.class.isAssignableFrom(entityClass) ||
             EntityWither.class.isAssignableFrom(entityClass) ||
             entityName.contains("dragon") || entityName.contains("wither")) {
-            bossEntities.add(entityName);
-            entityDescriptions.put(entityName, "Boss creature - extremely dangerous");
+            builder.add(entityName, EntityCategory.BOSS, "Boss creature - extremely dangerous");
             return;
         }
 
@@ -95,24 +143,24 @@ public class EntityRegistry {
             EntitySlime.class.isAssignableFrom(entityClass) ||
             EntityGhast.class.isAssignableFrom(entityClass) ||
             EntityBlaze.class.isAssignableFrom(entityClass)) {
-            hostileEntities.add(entityName);
-
             // Add helpful descriptions
+            String description;
             if (entityClass == EntityZombie.class) {
-                entityDescriptions.put(entityName, "Melee attacker - good for raiders, scavengers");
+                description = "Melee attacker - good for raiders, scavengers";
             } else if (entityClass == EntitySkeleton.class) {
-                entityDescriptions.put(entityName, "Ranged attacker - good for scouts, soldiers");
+                description = "Ranged attacker - good for scouts, soldiers";
             } else if (entityClass == EntitySpider.class || entityClass == EntityCaveSpider.class) {
-                entityDescriptions.put(entityName, "Fast melee - good for swarms, mutants");
+                description = "Fast melee - good for swarms, mutants";
             } else if (entityClass == EntityCreeper.class) {
-                entityDescriptions.put(entityName, "Explosive - good for suicide troops");
+                description = "Explosive - good for suicide troops";
             } else if (entityClass == EntityWitch.class) {
-                entityDescriptions.put(entityName, "Potion user - good for cultists, shamans");
+                description = "Potion user - good for cultists, shamans";
             } else if (entityClass == EntityEnderman.class) {
-                entityDescriptions.put(entityName, "Teleporting - good for mysterious encounters");
+                description = "Teleporting - good for mysterious encounters";
             } else {
-                entityDescriptions.put(entityName, "Hostile creature");
+                description = "Hostile creature";
             }
+            builder.add(entityName, EntityCategory.HOSTILE, description);
             return;
         }
 
@@ -120,84 +168,177 @@ public class EntityRegistry {
         if (EntityAnimal.class.isAssignableFrom(entityClass) ||
             EntityVillager.class.isAssignableFrom(entityClass) ||
             EntityGolem.class.isAssignableFrom(entityClass)) {
-            passiveEntities.add(entityName);
-
+            String description;
             if (entityClass == EntityVillager.class) {
-                entityDescriptions.put(entityName, "NPC - perfect for traders, quest givers");
+                description = "NPC - perfect for traders, quest givers";
             } else if (EntityGolem.class.isAssignableFrom(entityClass)) {
-                entityDescriptions.put(entityName, "Guardian - good for protectors, guards");
+                description = "Guardian - good for protectors, guards";
             } else if (entityClass == EntityWolf.class) {
-                entityDescriptions.put(entityName, "Tameable - good for guard animals");
+                description = "Tameable - good for guard animals";
             } else {
-                entityDescriptions.put(entityName, "Passive creature");
+                description = "Passive creature";
             }
+            builder.add(entityName, EntityCategory.PASSIVE, description);
             return;
         }
 
         // Neutral entities (everything else that extends EntityLiving)
         if (EntityLiving.class.isAssignableFrom(entityClass)) {
-            neutralEntities.add(entityName);
-            entityDescriptions.put(entityName, "Neutral creature - can be hostile or passive");
+            builder.add(entityName, EntityCategory.NEUTRAL, "Neutral creature - can be hostile or passive");
+            return;
         }
+
+        // Everything else (projectiles, items, vehicles) is valid but not an encounter role
+        builder.add(entityName, null, null);
     }
 
     /**
-     * Get all available entities
+     * Get the immutable catalog backing this registry
+     */
+    public EntityCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Get measured entity stats, or null until profiling has finished
+     */
+    public EntityProfiles getProfiles() {
+        return profiles;
+    }
+
+    void setProfiles(EntityProfiles profiles) {
+        this.profiles = profiles;
+        this.version++;
+    }
+
+    /**
+     * Get the registry version (changes when entity data shown in prompts changes)
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Find profiled entities in a category whose threat (1.0 = zombie) falls within a range,
+     * closest to targetThreat first
+     */
+    public List<String> findEntitiesByThreat(EntityCategory category, float minThreat, float maxThreat,
+                                             final float targetThreat, int limit) {
+        final EntityProfiles current = profiles;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> matches = new ArrayList<>();
+        for (String entity : catalog.getEntities(category)) {
+            int index = catalog.indexOf(entity);
+            if (!current.isProfiled(index)) {
+                continue;
+            }
+            float threat = current.getThreat(index);
+            if (threat >= minThreat && threat <= maxThreat) {
+                matches.add(entity);
+            }
+        }
+
+        // Stable sort, so equally close entities keep catalog order
+        matches.sort(Comparator.comparingDouble(
+            entity -> Math.abs(current.getThreat(catalog.indexOf(entity)) - targetThreat)));
+        return limit > 0 && matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Get all available entities (read-only)
      */
     public List<String> getAllEntities() {
-        return new ArrayList<>(allEntities);
+        return catalog.getEntities();
     }
 
     /**
-     * Get hostile entities suitable for combat encounters
+     * Get hostile entities suitable for combat encounters (read-only)
      */
     public List<String> getHostileEntities() {
-        return new ArrayList<>(hostileEntities);
+        return catalog.getEntities(EntityCategory.HOSTILE);
     }
 
     /**
-     * Get neutral entities
+     * Get neutral entities (read-only)
      */
     public List<String> getNeutralEntities() {
-        return new ArrayList<>(neutralEntities);
+        return catalog.getEntities(EntityCategory.NEUTRAL);
     }
 
     /**
-     * Get passive entities suitable for friendly NPCs
+     * Get passive entities suitable for friendly NPCs (read-only)
      */
     public List<String> getPassiveEntities() {
-        return new ArrayList<>(passiveEntities);
+        return catalog.getEntities(EntityCategory.PASSIVE);
     }
 
     /**
-     * Get boss entities (use sparingly!)
+     * Get boss entities (use sparingly!) (read-only)
      */
     public List<String> getBossEntities() {
-        return new ArrayList<>(bossEntities);
+        return catalog.getEntities(EntityCategory.BOSS);
+    }
+
+    /**
+     * Get entities registered by a specific mod, e.g. "lycanitesmobs" (read-only)
+     */
+    public List<String> getEntitiesForMod(String modId) {
+        return catalog.getEntitiesForMod(modId);
+    }
+
+    /**
+     * Get all mod namespaces that registered entities
+     */
+    public Set<String> getModIds() {
+        return catalog.getModIds();
+    }
+
+    /**
+     * Get the category of an entity type, or null if unknown or not a creature
+     */
+    public EntityCategory getCategory(String entityName) {
+        return catalog.getCategory(entityName);
     }
 
     /**
      * Get a description for an entity type
      */
     public String getEntityDescription(String entityName) {
-        return entityDescriptions.getOrDefault(entityName, "Unknown entity");
+        String description = catalog.getDescription(entityName);
+        return description != null ? description : "Unknown entity";
     }
 
     /**
-     * Build a formatted list of entities for AI prompts
+     * Build a formatted list of entities for AI prompts (cached per registry version)
      */
     public String buildEntityListForPrompt(boolean includeDescriptions, int maxEntitiesPerCategory) {
+        CachedEntityList cached = cachedEntityList;
+        if (cached != null && cached.matches(version, includeDescriptions, maxEntitiesPerCategory)) {
+            return cached.text;
+        }
+
+        int currentVersion = version;
+        String text = renderEntityListForPrompt(includeDescriptions, maxEntitiesPerCategory);
+        cachedEntityList = new CachedEntityList(currentVersion, includeDescriptions, maxEntitiesPerCategory, text);
+        return text;
+    }
+
+    private String renderEntityListForPrompt(boolean includeDescriptions, int maxEntitiesPerCategory) {
         StringBuilder sb = new StringBuilder();
 
         sb.append("**HOSTILE ENTITIES (for combat encounters):**\n");
-        appendEntityList(sb, hostileEntities, includeDescriptions, maxEntitiesPerCategory);
+        appendEntityList(sb, getHostileEntities(), includeDescriptions, maxEntitiesPerCategory);
 
         sb.append("\n**PASSIVE ENTITIES (for friendly NPCs, traders, guards):**\n");
-        appendEntityList(sb, passiveEntities, includeDescriptions, maxEntitiesPerCategory);
+        appendEntityList(sb, getPassiveEntities(), includeDescriptions, maxEntitiesPerCategory);
 
         sb.append("\n**NEUTRAL ENTITIES (can be used either way):**\n");
-        appendEntityList(sb, neutralEntities, includeDescriptions, maxEntitiesPerCategory);
+        appendEntityList(sb, getNeutralEntities(), includeDescriptions, maxEntitiesPerCategory);
 
+        List<String> bossEntities = getBossEntities();
         if (!bossEntities.isEmpty()) {
             sb.append("\n**BOSS ENTITIES (use sparingly for special encounters):**\n");
             appendEntityList(sb, bossEntities, includeDescriptions, maxEntitiesPerCategory);
@@ -211,6 +352,7 @@ public class EntityRegistry {
      */
     private void appendEntityList(StringBuilder sb, List<String> entities,
                                   boolean includeDescriptions, int maxEntities) {
+        EntityProfiles stats = profiles;
         int count = 0;
         for (String entity : entities) {
             if (maxEntities > 0 && count >= maxEntities) {
@@ -220,8 +362,14 @@ public class EntityRegistry {
 
             sb.append("  - `").append(entity).append("`");
 
-            if (includeDescriptions && entityDescriptions.containsKey(entity)) {
-                sb.append(" - ").append(entityDescriptions.get(entity));
+            String description = includeDescriptions ? catalog.getDescription(entity) : null;
+            if (description != null) {
+                sb.append(" - ").append(description);
+            }
+
+            String statLine = includeDescriptions && stats != null ? stats.describe(entity) : null;
+            if (statLine != null) {
+                sb.append(" (").append(statLine).append(")");
             }
 
             sb.append("\n");
@@ -233,6 +381,13 @@ public class EntityRegistry {
      * Build a compact list for JSON conversion prompt
      */
     public String buildCompactEntityList() {
+        return compactEntityList;
+    }
+
+    /**
+     * Compute the compact entity list (done once per catalog)
+     */
+    private static String computeCompactEntityList(EntityCatalog catalog) {
         StringBuilder sb = new StringBuilder();
 
         // Show a good sample of entities
@@ -250,6 +405,7 @@ public class EntityRegistry {
         sampleEntities.add("minecraft:iron_golem");
 
         // Add some modded entities if available
+        List<String> allEntities = catalog.getEntities();
         for (String entity : allEntities) {
             if (!entity.startsWith("minecraft:") && sampleEntities.size() < 30) {
                 sampleEntities.add(entity);
@@ -267,16 +423,45 @@ public class EntityRegistry {
     }
 
     /**
-     * Check if an entity exists
+     * Check if an entity exists (O(1), bare vanilla names like "zombie" accepted)
      */
     public boolean isValidEntity(String entityName) {
-        return allEntities.contains(entityName);
+        return catalog.contains(entityName);
+    }
+
+    /**
+     * Resolve an entity name to its full registry id, or null if unknown
+     */
+    public String resolveEntityId(String entityName) {
+        return catalog.resolve(entityName);
     }
 
     /**
      * Get entity count
      */
     public int getEntityCount() {
-        return allEntities.size();
+        return catalog.size();
+    }
+
+    /**
+     * Last rendered prompt entity list and the inputs it was rendered for
+     */
+    private static class CachedEntityList {
+        final int version;
+        final boolean includeDescriptions;
+        final int maxEntitiesPerCategory;
+        final String text;
+
+        CachedEntityList(int version, boolean includeDescriptions, int maxEntitiesPerCategory, String text) {
+            this.version = version;
+            this.includeDescriptions = includeDescriptions;
+            this.maxEntitiesPerCategory = maxEntitiesPerCategory;
+            this.text = text;
+        }
+
+        boolean matches(int version, boolean includeDescriptions, int maxEntitiesPerCategory) {
+            return this.version == version && this.includeDescriptions == includeDescriptions &&
+                this.maxEntitiesPerCategory == maxEntitiesPerCategory;
+        }
     }
 }
@@ -0,0 +1,196 @@
+package ai.torchlite.randomencounters.metrics;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Timings of one encounter request, from the command to the spawn
+ *
+ * Spans are added as each pipeline stage completes, on whichever thread ran
+ * it (capture and spawn on the server thread, generation on a worker). Span
+ * start times are offsets from the start of the trace. {@link #finish} hands
+ * the trace to the {@link TraceRecorder}; spans added after that are ignored.
+ */
+public final class EncounterTrace {
+
+    /**
+     * A trace that records nothing, for callers that don't trace
+     */
+    public static final EncounterTrace NONE = new EncounterTrace();
+
+    @SerializedName("trace_id")
+    private final String traceId;
+
+    @SerializedName("player")
+    private final String playerName;
+
+    @SerializedName("player_uuid")
+    private final String playerUUID;
+
+    @SerializedName("party_size")
+    private final int partySize;
+
+    @SerializedName("start")
+    private final long startMillis; // Wall clock, for display
+
+    @SerializedName("duration_ms")
+    private double durationMillis;
+
+    @SerializedName("outcome")
+    private String outcome;
+
+    @SerializedName("spans")
+    private final List<Span> spans = new ArrayList<>();
+
+    private final transient long startNanos;
+    private final transient boolean recording;
+    private transient boolean finished;
+
+    private EncounterTrace() {
+        this.traceId = "-";
+        this.playerName = null;
+        this.playerUUID = null;
+        this.partySize = 0;
+        this.startMillis = 0;
+        this.startNanos = 0;
+        this.recording = false;
+    }
+
+    EncounterTrace(UUID playerUUID, String playerName, int partySize) {
+        this.traceId = String.format("%08x", ThreadLocalRandom.current().nextInt());
+        this.playerName = playerName;
+        this.playerUUID = playerUUID.toString();
+        this.partySize = partySize;
+        this.startMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        this.recording = true;
+    }
+
+    /**
+     * Record a top-level stage that started at startNanos and ends now
+     */
+    public void span(String name, long startNanos) {
+        span(name, 0, startNanos, System.nanoTime(), null, null);
+    }
+
+    /**
+     * Record a span
+     * @param depth Nesting level for display (0 = pipeline stage, 1 = part of the stage above)
+     * @param detail Short description (model, entity count...), or null
+     * @param error What went wrong, or null if the span succeeded
+     */
+    public synchronized void span(String name, int depth, long startNanos, long endNanos, String detail, String error) {
+        if (!recording || finished) {
+            return;
+        }
+        spans.add(new Span(name, depth, (startNanos - this.startNanos) / 1_000_000.0,
+            (endNanos - startNanos) / 1_000_000.0, detail, error));
+    }
+
+    /**
+     * End the trace and hand it to the recorder (only the first call counts)
+     */
+    public void finish(String outcome) {
+        synchronized (this) {
+            if (!recording || finished) {
+                return;
+            }
+            finished = true;
+            this.outcome = outcome;
+            this.durationMillis = (System.nanoTime() - startNanos) / 1_000_000.0;
+            // Nested spans are added before the span that contains them finishes
+            spans.sort(Comparator.comparingDouble(Span::getStartMillis).thenComparingInt(Span::getDepth));
+        }
+        TraceRecorder.getInstance().add(this);
+    }
+
+    public String getTraceId() { return traceId; }
+    public String getPlayerName() { return playerName; }
+    public String getPlayerUUID() { return playerUUID; }
+    public int getPartySize() { return partySize; }
+    public long getStartMillis() { return startMillis; }
+    public synchronized double getDurationMillis() { return durationMillis; }
+    public synchronized String getOutcome() { return outcome; }
+    public boolean isRecording() { return recording; }
+
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * One line: id, wall-clock start, outcome and total time
+     */
+    public synchronized String getSummary() {
+        return traceId + " " + new SimpleDateFormat("HH:mm:ss").format(new Date(startMillis)) + " " +
+            (outcome != null ? outcome : "in progress") + " in " + formatMillis(durationMillis) +
+            (partySize > 1 ? " (party of " + partySize + ")" : "");
+    }
+
+    @Override
+    public String toString() {
+        return "trace " + traceId;
+    }
+
+    /**
+     * One timed stage
+     */
+    public static final class Span {
+        @SerializedName("name")
+        private final String name;
+
+        @SerializedName("depth")
+        private final int depth;
+
+        @SerializedName("start_ms")
+        private final double startMillis;
+
+        @SerializedName("duration_ms")
+        private final double durationMillis;
+
+        @SerializedName("detail")
+        private final String detail;
+
+        @SerializedName("error")
+        private final String error;
+
+        Span(String name, int depth, double startMillis, double durationMillis, String detail, String error) {
+            this.name = name;
+            this.depth = depth;
+            this.startMillis = startMillis;
+            this.durationMillis = durationMillis;
+            this.detail = detail;
+            this.error = error;
+        }
+
+        public String getName() { return name; }
+        public int getDepth() { return depth; }
+        public double getStartMillis() { return startMillis; }
+        public double getDurationMillis() { return durationMillis; }
+        public String getDetail() { return detail; }
+        public String getError() { return error; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s +%.0fms %s%s%s", name, startMillis, formatMillis(durationMillis),
+                detail != null ? " (" + detail + ")" : "", error != null ? " FAILED: " + error : "");
+        }
+    }
+
+    static String formatMillis(double millis) {
+        if (millis < 10) {
+            return String.format(Locale.ROOT, "%.2fms", millis);
+        }
+        if (millis < 10_000) {
+            return String.format(Locale.ROOT, "%.0fms", millis);
+        }
+        return String.format(Locale.ROOT, "%.1fs", millis / 1000);
+    }
+}
@@ -0,0 +1,167 @@
+package ai.torchlite.randomencounters.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Named counters and latency histograms for the generation pipeline
+ *
+ * Each metric family has a name, help text and any number of label sets
+ * (e.g. provider/model). Looking a metric up allocates a label key, so hot
+ * paths should look it up once and keep the instance; recording is lock-free.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    private final Map<String, Family<?>> families = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param labels Alternating label names and values, e.g. "provider", "openai"
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return family(name, help, Type.COUNTER, Counter::new).get(labels);
+    }
+
+    /**
+     * @param labels Alternating label names and values, e.g. "provider", "openai"
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return family(name, help, Type.HISTOGRAM, LatencyHistogram::new).get(labels);
+    }
+
+    /**
+     * One human-readable line per metric, sorted by name then labels
+     */
+    public List<String> getSummaryLines() {
+        List<String> lines = new ArrayList<>();
+        for (Family<?> family : new TreeMap<>(families).values()) {
+            for (Map.Entry<String, ?> entry : new TreeMap<>(family.metrics).entrySet()) {
+                String name = family.name + (entry.getKey().isEmpty() ? "" : "{" + entry.getKey() + "}");
+                Object metric = entry.getValue();
+                if (metric instanceof Counter) {
+                    lines.add(name + ": " + ((Counter) metric).get());
+                } else {
+                    LatencyHistogram histogram = (LatencyHistogram) metric;
+                    if (histogram.getCount() == 0) {
+                        continue;
+                    }
+                    lines.add(String.format("%s: %d, p50 %s, p90 %s, p99 %s, max %s", name, histogram.getCount(),
+                        formatMicros(histogram.getQuantileMicros(0.50)),
+                        formatMicros(histogram.getQuantileMicros(0.90)),
+                        formatMicros(histogram.getQuantileMicros(0.99)),
+                        formatMicros(histogram.getMaxMicros())));
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Zero every metric; instances held by callers stay registered
+     */
+    public void reset() {
+        for (Family<?> family : families.values()) {
+            for (Object metric : family.metrics.values()) {
+                if (metric instanceof Counter) {
+                    ((Counter) metric).reset();
+                } else {
+                    ((LatencyHistogram) metric).reset();
+                }
+            }
+        }
+    }
+
+    List<Family<?>> getFamilies() {
+        return new ArrayList<>(new TreeMap<>(families).values());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Family<T> family(String name, String help, Type type, Supplier<T> factory) {
+        Family<?> family = families.computeIfAbsent(name, k -> new Family<>(name, help, type, factory));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return (Family<T>) family;
+    }
+
+    static String formatMicros(long micros) {
+        if (micros < 1000) {
+            return micros + "us";
+        }
+        if (micros < 10_000_000) {
+            return String.format("%.1fms", micros / 1000.0);
+        }
+        return String.format("%.1fs", micros / 1_000_000.0);
+    }
+
+    enum Type {
+        COUNTER("counter"),
+        HISTOGRAM("histogram");
+
+        final String prometheusName;
+
+        Type(String prometheusName) {
+            this.prometheusName = prometheusName;
+        }
+    }
+
+    static class Family<T> {
+        final String name;
+        final String help;
+        final Type type;
+        final Map<String, T> metrics = new ConcurrentHashMap<>();
+        private final Supplier<T> factory;
+
+        Family(String name, String help, Type type, Supplier<T> factory) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.factory = factory;
+        }
+
+        T get(String... labels) {
+            return metrics.computeIfAbsent(labelKey(labels), k -> factory.get());
+        }
+
+        /**
+         * Labels in Prometheus form: provider="openai",model="gpt-4o"
+         */
+        private static String labelKey(String... labels) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException("Labels must be name/value pairs");
+            }
+            StringBuilder key = new StringBuilder();
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    key.append(',');
+                }
+                key.append(labels[i]).append("=\"");
+                String value = labels[i + 1] != null ? labels[i + 1] : "";
+                for (int j = 0; j < value.length(); j++) {
+                    char c = value.charAt(j);
+                    if (c == '\\' || c == '"') {
+                        key.append('\\').append(c);
+                    } else if (c == '\n') {
+                        key.append("\\n");
+                    } else {
+                        key.append(c);
+                    }
+                }
+                key.append('"');
+            }
+            return key.toString();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ai.torchlite.randomencounters.metrics;
+
+/**
+ * The generation pipeline's metrics, registered once so hot paths skip the lookup
+ *
+ * Stages in request order: context capture (server thread), queue wait,
+ * context enrichment and prompt build (worker), provider narrative and
+ * conversion calls, JSON parse, then encounter spawn (server thread).
+ */
+public final class PipelineMetrics {
+
+    private static final MetricsRegistry registry = MetricsRegistry.getInstance();
+
+    public static final LatencyHistogram CONTEXT_CAPTURE = registry.histogram("randomencounters_context_capture",
+        "Time to capture a player's context snapshot on the server thread");
+    public static final LatencyHistogram QUEUE_WAIT = registry.histogram("randomencounters_queue_wait",
+        "Time a generation request waited for a worker thread");
+    public static final LatencyHistogram CONTEXT_BUILD = registry.histogram("randomencounters_context_build",
+        "Time to enrich a snapshot into a storytelling request");
+    public static final LatencyHistogram PROMPT_BUILD = registry.histogram("randomencounters_prompt_build",
+        "Time to assemble the prompt for a request");
+    public static final LatencyHistogram GENERATION = registry.histogram("randomencounters_generation",
+        "End-to-end time from request to parsed encounter");
+    public static final LatencyHistogram SPAWN = registry.histogram("randomencounters_spawn",
+        "Time to spawn an encounter's entities on the server thread");
+
+    public static final Counter GENERATED = registry.counter("randomencounters_generations",
+        "Generation requests by result", "result", "success");
+    public static final Counter FAILED = registry.counter("randomencounters_generations",
+        "Generation requests by result", "result", "failure");
+    public static final Counter REUSED = registry.counter("randomencounters_generations",
+        "Generation requests by result", "result", "reused");
+
+    private PipelineMetrics() {
+    }
+
+    /**
+     * Latency of one provider call
+     * @param step "narrative" or "conversion"
+     */
+    public static LatencyHistogram providerLatency(String provider, String model, String step) {
+        return registry.histogram("randomencounters_provider_latency", "Provider API call latency",
+            "provider", provider, "model", model, "step", step);
+    }
+
+    /**
+     * Provider calls that failed (non-200 response, or the connection failed or timed out)
+     */
+    public static Counter providerErrors(String provider, String model, String step) {
+        return registry.counter("randomencounters_provider_errors", "Failed provider API calls",
+            "provider", provider, "model", model, "step", step);
+    }
+
+    /**
+     * Time to parse a provider's encounter JSON
+     */
+    public static LatencyHistogram jsonParse(String provider, String model) {
+        return registry.histogram("randomencounters_json_parse", "Time to parse the encounter JSON",
+            "provider", provider, "model", model);
+    }
+
+    /**
+     * Defects repaired in a provider's JSON before it would parse
+     * @param defect "preamble", "fence", "trailing_comma" or "truncated"
+     */
+    public static Counter jsonRepairs(String provider, String defect) {
+        return registry.counter("randomencounters_json_repairs", "Model JSON defects repaired before parsing",
+            "provider", provider, "defect", defect);
+    }
+
+    /**
+     * Fixes to converted responses that failed validation
+     * @param kind "local" (fixed in place), "fragment" (re-converted), "dropped" (removed) or "rejected" (no entities left)
+     */
+    public static Counter responseRepairs(String kind) {
+        return registry.counter("randomencounters_response_repairs", "Fixes to converted responses that failed validation",
+            "kind", kind);
+    }
+
+    /**
+     * Server tick time spent in one of the mod's tick handlers
+     */
+    public static LatencyHistogram tickCost(String handler) {
+        return registry.histogram("randomencounters_tick_cost", "Server tick time spent in a handler",
+            "handler", handler);
+    }
+}
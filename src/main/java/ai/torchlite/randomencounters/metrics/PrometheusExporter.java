@@ -0,0 +1,143 @@
+package ai.torchlite.randomencounters.metrics;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes the metrics registry to a file in the Prometheus text format
+ *
+ * Meant for node_exporter's textfile collector (or anything that scrapes a
+ * .prom file). The file is written to a temporary sibling and moved into place
+ * so a scrape never sees a partial file. Histograms are exported with fixed
+ * second-based buckets plus _sum and _count.
+ */
+public class PrometheusExporter {
+
+    private static final String[] BUCKET_SECONDS = {
+        "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5",
+        "1", "2.5", "5", "10", "20", "30", "60", "120"
+    };
+
+    private static PrometheusExporter instance;
+
+    private final MetricsRegistry registry;
+    private final File file;
+    private final ScheduledExecutorService executor;
+
+    private PrometheusExporter(MetricsRegistry registry, File file, int intervalSeconds) {
+        this.registry = registry;
+        this.file = file;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "RandomEncounters-Metrics");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::export, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Start exporting every intervalSeconds (no-op when 0), replacing any previous exporter
+     */
+    public static synchronized void start(File file, int intervalSeconds) {
+        stop();
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        instance = new PrometheusExporter(MetricsRegistry.getInstance(), file, intervalSeconds);
+        RandomEncounters.LOGGER.info("Exporting metrics every " + intervalSeconds + "s to " + file.getAbsolutePath());
+    }
+
+    /**
+     * Stop exporting, writing the file one last time
+     */
+    public static synchronized void stop() {
+        if (instance != null) {
+            instance.executor.shutdownNow();
+            instance.export();
+            instance = null;
+        }
+    }
+
+    /**
+     * Write the current metrics to the file
+     */
+    public void export() {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(temp.toPath()), StandardCharsets.UTF_8)) {
+            write(writer);
+        } catch (IOException e) {
+            RandomEncounters.LOGGER.warn("Failed to write metrics: " + e.getMessage());
+            return;
+        }
+
+        try {
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            RandomEncounters.LOGGER.warn("Failed to replace metrics file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format
+     */
+    public void write(Writer writer) throws IOException {
+        StringBuilder out = new StringBuilder();
+        for (MetricsRegistry.Family<?> family : registry.getFamilies()) {
+            String name = family.type == MetricsRegistry.Type.COUNTER ? family.name + "_total" : family.name + "_seconds";
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type.prometheusName).append('\n');
+
+            for (Map.Entry<String, ?> entry : new TreeMap<>(family.metrics).entrySet()) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof Counter) {
+                    out.append(name).append(braces(labels)).append(' ').append(((Counter) metric).get()).append('\n');
+                    continue;
+                }
+
+                LatencyHistogram histogram = (LatencyHistogram) metric;
+                String prefix = labels.isEmpty() ? "" : labels + ",";
+                long below = 0;
+                for (String bound : BUCKET_SECONDS) {
+                    below = Math.max(below, histogram.countAtOrBelow(Math.round(Double.parseDouble(bound) * 1_000_000)));
+                    out.append(name).append("_bucket{").append(prefix).append("le=\"").append(bound).append("\"} ")
+                       .append(below).append('\n');
+                }
+                // Recording may race the export; keep the buckets cumulative
+                long count = Math.max(below, histogram.getCount());
+                out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(count).append('\n');
+                out.append(name).append("_sum").append(braces(labels)).append(' ')
+                   .append(histogram.getSumMicros() / 1_000_000.0).append('\n');
+                out.append(name).append("_count").append(braces(labels)).append(' ').append(count).append('\n');
+            }
+        }
+        writer.write(out.toString());
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+}
@@ -0,0 +1,136 @@
+package ai.torchlite.randomencounters.metrics;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.config.ConfigHandler;
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the most recent encounter traces, and optionally appends them to a JSON lines file
+ *
+ * Finished traces go into a bounded ring (oldest dropped first) for
+ * /encounter trace. When trace logging is enabled each trace is also written
+ * as one JSON line on a background thread; the file is rotated to .1, .2, ...
+ * once it passes the configured size.
+ */
+public class TraceRecorder {
+
+    private static final TraceRecorder instance = new TraceRecorder();
+
+    private final Deque<EncounterTrace> recent = new ArrayDeque<>();
+    private final Gson gson = new Gson();
+    private final ExecutorService writer;
+
+    private TraceRecorder() {
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "RandomEncounters-Traces");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public static TraceRecorder getInstance() {
+        return instance;
+    }
+
+    /**
+     * Start a trace for a player's encounter request
+     */
+    public EncounterTrace begin(UUID playerUUID, String playerName, int partySize) {
+        return new EncounterTrace(playerUUID, playerName, partySize);
+    }
+
+    /**
+     * Keep a finished trace (called by {@link EncounterTrace#finish})
+     */
+    void add(EncounterTrace trace) {
+        synchronized (recent) {
+            recent.addLast(trace);
+            while (recent.size() > Math.max(1, ConfigHandler.traceBufferSize)) {
+                recent.removeFirst();
+            }
+        }
+
+        RandomEncounters.LOGGER.debug("Encounter " + trace + " for " + trace.getPlayerName() + ": " +
+            trace.getOutcome() + " in " + EncounterTrace.formatMillis(trace.getDurationMillis()));
+
+        if (ConfigHandler.traceFileEnabled) {
+            File file = new File(ConfigHandler.traceFile);
+            writer.submit(() -> append(file, trace));
+        }
+    }
+
+    /**
+     * The player's most recent traces, newest first
+     * @param player Player name (case-insensitive) or UUID
+     */
+    public List<EncounterTrace> getRecentTraces(String player, int count) {
+        List<EncounterTrace> traces = new ArrayList<>();
+        synchronized (recent) {
+            Iterator<EncounterTrace> it = recent.descendingIterator();
+            while (it.hasNext() && traces.size() < count) {
+                EncounterTrace trace = it.next();
+                if (player.equalsIgnoreCase(trace.getPlayerName()) || player.equalsIgnoreCase(trace.getPlayerUUID())) {
+                    traces.add(trace);
+                }
+            }
+        }
+        return traces;
+    }
+
+    public void clear() {
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+
+    private void append(File file, EncounterTrace trace) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        if (file.length() >= ConfigHandler.traceFileMaxKB * 1024L) {
+            rotate(file);
+        }
+
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            out.write(gson.toJson(trace));
+            out.write('\n');
+        } catch (IOException e) {
+            RandomEncounters.LOGGER.warn("Failed to write encounter trace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * traces.jsonl -> traces.jsonl.1 -> traces.jsonl.2 ..., dropping the oldest
+     */
+    private void rotate(File file) {
+        int keep = Math.max(1, ConfigHandler.traceFileCount);
+        File oldest = new File(file.getPath() + "." + keep);
+        if (oldest.exists() && !oldest.delete()) {
+            RandomEncounters.LOGGER.warn("Failed to delete old trace file " + oldest.getName());
+        }
+        for (int i = keep - 1; i >= 1; i--) {
+            File from = new File(file.getPath() + "." + i);
+            if (from.exists()) {
+                from.renameTo(new File(file.getPath() + "." + (i + 1)));
+            }
+        }
+        file.renameTo(new File(file.getPath() + ".1"));
+    }
+}
@@ -0,0 +1,175 @@
+package ai.torchlite.randomencounters.story;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Interns faction names to small integer ids
+ *
+ * The Dregora factions are registered up front with fixed ids (0-8) and their
+ * starting reputation. Names are matched case-insensitively and without a
+ * leading "The", and older names used in prompts are aliased to the faction
+ * they describe, so "Blight Cultists" and "eldritch cults" both resolve to
+ * Eldritch Cults. Factions the AI invents are interned on first use, up to
+ * {@link #MAX_FACTIONS}.
+ *
+ * Reputation is stored per player as an int array indexed by these ids (see
+ * {@link FactionReputation}).
+ */
+public class FactionRegistry {
+
+    public static final int MAX_FACTIONS = 256;
+
+    private static FactionRegistry instance;
+
+    private final List<Faction> factions = new ArrayList<>(); // Index = id
+    private final Map<String, Integer> ids = new HashMap<>(); // Normalized name or alias -> id
+    private int builtinCount;
+
+    private FactionRegistry() {
+        register("Dregorian Colonists", 50, "Ship returnees rebuilding civilization, technologically savvy and organized");
+        register("Wasteland Nomads", 0, "Survivor traders and wanderers, pragmatic and resourceful");
+        register("Kingdom of Daeroc", 0, "One of the major surviving kingdoms, an established authority");
+        register("Scavenger Guilds", 0, "Ruin explorers and looters who salvage pre-Blight tech");
+        register("Eldritch Cults", -25, "Worshippers of the Blight and older, darker forces");
+        register("Nature's Guardians", 10, "Druids and herbalists protecting sacred groves");
+        register("The Corrupted", -75, "Mutants and Blight-touched beings");
+        register("Underground Cities", -10, "Subterranean civilizations in The Underneath");
+        register("Merchant League", 25, "Gem traders and herbalists connecting isolated settlements");
+        builtinCount = factions.size();
+
+        // Names earlier prompts used for the same groups
+        alias("Scavenger Clans", "Scavenger Guilds");
+        alias("Techno-Scavengers", "Scavenger Guilds");
+        alias("Blight Cultists", "Eldritch Cults");
+        alias("Trading Guilds", "Merchant League");
+        alias("Mutant Tribes", "The Corrupted");
+        alias("Pre-War Military Remnants", "Kingdom of Daeroc");
+        alias("Independent Survivors", "Wasteland Nomads");
+    }
+
+    public static synchronized FactionRegistry getInstance() {
+        if (instance == null) {
+            instance = new FactionRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Id of a known faction or alias
+     * @return the id, or -1 if the name isn't registered
+     */
+    public synchronized int getId(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer id = ids.get(normalize(name));
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Id of a faction, registering it if it's new
+     * @return the id, or -1 for blank names or when the registry is full
+     */
+    public synchronized int intern(String name) {
+        int id = getId(name);
+        if (id >= 0 || name == null || name.trim().isEmpty()) {
+            return id;
+        }
+        if (factions.size() >= MAX_FACTIONS) {
+            RandomEncounters.LOGGER.warn("Faction registry full, ignoring faction: " + name);
+            return -1;
+        }
+        return register(name.trim(), 0, null);
+    }
+
+    /**
+     * Canonical name of a faction (aliases resolve to the faction they stand for)
+     */
+    public synchronized String getName(int id) {
+        return factions.get(id).getName();
+    }
+
+    public synchronized Faction getFaction(int id) {
+        return id >= 0 && id < factions.size() ? factions.get(id) : null;
+    }
+
+    /**
+     * Reputation a new player starts with
+     */
+    public synchronized int getDefaultReputation(int id) {
+        return factions.get(id).getDefaultReputation();
+    }
+
+    /**
+     * Number of interned factions; valid ids are 0 to size() - 1
+     */
+    public synchronized int size() {
+        return factions.size();
+    }
+
+    /**
+     * The Dregora factions, in id order
+     */
+    public synchronized List<Faction> getBuiltinFactions() {
+        return Collections.unmodifiableList(new ArrayList<>(factions.subList(0, builtinCount)));
+    }
+
+    /**
+     * Numbered list of the Dregora factions for prompts
+     */
+    public String buildFactionList() {
+        StringBuilder list = new StringBuilder();
+        List<Faction> builtin = getBuiltinFactions();
+        for (int i = 0; i < builtin.size(); i++) {
+            Faction faction = builtin.get(i);
+            list.append(i + 1).append(". **").append(faction.getName()).append("** - ")
+                .append(faction.getDescription()).append("\n");
+        }
+        return list.toString();
+    }
+
+    private int register(String name, int defaultReputation, String description) {
+        int id = factions.size();
+        factions.add(new Faction(id, name, description, defaultReputation));
+        ids.put(normalize(name), id);
+        return id;
+    }
+
+    private void alias(String alias, String name) {
+        ids.put(normalize(alias), ids.get(normalize(name)));
+    }
+
+    private static String normalize(String name) {
+        String normalized = name.trim().toLowerCase(Locale.ROOT);
+        return normalized.startsWith("the ") ? normalized.substring(4) : normalized;
+    }
+
+    /**
+     * A registered faction
+     */
+    public static final class Faction {
+        private final int id;
+        private final String name;
+        private final String description;
+        private final int defaultReputation;
+
+        Faction(int id, String name, String description, int defaultReputation) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+            this.defaultReputation = defaultReputation;
+        }
+
+        public int getId() { return id; }
+        public String getName() { return name; }
+        public String getDescription() { return description; }
+        public int getDefaultReputation() { return defaultReputation; }
+    }
+}
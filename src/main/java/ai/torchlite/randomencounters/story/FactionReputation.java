@@ -0,0 +1,181 @@
+package ai.torchlite.randomencounters.story;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A player's reputation with each faction, indexed by {@link FactionRegistry} id
+ *
+ * Scores are -100 to 100. Factions the player has no standing with yet are
+ * unset (read as 0). Saved as a JSON object of faction name to score, the same
+ * format the old name -> score map used, so existing story files load as-is.
+ */
+public class FactionReputation {
+
+    public static final int MIN_REPUTATION = -100;
+    public static final int MAX_REPUTATION = 100;
+    private static final int UNSET = Integer.MIN_VALUE;
+
+    private int[] values;
+
+    public FactionReputation() {
+        this.values = new int[0];
+    }
+
+    /**
+     * Starting reputation for a new player (the registry's defaults for the Dregora factions)
+     */
+    public static FactionReputation withDefaults() {
+        FactionReputation reputation = new FactionReputation();
+        for (FactionRegistry.Faction faction : FactionRegistry.getInstance().getBuiltinFactions()) {
+            reputation.set(faction.getId(), faction.getDefaultReputation());
+        }
+        return reputation;
+    }
+
+    /**
+     * Reputation from a faction name -> score map; names are resolved through the registry
+     */
+    public static FactionReputation fromMap(Map<String, Integer> map) {
+        FactionReputation reputation = new FactionReputation();
+        if (map != null) {
+            for (Map.Entry<String, Integer> entry : map.entrySet()) {
+                if (entry.getValue() != null) {
+                    reputation.set(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return reputation;
+    }
+
+    public int get(int factionId) {
+        return factionId >= 0 && factionId < values.length && values[factionId] != UNSET ? values[factionId] : 0;
+    }
+
+    public int get(String faction) {
+        return get(FactionRegistry.getInstance().getId(faction));
+    }
+
+    /**
+     * Whether the player has any standing with this faction
+     */
+    public boolean has(int factionId) {
+        return factionId >= 0 && factionId < values.length && values[factionId] != UNSET;
+    }
+
+    public void set(int factionId, int value) {
+        if (factionId < 0) {
+            return;
+        }
+        ensureCapacity(factionId + 1);
+        values[factionId] = clamp(value);
+    }
+
+    public void set(String faction, int value) {
+        set(FactionRegistry.getInstance().intern(faction), value);
+    }
+
+    /**
+     * Add to a faction's reputation, clamped to -100..100
+     * @return the new reputation
+     */
+    public int modify(int factionId, int change) {
+        if (factionId < 0) {
+            return 0;
+        }
+        int value = clamp(get(factionId) + change);
+        set(factionId, value);
+        return value;
+    }
+
+    public int modify(String faction, int change) {
+        return modify(FactionRegistry.getInstance().intern(faction), change);
+    }
+
+    public boolean isEmpty() {
+        for (int value : values) {
+            if (value != UNSET) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Faction name -> score for every faction with a standing, in id order
+     */
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        FactionRegistry registry = FactionRegistry.getInstance();
+        for (int id = 0; id < values.length; id++) {
+            if (values[id] != UNSET) {
+                map.put(registry.getName(id), values[id]);
+            }
+        }
+        return map;
+    }
+
+    public FactionReputation copy() {
+        FactionReputation copy = new FactionReputation();
+        copy.values = values.clone();
+        return copy;
+    }
+
+    private void ensureCapacity(int size) {
+        if (values.length < size) {
+            int oldLength = values.length;
+            values = Arrays.copyOf(values, Math.max(size, FactionRegistry.getInstance().size()));
+            Arrays.fill(values, oldLength, values.length, UNSET);
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(MIN_REPUTATION, Math.min(MAX_REPUTATION, value));
+    }
+
+    /**
+     * Reads and writes the JSON object format: {"Faction Name": score, ...}
+     */
+    public static class Adapter extends TypeAdapter<FactionReputation> {
+
+        @Override
+        public void write(JsonWriter out, FactionReputation reputation) throws IOException {
+            if (reputation == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            for (Map.Entry<String, Integer> entry : reputation.toMap().entrySet()) {
+                out.name(entry.getKey()).value(entry.getValue().intValue());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public FactionReputation read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            FactionReputation reputation = new FactionReputation();
+            in.beginObject();
+            while (in.hasNext()) {
+                String faction = in.nextName();
+                if (in.peek() == JsonToken.NUMBER) {
+                    reputation.set(faction, in.nextInt());
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return reputation;
+        }
+    }
+}
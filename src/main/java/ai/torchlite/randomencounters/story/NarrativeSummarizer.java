@@ -0,0 +1,270 @@
+package ai.torchlite.randomencounters.story;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Local extractive summarizer for player story history
+ *
+ * Text is split into sentences and the highest-signal ones are kept within a
+ * character limit, in their original order. A sentence scores higher when it
+ * is recent, mentions an active thread, key NPC or named entity, or records a
+ * decisive outcome; near-repeats of a kept sentence are skipped. The oldest
+ * sentence (how the story started) and the most recent ones are always kept.
+ * No model calls, so it is cheap enough to run after every few encounters.
+ */
+public class NarrativeSummarizer {
+
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[.!?])\\s+");
+    private static final Pattern WORD_BREAK = Pattern.compile("[^\\p{L}\\p{N}']+");
+
+    private static final int RECENT_SENTENCES = 3;
+    private static final int MIN_KEYWORD_LENGTH = 4;
+    private static final double REDUNDANCY_THRESHOLD = 0.7; // Word overlap (Jaccard) treated as a repeat
+
+    private static final String[] OUTCOME_WORDS = {
+        "victory", "defeat", "fled", "negotiated", "betray", "killed", "slain", "died",
+        "rescued", "destroyed", "allied", "discovered", "revealed", "resolved"
+    };
+
+    /**
+     * Fold new encounters into a rolling summary
+     * @param previousSummary The current summary (may be null)
+     * @param newEncounters Encounters not yet in the summary, oldest first
+     * @param threads Active threads, used to favor sentences about ongoing stories
+     * @param maxChars Maximum summary length
+     */
+    public String summarize(String previousSummary, List<EncounterSummary> newEncounters,
+                            Collection<StoryThread> threads, int maxChars) {
+        List<String> sentences = splitSentences(previousSummary);
+        Set<String> keywords = collectKeywords(threads);
+
+        for (EncounterSummary encounter : newEncounters) {
+            String sentence = describeEncounter(encounter);
+            if (sentence != null) {
+                sentences.add(sentence);
+            }
+            addKeywords(keywords, encounter.getKeyEntities());
+        }
+
+        return select(sentences, keywords, maxChars);
+    }
+
+    /**
+     * Compact a thread's accumulated narrative context, keeping its origin and latest events
+     */
+    public String compactThreadContext(StoryThread thread, int maxChars) {
+        String context = thread.getNarrativeContext();
+        if (context == null || context.length() <= maxChars) {
+            return context;
+        }
+
+        Set<String> keywords = new HashSet<>();
+        addKeywords(keywords, thread.getTitle());
+        addKeywords(keywords, thread.getCurrentObjective());
+        addKeywords(keywords, thread.getKeyNPCs());
+        addKeywords(keywords, thread.getKeyLocations());
+
+        return select(splitSentences(context), keywords, maxChars);
+    }
+
+    /**
+     * One summary sentence for an encounter, e.g. "Ambushed by raiders at the bridge (victory)."
+     */
+    String describeEncounter(EncounterSummary encounter) {
+        String description = encounter.getBriefDescription();
+        if (description == null || description.trim().isEmpty()) {
+            return null;
+        }
+
+        StringBuilder sentence = new StringBuilder(description.trim());
+        while (sentence.length() > 0 && ".!?".indexOf(sentence.charAt(sentence.length() - 1)) >= 0) {
+            sentence.setLength(sentence.length() - 1);
+        }
+
+        String outcome = encounter.getOutcome();
+        if (outcome != null && !"pending".equals(outcome) && !"incomplete".equals(outcome)) {
+            sentence.append(" (").append(outcome).append(")");
+        }
+        return sentence.append(".").toString();
+    }
+
+    /**
+     * Keep the highest-scoring sentences that fit, in their original order
+     */
+    private String select(List<String> sentences, Set<String> keywords, int maxChars) {
+        int count = sentences.size();
+        if (joinedLength(sentences) <= maxChars) {
+            return String.join(" ", sentences);
+        }
+
+        boolean[] keep = new boolean[count];
+        int length = 0;
+
+        // Most recent sentences first, then the origin of the story
+        for (int i = count - 1; i >= Math.max(0, count - RECENT_SENTENCES); i--) {
+            length = tryKeep(keep, sentences, i, length, maxChars);
+        }
+        length = tryKeep(keep, sentences, 0, length, maxChars);
+
+        // Fill the remaining space with the highest-signal sentences
+        Integer[] order = new Integer[count];
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            scores[i] = score(sentences.get(i), i, count, keywords);
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        for (int i : order) {
+            if (!keep[i] && !isRedundant(sentences, keep, i)) {
+                length = tryKeep(keep, sentences, i, length, maxChars);
+            }
+        }
+
+        List<String> kept = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                kept.add(sentences.get(i));
+            }
+        }
+        if (kept.isEmpty()) {
+            // A single run-on sentence longer than the limit: keep its end
+            String last = sentences.get(count - 1);
+            return last.substring(Math.max(0, last.length() - maxChars)).trim();
+        }
+        return String.join(" ", kept);
+    }
+
+    /**
+     * Whether a sentence mostly repeats the words of one already kept
+     */
+    private boolean isRedundant(List<String> sentences, boolean[] keep, int index) {
+        Set<String> words = wordSet(sentences.get(index));
+        for (int i = 0; i < keep.length; i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            Set<String> other = wordSet(sentences.get(i));
+            int shared = 0;
+            for (String word : words) {
+                if (other.contains(word)) {
+                    shared++;
+                }
+            }
+            int union = words.size() + other.size() - shared;
+            if (union > 0 && shared / (double) union >= REDUNDANCY_THRESHOLD) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<String> wordSet(String sentence) {
+        Set<String> words = new HashSet<>();
+        for (String word : WORD_BREAK.split(sentence.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private int tryKeep(boolean[] keep, List<String> sentences, int index, int length, int maxChars) {
+        int added = sentences.get(index).length() + (length > 0 ? 1 : 0);
+        if (keep[index] || length + added > maxChars) {
+            return length;
+        }
+        keep[index] = true;
+        return length + added;
+    }
+
+    private double score(String sentence, int index, int count, Set<String> keywords) {
+        double score = count > 1 ? index / (double) (count - 1) : 1.0; // Recency
+
+        int keywordHits = 0;
+        int properNouns = 0;
+        String[] words = WORD_BREAK.split(sentence);
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (keywords.contains(word.toLowerCase(Locale.ROOT))) {
+                keywordHits++;
+            }
+            if (i > 0 && Character.isUpperCase(word.charAt(0))) {
+                properNouns++;
+            }
+        }
+        score += 0.5 * Math.min(keywordHits, 3);
+        score += 0.2 * Math.min(properNouns, 3);
+
+        String lower = sentence.toLowerCase(Locale.ROOT);
+        for (String outcome : OUTCOME_WORDS) {
+            if (lower.contains(outcome)) {
+                score += 0.4;
+                break;
+            }
+        }
+
+        if (sentence.length() < 20) {
+            score -= 0.5; // Fragments carry little information
+        }
+        return score;
+    }
+
+    private List<String> splitSentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        if (text == null) {
+            return sentences;
+        }
+        for (String sentence : SENTENCE_BREAK.split(text.trim())) {
+            if (!sentence.isEmpty()) {
+                sentences.add(sentence);
+            }
+        }
+        return sentences;
+    }
+
+    private Set<String> collectKeywords(Collection<StoryThread> threads) {
+        Set<String> keywords = new HashSet<>();
+        for (StoryThread thread : threads) {
+            addKeywords(keywords, thread.getTitle());
+            addKeywords(keywords, thread.getKeyNPCs());
+        }
+        return keywords;
+    }
+
+    private void addKeywords(Set<String> keywords, String text) {
+        if (text == null) {
+            return;
+        }
+        for (String word : WORD_BREAK.split(text)) {
+            if (word.length() >= MIN_KEYWORD_LENGTH) {
+                keywords.add(word.toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    private void addKeywords(Set<String> keywords, List<String> names) {
+        if (names != null) {
+            for (String name : names) {
+                addKeywords(keywords, name);
+            }
+        }
+    }
+
+    private int joinedLength(List<String> sentences) {
+        int length = Math.max(0, sentences.size() - 1);
+        for (String sentence : sentences) {
+            length += sentence.length();
+        }
+        return length;
+    }
+}
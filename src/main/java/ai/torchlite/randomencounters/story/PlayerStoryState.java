@@ -1,5 +1,6 @@
 package ai.torchlite.randomencounters.story;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 import java.util.*;
 
@@ -26,7 +27,10 @@ public class PlayerStoryState {
     private List<EncounterSummary> encounterHistory; // Last 100 encounters
 
     @SerializedName("narrative_summary")
-    private String narrativeSummary; // AI-generated summary of player's journey
+    private String narrativeSummary; // Rolling summary of player's journey
+
+    @SerializedName("summarized_through")
+    private long summarizedThrough; // Timestamp of the newest encounter folded into the summary
 
     // Active Story Threads
     @SerializedName("active_threads")
@@ -34,7 +38,8 @@ public class PlayerStoryState {
 
     // Relationships & Reputation
     @SerializedName("faction_reputation")
-    private Map<String, Integer> factionReputation; // faction -> score (-100 to 100)
+    @JsonAdapter(FactionReputation.Adapter.class)
+    private FactionReputation factionReputation; // Saved as faction name -> score (-100 to 100)
 
     // Player Characteristics (AI-inferred)
     @SerializedName("player_traits")
@@ -51,27 +56,9 @@ public class PlayerStoryState {
         this.lastSeenTimestamp = this.firstSeenTimestamp;
         this.encounterHistory = new ArrayList<>();
         this.activeThreads = new HashMap<>();
-        this.factionReputation = new HashMap<>();
+        this.factionReputation = FactionReputation.withDefaults(); // Dregora factions at their starting reputation
         this.playerTraits = new HashMap<>();
         this.encounterTypePreferences = new HashMap<>();
-
-        // Initialize Dregora faction reputation
-        initializeDregoraFactions();
-    }
-
-    /**
-     * Initialize default reputation for Dregora factions
-     */
-    private void initializeDregoraFactions() {
-        factionReputation.put("Dregorian Colonists", 50);      // Your people - Friendly
-        factionReputation.put("Wasteland Nomads", 0);          // Neutral
-        factionReputation.put("Kingdom of Daeroc", 0);         // Neutral
-        factionReputation.put("Scavenger Guilds", 0);          // Neutral
-        factionReputation.put("Eldritch Cults", -25);          // Unfriendly
-        factionReputation.put("Nature's Guardians", 10);       // Slightly positive
-        factionReputation.put("The Corrupted", -75);           // Hostile
-        factionReputation.put("Underground Cities", -10);      // Suspicious
-        factionReputation.put("Merchant League", 25);          // Friendly (traders)
     }
 
     /**
@@ -96,6 +83,20 @@ public class PlayerStoryState {
         return new ArrayList<>(encounterHistory.subList(0, count));
     }
 
+    /**
+     * Get encounters newer than the narrative summary (oldest first)
+     */
+    public List<EncounterSummary> getUnsummarizedEncounters() {
+        List<EncounterSummary> result = new ArrayList<>();
+        for (EncounterSummary encounter : encounterHistory) {
+            if (encounter.getTimestamp() <= summarizedThrough) {
+                break; // History is newest first
+            }
+            result.add(0, encounter);
+        }
+        return result;
+    }
+
     /**
      * Add or update a story thread
      */
@@ -166,11 +167,20 @@ public class PlayerStoryState {
 
     /**
      * Modify faction reputation
+     * @return the new reputation
      */
-    public void modifyFactionReputation(String faction, int change) {
-        int current = factionReputation.getOrDefault(faction, 0);
-        int newValue = Math.max(-100, Math.min(100, current + change));
-        factionReputation.put(faction, newValue);
+    public int modifyFactionReputation(String faction, int change) {
+        return getReputation().modify(faction, change);
+    }
+
+    /**
+     * Reputation by faction id (see {@link FactionRegistry})
+     */
+    public FactionReputation getReputation() {
+        if (factionReputation == null) {
+            factionReputation = FactionReputation.withDefaults(); // Story files saved without reputation
+        }
+        return factionReputation;
     }
 
     // Getters and setters
@@ -192,11 +202,19 @@ public class PlayerStoryState {
     public String getNarrativeSummary() { return narrativeSummary; }
     public void setNarrativeSummary(String narrativeSummary) { this.narrativeSummary = narrativeSummary; }
 
+    public long getSummarizedThrough() { return summarizedThrough; }
+    public void setSummarizedThrough(long summarizedThrough) { this.summarizedThrough = summarizedThrough; }
+
     public Map<String, StoryThread> getActiveThreads() { return activeThreads; }
     public void setActiveThreads(Map<String, StoryThread> activeThreads) { this.activeThreads = activeThreads; }
 
-    public Map<String, Integer> getFactionReputation() { return factionReputation; }
-    public void setFactionReputation(Map<String, Integer> factionReputation) { this.factionReputation = factionReputation; }
+    /**
+     * Faction name -> score (a copy; use {@link #modifyFactionReputation} to change it)
+     */
+    public Map<String, Integer> getFactionReputation() { return getReputation().toMap(); }
+    public void setFactionReputation(Map<String, Integer> factionReputation) {
+        this.factionReputation = FactionReputation.fromMap(factionReputation);
+    }
 
     public Map<String, String> getPlayerTraits() { return playerTraits; }
     public void setPlayerTraits(Map<String, String> playerTraits) { this.playerTraits = playerTraits; }
@@ -5,6 +5,13 @@ import com.google.gson.GsonBuilder;
 import net.minecraft.entity.player.EntityPlayer;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -106,17 +113,34 @@ public class StoryStateManager {
     }
 
     /**
-     * Save story state to disk
+     * Save story state to disk. Called from the server, generation and summarizer threads:
+     * the state is serialized under its lock, then written to a temp file moved into place,
+     * so a save never sees a half-updated state or leaves a half-written file.
      */
     public void saveState(PlayerStoryState state) {
         File stateFile = getStateFile(state.getPlayerUUID());
 
-        try (FileWriter writer = new FileWriter(stateFile)) {
-            gson.toJson(state, writer);
+        String json;
+        synchronized (state) {
+            json = gson.toJson(state);
+        }
+
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(stateFile.getParentFile().toPath(), stateFile.getName(), ".tmp");
+            Files.write(temp, json.getBytes(Charset.defaultCharset())); // What loadState's FileReader expects
+            try {
+                Files.move(temp, stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
             System.err.println("[StoryEncounters] Error saving story state for " +
                 state.getPlayerUUID() + ": " + e.getMessage());
             e.printStackTrace();
+            if (temp != null) {
+                temp.toFile().delete();
+            }
         }
     }
 
@@ -143,6 +167,28 @@ public class StoryStateManager {
         }
     }
 
+    /**
+     * Loaded (online) players whose reputation with a faction is within a range,
+     * e.g. everyone hostile to The Corrupted: {@code findPlayersByReputation("The Corrupted", -100, -26)}
+     */
+    public List<PlayerStoryState> findPlayersByReputation(String faction, int min, int max) {
+        List<PlayerStoryState> result = new ArrayList<>();
+        int factionId = FactionRegistry.getInstance().getId(faction);
+        if (factionId < 0) {
+            return result;
+        }
+        for (PlayerStoryState state : stateCache.values()) {
+            FactionReputation reputation = state.getReputation();
+            if (reputation.has(factionId)) {
+                int value = reputation.get(factionId);
+                if (value >= min && value <= max) {
+                    result.add(state);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Get the file path for a player's state
      */
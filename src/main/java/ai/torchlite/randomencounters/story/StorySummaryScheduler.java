@@ -0,0 +1,173 @@
+package ai.torchlite.randomencounters.story;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import ai.torchlite.randomencounters.config.ConfigHandler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps player story summaries and thread context bounded in the background
+ *
+ * After story updates are applied, {@link #scheduleIfNeeded} checks cheap size
+ * thresholds. When enough new encounters have piled up, or a thread's context
+ * has grown past its limit, a job is queued on a single background thread. The
+ * job copies what it needs while holding the state's lock, summarizes without
+ * it, and merges the result back, so generation never waits on summarization.
+ * The state is saved once the result is merged, so a new summary survives a
+ * shutdown before the player's next encounter.
+ */
+public class StorySummaryScheduler {
+
+    private static StorySummaryScheduler instance;
+
+    private final NarrativeSummarizer summarizer;
+    private final ExecutorService executor;
+    private final Set<UUID> pending;
+
+    private StorySummaryScheduler() {
+        this.summarizer = new NarrativeSummarizer();
+        this.pending = ConcurrentHashMap.newKeySet();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "RandomEncounters-Summarizer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public static synchronized StorySummaryScheduler getInstance() {
+        if (instance == null) {
+            instance = new StorySummaryScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Queue a summary update for this player if the story has grown past the configured thresholds
+     * @return true if a job was queued
+     */
+    public boolean scheduleIfNeeded(PlayerStoryState state) {
+        if (!needsUpdate(state) || !pending.add(state.getPlayerUUID())) {
+            return false;
+        }
+
+        executor.submit(() -> {
+            try {
+                update(state);
+            } catch (Exception e) {
+                RandomEncounters.LOGGER.error("Failed to update story summary for " + state.getPlayerName(), e);
+            } finally {
+                pending.remove(state.getPlayerUUID());
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Whether the summary or any thread context is due for an update
+     */
+    public boolean needsUpdate(PlayerStoryState state) {
+        synchronized (state) {
+            if (state.getNarrativeSummary() == null && !state.getEncounterHistory().isEmpty()) {
+                return true;
+            }
+            if (state.getUnsummarizedEncounters().size() >= ConfigHandler.summaryEncounterThreshold) {
+                return true;
+            }
+            for (StoryThread thread : state.getActiveThreads().values()) {
+                String context = thread.getNarrativeContext();
+                if (context != null && context.length() > ConfigHandler.threadContextMaxChars) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Fold new encounters into the summary and compact oversized thread context
+     */
+    void update(PlayerStoryState state) {
+        long start = System.currentTimeMillis();
+
+        // Copy inputs under the lock; the summarizer itself runs without it
+        String previousSummary;
+        List<EncounterSummary> newEncounters;
+        List<StoryThread> activeThreads = new ArrayList<>();
+        Map<StoryThread, StoryThread> oversized = new HashMap<>(); // live thread -> detached copy
+        synchronized (state) {
+            previousSummary = state.getNarrativeSummary();
+            newEncounters = state.getUnsummarizedEncounters();
+            for (StoryThread thread : state.getActiveThreads().values()) {
+                StoryThread copy = copyForSummary(thread);
+                if (thread.getStatus() == ThreadStatus.ACTIVE) {
+                    activeThreads.add(copy);
+                }
+                String context = thread.getNarrativeContext();
+                if (context != null && context.length() > ConfigHandler.threadContextMaxChars) {
+                    oversized.put(thread, copy);
+                }
+            }
+        }
+
+        String summary = summarizer.summarize(previousSummary, newEncounters, activeThreads,
+            ConfigHandler.narrativeSummaryMaxChars);
+        Map<StoryThread, String> compacted = new HashMap<>();
+        for (Map.Entry<StoryThread, StoryThread> entry : oversized.entrySet()) {
+            compacted.put(entry.getKey(),
+                summarizer.compactThreadContext(entry.getValue(), ConfigHandler.threadContextMaxChars));
+        }
+
+        // Merge back; anything appended meanwhile is kept after the compacted text
+        synchronized (state) {
+            if (!newEncounters.isEmpty()) {
+                state.setSummarizedThrough(newEncounters.get(newEncounters.size() - 1).getTimestamp());
+            }
+            if (summary != null && !summary.isEmpty()) {
+                state.setNarrativeSummary(summary);
+            }
+            for (Map.Entry<StoryThread, String> entry : compacted.entrySet()) {
+                StoryThread thread = entry.getKey();
+                String original = oversized.get(thread).getNarrativeContext();
+                String current = thread.getNarrativeContext();
+                if (current != null && current.startsWith(original)) {
+                    thread.setNarrativeContext(entry.getValue() + current.substring(original.length()));
+                }
+            }
+        }
+
+        StoryStateManager.getInstance().saveState(state);
+
+        RandomEncounters.LOGGER.debug("Updated story summary for " + state.getPlayerName() + " (" +
+            newEncounters.size() + " encounters, " + compacted.size() + " threads compacted) in " +
+            (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Detached copy of the fields the summarizer reads
+     */
+    private StoryThread copyForSummary(StoryThread thread) {
+        StoryThread copy = new StoryThread(thread.getThreadId(), thread.getTitle(), thread.getDescription());
+        copy.setStatus(thread.getStatus());
+        copy.setCurrentObjective(thread.getCurrentObjective());
+        copy.setKeyNPCs(thread.getKeyNPCs() != null ? new ArrayList<>(thread.getKeyNPCs()) : new ArrayList<>());
+        copy.setKeyLocations(thread.getKeyLocations() != null ? new ArrayList<>(thread.getKeyLocations()) : new ArrayList<>());
+        copy.setNarrativeContext(thread.getNarrativeContext());
+        return copy;
+    }
+
+    /**
+     * Number of players waiting for a summary update
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+}
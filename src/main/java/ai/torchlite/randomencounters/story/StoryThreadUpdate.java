@@ -13,7 +13,7 @@ public class StoryThreadUpdate {
     @SerializedName("progress_change")
     private int progressChange; // -10 to +10
 
-    @SerializedName("narrative_update")
+    @SerializedName(value = "narrative_update", alternate = {"narrative_addition"})
     private String narrativeUpdate; // What happened to advance/affect this thread
 
     @SerializedName("status_change")
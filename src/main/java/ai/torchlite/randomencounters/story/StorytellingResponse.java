@@ -1,20 +1,34 @@
 package ai.torchlite.randomencounters.story;
 
+import ai.torchlite.randomencounters.ai.ModelJsonExtractor;
+import ai.torchlite.randomencounters.encounter.EncounterData;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * AI response containing both encounter JSON and story updates
+ * AI response containing both the encounter and story updates
  */
 public class StorytellingResponse {
 
-    // The generated encounter (standard JSON format)
-    @SerializedName("encounter_json")
-    private String encounterJson;
+    // The generated encounter; older replies carry it as an escaped string in encounter_json
+    @SerializedName(value = "encounter", alternate = {"encounter_json"})
+    @JsonAdapter(EncounterAdapterFactory.class)
+    private EncounterData encounter;
 
     // Story Updates
     @SerializedName("story_updates")
@@ -57,9 +71,44 @@ public class StorytellingResponse {
     }
 
     // Getters and setters
-    public String getEncounterJson() { return encounterJson; }
-    public void setEncounterJson(String encounterJson) { this.encounterJson = encounterJson; }
+    public EncounterData getEncounter() { return encounter; }
+    public void setEncounter(EncounterData encounter) { this.encounter = encounter; }
 
     public StoryUpdates getStoryUpdates() { return storyUpdates; }
     public void setStoryUpdates(StoryUpdates storyUpdates) { this.storyUpdates = storyUpdates; }
+
+    /**
+     * Reads the encounter as a nested object, or as the legacy escaped string
+     * (repaired the same way as the outer reply). Always writes the object.
+     */
+    public static class EncounterAdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            final TypeAdapter<EncounterData> delegate =
+                gson.getDelegateAdapter(this, TypeToken.get(EncounterData.class));
+
+            return (TypeAdapter<T>) new TypeAdapter<EncounterData>() {
+                @Override
+                public void write(JsonWriter out, EncounterData encounter) throws IOException {
+                    delegate.write(out, encounter);
+                }
+
+                @Override
+                public EncounterData read(JsonReader in) throws IOException {
+                    if (in.peek() != JsonToken.STRING) {
+                        return delegate.read(in);
+                    }
+                    ModelJsonExtractor.Extraction nested = ModelJsonExtractor.extract(in.nextString());
+                    if (nested == null) {
+                        throw new JsonParseException("The 'encounter_json' field holds no JSON object");
+                    }
+                    JsonReader reader = new JsonReader(new StringReader(nested.getJson()));
+                    reader.setLenient(true);
+                    return delegate.read(reader);
+                }
+            };
+        }
+    }
 }
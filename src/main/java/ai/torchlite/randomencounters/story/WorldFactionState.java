@@ -0,0 +1,138 @@
+package ai.torchlite.randomencounters.story;
+
+import ai.torchlite.randomencounters.RandomEncounters;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+import net.minecraft.world.storage.MapStorage;
+import net.minecraft.world.storage.WorldSavedData;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * How the server's players as a whole stand with each faction, saved with the world
+ *
+ * Each won encounter's {@code faction_changes} is added here once as it
+ * happens (once per encounter, however many party members shared it, as
+ * applied to the member who recorded it), so the server-wide standing is a
+ * running total read in O(1) per faction instead of a scan over every
+ * player's story file. Kept in the overworld's map storage (shared by all
+ * dimensions), indexed by {@link FactionRegistry} id in memory and by faction
+ * name on disk.
+ *
+ * Recorded and read on the server thread.
+ */
+public class WorldFactionState extends WorldSavedData {
+
+    public static final String DATA_NAME = RandomEncounters.MODID + "_factions";
+
+    private long[] net = new long[0]; // Sum of applied reputation changes
+    private int[] changes = new int[0]; // Number of changes applied
+    private long[] lastChanged = new long[0]; // World time of the latest change
+
+    public WorldFactionState() {
+        this(DATA_NAME);
+    }
+
+    public WorldFactionState(String name) {
+        super(name);
+    }
+
+    /**
+     * The server's faction state, created on first use
+     */
+    public static WorldFactionState get(World world) {
+        MapStorage storage = world.getMapStorage();
+        WorldFactionState state = (WorldFactionState) storage.getOrLoadData(WorldFactionState.class, DATA_NAME);
+        if (state == null) {
+            state = new WorldFactionState();
+            storage.setData(DATA_NAME, state);
+        }
+        return state;
+    }
+
+    /**
+     * Add a reputation change one player received
+     * @param change The change actually applied (after clamping to the player's -100..100 range)
+     */
+    public void record(int factionId, int change, long worldTime) {
+        if (factionId < 0 || change == 0) {
+            return;
+        }
+        ensureCapacity(factionId + 1);
+        net[factionId] += change;
+        changes[factionId]++;
+        lastChanged[factionId] = worldTime;
+        markDirty();
+    }
+
+    /**
+     * Net reputation change the server's players have earned with a faction
+     */
+    public long getNet(int factionId) {
+        return factionId >= 0 && factionId < net.length ? net[factionId] : 0;
+    }
+
+    public int getChangeCount(int factionId) {
+        return factionId >= 0 && factionId < changes.length ? changes[factionId] : 0;
+    }
+
+    public long getLastChanged(int factionId) {
+        return factionId >= 0 && factionId < lastChanged.length ? lastChanged[factionId] : 0;
+    }
+
+    /**
+     * Faction name -> net change for every faction the server has dealt with, in id order
+     */
+    public Map<String, Integer> getStandings() {
+        Map<String, Integer> standings = new LinkedHashMap<>();
+        FactionRegistry registry = FactionRegistry.getInstance();
+        for (int id = 0; id < changes.length; id++) {
+            if (changes[id] > 0) {
+                standings.put(registry.getName(id), (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, net[id])));
+            }
+        }
+        return standings;
+    }
+
+    @Override
+    public void readFromNBT(NBTTagCompound nbt) {
+        FactionRegistry registry = FactionRegistry.getInstance();
+        for (String faction : nbt.getKeySet()) {
+            int id = registry.intern(faction);
+            if (id < 0) {
+                continue;
+            }
+            NBTTagCompound entry = nbt.getCompoundTag(faction);
+            ensureCapacity(id + 1);
+            net[id] += entry.getLong("net");
+            changes[id] += entry.getInteger("changes");
+            lastChanged[id] = Math.max(lastChanged[id], entry.getLong("lastChanged"));
+        }
+    }
+
+    @Override
+    public NBTTagCompound writeToNBT(NBTTagCompound nbt) {
+        FactionRegistry registry = FactionRegistry.getInstance();
+        for (int id = 0; id < changes.length; id++) {
+            if (changes[id] > 0) {
+                NBTTagCompound entry = new NBTTagCompound();
+                entry.setLong("net", net[id]);
+                entry.setInteger("changes", changes[id]);
+                entry.setLong("lastChanged", lastChanged[id]);
+                nbt.setTag(registry.getName(id), entry);
+            }
+        }
+        return nbt;
+    }
+
+    private void ensureCapacity(int size) {
+        if (net.length < size) {
+            int capacity = Math.max(size, FactionRegistry.getInstance().size());
+            net = Arrays.copyOf(net, capacity);
+            changes = Arrays.copyOf(changes, capacity);
+            lastChanged = Arrays.copyOf(lastChanged, capacity);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import ai.torchlite.randomencounters.ai.OpenAIStorytellingService;
 import ai.torchlite.randomencounters.ai.AnthropicStorytellingService;
 import ai.torchlite.randomencounters.ai.StorytellingRequest;
 import ai.torchlite.randomencounters.story.StorytellingResponse;
+import com.google.gson.GsonBuilder;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
@@ -106,16 +107,16 @@ public class AIGenerationTest {
             if (response != null) {
                 System.out.println("\n=== SUCCESS ===");
                 System.out.println("Encounter JSON generated successfully!");
+                String encounterJson = new GsonBuilder().setPrettyPrinting().create().toJson(response.getEncounter());
                 System.out.println("\nEncounter JSON preview:");
-                System.out.println(response.getEncounterJson().substring(0,
-                    Math.min(500, response.getEncounterJson().length())) + "...");
+                System.out.println(encounterJson.substring(0, Math.min(500, encounterJson.length())) + "...");
 
                 String saveJson = getInput("\nSave full JSON to file? (y/n): ");
                 if (saveJson.equalsIgnoreCase("y")) {
                     try {
                         java.nio.file.Files.write(
                             java.nio.file.Paths.get("test_encounter.json"),
-                            response.getEncounterJson().getBytes()
+                            encounterJson.getBytes()
                         );
                         System.out.println("JSON saved to test_encounter.json");
                     } catch (Exception e) {
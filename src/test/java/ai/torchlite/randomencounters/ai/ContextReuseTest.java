@@ -0,0 +1,101 @@
+package ai.torchlite.randomencounters.ai;
+
+import ai.torchlite.randomencounters.encounter.EncounterData;
+import ai.torchlite.randomencounters.story.EncounterSummary;
+import ai.torchlite.randomencounters.story.PlayerStoryState;
+import ai.torchlite.randomencounters.story.StoryThread;
+import ai.torchlite.randomencounters.story.StorytellingResponse;
+
+import java.util.UUID;
+
+/**
+ * Standalone check that ContextChangeDetector serves the last encounter again
+ * when a player's context hasn't changed since it was generated.
+ *
+ * Mirrors the engine: the request is built from the story state, the generation's
+ * story updates are applied, and the baseline is remembered from a request rebuilt
+ * afterwards. A second request with nothing new must come back UNCHANGED and reuse.
+ */
+public class ContextReuseTest {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        System.out.println("=== Context Reuse Test ===\n");
+
+        UUID playerUUID = UUID.randomUUID();
+        PlayerStoryState state = new PlayerStoryState(playerUUID, "Steve");
+        StoryThread thread = new StoryThread("thread-1", "The Missing Caravan", "A merchant caravan vanished on the road");
+        thread.setProgressLevel(2);
+        state.addThread(thread);
+
+        ContextChangeDetector detector = new ContextChangeDetector();
+
+        // First generation: nothing to compare with yet
+        StorytellingRequest first = buildRequest(state);
+        ContextChangeDetector.Delta delta = detector.compare(playerUUID, first);
+        check("first request is FIRST", delta.getLevel() == ContextChangeDetector.ChangeLevel.FIRST);
+        check("first request is not reused", detector.reuse(playerUUID, delta) == null);
+
+        // The generated encounter lands in history and advances its thread
+        StorytellingResponse response = new StorytellingResponse();
+        response.setEncounter(new EncounterData());
+        response.getStoryUpdates().setEncounterSummary("Bandits ambushed Steve on the caravan road");
+        state.addEncounterSummary(new EncounterSummary("enc-1", "ambush", "Bandits on the road", "victory"));
+        thread.setProgressLevel(3);
+        detector.remember(playerUUID, buildRequest(state), response);
+
+        // Same spot, same story: served again without an API call
+        StorytellingRequest second = buildRequest(state);
+        delta = detector.compare(playerUUID, second);
+        check("unchanged context is UNCHANGED (changes: " + delta.getChanges() + ")",
+            delta.getLevel() == ContextChangeDetector.ChangeLevel.UNCHANGED);
+        StorytellingResponse reused = detector.reuse(playerUUID, delta);
+        check("unchanged context reuses the last encounter",
+            reused != null && reused.getEncounter() == response.getEncounter());
+        check("reused copy carries no story updates",
+            reused != null && reused.getStoryUpdates().getEncounterSummary() == null
+                && reused.getStoryUpdates().getThreadUpdates().isEmpty());
+
+        // A new encounter in history is a new story situation
+        state.addEncounterSummary(new EncounterSummary("enc-2", "trader", "A wandering trader", "peaceful"));
+        delta = detector.compare(playerUUID, buildRequest(state));
+        check("new history is MAJOR", delta.getLevel() == ContextChangeDetector.ChangeLevel.MAJOR);
+        check("history change names the newest encounter",
+            !delta.getChanges().isEmpty() && delta.getChanges().toString().contains("enc-2"));
+
+        System.out.println();
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The story and situation fields ContextEnrichmentEngine fills for a solo player
+     */
+    private static StorytellingRequest buildRequest(PlayerStoryState state) {
+        StorytellingRequest request = new StorytellingRequest();
+        request.setPlayerName(state.getPlayerName());
+        request.setPlayerLevel(12);
+        request.setPlayerHealth(18.0f);
+        request.setPlayerMaxHealth(20.0f);
+        request.setBiome("Forest");
+        request.setDimension("Overworld");
+        request.setTimeOfDay("dusk");
+        request.setWeather("clear");
+        request.setPosX(120);
+        request.setPosY(64);
+        request.setPosZ(-340);
+        request.setRecentEncounters(state.getRecentEncounters(10));
+        request.setActiveThreads(state.getActiveThreadsList());
+        return request;
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "PASS  " : "FAIL  ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
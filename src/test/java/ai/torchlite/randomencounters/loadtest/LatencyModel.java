@@ -0,0 +1,83 @@
+package ai.torchlite.randomencounters.loadtest;
+
+import java.util.Random;
+
+/**
+ * Distribution of simulated provider response times
+ *
+ * Parsed from a short spec: "fixed:800", "uniform:300-2000" or
+ * "lognormal:1500,0.6" (median millis, sigma). Real completion latencies
+ * are closer to lognormal, with a long tail.
+ */
+public abstract class LatencyModel {
+
+    public abstract long sampleMillis(Random random);
+
+    public static LatencyModel fixed(long millis) {
+        return new LatencyModel() {
+            @Override
+            public long sampleMillis(Random random) {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed " + millis + "ms";
+            }
+        };
+    }
+
+    public static LatencyModel uniform(long minMillis, long maxMillis) {
+        return new LatencyModel() {
+            @Override
+            public long sampleMillis(Random random) {
+                return minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+            }
+
+            @Override
+            public String toString() {
+                return "uniform " + minMillis + "-" + maxMillis + "ms";
+            }
+        };
+    }
+
+    public static LatencyModel logNormal(long medianMillis, double sigma) {
+        return new LatencyModel() {
+            @Override
+            public long sampleMillis(Random random) {
+                return Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+            }
+
+            @Override
+            public String toString() {
+                return "lognormal median " + medianMillis + "ms, sigma " + sigma;
+            }
+        };
+    }
+
+    public static LatencyModel parse(String spec) {
+        String[] parts = spec.split(":", 2);
+        String kind = parts[0].trim().toLowerCase();
+        String args = parts.length > 1 ? parts[1].trim() : "";
+        try {
+            switch (kind) {
+                case "fixed":
+                    return fixed(Long.parseLong(args));
+                case "uniform": {
+                    String[] range = args.split("-");
+                    return uniform(Long.parseLong(range[0].trim()), Long.parseLong(range[1].trim()));
+                }
+                case "lognormal": {
+                    String[] values = args.split(",");
+                    return logNormal(Long.parseLong(values[0].trim()),
+                        values.length > 1 ? Double.parseDouble(values[1].trim()) : 0.5);
+                }
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid latency spec '" + spec + "': " + e.getMessage());
+        }
+        throw new IllegalArgumentException("Unknown latency model '" + kind + "' (use fixed, uniform or lognormal)");
+    }
+}
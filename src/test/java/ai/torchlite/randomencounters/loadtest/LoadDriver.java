@@ -0,0 +1,259 @@
+package ai.torchlite.randomencounters.loadtest;
+
+import ai.torchlite.randomencounters.ai.AIStorytellingEngine;
+import ai.torchlite.randomencounters.ai.UsageLedger;
+import ai.torchlite.randomencounters.config.ConfigHandler;
+import ai.torchlite.randomencounters.context.ContextSnapshot;
+import ai.torchlite.randomencounters.entity.EntityCatalog;
+import ai.torchlite.randomencounters.entity.EntityCategory;
+import ai.torchlite.randomencounters.entity.EntityRegistry;
+import ai.torchlite.randomencounters.metrics.EncounterTrace;
+import ai.torchlite.randomencounters.metrics.MetricsRegistry;
+import ai.torchlite.randomencounters.metrics.TraceRecorder;
+import ai.torchlite.randomencounters.story.StoryStateManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offline load test: pushes simulated players through AIStorytellingEngine against {@link StubLLMServer}
+ *
+ * Each player asks for an encounter, waits for it, idles for the think time
+ * and asks again, moving far enough between rounds that the context change
+ * detector never reuses the last encounter. Requests go through the engine's
+ * real worker pool, so queueing shows up in the numbers the way it would on
+ * a server. Reports throughput, end-to-end latency percentiles and the
+ * pipeline metrics.
+ *
+ * Usage: LoadDriver [--players 20] [--rounds 3] [--think-ms 0] [--ramp-ms 1000]
+ *                   [--provider openai|anthropic|both] [--latency lognormal:1500,0.6]
+ *                   [--rate-limit 0.0] [--server-errors 0.0] [--seed 0] [--timeout-s 600]
+ *
+ * Run with: gradlew loadTest -PloadArgs="--players 50 --latency uniform:500-3000"
+ */
+public class LoadDriver {
+
+    private static final String[] BIOMES = {"Wasteland", "Ashen Plains", "Blighted Forest", "Ruined City", "Salt Flats"};
+
+    public static void main(String[] args) throws Exception {
+        int players = 20;
+        int rounds = 3;
+        long thinkMillis = 0;
+        long rampMillis = 1000;
+        String provider = "openai";
+        long timeoutSeconds = 600;
+        StubLLMServer.Options options = new StubLLMServer.Options().latency(LatencyModel.logNormal(1500, 0.6));
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--players": players = Integer.parseInt(value); break;
+                case "--rounds": rounds = Integer.parseInt(value); break;
+                case "--think-ms": thinkMillis = Long.parseLong(value); break;
+                case "--ramp-ms": rampMillis = Long.parseLong(value); break;
+                case "--provider": provider = value.toLowerCase(Locale.ROOT); break;
+                case "--latency": options.latency(LatencyModel.parse(value)); break;
+                case "--rate-limit": options.rateLimitRate(Double.parseDouble(value)); break;
+                case "--server-errors": options.serverErrorRate(Double.parseDouble(value)); break;
+                case "--seed": options.seed(Long.parseLong(value)); break;
+                case "--timeout-s": timeoutSeconds = Long.parseLong(value); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        StubLLMServer stub = new StubLLMServer(options);
+        stub.start();
+        File worldDir = Files.createTempDirectory("randomencounters-loadtest").toFile();
+        configure(stub, provider, worldDir);
+
+        System.out.println("=== Random Encounters Load Test ===");
+        System.out.println(players + " players x " + rounds + " rounds, provider " + provider +
+            ", latency " + options.latency + ", 429 rate " + options.rateLimitRate +
+            ", 5xx rate " + options.serverErrorRate);
+        System.out.println("Stub server at " + stub.getBaseUrl() + ", story data in " + worldDir);
+        System.out.println();
+
+        AIStorytellingEngine engine = new AIStorytellingEngine();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LoadDriver");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(players * rounds);
+        long start = System.nanoTime();
+
+        for (int p = 0; p < players; p++) {
+            SimulatedPlayer player = new SimulatedPlayer(p, rounds, thinkMillis, engine, scheduler, latencies, failures, done);
+            scheduler.schedule(player::request, players > 1 ? rampMillis * p / (players - 1) : 0, TimeUnit.MILLISECONDS);
+        }
+
+        boolean finished = done.await(timeoutSeconds, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        scheduler.shutdownNow();
+        stub.stop();
+
+        report(latencies, failures.get(), players * rounds, seconds, stub);
+        if (!finished) {
+            System.out.println("Timed out after " + timeoutSeconds + "s with " + done.getCount() + " requests outstanding");
+        }
+        deleteRecursively(worldDir);
+        System.exit(finished ? 0 : 1);
+    }
+
+    private static void configure(StubLLMServer stub, String provider, File worldDir) {
+        boolean both = "both".equals(provider);
+        ConfigHandler.enableOpenAI = both || "openai".equals(provider);
+        ConfigHandler.enableAnthropic = both || "anthropic".equals(provider);
+        ConfigHandler.openaiApiKey = "stub";
+        ConfigHandler.anthropicApiKey = "stub";
+        ConfigHandler.openaiBaseUrl = stub.getBaseUrl();
+        ConfigHandler.anthropicBaseUrl = stub.getBaseUrl();
+        ConfigHandler.logAIRequests = false;
+        ConfigHandler.logAIResponses = false;
+
+        StoryStateManager.initialize(worldDir);
+        EntityCatalog.Builder catalog = new EntityCatalog.Builder();
+        catalog.add("minecraft:zombie", EntityCategory.HOSTILE, "Melee attacker - good for raiders, scavengers");
+        catalog.add("minecraft:skeleton", EntityCategory.HOSTILE, "Ranged attacker - snipers, guards");
+        catalog.add("minecraft:spider", EntityCategory.HOSTILE, "Fast melee - ambushers");
+        catalog.add("minecraft:witch", EntityCategory.HOSTILE, "Caster - cult leaders");
+        catalog.add("minecraft:villager", EntityCategory.PASSIVE, "NPC - perfect for traders, quest givers");
+        catalog.add("minecraft:wolf", EntityCategory.NEUTRAL, "Companion - guards, hunting packs");
+        EntityRegistry.initialize(catalog.build());
+        TraceRecorder.getInstance().clear();
+        MetricsRegistry.getInstance().reset();
+    }
+
+    private static void report(List<Long> latencies, int failures, int total, double seconds, StubLLMServer stub) {
+        List<Long> sorted;
+        synchronized (latencies) {
+            sorted = new ArrayList<>(latencies);
+        }
+        Collections.sort(sorted);
+        int completed = sorted.size();
+
+        System.out.println();
+        System.out.println("=== Results ===");
+        System.out.println(String.format(Locale.ROOT, "Completed %d/%d requests in %.1fs (%d failed)",
+            completed, total, seconds, failures));
+        System.out.println(String.format(Locale.ROOT, "Throughput: %.2f encounters/s", (completed - failures) / seconds));
+        if (!sorted.isEmpty()) {
+            System.out.println(String.format(Locale.ROOT, "Latency: p50 %s, p90 %s, p99 %s, max %s",
+                millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.90)),
+                millis(percentile(sorted, 0.99)), millis(sorted.get(sorted.size() - 1))));
+        }
+        System.out.println("Stub: " + stub.getSummary());
+
+        System.out.println();
+        System.out.println("=== Pipeline metrics ===");
+        for (String line : MetricsRegistry.getInstance().getSummaryLines()) {
+            System.out.println(line);
+        }
+        System.out.println();
+        System.out.println("=== Usage ===");
+        for (String line : UsageLedger.getInstance().getServerSummaryLines()) {
+            System.out.println(line);
+        }
+    }
+
+    private static long percentile(List<Long> sorted, double q) {
+        int index = (int) Math.ceil(q * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.0fms", nanos / 1_000_000.0);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * One player asking for encounters back to back
+     */
+    private static class SimulatedPlayer {
+        private final UUID uuid;
+        private final String name;
+        private final int index;
+        private final int rounds;
+        private final long thinkMillis;
+        private final AIStorytellingEngine engine;
+        private final ScheduledExecutorService scheduler;
+        private final List<Long> latencies;
+        private final AtomicInteger failures;
+        private final CountDownLatch done;
+        private int round;
+
+        SimulatedPlayer(int index, int rounds, long thinkMillis, AIStorytellingEngine engine,
+                        ScheduledExecutorService scheduler, List<Long> latencies, AtomicInteger failures,
+                        CountDownLatch done) {
+            this.uuid = new UUID(0x10AD7E57L, index);
+            this.name = "LoadPlayer" + index;
+            this.index = index;
+            this.rounds = rounds;
+            this.thinkMillis = thinkMillis;
+            this.engine = engine;
+            this.scheduler = scheduler;
+            this.latencies = latencies;
+            this.failures = failures;
+            this.done = done;
+        }
+
+        void request() {
+            long start = System.nanoTime();
+            EncounterTrace trace = TraceRecorder.getInstance().begin(uuid, name, 1);
+            engine.generateEncounterAsync(snapshot(), trace).whenComplete((response, error) -> {
+                latencies.add(System.nanoTime() - start);
+                boolean failed = response == null || error != null;
+                if (failed) {
+                    failures.incrementAndGet();
+                }
+                trace.finish(failed ? "failed" : "generated");
+                done.countDown();
+                if (++round < rounds) {
+                    scheduler.schedule(this::request, thinkMillis, TimeUnit.MILLISECONDS);
+                }
+            });
+        }
+
+        /**
+         * The player's context this round: a new biome and a few hundred blocks away from the last one
+         */
+        private ContextSnapshot snapshot() {
+            return new ContextSnapshot.Builder()
+                .player(uuid, name)
+                .experienceLevel(10 + index % 30)
+                .health(12 + index % 8, 20)
+                .position(round * 500 + index * 31, 64, index * 97)
+                .biomeName(BIOMES[(index + round) % BIOMES.length])
+                .worldTime(6000 + round * 2000L)
+                .weather(round % 3 == 1, false)
+                .equipment("mainhand", "iron_sword")
+                .equipment("head", "iron_helmet")
+                .build();
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package ai.torchlite.randomencounters.loadtest;
+
+import ai.torchlite.randomencounters.encounter.EncounterData;
+import ai.torchlite.randomencounters.story.StorytellingResponse;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the OpenAI chat completions and Anthropic messages endpoints
+ *
+ * Answers the narrative step with a canned story, the conversion step
+ * (recognised by the conversion prompt's heading) with a canned
+ * StorytellingResponse and a fragment repair with a canned fixed fragment, so
+ * the mod's services run end to end without an API key or network. Each call waits for a latency drawn from a
+ * {@link LatencyModel}, and a configurable share of calls fails with 429 or
+ * 5xx. Requests with "stream": true get server-sent events in the provider's
+ * streaming format. Responses carry usage blocks estimated at ~4 chars per token.
+ *
+ * Point the mod at it with ConfigHandler.openaiBaseUrl / anthropicBaseUrl = {@link #getBaseUrl()}.
+ */
+public class StubLLMServer {
+
+    static final String CONVERSION_MARKER = "Convert Encounter Story to Game JSON";
+    static final String REPAIR_MARKER = "Fix Encounter JSON Fragment";
+
+    private static final String NARRATIVE =
+        "# The Ashen Toll\n\n**Type:** combat\n\n" +
+        "Smoke drifts over the broken road as three figures step out from behind an overturned cart. " +
+        "Their leader, a scarred woman in patched leather, raises a rusted blade and demands a toll in iron. " +
+        "Behind her, a hollow-eyed husk shuffles forward, chain still hanging from its wrist.\n\n" +
+        "**Entities:** 2 Zombies (Ashen Husks), 1 Villager (Toll Keeper Maren)\n\n" +
+        "**Choices:** Pay the toll, fight through, or talk Maren into letting you pass.";
+
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Gson gson = new Gson();
+    private final JsonParser jsonParser = new JsonParser();
+    private final Random random;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong streamed = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong encounters = new AtomicLong();
+    private final AtomicLong repairs = new AtomicLong();
+
+    public StubLLMServer(Options options) throws IOException {
+        this.options = options;
+        this.random = options.seed != 0 ? new Random(options.seed) : new Random();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.port), 128);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "StubLLM-Handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", exchange -> handle(exchange, Provider.OPENAI));
+        server.createContext("/v1/messages", exchange -> handle(exchange, Provider.ANTHROPIC));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Base URL to configure the services with, e.g. http://127.0.0.1:40123/v1
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    public long getRequestCount() { return requests.get(); }
+    public long getStreamedCount() { return streamed.get(); }
+    public long getRateLimitedCount() { return rateLimited.get(); }
+    public long getServerErrorCount() { return serverErrors.get(); }
+    public long getRepairCount() { return repairs.get(); }
+
+    public String getSummary() {
+        return requests.get() + " requests (" + streamed.get() + " streamed, " + repairs.get() + " fragment repairs), " +
+            rateLimited.get() + " rate limited, " + serverErrors.get() + " server errors";
+    }
+
+    private enum Provider { OPENAI, ANTHROPIC }
+
+    private void handle(HttpExchange exchange, Provider provider) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error(provider, "invalid_request_error", "Only POST is supported"));
+                return;
+            }
+            requests.incrementAndGet();
+
+            String body = readBody(exchange.getRequestBody());
+            JsonObject request;
+            try {
+                request = jsonParser.parse(body).getAsJsonObject();
+            } catch (Exception e) {
+                send(exchange, 400, error(provider, "invalid_request_error", "Request body is not JSON"));
+                return;
+            }
+            String model = request.has("model") ? request.get("model").getAsString() : "stub";
+            boolean stream = request.has("stream") && request.get("stream").getAsBoolean();
+
+            double roll = nextDouble();
+            if (roll < options.rateLimitRate) {
+                rateLimited.incrementAndGet();
+                sleep(options.errorLatencyMillis);
+                exchange.getResponseHeaders().add("retry-after", "1");
+                send(exchange, 429, error(provider, "rate_limit_error", "Rate limit reached (stub)"));
+                return;
+            }
+            if (roll < options.rateLimitRate + options.serverErrorRate) {
+                serverErrors.incrementAndGet();
+                sleep(options.errorLatencyMillis);
+                int code = nextDouble() < 0.5 ? 500 : (provider == Provider.ANTHROPIC ? 529 : 503);
+                send(exchange, code, error(provider, "api_error", "Overloaded (stub)"));
+                return;
+            }
+
+            String text = body.contains(REPAIR_MARKER) ? cannedRepair()
+                : body.contains(CONVERSION_MARKER) ? cannedConversion() : NARRATIVE;
+            long promptTokens = body.length() / 4;
+            long completionTokens = Math.max(1, text.length() / 4);
+            long latency = options.latency.sampleMillis(ThreadLocalRandom.current());
+
+            if (stream) {
+                streamed.incrementAndGet();
+                stream(exchange, provider, model, text, promptTokens, completionTokens, latency);
+            } else {
+                sleep(latency);
+                JsonObject response = provider == Provider.OPENAI
+                    ? openAIResponse(model, text, promptTokens, completionTokens)
+                    : anthropicResponse(model, text, promptTokens, completionTokens);
+                send(exchange, 200, gson.toJson(response));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    /**
+     * A complete StorytellingResponse as the conversion model would return it
+     */
+    private String cannedConversion() {
+        long n = encounters.incrementAndGet();
+
+        JsonObject encounter = new JsonObject();
+        encounter.addProperty("title", "The Ashen Toll #" + n);
+        encounter.addProperty("type", "combat");
+        encounter.addProperty("description", "Toll raiders block the road");
+        encounter.addProperty("narrative_text", NARRATIVE);
+        JsonArray entities = new JsonArray();
+        entities.add(entity("zombie", "Ashen Husk", 2, true));
+        entities.add(entity("villager", "Toll Keeper Maren", 1, false));
+        encounter.add("entities", entities);
+        JsonArray dialogue = new JsonArray();
+        JsonObject line = new JsonObject();
+        line.addProperty("speaker", "Toll Keeper Maren");
+        line.addProperty("text", "Iron or blood, traveller. Your choice.");
+        dialogue.add(line);
+        encounter.add("dialogue", dialogue);
+        JsonObject outcomes = new JsonObject();
+        outcomes.addProperty("victory_text", "The road is clear.");
+        outcomes.addProperty("defeat_text", "You wake stripped of your iron.");
+        outcomes.addProperty("flee_text", "You slip away into the smoke.");
+        encounter.add("outcomes", outcomes);
+
+        StorytellingResponse response = new StorytellingResponse();
+        response.setEncounter(gson.fromJson(encounter, EncounterData.class));
+        response.getStoryUpdates().setEncounterSummary("Met toll raiders on the broken road");
+        List<String> choices = new ArrayList<>();
+        choices.add("Pay the toll");
+        choices.add("Fight through");
+        choices.add("Talk Maren down");
+        response.getStoryUpdates().setKeyChoices(choices);
+        return gson.toJson(response);
+    }
+
+    /**
+     * A fixed fragment as the conversion model would return it for a repair prompt. Thread
+     * updates come back empty, so the engine drops the ones that failed validation.
+     */
+    private String cannedRepair() {
+        repairs.incrementAndGet();
+
+        JsonObject fragment = new JsonObject();
+        JsonArray entities = new JsonArray();
+        entities.add(entity("zombie", "Ashen Husk", 2, true));
+        fragment.add("entities", entities);
+        fragment.add("thread_updates", new JsonArray());
+        return gson.toJson(fragment);
+    }
+
+    private static JsonObject entity(String type, String name, int count, boolean hostile) {
+        JsonObject entity = new JsonObject();
+        entity.addProperty("entity_type", type);
+        entity.addProperty("name", name);
+        entity.addProperty("count", count);
+        entity.addProperty("hostile", hostile);
+        entity.addProperty("health_modifier", 1.0);
+        entity.addProperty("damage_modifier", 1.0);
+        return entity;
+    }
+
+    private JsonObject openAIResponse(String model, String text, long promptTokens, long completionTokens) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", text);
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", 0);
+        choice.add("message", message);
+        choice.addProperty("finish_reason", "stop");
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("id", "chatcmpl-stub" + requests.get());
+        response.addProperty("object", "chat.completion");
+        response.addProperty("created", System.currentTimeMillis() / 1000);
+        response.addProperty("model", model);
+        response.add("choices", choices);
+        response.add("usage", openAIUsage(promptTokens, completionTokens));
+        return response;
+    }
+
+    private static JsonObject openAIUsage(long promptTokens, long completionTokens) {
+        JsonObject usage = new JsonObject();
+        usage.addProperty("prompt_tokens", promptTokens);
+        usage.addProperty("completion_tokens", completionTokens);
+        usage.addProperty("total_tokens", promptTokens + completionTokens);
+        JsonObject details = new JsonObject();
+        details.addProperty("cached_tokens", 0);
+        usage.add("prompt_tokens_details", details);
+        return usage;
+    }
+
+    private JsonObject anthropicResponse(String model, String text, long promptTokens, long completionTokens) {
+        JsonObject block = new JsonObject();
+        block.addProperty("type", "text");
+        block.addProperty("text", text);
+        JsonArray content = new JsonArray();
+        content.add(block);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("id", "msg_stub" + requests.get());
+        response.addProperty("type", "message");
+        response.addProperty("role", "assistant");
+        response.addProperty("model", model);
+        response.add("content", content);
+        response.addProperty("stop_reason", "end_turn");
+        response.add("usage", anthropicUsage(promptTokens, completionTokens));
+        return response;
+    }
+
+    private static JsonObject anthropicUsage(long promptTokens, long completionTokens) {
+        JsonObject usage = new JsonObject();
+        usage.addProperty("input_tokens", promptTokens);
+        usage.addProperty("output_tokens", completionTokens);
+        usage.addProperty("cache_read_input_tokens", 0);
+        usage.addProperty("cache_creation_input_tokens", 0);
+        return usage;
+    }
+
+    /**
+     * Send the text as server-sent events: the first chunk after half the latency,
+     * the rest spread over the other half
+     */
+    private void stream(HttpExchange exchange, Provider provider, String model, String text,
+                        long promptTokens, long completionTokens, long latency) throws IOException {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += options.streamChunkChars) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + options.streamChunkChars)));
+        }
+        long firstChunk = latency / 2;
+        long perChunk = chunks.size() > 1 ? (latency - firstChunk) / (chunks.size() - 1) : 0;
+
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+
+        String id = (provider == Provider.OPENAI ? "chatcmpl-stub" : "msg_stub") + requests.get();
+        if (provider == Provider.ANTHROPIC) {
+            JsonObject message = anthropicResponse(model, "", promptTokens, 0);
+            message.addProperty("id", id);
+            message.add("content", new JsonArray());
+            message.add("stop_reason", null);
+            JsonObject start = new JsonObject();
+            start.addProperty("type", "message_start");
+            start.add("message", message);
+            event(out, "message_start", start);
+
+            JsonObject blockStart = new JsonObject();
+            blockStart.addProperty("type", "content_block_start");
+            blockStart.addProperty("index", 0);
+            JsonObject block = new JsonObject();
+            block.addProperty("type", "text");
+            block.addProperty("text", "");
+            blockStart.add("content_block", block);
+            event(out, "content_block_start", blockStart);
+        }
+
+        sleep(firstChunk);
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i > 0) {
+                sleep(perChunk);
+            }
+            if (provider == Provider.OPENAI) {
+                JsonObject delta = new JsonObject();
+                delta.addProperty("content", chunks.get(i));
+                event(out, null, openAIChunk(id, model, delta, null));
+            } else {
+                JsonObject delta = new JsonObject();
+                delta.addProperty("type", "text_delta");
+                delta.addProperty("text", chunks.get(i));
+                JsonObject event = new JsonObject();
+                event.addProperty("type", "content_block_delta");
+                event.addProperty("index", 0);
+                event.add("delta", delta);
+                event(out, "content_block_delta", event);
+            }
+        }
+
+        if (provider == Provider.OPENAI) {
+            JsonObject last = openAIChunk(id, model, new JsonObject(), "stop");
+            last.add("usage", openAIUsage(promptTokens, completionTokens));
+            event(out, null, last);
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        } else {
+            JsonObject blockStop = new JsonObject();
+            blockStop.addProperty("type", "content_block_stop");
+            blockStop.addProperty("index", 0);
+            event(out, "content_block_stop", blockStop);
+
+            JsonObject delta = new JsonObject();
+            delta.addProperty("stop_reason", "end_turn");
+            JsonObject usage = new JsonObject();
+            usage.addProperty("output_tokens", completionTokens);
+            JsonObject messageDelta = new JsonObject();
+            messageDelta.addProperty("type", "message_delta");
+            messageDelta.add("delta", delta);
+            messageDelta.add("usage", usage);
+            event(out, "message_delta", messageDelta);
+
+            JsonObject stop = new JsonObject();
+            stop.addProperty("type", "message_stop");
+            event(out, "message_stop", stop);
+        }
+        out.flush();
+    }
+
+    private static JsonObject openAIChunk(String id, String model, JsonObject delta, String finishReason) {
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", 0);
+        choice.add("delta", delta);
+        choice.addProperty("finish_reason", finishReason);
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject chunk = new JsonObject();
+        chunk.addProperty("id", id);
+        chunk.addProperty("object", "chat.completion.chunk");
+        chunk.addProperty("model", model);
+        chunk.add("choices", choices);
+        return chunk;
+    }
+
+    private void event(OutputStream out, String name, JsonObject data) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        if (name != null) {
+            sb.append("event: ").append(name).append('\n');
+        }
+        sb.append("data: ").append(gson.toJson(data)).append("\n\n");
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private String error(Provider provider, String type, String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("type", type);
+        error.addProperty("message", message);
+        JsonObject body = new JsonObject();
+        if (provider == Provider.ANTHROPIC) {
+            body.addProperty("type", "error");
+        }
+        body.add("error", error);
+        return gson.toJson(body);
+    }
+
+    private static void send(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Server settings
+     */
+    public static class Options {
+        int port; // 0 = any free port
+        LatencyModel latency = LatencyModel.fixed(0);
+        double rateLimitRate;
+        double serverErrorRate;
+        long errorLatencyMillis = 50;
+        int streamChunkChars = 16;
+        long seed;
+
+        public Options port(int port) { this.port = port; return this; }
+        public Options latency(LatencyModel latency) { this.latency = latency; return this; }
+        public Options rateLimitRate(double rate) { this.rateLimitRate = rate; return this; }
+        public Options serverErrorRate(double rate) { this.serverErrorRate = rate; return this; }
+        public Options errorLatencyMillis(long millis) { this.errorLatencyMillis = millis; return this; }
+        public Options streamChunkChars(int chars) { this.streamChunkChars = Math.max(1, chars); return this; }
+        public Options seed(long seed) { this.seed = seed; return this; }
+    }
+}
@@ -0,0 +1,49 @@
+package ai.torchlite.randomencounters.simulation;
+
+import com.mojang.authlib.GameProfile;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.world.World;
+
+import java.util.UUID;
+
+/**
+ * A survival player with no connection; chat messages are counted instead of sent
+ */
+public class SimulatedPlayer extends EntityPlayer {
+
+    private long messageCount;
+
+    public SimulatedPlayer(World world, UUID uuid, String name) {
+        super(world, new GameProfile(uuid, name));
+    }
+
+    /**
+     * Walk step blocks in a random-looking but repeatable direction
+     */
+    public void walk(long tick, int index, double step) {
+        double angle = (index * 0.618 + tick * 0.01) * Math.PI * 2;
+        double x = posX + Math.cos(angle) * step;
+        double z = posZ + Math.sin(angle) * step;
+        setPosition(x, world.getHeight((int) Math.floor(x), (int) Math.floor(z)), z);
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    @Override
+    public void sendMessage(ITextComponent component) {
+        messageCount++;
+    }
+
+    @Override
+    public boolean isSpectator() {
+        return false;
+    }
+
+    @Override
+    public boolean isCreative() {
+        return false;
+    }
+}
@@ -0,0 +1,98 @@
+package ai.torchlite.randomencounters.simulation;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.init.Blocks;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.GameType;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.MapStorage;
+import net.minecraft.world.storage.WorldInfo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A server-side world with no chunks, for driving the mod's game-side code without a server
+ *
+ * Terrain is a solid column up to a height that rolls gently with x/z (no
+ * caves or water), so spawn location checks behave as on open ground. Spawned
+ * entities are kept in a list and dropped once they are marked dead, the way
+ * the real world unloads them. Map storage is in memory only. Call
+ * {@code Bootstrap.register()} before creating one.
+ */
+public class SimulatedWorld extends World {
+
+    private static final int BASE_HEIGHT = 64;
+
+    private final List<Entity> entities = new ArrayList<>();
+    private long spawnedCount;
+
+    public SimulatedWorld(long seed) {
+        super(null, new WorldInfo(new WorldSettings(seed, GameType.SURVIVAL, false, false, WorldType.DEFAULT), "simulation"),
+            new WorldProviderSurface(), new Profiler(), false);
+        this.mapStorage = new MapStorage(null);
+    }
+
+    /**
+     * Move the world clock to a tick and drop entities that died since the last one
+     */
+    public void tick(long totalWorldTime) {
+        worldInfo.setWorldTotalTime(totalWorldTime);
+        worldInfo.setWorldTime(totalWorldTime);
+        Iterator<Entity> it = entities.iterator();
+        while (it.hasNext()) {
+            if (it.next().isDead) {
+                it.remove();
+            }
+        }
+    }
+
+    public int getLoadedEntityCount() {
+        return entities.size();
+    }
+
+    public long getSpawnedCount() {
+        return spawnedCount;
+    }
+
+    @Override
+    public boolean spawnEntity(Entity entity) {
+        entities.add(entity);
+        spawnedCount++;
+        return true;
+    }
+
+    @Override
+    public int getHeight(int x, int z) {
+        return BASE_HEIGHT + (int) (4 * Math.sin(x / 24.0) + 3 * Math.cos(z / 32.0));
+    }
+
+    @Override
+    public IBlockState getBlockState(BlockPos pos) {
+        return pos.getY() < getHeight(pos.getX(), pos.getZ())
+            ? Blocks.STONE.getDefaultState()
+            : Blocks.AIR.getDefaultState();
+    }
+
+    @Override
+    public boolean isAirBlock(BlockPos pos) {
+        return pos.getY() >= getHeight(pos.getX(), pos.getZ());
+    }
+
+    @Override
+    protected IChunkProvider createChunkProvider() {
+        return null; // Nothing here reads chunks
+    }
+
+    @Override
+    protected boolean isChunkLoaded(int x, int z, boolean allowEmpty) {
+        return true;
+    }
+}
@@ -0,0 +1,450 @@
+package ai.torchlite.randomencounters.simulation;
+
+import ai.torchlite.randomencounters.context.PlayerSpatialIndex;
+import ai.torchlite.randomencounters.encounter.EncounterData;
+import ai.torchlite.randomencounters.encounter.EncounterExecutor;
+import ai.torchlite.randomencounters.encounter.EncounterOutcomeTracker;
+import ai.torchlite.randomencounters.encounter.EncounterSpawner;
+import ai.torchlite.randomencounters.entity.EntityCatalog;
+import ai.torchlite.randomencounters.entity.EntityCategory;
+import ai.torchlite.randomencounters.entity.EntityRegistry;
+import ai.torchlite.randomencounters.metrics.LatencyHistogram;
+import ai.torchlite.randomencounters.metrics.MetricsRegistry;
+import ai.torchlite.randomencounters.story.StoryStateManager;
+import ai.torchlite.randomencounters.story.StorytellingResponse;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.util.DamageSource;
+import net.minecraftforge.event.entity.living.LivingDeathEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Headless simulation of a server running encounters, for measuring the game-side cost offline
+ *
+ * Drives the real EncounterExecutor, EncounterSpawner, EncounterOutcomeTracker
+ * and PlayerSpatialIndex against a {@link SimulatedWorld} and
+ * {@link SimulatedPlayer}s, tick by tick. Encounters come from canned responses
+ * (no AI calls). While an encounter runs its player kills one mob now and then,
+ * and may die or log out instead. Mobs are removed 20 ticks after dying, as in
+ * the game, and leftovers of lost or abandoned encounters after 30 seconds.
+ *
+ * Every random choice comes from the seed, so the same arguments give the same
+ * workload (the printed checksum shows it); only the timings differ between
+ * machines. Tick cost counts only time spent in mod code. Heap is sampled after
+ * a full GC.
+ *
+ * Usage: WorldSimulation [--players 1000] [--ticks 6000] [--encounter-chance 0.0005]
+ *                        [--kill-chance 0.02] [--death-chance 0.0005] [--logout-chance 0.0002]
+ *                        [--seed 1] [--memory-every 1200]
+ *
+ * Run with: gradlew simulate -PsimArgs="--players 5000 --ticks 12000"
+ */
+public class WorldSimulation {
+
+    private static final int DEATH_ANIMATION_TICKS = 20;
+    private static final int LEFTOVER_DESPAWN_TICKS = 600;
+    private static final int CLEANUP_INTERVAL_TICKS = 200;
+    private static final double WALK_SPEED = 0.2; // Blocks per tick
+    private static final String[] PHASES = {"players", "encounters", "combat", "world"};
+    private static final String[] HOSTILES = {"zombie", "skeleton", "spider"};
+
+    private final int playerCount;
+    private final int ticks;
+    private final double encounterChance;
+    private final double killChance;
+    private final double deathChance;
+    private final double logoutChance;
+    private final int memoryEvery;
+
+    private final Random random;
+    private final Gson gson = new Gson();
+    private final SimulatedWorld world;
+    private final EncounterExecutor executor;
+    private final EncounterOutcomeTracker tracker;
+    private final PlayerSpatialIndex index = PlayerSpatialIndex.getInstance();
+    private final List<SimulatedPlayer> players = new ArrayList<>();
+    private final Map<UUID, EncounterExecutor.ActiveEncounter> running = new HashMap<>();
+    private final Deque<Removal> removals = new ArrayDeque<>();
+
+    private final LatencyHistogram tickCost;
+    private final LatencyHistogram[] phaseCost = new LatencyHistogram[PHASES.length];
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final Map<String, Integer> outcomes = new TreeMap<>();
+    private final List<String> memoryRows = new ArrayList<>();
+    private long encountersStarted;
+    private long kills;
+    private long playerDeaths;
+    private long logouts;
+
+    public WorldSimulation(int playerCount, int ticks, double encounterChance, double killChance,
+                           double deathChance, double logoutChance, long seed, int memoryEvery) {
+        this.playerCount = playerCount;
+        this.ticks = ticks;
+        this.encounterChance = encounterChance;
+        this.killChance = killChance;
+        this.deathChance = deathChance;
+        this.logoutChance = logoutChance;
+        this.memoryEvery = memoryEvery;
+        this.random = new Random(seed);
+        this.world = new SimulatedWorld(seed);
+        this.executor = new EncounterExecutor(new EncounterSpawner(new Random(seed * 31 + 7)));
+        this.tracker = new EncounterOutcomeTracker(executor);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        this.tickCost = metrics.histogram("simulation_tick", "Mod code time per simulated server tick");
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseCost[i] = metrics.histogram("simulation_phase", "Mod code time per simulated tick by phase", "phase", PHASES[i]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int players = 1000;
+        int ticks = 6000;
+        double encounterChance = 0.0005;
+        double killChance = 0.02;
+        double deathChance = 0.0005;
+        double logoutChance = 0.0002;
+        long seed = 1;
+        int memoryEvery = 1200;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--players": players = Integer.parseInt(value); break;
+                case "--ticks": ticks = Integer.parseInt(value); break;
+                case "--encounter-chance": encounterChance = Double.parseDouble(value); break;
+                case "--kill-chance": killChance = Double.parseDouble(value); break;
+                case "--death-chance": deathChance = Double.parseDouble(value); break;
+                case "--logout-chance": logoutChance = Double.parseDouble(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--memory-every": memoryEvery = Integer.parseInt(value); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        Bootstrap.register();
+        File worldDir = Files.createTempDirectory("randomencounters-simulation").toFile();
+        StoryStateManager.initialize(worldDir);
+        EntityCatalog.Builder catalog = new EntityCatalog.Builder();
+        catalog.add("minecraft:zombie", EntityCategory.HOSTILE, "Melee attacker");
+        catalog.add("minecraft:skeleton", EntityCategory.HOSTILE, "Ranged attacker");
+        catalog.add("minecraft:spider", EntityCategory.HOSTILE, "Fast melee");
+        EntityRegistry.initialize(catalog.build());
+
+        System.out.println("=== Random Encounters World Simulation ===");
+        System.out.println(players + " players, " + ticks + " ticks (" + ticks / 20 + "s of game time), seed " + seed);
+
+        WorldSimulation simulation = new WorldSimulation(players, ticks, encounterChance, killChance,
+            deathChance, logoutChance, seed, memoryEvery);
+        simulation.setUp();
+        long start = System.nanoTime();
+        simulation.run();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        simulation.report(seconds);
+
+        StoryStateManager.getInstance().clearCache();
+        deleteRecursively(worldDir);
+        System.exit(0);
+    }
+
+    /**
+     * Create the players spread over a ring, log them in and load their story state
+     */
+    private void setUp() {
+        for (int i = 0; i < playerCount; i++) {
+            UUID uuid = new UUID(0x5117L, i);
+            SimulatedPlayer player = new SimulatedPlayer(world, uuid, "SimPlayer" + i);
+            double angle = i * Math.PI * 2 / playerCount;
+            double radius = 200 + playerCount * 2;
+            double x = Math.cos(angle) * radius;
+            double z = Math.sin(angle) * radius;
+            player.setPosition(x, world.getHeight((int) x, (int) z), z);
+            players.add(player);
+
+            index.onPlayerLogin(new PlayerEvent.PlayerLoggedInEvent(player));
+            StoryStateManager.getInstance().getOrCreateState(player);
+        }
+        sampleMemory(0);
+    }
+
+    private void run() {
+        for (long tick = 1; tick <= ticks; tick++) {
+            world.tick(tick);
+            Arrays.fill(phaseNanos, 0);
+
+            tickPlayers(tick);
+            startEncounters();
+            fight(tick);
+            tickWorld(tick);
+
+            long total = 0;
+            for (int i = 0; i < PHASES.length; i++) {
+                phaseCost[i].recordNanos(phaseNanos[i]);
+                total += phaseNanos[i];
+            }
+            tickCost.recordNanos(total);
+
+            if (memoryEvery > 0 && tick % memoryEvery == 0) {
+                sampleMemory(tick);
+            }
+        }
+    }
+
+    /**
+     * Everyone walks a little; the player tick handlers run
+     */
+    private void tickPlayers(long tick) {
+        for (int i = 0; i < players.size(); i++) {
+            SimulatedPlayer player = players.get(i);
+            player.walk(tick, i, WALK_SPEED);
+            TickEvent.PlayerTickEvent event = new TickEvent.PlayerTickEvent(TickEvent.Phase.END, player);
+            long start = System.nanoTime();
+            index.onPlayerTick(event);
+            phaseNanos[0] += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Players without an encounter get one now and then
+     */
+    private void startEncounters() {
+        for (SimulatedPlayer player : players) {
+            if (running.containsKey(player.getUniqueID()) || random.nextDouble() >= encounterChance) {
+                continue;
+            }
+            StorytellingResponse response = cannedResponse();
+            long start = System.nanoTime();
+            boolean started = executor.executeEncounter(response, player, world);
+            phaseNanos[1] += System.nanoTime() - start;
+            if (started) {
+                running.put(player.getUniqueID(), executor.getActiveEncounter(player.getUniqueID()));
+                encountersStarted++;
+            }
+        }
+    }
+
+    /**
+     * Each running encounter: the player may die, log out, or kill one of the mobs
+     */
+    private void fight(long tick) {
+        for (SimulatedPlayer player : players) {
+            UUID uuid = player.getUniqueID();
+            EncounterExecutor.ActiveEncounter encounter = running.get(uuid);
+            if (encounter == null) {
+                continue;
+            }
+
+            double roll = random.nextDouble();
+            if (roll < deathChance) {
+                playerDeaths++;
+                player.setHealth(0);
+                LivingDeathEvent event = new LivingDeathEvent(player, DamageSource.GENERIC);
+                long start = System.nanoTime();
+                tracker.onEntityDeath(event);
+                tracker.onPlayerDeath(event);
+                phaseNanos[2] += System.nanoTime() - start;
+                player.setHealth(player.getMaxHealth()); // Respawned
+            } else if (roll < deathChance + logoutChance) {
+                logouts++;
+                long start = System.nanoTime();
+                tracker.onPlayerLogout(new PlayerEvent.PlayerLoggedOutEvent(player));
+                index.onPlayerLogout(new PlayerEvent.PlayerLoggedOutEvent(player));
+                index.onPlayerLogin(new PlayerEvent.PlayerLoggedInEvent(player)); // Straight back in
+                phaseNanos[2] += System.nanoTime() - start;
+            } else if (roll < deathChance + logoutChance + killChance) {
+                EntityLivingBase target = firstAlive(encounter);
+                if (target != null) {
+                    kills++;
+                    target.setHealth(0);
+                    LivingDeathEvent event = new LivingDeathEvent(target, DamageSource.causePlayerDamage(player));
+                    long start = System.nanoTime();
+                    tracker.onEntityDeath(event);
+                    tracker.onPlayerDeath(event);
+                    phaseNanos[2] += System.nanoTime() - start;
+                    removals.addLast(new Removal(target, tick + DEATH_ANIMATION_TICKS));
+                }
+            }
+
+            if (executor.getActiveEncounter(uuid) != encounter) {
+                running.remove(uuid);
+                String outcome = encounter.getOutcome() != null ? encounter.getOutcome() : "fled";
+                outcomes.merge(outcome, 1, Integer::sum);
+                for (Entity entity : encounter.getSpawnedEntities()) {
+                    if (entity.isEntityAlive()) {
+                        removals.addLast(new Removal(entity, tick + LEFTOVER_DESPAWN_TICKS));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove mobs whose time is up; periodic executor housekeeping
+     */
+    private void tickWorld(long tick) {
+        int size = removals.size();
+        for (int i = 0; i < size; i++) {
+            Removal removal = removals.pollFirst();
+            if (removal.dueTick <= tick) {
+                removal.entity.setDead();
+            } else {
+                removals.addLast(removal);
+            }
+        }
+
+        if (tick % CLEANUP_INTERVAL_TICKS == 0) {
+            long start = System.nanoTime();
+            executor.cleanupStaleEncounters();
+            phaseNanos[3] += System.nanoTime() - start;
+        }
+    }
+
+    private static EntityLivingBase firstAlive(EncounterExecutor.ActiveEncounter encounter) {
+        for (Entity entity : encounter.getSpawnedEntities()) {
+            if (entity instanceof EntityLivingBase && entity.isEntityAlive()) {
+                return (EntityLivingBase) entity;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An encounter as the AI would return it: a few hostiles of one or two kinds, and a faction reward
+     */
+    private StorytellingResponse cannedResponse() {
+        JsonObject encounter = new JsonObject();
+        encounter.addProperty("title", "Ambush on the Ridge");
+        encounter.addProperty("type", "combat");
+        encounter.addProperty("description", "Raiders wait on the ridge");
+        encounter.addProperty("difficulty", 0.2 + random.nextInt(7) / 10.0);
+        encounter.addProperty("narrative_text", "Shapes move along the ridge line, closing in.");
+
+        JsonArray entities = new JsonArray();
+        int kinds = 1 + random.nextInt(2);
+        for (int i = 0; i < kinds; i++) {
+            JsonObject entity = new JsonObject();
+            entity.addProperty("entity_type", HOSTILES[random.nextInt(HOSTILES.length)]);
+            entity.addProperty("name", "Ridge Raider");
+            entity.addProperty("count", 1 + random.nextInt(4));
+            entity.addProperty("hostile", true);
+            entity.addProperty("health_modifier", 1.0);
+            entity.addProperty("damage_modifier", 1.0);
+            entities.add(entity);
+        }
+        encounter.add("entities", entities);
+
+        JsonObject outcomes = new JsonObject();
+        outcomes.addProperty("victory_text", "The ridge falls quiet.");
+        outcomes.addProperty("defeat_text", "You wake at the foot of the ridge.");
+        outcomes.addProperty("flee_text", "You leave the raiders behind.");
+        encounter.add("outcomes", outcomes);
+        JsonObject factionChanges = new JsonObject();
+        factionChanges.addProperty("Wasteland Nomads", 5);
+        JsonObject rewards = new JsonObject();
+        rewards.add("faction_changes", factionChanges);
+        encounter.add("rewards", rewards);
+
+        StorytellingResponse response = new StorytellingResponse();
+        response.setEncounter(gson.fromJson(encounter, EncounterData.class));
+        return response;
+    }
+
+    private void sampleMemory(long tick) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        System.gc();
+        long heap = memory.getHeapMemoryUsage().getUsed();
+        memoryRows.add(String.format(Locale.ROOT, "  tick %6d: heap %7.1f MB, %5d active encounters, %6d loaded mobs",
+            tick, heap / (1024.0 * 1024.0), running.size(), world.getLoadedEntityCount()));
+    }
+
+    private void report(double seconds) {
+        long messages = 0;
+        for (SimulatedPlayer player : players) {
+            messages += player.getMessageCount();
+        }
+        long checksum = encountersStarted * 31 + kills;
+        checksum = checksum * 31 + playerDeaths;
+        checksum = checksum * 31 + logouts;
+        checksum = checksum * 31 + world.getSpawnedCount();
+        checksum = checksum * 31 + outcomes.hashCode();
+
+        System.out.println();
+        System.out.println("=== Workload ===");
+        System.out.println(encountersStarted + " encounters started, " + world.getSpawnedCount() + " mobs spawned, " +
+            kills + " kills, " + playerDeaths + " player deaths, " + logouts + " logouts, " + messages + " chat messages");
+        System.out.println("Outcomes: " + outcomes + ", " + running.size() + " still running");
+        System.out.println(String.format(Locale.ROOT, "Checksum %016x (same arguments and seed give the same value)", checksum));
+
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "=== Tick cost (mod code only, %.1fs wall) ===", seconds));
+        System.out.println("tick:       " + describe(tickCost));
+        for (int i = 0; i < PHASES.length; i++) {
+            System.out.println(String.format(Locale.ROOT, "%-11s %s", PHASES[i] + ":", describe(phaseCost[i])));
+        }
+        System.out.println();
+        for (String line : MetricsRegistry.getInstance().getSummaryLines()) {
+            if (line.contains("tick_cost") || line.contains("spawn")) {
+                System.out.println(line);
+            }
+        }
+
+        System.out.println();
+        System.out.println("=== Heap after GC ===");
+        for (String row : memoryRows) {
+            System.out.println(row);
+        }
+    }
+
+    private static String describe(LatencyHistogram histogram) {
+        return String.format(Locale.ROOT, "mean %dus, p50 %dus, p99 %dus, max %dus",
+            histogram.getCount() > 0 ? histogram.getSumMicros() / histogram.getCount() : 0,
+            histogram.getQuantileMicros(0.5), histogram.getQuantileMicros(0.99), histogram.getMaxMicros());
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * An entity to take out of the world at a later tick
+     */
+    private static final class Removal {
+        final Entity entity;
+        final long dueTick;
+
+        Removal(Entity entity, long dueTick) {
+            this.entity = entity;
+            this.dueTick = dueTick;
+        }
+    }
+}